@@ -0,0 +1,80 @@
+package com.prescriptions.taks.prescriptions.benchmark;
+
+import com.prescriptions.taks.prescriptions.PrescriptionsApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Starts the application against an in-memory H2 database and fills it with a synthetic dataset.
+ * <p>
+ * Rows are generated inside the database with {@code SYSTEM_RANGE}, so seeding ten million prescriptions
+ * takes seconds instead of going through JPA. Doctor IDs are {@code 1..doctors}, patient IDs follow them,
+ * and prescriptions are spread round-robin over both and over the last 60 days. Seeding follows whichever
+ * user layout the context maps: joined ({@code userdb} plus {@code doctor} and {@code patient}) or single-table.
+ * </p>
+ */
+public final class BenchmarkDataset {
+
+    /**
+     * The {@code allocationSize} of the prescription ID sequence.
+     */
+    private static final int PRESCRIPTION_ID_BLOCK = 50;
+
+    private BenchmarkDataset() {
+    }
+
+    /**
+     * Starts a non-web application context with the {@code bench} profile.
+     *
+     * @param properties Additional {@code key=value} properties, overriding the profile.
+     * @return The running context; the caller closes it in its tear-down.
+     */
+    public static ConfigurableApplicationContext start(String... properties) {
+        return new SpringApplicationBuilder(PrescriptionsApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("bench")
+                .properties(properties)
+                .run();
+    }
+
+    /**
+     * Inserts doctors, patients and prescriptions and moves the ID generators past the inserted rows.
+     *
+     * @param context       The context started by {@link #start(String...)}.
+     * @param doctors       Number of doctors.
+     * @param patients      Number of patients.
+     * @param prescriptions Number of prescriptions.
+     */
+    public static void seed(ConfigurableApplicationContext context, long doctors, long patients, long prescriptions) {
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        long users = doctors + patients;
+
+        if (isSingleTable(jdbc)) {
+            jdbc.update("INSERT INTO userdb (id, username, password, role, specialty, medical_history) "
+                    + "SELECT X, 'user' || X, 'password', CASE WHEN X <= ? THEN 'DOCTOR' ELSE 'PATIENT' END, "
+                    + "CASE WHEN X <= ? THEN 'General' END, CASE WHEN X > ? THEN 'None' END FROM SYSTEM_RANGE(1, ?)",
+                    doctors, doctors, doctors, users);
+        } else {
+            jdbc.update("INSERT INTO userdb (id, username, password, role) "
+                    + "SELECT X, 'user' || X, 'password', CASE WHEN X <= ? THEN 'DOCTOR' ELSE 'PATIENT' END FROM SYSTEM_RANGE(1, ?)", doctors, users);
+            jdbc.update("INSERT INTO doctor (id, specialty) SELECT X, 'General' FROM SYSTEM_RANGE(1, ?)", doctors);
+            jdbc.update("INSERT INTO patient (id, medical_history) SELECT X, 'None' FROM SYSTEM_RANGE(?, ?)", doctors + 1, users);
+        }
+        jdbc.update("INSERT INTO prescription (id, medicine_name, dosage, instructions, doctor_id, patient_id, created_at) "
+                + "SELECT X, 'Medicine ' || MOD(X, 500), '10mg', 'Take once daily after a meal', "
+                + "MOD(X, ?) + 1, MOD(X, ?) + ?, DATEADD(DAY, -MOD(X, 60), CURRENT_TIMESTAMP) FROM SYSTEM_RANGE(1, ?)",
+                doctors, patients, doctors + 1, prescriptions);
+
+        jdbc.execute("ALTER TABLE userdb ALTER COLUMN id RESTART WITH " + (users + 1));
+        // The pooled optimizer takes the next sequence value as the last ID of a block of PRESCRIPTION_ID_BLOCK.
+        jdbc.execute("ALTER SEQUENCE prescription_seq RESTART WITH " + (prescriptions + PRESCRIPTION_ID_BLOCK));
+    }
+
+    private static boolean isSingleTable(JdbcTemplate jdbc) {
+        Integer joinedTables = jdbc.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE LOWER(TABLE_NAME) = 'doctor'", Integer.class);
+        return joinedTables == null || joinedTables == 0;
+    }
+}
@@ -0,0 +1,183 @@
+package com.prescriptions.taks.prescriptions.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop HTTP load generator for comparing runtime modes of a running application.
+ * <p>
+ * {@code concurrency} simulated clients each send a request, wait for the response and send the next one
+ * until {@code duration} has elapsed. Requests are sent asynchronously, so thousands of clients do not need
+ * thousands of generator threads. The path may contain {@code {id}}, which is replaced by a random ID
+ * between 1 and {@code ids} on every request. Throughput and latency percentiles are printed and, with
+ * {@code out}, appended as one JSON object per run so runs can be compared.
+ * </p>
+ * <p>
+ * To compare platform and virtual threads, start the application once without and once with the
+ * {@code virtual-threads} profile (on Java 21) and run, against each:
+ * {@code ./mvnw -Pbenchmarks test-compile exec:exec@load-test -Dload.args="url=http://localhost:8080
+ * path=/api/prescriptions/patient/{id} ids=1000 concurrency=500 duration=60 label=virtual out=target/load.json"}
+ * </p>
+ * <p>
+ * To compare the servlet and the reactive stack, start the application once without and once with the
+ * {@code reactive} profile and run the same load against each with {@code concurrency=10000} and labels
+ * {@code servlet} and {@code reactive}; {@code path=/api/prescriptions/patient/{id}/stream} compares streaming. Every
+ * client holds its own connection, so raise the open file limit of both processes ({@code ulimit -n 65536}) first.
+ * Pass an issued token with {@code token=...}, or start the application with {@code prescriptions.auth.enabled=false}
+ * and {@code prescriptions.rate-limit.enabled=false} so the limits do not dominate the comparison.
+ * </p>
+ */
+public final class HttpLoadTest {
+
+    private final HttpClient client;
+    private final String url;
+    private final String path;
+    private final long ids;
+    private final String token;
+    private final long deadlineNanos;
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    private HttpLoadTest(String url, String path, long ids, String token, Duration duration) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        this.url = url;
+        this.path = path;
+        this.ids = ids;
+        this.token = token;
+        this.deadlineNanos = System.nanoTime() + duration.toNanos();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator > 0) {
+                options.put(arg.substring(0, separator), arg.substring(separator + 1));
+            }
+        }
+        String label = options.getOrDefault("label", "run");
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "200"));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "30")));
+
+        HttpLoadTest loadTest = new HttpLoadTest(
+                options.getOrDefault("url", "http://localhost:8080"),
+                options.getOrDefault("path", "/api/prescriptions/patient/{id}"),
+                Long.parseLong(options.getOrDefault("ids", "1000")),
+                options.get("token"),
+                duration);
+
+        long[] latencies = loadTest.run(concurrency);
+        String report = loadTest.report(label, concurrency, duration, latencies);
+        System.out.println(report);
+        if (options.containsKey("out")) {
+            Files.writeString(Path.of(options.get("out")), report + System.lineSeparator(),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+    }
+
+    private long[] run(int concurrency) throws InterruptedException {
+        Client[] clients = new Client[concurrency];
+        CountDownLatch done = new CountDownLatch(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            clients[i] = new Client(done);
+            clients[i].sendNext();
+        }
+        done.await();
+
+        int total = 0;
+        for (Client c : clients) {
+            total += c.count;
+        }
+        long[] latencies = new long[total];
+        int offset = 0;
+        for (Client c : clients) {
+            System.arraycopy(c.latencies, 0, latencies, offset, c.count);
+            offset += c.count;
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private String report(String label, int concurrency, Duration duration, long[] latencies) {
+        double seconds = duration.toMillis() / 1000.0;
+        return String.format(Locale.ROOT,
+                "{\"label\":\"%s\",\"concurrency\":%d,\"requests\":%d,\"errors\":%d,\"rejected\":%d,"
+                        + "\"throughputPerSecond\":%.1f,\"p50Ms\":%.3f,\"p99Ms\":%.3f,\"p999Ms\":%.3f,\"maxMs\":%.3f}",
+                label, concurrency, latencies.length, errors.get(), rejected.get(), latencies.length / seconds,
+                percentileMillis(latencies, 0.50), percentileMillis(latencies, 0.99),
+                percentileMillis(latencies, 0.999), percentileMillis(latencies, 1.0));
+    }
+
+    private static double percentileMillis(long[] sortedNanos, double percentile) {
+        if (sortedNanos.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sortedNanos.length - 1, Math.ceil(percentile * sortedNanos.length) - 1);
+        return sortedNanos[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    /**
+     * One simulated client. Its callbacks never overlap, so it records latencies without synchronization.
+     */
+    private final class Client {
+        private final CountDownLatch done;
+        private long[] latencies = new long[1024];
+        private int count;
+
+        private Client(CountDownLatch done) {
+            this.done = done;
+        }
+
+        private void sendNext() {
+            if (System.nanoTime() >= deadlineNanos) {
+                done.countDown();
+                return;
+            }
+            String id = Long.toString(ThreadLocalRandom.current().nextLong(ids) + 1);
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url + path.replace("{id}", id)))
+                    .timeout(Duration.ofSeconds(30))
+                    .GET();
+            if (token != null) {
+                builder.header("Authorization", "Bearer " + token);
+            }
+            HttpRequest request = builder.build();
+            long start = System.nanoTime();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenCompleteAsync((response, error) -> {
+                long latency = System.nanoTime() - start;
+                if (error != null) {
+                    errors.incrementAndGet();
+                } else if (response.statusCode() == 503 || response.statusCode() == 429) {
+                    rejected.incrementAndGet();
+                } else if (response.statusCode() >= 400) {
+                    errors.incrementAndGet();
+                } else {
+                    record(latency);
+                }
+                sendNext();
+            });
+        }
+
+        private void record(long latency) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latency;
+        }
+    }
+}
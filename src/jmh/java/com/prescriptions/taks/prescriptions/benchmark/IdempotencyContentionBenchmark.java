@@ -0,0 +1,96 @@
+package com.prescriptions.taks.prescriptions.benchmark;
+
+import com.prescriptions.taks.prescriptions.dto.PrescriptionDTO;
+import com.prescriptions.taks.prescriptions.entities.Doctor;
+import com.prescriptions.taks.prescriptions.entities.Patient;
+import com.prescriptions.taks.prescriptions.entities.Prescription;
+import com.prescriptions.taks.prescriptions.service.IdempotencyService;
+import com.prescriptions.taks.prescriptions.service.PrescriptionService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures idempotent prescription creation with many threads hammering few keys.
+ * <p>
+ * {@code replay} sends retries for {@code keys} keys that were used before, so every call is a cache hit that has to
+ * find the stored response and deserialize it; with one key, all threads contend for the same map entry.
+ * {@code collapse} starts a new generation of {@code keys} keys after every {@value #RETRIES_PER_KEY} calls per key,
+ * so concurrent first attempts and retries of the same key race: one of them inserts the prescription and the others
+ * wait for its response.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Threads(16)
+public class IdempotencyContentionBenchmark {
+
+    private static final long DOCTORS = 100;
+    private static final long PATIENTS = 10_000;
+    private static final int RETRIES_PER_KEY = 16;
+
+    @Param({"1", "16", "1024"})
+    private int keys;
+
+    private ConfigurableApplicationContext context;
+    private IdempotencyService idempotencyService;
+    private PrescriptionService prescriptionService;
+    private final AtomicLong collapseSequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkDataset.start();
+        BenchmarkDataset.seed(context, DOCTORS, PATIENTS, 0);
+        idempotencyService = context.getBean(IdempotencyService.class);
+        prescriptionService = context.getBean(PrescriptionService.class);
+        for (int i = 0; i < keys; i++) {
+            create("replay-" + i, i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public PrescriptionDTO replay() {
+        int key = ThreadLocalRandom.current().nextInt(keys);
+        return create("replay-" + key, key);
+    }
+
+    @Benchmark
+    public PrescriptionDTO collapse() {
+        long call = collapseSequence.getAndIncrement();
+        long key = call % keys;
+        long generation = call / ((long) keys * RETRIES_PER_KEY);
+        return create("collapse-" + generation + "-" + key, key);
+    }
+
+    private PrescriptionDTO create(String key, long seed) {
+        long patientId = DOCTORS + seed % PATIENTS + 1;
+        String requestHash = IdempotencyService.hash("Ibuprofen", "200mg", null, 1L, patientId);
+        return idempotencyService.execute(key, requestHash, PrescriptionDTO.class, () -> {
+            Doctor doctor = new Doctor();
+            doctor.setId(1L);
+            Patient patient = new Patient();
+            patient.setId(patientId);
+            Prescription prescription = new Prescription();
+            prescription.setMedicineName("Ibuprofen");
+            prescription.setDosage("200mg");
+            prescription.setDoctor(doctor);
+            prescription.setPatient(patient);
+            PrescriptionDTO dto = new PrescriptionDTO();
+            dto.setId(prescriptionService.createPrescription(prescription).getId());
+            dto.setPatientId(patientId);
+            return dto;
+        }).getBody();
+    }
+}
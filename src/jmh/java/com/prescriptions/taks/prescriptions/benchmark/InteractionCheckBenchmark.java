@@ -0,0 +1,77 @@
+package com.prescriptions.taks.prescriptions.benchmark;
+
+import com.prescriptions.taks.prescriptions.interaction.InteractionRule;
+import com.prescriptions.taks.prescriptions.interaction.InteractionRuleSet;
+import com.prescriptions.taks.prescriptions.interaction.InteractionWarning;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures an interaction check as the rule set grows.
+ * <p>
+ * The rule set holds {@code rules} random pairs over {@code medicines} synthetic medicine names, and the patient
+ * already takes {@code existing} of them. {@code checkByName} is what a prescription create pays: resolving the
+ * medicine name and intersecting its partner set with the patient's set. {@code checkById} leaves out the name lookup.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InteractionCheckBenchmark {
+
+    @Param({"5000"})
+    private int medicines;
+
+    @Param({"100", "10000", "100000", "1000000"})
+    private int rules;
+
+    @Param({"10", "300"})
+    private int existing;
+
+    private InteractionRuleSet ruleSet;
+    private BitSet patientMedicines;
+    private String[] names;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        names = new String[medicines];
+        for (int i = 0; i < medicines; i++) {
+            names[i] = "medicine" + i;
+        }
+        InteractionRuleSet.Builder builder = new InteractionRuleSet.Builder();
+        // Intern every medicine up front so IDs match the name indexes.
+        builder.medicineClass("ALL", List.of(names));
+        for (int i = 0; i < rules; i++) {
+            builder.interaction(names[random.nextInt(medicines)], names[random.nextInt(medicines)],
+                    InteractionRule.Severity.MODERATE, "Synthetic rule " + i);
+        }
+        ruleSet = builder.build();
+
+        List<String> taken = new ArrayList<>(existing);
+        for (int i = 0; i < existing; i++) {
+            taken.add(names[random.nextInt(medicines)] + " 10mg");
+        }
+        patientMedicines = ruleSet.medicines(taken);
+    }
+
+    @Benchmark
+    public List<InteractionWarning> checkByName() {
+        String name = names[ThreadLocalRandom.current().nextInt(medicines)] + " 10mg";
+        return ruleSet.check(patientMedicines, ruleSet.medicineId(name));
+    }
+
+    @Benchmark
+    public List<InteractionWarning> checkById() {
+        return ruleSet.check(patientMedicines, ThreadLocalRandom.current().nextInt(medicines));
+    }
+}
@@ -0,0 +1,53 @@
+package com.prescriptions.taks.prescriptions.benchmark;
+
+import com.prescriptions.taks.prescriptions.PrescriptionsApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Starts the application on the servlet or the reactive stack, against the seeded in-memory dataset of the
+ * {@code bench} profile, as the target of {@link HttpLoadTest}.
+ * <p>
+ * Both stacks read the same H2 database, the reactive one through R2DBC, so a run compares the request handling and
+ * not two databases. Authentication and rate limiting are off. Start it with
+ * {@code ./mvnw -Pbenchmarks test-compile exec:exec@load-server -Dload.args="stack=reactive port=8080 patients=1000"}
+ * and stop it with Ctrl+C.
+ * </p>
+ */
+public final class LoadTestServer {
+
+    private LoadTestServer() {
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator > 0) {
+                options.put(arg.substring(0, separator), arg.substring(separator + 1));
+            }
+        }
+        WebApplicationType stack = WebApplicationType.valueOf(options.getOrDefault("stack", "servlet").toUpperCase(Locale.ROOT));
+        long doctors = Long.parseLong(options.getOrDefault("doctors", "100"));
+        long patients = Long.parseLong(options.getOrDefault("patients", "1000"));
+        long prescriptions = Long.parseLong(options.getOrDefault("prescriptions", "100000"));
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(PrescriptionsApplication.class)
+                .web(stack)
+                .profiles("bench")
+                .run("--server.port=" + options.getOrDefault("port", "8080"),
+                        "--prescriptions.auth.enabled=false",
+                        "--prescriptions.rate-limit.enabled=false",
+                        "--prescriptions.reactive.r2dbc.url=r2dbc:h2:mem:///bench;DB_CLOSE_DELAY=-1",
+                        "--prescriptions.reactive.r2dbc.username=sa");
+        BenchmarkDataset.seed(context, doctors, patients, prescriptions);
+        System.out.printf(Locale.ROOT, "Serving %d prescriptions on the %s stack, patient IDs %d..%d%n",
+                prescriptions, stack.name().toLowerCase(Locale.ROOT), doctors + 1, doctors + patients);
+    }
+}
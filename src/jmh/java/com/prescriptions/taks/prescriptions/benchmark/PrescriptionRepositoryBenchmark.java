@@ -0,0 +1,79 @@
+package com.prescriptions.taks.prescriptions.benchmark;
+
+import com.prescriptions.taks.prescriptions.dto.PrescriptionDTO;
+import com.prescriptions.taks.prescriptions.entities.Prescription;
+import com.prescriptions.taks.prescriptions.repository.PrescriptionRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Limit;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the repository reads behind the listing endpoints against an H2 dataset of {@code rows} prescriptions.
+ * Every doctor has {@code rowsPerDoctor} prescriptions and every patient a tenth of that, so the cost of a single
+ * listing stays the same while the table grows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PrescriptionRepositoryBenchmark {
+
+    @Param({"10000"})
+    private long rows;
+
+    @Param({"100"})
+    private long rowsPerDoctor;
+
+    private ConfigurableApplicationContext context;
+    private PrescriptionRepository prescriptionRepository;
+    private long doctors;
+    private long patients;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        doctors = Math.max(1, rows / rowsPerDoctor);
+        patients = Math.max(1, rows * 10 / rowsPerDoctor);
+        context = BenchmarkDataset.start();
+        BenchmarkDataset.seed(context, doctors, patients, rows);
+        prescriptionRepository = context.getBean(PrescriptionRepository.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<PrescriptionDTO> findDTOsByDoctorId() {
+        return prescriptionRepository.findDTOsByDoctorId(randomDoctorId());
+    }
+
+    @Benchmark
+    public List<PrescriptionDTO> findDTOsByPatientId() {
+        return prescriptionRepository.findDTOsByPatientId(randomPatientId());
+    }
+
+    @Benchmark
+    public List<PrescriptionDTO> findDTOPageByDoctorId() {
+        return prescriptionRepository.findDTOPageByDoctorId(randomDoctorId(), 0L, Limit.of(20));
+    }
+
+    @Benchmark
+    public List<Prescription> findEntitiesByDoctorId() {
+        return prescriptionRepository.findByDoctorId(randomDoctorId());
+    }
+
+    private long randomDoctorId() {
+        return ThreadLocalRandom.current().nextLong(doctors) + 1;
+    }
+
+    private long randomPatientId() {
+        return doctors + 1 + ThreadLocalRandom.current().nextLong(patients);
+    }
+}
@@ -0,0 +1,76 @@
+package com.prescriptions.taks.prescriptions.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.prescriptions.taks.prescriptions.converter.PrescriptionSmileCodec;
+import com.prescriptions.taks.prescriptions.dto.PrescriptionDTO;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures Jackson serialization of {@link PrescriptionDTO} lists as returned by the listing endpoints,
+ * using an {@link ObjectMapper} configured like the one Spring Boot builds, against the Smile encoding of
+ * {@link PrescriptionSmileCodec} and Spring's generic Smile {@link ObjectMapper}.
+ * <p>
+ * The {@code *ToBytes} variants return the encoded payload, whose length is the size on the wire.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrescriptionSerializationBenchmark {
+
+    @Param({"10", "1000", "10000", "100000"})
+    private int listSize;
+
+    private ObjectMapper objectMapper;
+    private ObjectMapper smileObjectMapper;
+    private List<PrescriptionDTO> prescriptions;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        smileObjectMapper = Jackson2ObjectMapperBuilder.smile().build();
+        prescriptions = new ArrayList<>(listSize);
+        for (int i = 0; i < listSize; i++) {
+            prescriptions.add(new PrescriptionDTO((long) i, "Medicine " + (i % 500), "10mg",
+                    "Take once daily after a meal", (long) (i % 100), (long) (i % 1000)));
+        }
+    }
+
+    @Benchmark
+    public void writeToStream() throws IOException {
+        objectMapper.writeValue(OutputStream.nullOutputStream(), prescriptions);
+    }
+
+    @Benchmark
+    public byte[] writeToBytes() throws IOException {
+        return objectMapper.writeValueAsBytes(prescriptions);
+    }
+
+    @Benchmark
+    public void writeSmileToStream() throws IOException {
+        PrescriptionSmileCodec.writeList(prescriptions, OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public byte[] writeSmileToBytes() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrescriptionSmileCodec.writeList(prescriptions, out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public void writeSmileWithObjectMapper() throws IOException {
+        smileObjectMapper.writeValue(OutputStream.nullOutputStream(), prescriptions);
+    }
+}
@@ -0,0 +1,85 @@
+package com.prescriptions.taks.prescriptions.benchmark;
+
+import com.prescriptions.taks.prescriptions.dto.PrescriptionDTO;
+import com.prescriptions.taks.prescriptions.dto.PrescriptionStatsDTO;
+import com.prescriptions.taks.prescriptions.repository.PrescriptionRepository;
+import com.prescriptions.taks.prescriptions.service.PrescriptionStatsService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the doctor dashboard statistics against an H2 dataset of {@code rows} prescriptions, {@code rowsPerDoctor}
+ * per doctor: read from the in-memory counters, computed on demand from the doctor's listing (total and medicine
+ * counts only, so a lower bound), and the full rebuild with {@code rebuildThreads} threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PrescriptionStatsBenchmark {
+
+    @Param({"1000000"})
+    private long rows;
+
+    @Param({"1000"})
+    private long rowsPerDoctor;
+
+    @Param({"1", "4"})
+    private int rebuildThreads;
+
+    private ConfigurableApplicationContext context;
+    private PrescriptionRepository prescriptionRepository;
+    private PrescriptionStatsService prescriptionStatsService;
+    private long doctors;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        doctors = Math.max(1, rows / rowsPerDoctor);
+        context = BenchmarkDataset.start("prescriptions.stats.rebuild-threads=" + rebuildThreads);
+        BenchmarkDataset.seed(context, doctors, rows / 10, rows);
+        prescriptionRepository = context.getBean(PrescriptionRepository.class);
+        prescriptionStatsService = context.getBean(PrescriptionStatsService.class);
+        prescriptionStatsService.rebuild();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public PrescriptionStatsDTO statsFromCounters() {
+        return prescriptionStatsService.getDoctorStats(randomDoctorId());
+    }
+
+    @Benchmark
+    public Map<String, Long> statsFromListing() {
+        List<PrescriptionDTO> prescriptions = prescriptionRepository.findDTOsByDoctorId(randomDoctorId());
+        Map<String, Long> counts = new HashMap<>();
+        for (PrescriptionDTO prescription : prescriptions) {
+            counts.merge(prescription.getMedicineName(), 1L, Long::sum);
+        }
+        return counts;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public void rebuild() {
+        prescriptionStatsService.rebuild();
+    }
+
+    private long randomDoctorId() {
+        return ThreadLocalRandom.current().nextLong(doctors) + 1;
+    }
+}
@@ -0,0 +1,91 @@
+package com.prescriptions.taks.prescriptions.benchmark;
+
+import com.prescriptions.taks.prescriptions.entities.Doctor;
+import com.prescriptions.taks.prescriptions.entities.Patient;
+import com.prescriptions.taks.prescriptions.entities.Prescription;
+import com.prescriptions.taks.prescriptions.repository.PrescriptionRepository;
+import com.prescriptions.taks.prescriptions.service.PrescriptionWriteBatcher;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of creating a prescription under concurrency, saved directly ({@code batchSize} 0) or through
+ * the {@link PrescriptionWriteBatcher} with the given batch size and flush interval.
+ * <p>
+ * Sample mode reports p50, p99 and p99.9 per batch size. The number of batches committed during the trial is printed
+ * at tear-down; rows per commit is the figure that carries over to MySQL, where every commit waits for a network
+ * round trip and a log flush. On in-memory H2 a commit is nearly free, so the batcher's hand-off cost dominates here.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Threads(32)
+public class PrescriptionWriteBatchingBenchmark {
+
+    private static final long DOCTORS = 100;
+    private static final long PATIENTS = 10_000;
+
+    @Param({"0", "1", "16", "64", "256"})
+    private int batchSize;
+
+    @Param({"100us", "1ms"})
+    private String flushInterval;
+
+    private ConfigurableApplicationContext context;
+    private PrescriptionRepository prescriptionRepository;
+    private PrescriptionWriteBatcher writeBatcher;
+    private DistributionSummary batchSizes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (batchSize > 0) {
+            context = BenchmarkDataset.start("prescriptions.write-batching.enabled=true",
+                    "prescriptions.write-batching.batch-size=" + batchSize,
+                    "prescriptions.write-batching.flush-interval=" + flushInterval);
+            writeBatcher = context.getBean(PrescriptionWriteBatcher.class);
+            batchSizes = context.getBean(MeterRegistry.class).get("prescriptions.write.batch.size").summary();
+        } else {
+            context = BenchmarkDataset.start();
+        }
+        BenchmarkDataset.seed(context, DOCTORS, PATIENTS, 0);
+        prescriptionRepository = context.getBean(PrescriptionRepository.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (batchSizes != null) {
+            System.out.printf("%nbatches=%d, mean rows per batch=%.1f%n", batchSizes.count(), batchSizes.mean());
+        }
+        context.close();
+    }
+
+    @Benchmark
+    public Prescription createPrescription() {
+        Prescription prescription = newPrescription();
+        return writeBatcher != null ? writeBatcher.save(prescription) : prescriptionRepository.save(prescription);
+    }
+
+    private static Prescription newPrescription() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Doctor doctor = new Doctor();
+        doctor.setId(random.nextLong(DOCTORS) + 1);
+        Patient patient = new Patient();
+        patient.setId(DOCTORS + random.nextLong(PATIENTS) + 1);
+        Prescription prescription = new Prescription();
+        prescription.setMedicineName("Medicine " + random.nextInt(500));
+        prescription.setDosage("10mg");
+        prescription.setInstructions("Take once daily after a meal");
+        prescription.setDoctor(doctor);
+        prescription.setPatient(patient);
+        return prescription;
+    }
+}
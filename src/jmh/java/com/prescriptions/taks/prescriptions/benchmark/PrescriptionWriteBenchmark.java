@@ -0,0 +1,90 @@
+package com.prescriptions.taks.prescriptions.benchmark;
+
+import com.prescriptions.taks.prescriptions.entities.Doctor;
+import com.prescriptions.taks.prescriptions.entities.Patient;
+import com.prescriptions.taks.prescriptions.entities.Prescription;
+import com.prescriptions.taks.prescriptions.repository.PrescriptionRepository;
+import com.prescriptions.taks.prescriptions.service.PrescriptionEventLogService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures prescription write throughput: a synchronous {@code prescriptionRepository.save} against an append to
+ * the event log with each fsync policy.
+ * <p>
+ * The log modes run with the projector writing to the database in the background, as in production. The database
+ * is in-memory H2, so {@code save} is a lower bound for MySQL, where every insert also waits for a network round trip
+ * and a commit. {@code log-always} depends on the disk the temporary directory is on.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Threads(4)
+public class PrescriptionWriteBenchmark {
+
+    private static final long DOCTORS = 100;
+    private static final long PATIENTS = 10_000;
+
+    @Param({"save", "log-never", "log-interval", "log-always"})
+    private String mode;
+
+    private ConfigurableApplicationContext context;
+    private PrescriptionRepository prescriptionRepository;
+    private PrescriptionEventLogService eventLogService;
+    private Path logDirectory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if (mode.startsWith("log-")) {
+            logDirectory = Files.createTempDirectory("prescription-event-log");
+            context = BenchmarkDataset.start("prescriptions.event-log.enabled=true",
+                    "prescriptions.event-log.directory=" + logDirectory,
+                    "prescriptions.event-log.fsync=" + mode.substring("log-".length()));
+            eventLogService = context.getBean(PrescriptionEventLogService.class);
+        } else {
+            context = BenchmarkDataset.start();
+        }
+        BenchmarkDataset.seed(context, DOCTORS, PATIENTS, 0);
+        prescriptionRepository = context.getBean(PrescriptionRepository.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        if (logDirectory != null) {
+            FileSystemUtils.deleteRecursively(logDirectory);
+        }
+    }
+
+    @Benchmark
+    public Prescription createPrescription() {
+        Prescription prescription = newPrescription();
+        return eventLogService != null ? eventLogService.append(prescription) : prescriptionRepository.save(prescription);
+    }
+
+    private static Prescription newPrescription() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Doctor doctor = new Doctor();
+        doctor.setId(random.nextLong(DOCTORS) + 1);
+        Patient patient = new Patient();
+        patient.setId(DOCTORS + random.nextLong(PATIENTS) + 1);
+        Prescription prescription = new Prescription();
+        prescription.setMedicineName("Medicine " + random.nextInt(500));
+        prescription.setDosage("10mg");
+        prescription.setInstructions("Take once daily after a meal");
+        prescription.setDoctor(doctor);
+        prescription.setPatient(patient);
+        return prescription;
+    }
+}
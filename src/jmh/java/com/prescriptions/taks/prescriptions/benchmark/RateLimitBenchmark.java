@@ -0,0 +1,76 @@
+package com.prescriptions.taks.prescriptions.benchmark;
+
+import com.prescriptions.taks.prescriptions.filter.RateLimitFilter;
+import com.prescriptions.taks.prescriptions.ratelimit.RateLimiter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-request overhead of rate limiting with many threads and up to 100k distinct clients.
+ * <p>
+ * {@code acquire} takes a token for a random client from the bucket table alone; {@code filter} runs the whole
+ * {@link RateLimitFilter} on a reused mock request from a random client address against a doctor path, so it pays
+ * for building both keys and for two buckets. Limits are high enough that requests are admitted, which is the
+ * common case and the one that writes to the table. With one key, all threads contend for the same bucket.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class RateLimitBenchmark {
+
+    private static final FilterChain NO_OP = (request, response) -> {
+    };
+
+    @Param({"1", "1000", "100000"})
+    private int keys;
+
+    private RateLimiter limiter;
+    private RateLimitFilter filter;
+    private String[] clients;
+    private String[] addresses;
+
+    @Setup
+    public void setUp() {
+        limiter = new RateLimiter(1e9, 1_000_000, 1_000_000, Duration.ofMinutes(10));
+        filter = new RateLimitFilter(new RateLimiter(1e9, 1_000_000, 1_000_000, Duration.ofMinutes(10)),
+                new RateLimiter(1e9, 1_000_000, 1_000_000, Duration.ofMinutes(10)), null);
+        clients = new String[keys];
+        addresses = new String[keys];
+        for (int i = 0; i < keys; i++) {
+            addresses[i] = "10." + (i >> 16 & 0xFF) + "." + (i >> 8 & 0xFF) + "." + (i & 0xFF);
+            clients[i] = "ip:" + addresses[i];
+            limiter.tryAcquire(clients[i]);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Exchange {
+        private final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/prescriptions/doctor/17");
+        private final MockHttpServletResponse response = new MockHttpServletResponse();
+    }
+
+    @Benchmark
+    public long acquire() {
+        return limiter.tryAcquire(clients[ThreadLocalRandom.current().nextInt(keys)]);
+    }
+
+    @Benchmark
+    public int filter(Exchange exchange) throws ServletException, IOException {
+        exchange.request.setRemoteAddr(addresses[ThreadLocalRandom.current().nextInt(keys)]);
+        filter.doFilter(exchange.request, exchange.response, NO_OP);
+        return exchange.response.getStatus();
+    }
+}
@@ -0,0 +1,99 @@
+package com.prescriptions.taks.prescriptions.benchmark;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.OutputStreamAppender;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the logging cost a controller request pays on its own thread.
+ * <p>
+ * Each invocation logs what a listing request logs: a DEBUG line that is filtered out in production and one
+ * INFO line with structured fields. {@code none} is the baseline with INFO disabled, {@code sync} writes
+ * through the encoder on the calling thread like the previous console setup, and {@code async} is the
+ * bounded, non-blocking {@link AsyncAppender} from {@code logback.xml}. Output goes to a temporary file
+ * so the numbers include real write calls without depending on a terminal.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class RequestLoggingBenchmark {
+
+    @Param({"none", "sync", "async"})
+    private String mode;
+
+    private LoggerContext context;
+    private Logger logger;
+    private File output;
+
+    @Setup
+    public void setUp() throws IOException {
+        output = File.createTempFile("request-logging", ".log");
+        context = new LoggerContext();
+        context.setMDCAdapter(new LogbackMDCAdapter());
+
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%d{dd-MM-yyyy HH:mm:ss} - %msg %kvp{NONE}%n");
+        encoder.start();
+
+        OutputStreamAppender<ILoggingEvent> file = new OutputStreamAppender<>();
+        file.setContext(context);
+        file.setEncoder(encoder);
+        file.setOutputStream(new FileOutputStream(output));
+        file.start();
+
+        Appender<ILoggingEvent> appender = file;
+        if ("async".equals(mode)) {
+            AsyncAppender async = new AsyncAppender();
+            async.setContext(context);
+            async.setQueueSize(8192);
+            async.setDiscardingThreshold(1638);
+            async.setNeverBlock(true);
+            async.setIncludeCallerData(false);
+            async.addAppender(file);
+            async.start();
+            appender = async;
+        }
+
+        logger = context.getLogger("benchmark");
+        logger.setAdditive(false);
+        logger.setLevel("none".equals(mode) ? Level.WARN : Level.INFO);
+        logger.addAppender(appender);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.stop();
+        output.delete();
+    }
+
+    @Benchmark
+    public void logListingRequest() {
+        long start = System.nanoTime();
+        long patientId = ThreadLocalRandom.current().nextLong(100_000);
+        logger.debug("Request to get prescriptions for patient ID: {}", patientId);
+        logger.atInfo()
+                .addKeyValue("patientId", patientId)
+                .addKeyValue("count", 12)
+                .addKeyValue("latencyUs", (System.nanoTime() - start) / 1_000)
+                .log("Found prescriptions");
+    }
+}
@@ -0,0 +1,103 @@
+package com.prescriptions.taks.prescriptions.benchmark;
+
+import com.prescriptions.taks.prescriptions.entities.Doctor;
+import com.prescriptions.taks.prescriptions.entities.Patient;
+import com.prescriptions.taks.prescriptions.entities.Prescription;
+import com.prescriptions.taks.prescriptions.repository.DoctorRepository;
+import com.prescriptions.taks.prescriptions.repository.PrescriptionRepository;
+import com.prescriptions.taks.prescriptions.service.UserService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the joined user layout with the single-table layout of the {@code single-table-users} profile.
+ * <p>
+ * Registration inserts one row instead of two, and loading a doctor or the prescribing doctors of a patient's
+ * prescriptions reads {@code userdb} alone instead of joining it with {@code doctor}. The DTO listings are not
+ * measured because they read only the prescription table and cost the same in both layouts.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class UserLayoutBenchmark {
+
+    @Param({"joined", "single-table"})
+    private String layout;
+
+    @Param({"100000"})
+    private long rows;
+
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+    private DoctorRepository doctorRepository;
+    private PrescriptionRepository prescriptionRepository;
+    private TransactionTemplate transactionTemplate;
+    private final AtomicLong registrations = new AtomicLong();
+    private long doctors;
+    private long patients;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        doctors = Math.max(1, rows / 100);
+        patients = Math.max(1, rows / 10);
+        context = "single-table".equals(layout)
+                ? BenchmarkDataset.start("spring.jpa.mapping-resources=META-INF/orm-single-table-users.xml")
+                : BenchmarkDataset.start();
+        BenchmarkDataset.seed(context, doctors, patients, rows);
+        userService = context.getBean(UserService.class);
+        doctorRepository = context.getBean(DoctorRepository.class);
+        prescriptionRepository = context.getBean(PrescriptionRepository.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Doctor registerDoctor() {
+        Doctor doctor = new Doctor();
+        doctor.setUsername("bench.doctor." + registrations.incrementAndGet());
+        doctor.setPassword("password");
+        doctor.setSpecialty("General");
+        return userService.registerDoctor(doctor);
+    }
+
+    @Benchmark
+    public Patient registerPatient() {
+        Patient patient = new Patient();
+        patient.setUsername("bench.patient." + registrations.incrementAndGet());
+        patient.setPassword("password");
+        patient.setMedicalHistory("None");
+        return userService.registerPatient(patient);
+    }
+
+    @Benchmark
+    public Doctor findDoctorById() {
+        return doctorRepository.findById(ThreadLocalRandom.current().nextLong(doctors) + 1).orElseThrow();
+    }
+
+    @Benchmark
+    public int readPrescriptionsWithDoctors() {
+        long patientId = doctors + 1 + ThreadLocalRandom.current().nextLong(patients);
+        return transactionTemplate.execute(status -> {
+            List<Prescription> prescriptions = prescriptionRepository.findByPatientId(patientId);
+            int length = 0;
+            for (Prescription prescription : prescriptions) {
+                length += prescription.getDoctor().getSpecialty().length();
+            }
+            return length;
+        });
+    }
+}
@@ -0,0 +1,10 @@
+/**
+ * JMH benchmarks for the prescription hot paths.
+ * <p>
+ * Compiled and run only with the {@code benchmarks} Maven profile, for example
+ * {@code ./mvnw -Pbenchmarks test-compile exec:exec -Djmh.args="PrescriptionRepositoryBenchmark -p rows=1000000"}.
+ * Results go to {@code target/jmh-result.json} so they can be compared between releases.
+ * Datasets above a million rows need a larger heap, e.g. {@code -Djmh.args="... -jvmArgs -Xmx8g"}.
+ * </p>
+ */
+package com.prescriptions.taks.prescriptions.benchmark;
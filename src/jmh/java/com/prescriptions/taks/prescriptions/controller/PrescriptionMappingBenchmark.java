@@ -0,0 +1,47 @@
+package com.prescriptions.taks.prescriptions.controller;
+
+import com.prescriptions.taks.prescriptions.dto.PrescriptionDTO;
+import com.prescriptions.taks.prescriptions.entities.Doctor;
+import com.prescriptions.taks.prescriptions.entities.Patient;
+import com.prescriptions.taks.prescriptions.entities.Prescription;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link PrescriptionController#convertToDTO(Prescription)}, the entity to DTO mapping of the create path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrescriptionMappingBenchmark {
+
+    private PrescriptionController controller;
+    private Prescription prescription;
+
+    @Setup
+    public void setUp() {
+        controller = new PrescriptionController();
+
+        Doctor doctor = new Doctor();
+        doctor.setId(1L);
+        Patient patient = new Patient();
+        patient.setId(2L);
+
+        prescription = new Prescription();
+        prescription.setId(3L);
+        prescription.setMedicineName("Aspirin");
+        prescription.setDosage("100mg");
+        prescription.setInstructions("Take once daily after a meal");
+        prescription.setDoctor(doctor);
+        prescription.setPatient(patient);
+    }
+
+    @Benchmark
+    public PrescriptionDTO convertToDTO() {
+        return controller.convertToDTO(prescription);
+    }
+}
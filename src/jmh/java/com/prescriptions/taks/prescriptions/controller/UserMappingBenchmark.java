@@ -0,0 +1,65 @@
+package com.prescriptions.taks.prescriptions.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.prescriptions.taks.prescriptions.dto.DoctorDTO;
+import com.prescriptions.taks.prescriptions.dto.PatientDTO;
+import com.prescriptions.taks.prescriptions.entities.Doctor;
+import com.prescriptions.taks.prescriptions.entities.Patient;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the mapping work of {@link UserController} registration: binding the JSON body to the entity
+ * and converting the saved entity back to its DTO. Persistence is left out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserMappingBenchmark {
+
+    private static final byte[] DOCTOR_JSON =
+            "{\"username\":\"dr.house\",\"password\":\"secret\",\"specialty\":\"Diagnostics\"}".getBytes();
+    private static final byte[] PATIENT_JSON =
+            "{\"username\":\"patient\",\"password\":\"secret\",\"medicalHistory\":\"None\"}".getBytes();
+
+    private UserController controller;
+    private ObjectMapper objectMapper;
+    private Doctor doctor;
+    private Patient patient;
+
+    @Setup
+    public void setUp() throws IOException {
+        controller = new UserController();
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        doctor = objectMapper.readValue(DOCTOR_JSON, Doctor.class);
+        doctor.setId(1L);
+        patient = objectMapper.readValue(PATIENT_JSON, Patient.class);
+        patient.setId(2L);
+    }
+
+    @Benchmark
+    public DoctorDTO convertDoctorToDTO() {
+        return controller.convertDoctorToDTO(doctor);
+    }
+
+    @Benchmark
+    public PatientDTO convertPatientToDTO() {
+        return controller.convertPatientToDTO(patient);
+    }
+
+    @Benchmark
+    public DoctorDTO bindAndConvertDoctor() throws IOException {
+        return controller.convertDoctorToDTO(objectMapper.readValue(DOCTOR_JSON, Doctor.class));
+    }
+
+    @Benchmark
+    public PatientDTO bindAndConvertPatient() throws IOException {
+        return controller.convertPatientToDTO(objectMapper.readValue(PATIENT_JSON, Patient.class));
+    }
+}
@@ -0,0 +1,118 @@
+package com.prescriptions.taks.prescriptions.concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * A bounded, lock-free queue for many producers and a single consumer.
+ * <p>
+ * The slots form a ring whose size is a power of two. Each slot carries a sequence number telling whose turn it is:
+ * a producer claims the next position with one CAS on the tail and may write slot {@code p & mask} once its sequence
+ * equals {@code p}; publishing the element sets it to {@code p + 1}, which hands the slot to the consumer. The
+ * consumer takes it and sets the sequence to {@code p + capacity}, handing the slot to the producer of the next lap.
+ * Producers therefore only contend on the tail, and never wait for each other once they have a position.
+ * </p>
+ * <p>
+ * Only one thread may call {@link #drain(Consumer, int)} at a time.
+ * </p>
+ *
+ * @param <E> The element type.
+ */
+public class MpscRingBuffer<E> {
+
+    private final int mask;
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    /**
+     * @param capacity The number of slots, a power of two.
+     */
+    public MpscRingBuffer(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two, was " + capacity);
+        }
+        this.mask = capacity - 1;
+        this.elements = new Object[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds an element unless the buffer is full.
+     *
+     * @return {@code false} if the buffer is full.
+     */
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException("element");
+        }
+        while (true) {
+            long position = tail.get();
+            int slot = (int) position & mask;
+            long difference = sequences.get(slot) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements[slot] = element;
+                    // A volatile write, so a consumer that is about to park sees the element or gets unparked.
+                    sequences.set(slot, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Removes up to {@code limit} elements in the order they were published and passes them to {@code action}.
+     * Stops early at a position whose producer has claimed it but not yet published the element.
+     *
+     * @return The number of elements removed.
+     */
+    @SuppressWarnings("unchecked")
+    public int drain(Consumer<? super E> action, int limit) {
+        long position = head;
+        int drained = 0;
+        try {
+            while (drained < limit) {
+                int slot = (int) position & mask;
+                if (sequences.get(slot) != position + 1) {
+                    break;
+                }
+                E element = (E) elements[slot];
+                elements[slot] = null;
+                sequences.lazySet(slot, position + mask + 1);
+                position++;
+                drained++;
+                action.accept(element);
+            }
+        } finally {
+            head = position;
+        }
+        return drained;
+    }
+
+    /**
+     * Whether the buffer has no published element for the consumer.
+     */
+    public boolean isEmpty() {
+        long position = head;
+        return sequences.get((int) position & mask) != position + 1;
+    }
+
+    /**
+     * The approximate number of elements, including claimed but unpublished ones.
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,79 @@
+package com.prescriptions.taks.prescriptions.config;
+
+import com.prescriptions.taks.prescriptions.filter.TokenAuthenticationFilter;
+import com.prescriptions.taks.prescriptions.filter.TokenAuthenticationWebFilter;
+import com.prescriptions.taks.prescriptions.security.BearerTokenAuthenticator;
+import com.prescriptions.taks.prescriptions.security.TokenRevocationList;
+import com.prescriptions.taks.prescriptions.security.TokenSigner;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Stateless token authentication for {@code /api/prescriptions/**} and {@code /api/users/**}.
+ * <p>
+ * Tokens are signed with {@code prescriptions.auth.secret}, a base64 key of at least 32 bytes that every instance
+ * must share (for example from the {@code PRESCRIPTIONS_AUTH_SECRET} environment variable). Without it a random key
+ * is generated, so tokens only work on this instance until it restarts. The filter runs right after the in-flight
+ * limit, before anything touches the database, and can be turned off with {@code prescriptions.auth.enabled=false}.
+ * The reactive stack gets the same check as a {@link TokenAuthenticationWebFilter}.
+ * </p>
+ */
+@Configuration
+public class AuthenticationConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuthenticationConfig.class);
+
+    @Bean
+    public TokenSigner tokenSigner(@Value("${prescriptions.auth.secret:}") String secret) {
+        if (secret.isBlank()) {
+            logger.warn("prescriptions.auth.secret is not set, tokens will not survive a restart or work on other instances");
+            byte[] key = new byte[32];
+            new SecureRandom().nextBytes(key);
+            return new TokenSigner(key);
+        }
+        return new TokenSigner(Base64.getDecoder().decode(secret));
+    }
+
+    @Bean
+    public TokenRevocationList tokenRevocationList() {
+        return new TokenRevocationList();
+    }
+
+    @Bean
+    public BearerTokenAuthenticator bearerTokenAuthenticator(TokenSigner tokenSigner, TokenRevocationList revocationList,
+                                                             ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BearerTokenAuthenticator(tokenSigner, revocationList, meterRegistry.getIfAvailable());
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "prescriptions.auth.enabled", havingValue = "true", matchIfMissing = true)
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public FilterRegistrationBean<TokenAuthenticationFilter> tokenAuthenticationFilter(BearerTokenAuthenticator authenticator) {
+        FilterRegistrationBean<TokenAuthenticationFilter> registration =
+                new FilterRegistrationBean<>(new TokenAuthenticationFilter(authenticator));
+        registration.addUrlPatterns("/api/prescriptions/*", "/api/users/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 15);
+        return registration;
+    }
+
+    @Bean
+    @Order(Ordered.HIGHEST_PRECEDENCE + 15)
+    @ConditionalOnProperty(name = "prescriptions.auth.enabled", havingValue = "true", matchIfMissing = true)
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    public TokenAuthenticationWebFilter tokenAuthenticationWebFilter(BearerTokenAuthenticator authenticator) {
+        return new TokenAuthenticationWebFilter(authenticator);
+    }
+}
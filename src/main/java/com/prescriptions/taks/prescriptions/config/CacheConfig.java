@@ -0,0 +1,47 @@
+package com.prescriptions.taks.prescriptions.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.prescriptions.taks.prescriptions.service.ListingVersionService;
+import com.prescriptions.taks.prescriptions.service.PrescriptionService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Configures the in-process caches in front of the prescription listings.
+ * <p>
+ * Each cache is bounded by the total number of prescriptions it holds rather than by the number of doctors
+ * or patients, so a few very large listings cannot push the heap past what was sized for.
+ * Entries also expire after {@code prescriptions.cache.ttl}. Hit, miss and eviction counts are recorded
+ * and published as the {@code cache.*} metrics on the actuator metrics endpoint.
+ * </p>
+ * <p>
+ * Each entry is a {@link ListingVersionService.VersionedListing}, which {@link PrescriptionService} only serves while
+ * its version is current. A request that must read from the primary to see its own writes (see
+ * {@link com.prescriptions.taks.prescriptions.filter.ReadYourWritesFilter}) neither reads nor fills the caches: an
+ * entry may have been filled from a lagging replica right after the write evicted it.
+ * </p>
+ */
+@Configuration
+public class CacheConfig {
+
+    public static final String PRESCRIPTIONS_BY_DOCTOR = "prescriptionsByDoctor";
+    public static final String PRESCRIPTIONS_BY_PATIENT = "prescriptionsByPatient";
+
+    @Bean
+    public CacheManager cacheManager(@Value("${prescriptions.cache.max-rows:1000000}") long maxRows,
+                                     @Value("${prescriptions.cache.ttl:10m}") Duration ttl) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager(PRESCRIPTIONS_BY_DOCTOR, PRESCRIPTIONS_BY_PATIENT);
+        cacheManager.setAllowNullValues(false);
+        cacheManager.setCaffeine(Caffeine.newBuilder()
+                .maximumWeight(maxRows)
+                .weigher((Object key, Object value) -> ((ListingVersionService.VersionedListing) value).getRows().size() + 1)
+                .expireAfterWrite(ttl)
+                .recordStats());
+        return cacheManager;
+    }
+}
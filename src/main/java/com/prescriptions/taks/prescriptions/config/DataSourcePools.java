@@ -0,0 +1,50 @@
+package com.prescriptions.taks.prescriptions.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+
+import java.util.List;
+
+/**
+ * Builds the connection pools of the replica and shard configurations.
+ */
+final class DataSourcePools {
+
+    private DataSourcePools() {
+    }
+
+    /**
+     * Binds the data sources under {@code prefix}, falling back to the primary's credentials and driver.
+     */
+    static List<DataSourceProperties> bindSecondaries(Binder binder, String prefix, DataSourceProperties primary) {
+        List<DataSourceProperties> secondaries = binder.bind(prefix, Bindable.listOf(DataSourceProperties.class)).orElse(List.of());
+        for (DataSourceProperties secondary : secondaries) {
+            if (secondary.getUsername() == null) {
+                secondary.setUsername(primary.determineUsername());
+                secondary.setPassword(primary.determinePassword());
+            }
+            if (secondary.getDriverClassName() == null) {
+                secondary.setDriverClassName(primary.determineDriverClassName());
+            }
+        }
+        return secondaries;
+    }
+
+    /**
+     * Creates a Hikari pool with the shared {@code spring.datasource.hikari.*} settings.
+     */
+    static HikariDataSource pool(DataSourceProperties properties, String name, Binder binder,
+                                 ObjectProvider<MeterRegistry> meterRegistry) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        pool.setPoolName(name);
+        // These pools are not beans, so Spring Boot does not instrument them; hikaricp.* metrics are tagged by pool name.
+        meterRegistry.ifAvailable(registry -> pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+        return pool;
+    }
+}
@@ -0,0 +1,66 @@
+package com.prescriptions.taks.prescriptions.config;
+
+import com.prescriptions.taks.prescriptions.eventlog.FsyncPolicy;
+import com.prescriptions.taks.prescriptions.eventlog.PrescriptionEventLog;
+import com.prescriptions.taks.prescriptions.service.PrescriptionProjector;
+import com.prescriptions.taks.prescriptions.sharding.ShardRouter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * The prescription event log, active with {@code prescriptions.event-log.enabled=true} (see the {@code event-log}
+ * profile).
+ * <p>
+ * New prescriptions are appended to memory-mapped segment files in {@code prescriptions.event-log.directory} and
+ * projected into the database asynchronously. The log must be on local disk and belongs to one instance; the
+ * projector writes to the unsharded prescription table, so the log cannot be combined with {@link ShardingConfig
+ * sharding}.
+ * </p>
+ * <p>
+ * The {@code prescriptionProjector} health indicator is down while the projector is stopped or failing, or more than
+ * {@code prescriptions.event-log.max-lag} events behind the log.
+ * </p>
+ */
+@Configuration
+@ConditionalOnProperty(name = "prescriptions.event-log.enabled", havingValue = "true")
+public class EventLogConfig {
+
+    @Bean
+    public PrescriptionEventLog prescriptionEventLog(
+            @Value("${prescriptions.event-log.directory:data/event-log}") Path directory,
+            @Value("${prescriptions.event-log.segment-size:64MB}") DataSize segmentSize,
+            @Value("${prescriptions.event-log.fsync:interval}") FsyncPolicy fsyncPolicy,
+            @Value("${prescriptions.event-log.fsync-interval:100ms}") Duration fsyncInterval,
+            ObjectProvider<ShardRouter> shardRouter) throws IOException {
+        if (shardRouter.getIfAvailable() != null) {
+            throw new IllegalStateException("The prescription event log cannot be combined with sharding");
+        }
+        return new PrescriptionEventLog(directory, Math.toIntExact(segmentSize.toBytes()), fsyncPolicy, fsyncInterval);
+    }
+
+    @Bean
+    public HealthIndicator prescriptionProjectorHealthIndicator(PrescriptionProjector projector, PrescriptionEventLog eventLog,
+                                                                @Value("${prescriptions.event-log.max-lag:10000}") long maxLag) {
+        return () -> {
+            long appended = eventLog.lastSequence();
+            long projected = projector.getProjectedSequence();
+            boolean up = projector.isAlive() && !projector.isFailing() && appended - projected <= maxLag;
+            return (up ? Health.up() : Health.down())
+                    .withDetail("appendedSequence", appended)
+                    .withDetail("projectedSequence", projected)
+                    .withDetail("lag", appended - projected)
+                    .withDetail("failing", projector.isFailing())
+                    .build();
+        };
+    }
+}
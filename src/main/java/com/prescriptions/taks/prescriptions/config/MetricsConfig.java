@@ -0,0 +1,44 @@
+package com.prescriptions.taks.prescriptions.config;
+
+import com.prescriptions.taks.prescriptions.filter.StatementCountMetricsFilter;
+import com.prescriptions.taks.prescriptions.metrics.StatementCountingInspector;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Metrics that Spring Boot does not provide on its own.
+ * <p>
+ * Endpoint latency ({@code http.server.requests}), repository call latency
+ * ({@code spring.data.repository.invocations}), connection pool gauges ({@code hikaricp.connections.*})
+ * and cache counters are auto-configured; their histograms are enabled in {@code application.properties}.
+ * This adds the number of SQL statements per request. Everything is scraped from {@code /actuator/prometheus}.
+ * </p>
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public StatementCountingInspector statementCountingInspector() {
+        return new StatementCountingInspector();
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer statementInspectorCustomizer(StatementCountingInspector inspector) {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, inspector);
+    }
+
+    @Bean
+    public FilterRegistrationBean<StatementCountMetricsFilter> statementCountMetricsFilter(StatementCountingInspector inspector,
+                                                                                           MeterRegistry meterRegistry) {
+        FilterRegistrationBean<StatementCountMetricsFilter> registration =
+                new FilterRegistrationBean<>(new StatementCountMetricsFilter(inspector, meterRegistry));
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 20);
+        return registration;
+    }
+}
@@ -0,0 +1,53 @@
+package com.prescriptions.taks.prescriptions.config;
+
+import com.prescriptions.taks.prescriptions.security.AdaptiveBCryptPasswordEncoder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Password hashing, kept off the request threads.
+ * <p>
+ * bcrypt is deliberately slow, so a burst of registrations or logins could otherwise occupy every CPU and request
+ * thread and stall prescription reads. Hashes run on {@code prescriptions.password.threads} dedicated threads,
+ * fewer than the number of cores by default, with at most {@code prescriptions.password.queue-capacity} waiting;
+ * beyond that, hashing is rejected immediately and the caller answers 503. The queue depth and wait time are
+ * published as the {@code executor.*} metrics tagged {@code name=password-hash}.
+ * </p>
+ */
+@Configuration
+public class PasswordHashingConfig {
+
+    @Bean
+    public AdaptiveBCryptPasswordEncoder passwordEncoder(@Value("${prescriptions.password.min-cost:10}") int minCost,
+                                                        @Value("${prescriptions.password.max-cost:16}") int maxCost,
+                                                        @Value("${prescriptions.password.target-latency:250ms}") Duration targetLatency,
+                                                        ObjectProvider<MeterRegistry> meterRegistry) {
+        return new AdaptiveBCryptPasswordEncoder(minCost, maxCost, targetLatency, meterRegistry.getIfAvailable());
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor passwordHashingExecutor(@Value("${prescriptions.password.threads:0}") int threads,
+                                                      @Value("${prescriptions.password.queue-capacity:64}") int queueCapacity,
+                                                      ObjectProvider<MeterRegistry> meterRegistry) {
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("password-hash-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry != null) {
+            new ExecutorServiceMetrics(executor, "password-hash", Tags.empty()).bindTo(registry);
+        }
+        return executor;
+    }
+}
@@ -0,0 +1,67 @@
+package com.prescriptions.taks.prescriptions.config;
+
+import com.prescriptions.taks.prescriptions.filter.RateLimitFilter;
+import com.prescriptions.taks.prescriptions.filter.RateLimitWebFilter;
+import com.prescriptions.taks.prescriptions.ratelimit.ApiRateLimits;
+import com.prescriptions.taks.prescriptions.ratelimit.RateLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+
+import java.time.Duration;
+
+/**
+ * Per-client and per-doctor rate limits on {@code /api/prescriptions/**} and {@code /api/users/**}.
+ * <p>
+ * The filter runs right after authentication, so it can key on the authenticated user, and before anything that
+ * touches the database. Turn it off with
+ * {@code prescriptions.rate-limit.enabled=false}, for example for load tests from a single machine. The reactive stack
+ * applies the same limits in a {@link RateLimitWebFilter}.
+ * </p>
+ * <p>
+ * Each of the two limiters tracks up to {@code prescriptions.rate-limit.max-keys} keys, 100,000 by default or about
+ * 15MB of heap each. Raise it if more clients or doctors than that are active within
+ * {@code prescriptions.rate-limit.idle-timeout}, or evicted keys get a fresh burst.
+ * </p>
+ */
+@Configuration
+@ConditionalOnProperty(name = "prescriptions.rate-limit.enabled", havingValue = "true", matchIfMissing = true)
+public class RateLimitConfig {
+
+    @Bean
+    public ApiRateLimits apiRateLimits(
+            @Value("${prescriptions.rate-limit.client.rate:100}") double clientRate,
+            @Value("${prescriptions.rate-limit.client.burst:200}") int clientBurst,
+            @Value("${prescriptions.rate-limit.doctor.rate:50}") double doctorRate,
+            @Value("${prescriptions.rate-limit.doctor.burst:100}") int doctorBurst,
+            @Value("${prescriptions.rate-limit.max-keys:100000}") long maxKeys,
+            @Value("${prescriptions.rate-limit.idle-timeout:10m}") Duration idleTimeout,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        RateLimiter clientLimiter = new RateLimiter(clientRate, clientBurst, maxKeys, idleTimeout);
+        RateLimiter doctorLimiter = new RateLimiter(doctorRate, doctorBurst, maxKeys, idleTimeout);
+        return new ApiRateLimits(clientLimiter, doctorLimiter, meterRegistry.getIfAvailable());
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilter(ApiRateLimits limits) {
+        FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(new RateLimitFilter(limits));
+        registration.addUrlPatterns("/api/prescriptions/*", "/api/users/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 16);
+        return registration;
+    }
+
+    @Bean
+    @Order(Ordered.HIGHEST_PRECEDENCE + 16)
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    public RateLimitWebFilter rateLimitWebFilter(ApiRateLimits limits) {
+        return new RateLimitWebFilter(limits);
+    }
+}
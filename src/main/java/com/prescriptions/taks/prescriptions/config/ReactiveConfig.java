@@ -0,0 +1,81 @@
+package com.prescriptions.taks.prescriptions.config;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import java.time.Duration;
+
+/**
+ * The reactive runtime mode, active with {@code spring.main.web-application-type=reactive} (see the {@code reactive}
+ * profile).
+ * <p>
+ * Requests are served by WebFlux on Netty's event loops instead of Tomcat's thread pool, and prescription reads go
+ * through a pooled R2DBC connection to {@code prescriptions.reactive.r2dbc.url}, so an open connection costs neither a
+ * thread nor a JDBC connection. Writes still use JPA, on Reactor's bounded elastic scheduler.
+ * </p>
+ * <p>
+ * The pool is deliberately not a {@link io.r2dbc.spi.ConnectionFactory} bean: Spring Boot skips the JDBC
+ * {@code DataSource} JPA needs when it sees one. For the same reason its R2DBC auto-configuration is excluded in
+ * {@code application.properties}, which also keeps its reactive transaction manager from making every
+ * {@code @Transactional} ambiguous next to JPA's.
+ * </p>
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveConfig {
+
+    /**
+     * Netty rather than Tomcat, which Spring Boot would otherwise prefer because the servlet stack is on the classpath.
+     */
+    @Bean
+    public NettyReactiveWebServerFactory reactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    private ConnectionPool connectionPool;
+
+    @Bean
+    public DatabaseClient reactiveDatabaseClient(Environment environment,
+                                                    @Value("${prescriptions.reactive.r2dbc.url}") String url,
+                                                    @Value("${prescriptions.reactive.r2dbc.username:}") String username,
+                                                    @Value("${prescriptions.reactive.r2dbc.password:}") String password,
+                                                    @Value("${prescriptions.reactive.r2dbc.max-pool-size:20}") int maxPoolSize,
+                                                    @Value("${prescriptions.reactive.r2dbc.acquire-timeout:30s}") Duration acquireTimeout) {
+        if (environment.containsProperty("prescriptions.sharding.shards[0].url")) {
+            throw new IllegalStateException("The reactive mode reads a single database and cannot be combined with sharding");
+        }
+        ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse(url).mutate();
+        if (!username.isEmpty()) {
+            options.option(ConnectionFactoryOptions.USER, username);
+        }
+        if (!password.isEmpty()) {
+            options.option(ConnectionFactoryOptions.PASSWORD, password);
+        }
+        ConnectionFactory connectionFactory = ConnectionFactories.get(options.build());
+        connectionPool = new ConnectionPool(ConnectionPoolConfiguration.builder(connectionFactory)
+                .name("reactive")
+                .maxSize(maxPoolSize)
+                .initialSize(Math.min(maxPoolSize, 2))
+                .maxAcquireTime(acquireTimeout)
+                .build());
+        return DatabaseClient.create(connectionPool);
+    }
+
+    @PreDestroy
+    public void closeConnectionPool() {
+        if (connectionPool != null) {
+            connectionPool.dispose();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.prescriptions.taks.prescriptions.config;
+
+import com.prescriptions.taks.prescriptions.filter.ReadYourWritesFilter;
+import com.prescriptions.taks.prescriptions.routing.ReadWriteRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read replicas, active when {@code prescriptions.datasource.replicas[0].url} is set (see the {@code read-replicas}
+ * profile).
+ * <p>
+ * The primary is still configured by {@code spring.datasource.*}. Each replica takes the same keys under
+ * {@code prescriptions.datasource.replicas[n]}, falling back to the primary's credentials, and all pools share the
+ * {@code spring.datasource.hikari.*} settings. {@code @Transactional(readOnly = true)} service methods then read from
+ * the replicas and everything else goes to the primary.
+ * </p>
+ * <p>
+ * Replicas cannot be combined with {@link ShardingConfig sharding}; both replace the {@code dataSource} bean.
+ * </p>
+ */
+@Configuration
+@ConditionalOnProperty("prescriptions.datasource.replicas[0].url")
+public class ReadReplicaConfig {
+
+    @Bean
+    public ReadWriteRoutingDataSource routingDataSource(DataSourceProperties primaryProperties, Environment environment,
+                                                        ObjectProvider<MeterRegistry> meterRegistry) {
+        Binder binder = Binder.get(environment);
+        HikariDataSource primary = DataSourcePools.pool(primaryProperties, ReadWriteRoutingDataSource.PRIMARY, binder, meterRegistry);
+
+        List<DataSourceProperties> replicaProperties =
+                DataSourcePools.bindSecondaries(binder, "prescriptions.datasource.replicas", primaryProperties);
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (int i = 0; i < replicaProperties.size(); i++) {
+            String name = "replica-" + i;
+            replicas.put(name, DataSourcePools.pool(replicaProperties.get(i), name, binder, meterRegistry));
+        }
+        return new ReadWriteRoutingDataSource(primary, replicas);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadWriteRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    @Bean
+    public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(
+            @Value("${prescriptions.datasource.read-your-writes.header:X-Session-Id}") String header,
+            @Value("${prescriptions.datasource.read-your-writes.window:5s}") Duration window,
+            @Value("${prescriptions.datasource.read-your-writes.max-sessions:100000}") long maxSessions) {
+        FilterRegistrationBean<ReadYourWritesFilter> registration =
+                new FilterRegistrationBean<>(new ReadYourWritesFilter(header, window, maxSessions));
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 30);
+        return registration;
+    }
+}
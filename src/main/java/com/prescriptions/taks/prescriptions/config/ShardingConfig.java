@@ -0,0 +1,146 @@
+package com.prescriptions.taks.prescriptions.config;
+
+import com.prescriptions.taks.prescriptions.repository.PrescriptionRepository;
+import com.prescriptions.taks.prescriptions.sharding.*;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Prescriptions sharded by patient, active when {@code prescriptions.sharding.shards[0].url} is set (see the
+ * {@code sharding} profile).
+ * <p>
+ * {@code spring.datasource.*} stays the primary and keeps the users. Each shard takes the same keys under
+ * {@code prescriptions.sharding.shards[n]} and gets the prescription table on first start. Patients are assigned to
+ * shards through {@code prescriptions.sharding.buckets} buckets. Prescriptions written to the primary before sharding
+ * was enabled are moved to their shards on startup, so start the first sharded instance on its own. After adding shards, start one instance with
+ * {@code prescriptions.sharding.rebalance=true} and writes stopped to move buckets onto them. Sharding cannot be
+ * combined with {@link ReadReplicaConfig read replicas}.
+ * </p>
+ */
+@Configuration
+@ConditionalOnProperty("prescriptions.sharding.shards[0].url")
+public class ShardingConfig {
+
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(DataSourceProperties primaryProperties, Environment environment,
+                                                         ObjectProvider<MeterRegistry> meterRegistry) {
+        Binder binder = Binder.get(environment);
+        HikariDataSource primary = DataSourcePools.pool(primaryProperties, "primary", binder, meterRegistry);
+        List<DataSourceProperties> shardProperties =
+                DataSourcePools.bindSecondaries(binder, "prescriptions.sharding.shards", primaryProperties);
+        List<DataSource> shards = new ArrayList<>();
+        for (int i = 0; i < shardProperties.size(); i++) {
+            HikariDataSource shard = DataSourcePools.pool(shardProperties.get(i), "shard-" + i, binder, meterRegistry);
+            ShardSchema.ensure(shard);
+            shards.add(shard);
+        }
+        return new ShardRoutingDataSource(primary, shards);
+    }
+
+    /**
+     * Depends on the rebalancer so the prescriptions still on the primary are moved to the shards before anything
+     * reads them through this data source.
+     */
+    @Bean
+    @Primary
+    @DependsOn("shardRebalancer")
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    @Bean
+    public ShardRouter shardRouter(ShardRoutingDataSource dataSources,
+                                   @Value("${prescriptions.sharding.buckets:1024}") int buckets) {
+        return new ShardRouter(dataSources.getPrimary(), dataSources.getShardCount(), buckets);
+    }
+
+    @Bean
+    public PrescriptionIdAllocator prescriptionIdAllocator(ShardRoutingDataSource dataSources,
+                                                           @Value("${prescriptions.sharding.id-block-size:1000}") int blockSize) {
+        // Continue after any prescription written before sharding was enabled.
+        long maxId = ShardSchema.maxId(dataSources.getPrimary());
+        for (int i = 0; i < dataSources.getShardCount(); i++) {
+            maxId = Math.max(maxId, ShardSchema.maxId(dataSources.getShard(i)));
+        }
+        return new PrescriptionIdAllocator(dataSources.getPrimary(), blockSize, maxId + 1);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer prescriptionIdAllocatorCustomizer(PrescriptionIdAllocator allocator) {
+        return properties -> properties.put(ShardAwareSequenceGenerator.ID_ALLOCATOR, allocator);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService shardScatterExecutor(@Value("${prescriptions.sharding.scatter-threads:16}") int threads) {
+        return Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("shard-scatter-"));
+    }
+
+    @Bean
+    public ShardedPrescriptionRepositoryInterceptor shardedPrescriptionRepositoryInterceptor(
+            ShardRoutingDataSource dataSources, ShardRouter router, ExecutorService shardScatterExecutor,
+            PlatformTransactionManager transactionManager, EntityManagerFactory entityManagerFactory) {
+        return new ShardedPrescriptionRepositoryInterceptor(dataSources, router, shardScatterExecutor, transactionManager,
+                SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory));
+    }
+
+    /**
+     * Puts the sharding interceptor in front of everything else on the {@link PrescriptionRepository} proxy. The
+     * interceptor is looked up on first use, as it depends on beans that the repository is created before.
+     */
+    @Bean
+    public static BeanPostProcessor shardedPrescriptionRepositoryPostProcessor(
+            ObjectProvider<ShardedPrescriptionRepositoryInterceptor> interceptor) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean
+                        && PrescriptionRepository.class.equals(factoryBean.getObjectType())) {
+                    factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+                            (proxyFactory, repositoryInformation) -> proxyFactory.addAdvice(0,
+                                    (MethodInterceptor) invocation -> interceptor.getObject().invoke(invocation))));
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public ShardRebalancer shardRebalancer(ShardRoutingDataSource dataSources, ShardRouter router,
+                                           @Value("${prescriptions.sharding.rebalance-page-size:1000}") int pageSize) {
+        ShardRebalancer rebalancer = new ShardRebalancer(dataSources, router, pageSize);
+        rebalancer.migratePrimary();
+        return rebalancer;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "prescriptions.sharding.rebalance", havingValue = "true")
+    public ApplicationRunner shardRebalanceRunner(ShardRebalancer rebalancer) {
+        return args -> rebalancer.rebalance();
+    }
+}
@@ -0,0 +1,36 @@
+package com.prescriptions.taks.prescriptions.config;
+
+import com.prescriptions.taks.prescriptions.filter.InFlightRequestLimitFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.time.Duration;
+
+/**
+ * Request handling on virtual threads, active when {@code spring.threads.virtual.enabled=true}
+ * and the application runs on Java 21 or later (see the {@code virtual-threads} profile).
+ * <p>
+ * Spring Boot moves Tomcat and the async executors onto virtual threads by itself; this configuration adds
+ * the admission limit that the bounded platform thread pool used to provide implicitly.
+ * </p>
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadConfig {
+
+    @Bean
+    public FilterRegistrationBean<InFlightRequestLimitFilter> inFlightRequestLimitFilter(
+            @Value("${prescriptions.concurrency.max-in-flight:200}") int maxInFlight,
+            @Value("${prescriptions.concurrency.acquire-timeout:1s}") Duration acquireTimeout) {
+        FilterRegistrationBean<InFlightRequestLimitFilter> registration =
+                new FilterRegistrationBean<>(new InFlightRequestLimitFilter(maxInFlight, acquireTimeout));
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+}
@@ -0,0 +1,32 @@
+package com.prescriptions.taks.prescriptions.config;
+
+import com.prescriptions.taks.prescriptions.converter.PrescriptionListSmileHttpMessageConverter;
+import com.prescriptions.taks.prescriptions.converter.PrescriptionSmileEncoder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registers the wire formats offered next to JSON.
+ * <p>
+ * Listings of prescriptions are also served as Smile to clients sending {@code Accept: application/x-jackson-smile},
+ * by {@link PrescriptionListSmileHttpMessageConverter} on the servlet stack and {@link PrescriptionSmileEncoder} on
+ * the reactive one. Any other response asked for as Smile is written by Spring's generic Jackson Smile support.
+ * </p>
+ */
+@Configuration
+public class WireFormatConfig {
+
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public PrescriptionListSmileHttpMessageConverter prescriptionListSmileHttpMessageConverter() {
+        return new PrescriptionListSmileHttpMessageConverter();
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    public CodecCustomizer prescriptionSmileCodecCustomizer() {
+        return configurer -> configurer.customCodecs().register(new PrescriptionSmileEncoder());
+    }
+}
@@ -1,19 +1,48 @@
 package com.prescriptions.taks.prescriptions.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.prescriptions.taks.prescriptions.config.CacheConfig;
+import com.prescriptions.taks.prescriptions.dto.BulkPrescriptionResultDTO;
+import com.prescriptions.taks.prescriptions.dto.InteractionWarningDTO;
 import com.prescriptions.taks.prescriptions.dto.PrescriptionDTO;
+import com.prescriptions.taks.prescriptions.dto.PrescriptionPageDTO;
+import com.prescriptions.taks.prescriptions.dto.PrescriptionStatsDTO;
 import com.prescriptions.taks.prescriptions.entities.Prescription;
+import com.prescriptions.taks.prescriptions.export.ExportFormat;
+import com.prescriptions.taks.prescriptions.export.PrescriptionRowWriter;
+import com.prescriptions.taks.prescriptions.interaction.InteractionWarning;
+import com.prescriptions.taks.prescriptions.search.MedicineSearchIndex;
+import com.prescriptions.taks.prescriptions.service.IdempotencyService;
+import com.prescriptions.taks.prescriptions.service.ListingVersionService;
+import com.prescriptions.taks.prescriptions.service.PrescriptionExportService;
+import com.prescriptions.taks.prescriptions.service.PrescriptionSearchService;
 import com.prescriptions.taks.prescriptions.service.PrescriptionService;
+import com.prescriptions.taks.prescriptions.service.PrescriptionStatsService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * REST controller for managing prescriptions.
@@ -21,53 +50,172 @@ import java.util.List;
  */
 @RestController
 @RequestMapping("/api/prescriptions")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class PrescriptionController {
 
     private static final Logger logger = LoggerFactory.getLogger(PrescriptionController.class);
 
+    static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+    static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+
     @Autowired
     private PrescriptionService prescriptionService;
 
+    @Autowired
+    private PrescriptionSearchService prescriptionSearchService;
+
+    @Autowired
+    private PrescriptionExportService prescriptionExportService;
+
+    @Autowired
+    private PrescriptionStatsService prescriptionStatsService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private ListingVersionService listingVersionService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     /**
      * Creates a new prescription.
+     * <p>
+     * With an {@code Idempotency-Key} header the request is run at most once per key: retries, including concurrent
+     * ones, get the response of the first request with {@code Idempotent-Replayed: true} instead of creating another
+     * prescription. Reusing a key for a different prescription is rejected.
+     * </p>
      *
      * @param requestedprescription The prescription details to be created.
-     * @return A {@link ResponseEntity} containing the created {@link PrescriptionDTO} and a HTTP status of CREATED.
+     * @param idempotencyKey        An optional client-chosen key identifying this request across retries.
+     * @return A {@link ResponseEntity} containing the created {@link PrescriptionDTO}, including any interactions with the
+     * patient's existing prescriptions as {@code warnings}, and a HTTP status of CREATED.
      */
-    @Operation(summary = "Create a new prescription", description = "Creates a new prescription with the given details.")
+    @Operation(summary = "Create a new prescription", description = "Creates a new prescription with the given details, at most once per Idempotency-Key.")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "201", description = "Prescription created successfully"),
-            @ApiResponse(responseCode = "400", description = "Invalid input data")
+            @ApiResponse(responseCode = "201", description = "Prescription created successfully, or replayed for a repeated Idempotency-Key"),
+            @ApiResponse(responseCode = "400", description = "Invalid input data"),
+            @ApiResponse(responseCode = "422", description = "Idempotency-Key was already used for a different prescription")
     })
     @PostMapping("/create")
-    public ResponseEntity<PrescriptionDTO> createPrescription(@RequestBody Prescription requestedprescription) {
-        logger.info("Request to create prescription for medicine name: {}", requestedprescription.getMedicineName());
+    public ResponseEntity<PrescriptionDTO> createPrescription(@RequestBody Prescription requestedprescription,
+                                                              @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return ResponseEntity.status(HttpStatus.CREATED).body(create(requestedprescription));
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        IdempotencyService.Result<PrescriptionDTO> result = idempotencyService.execute(
+                idempotencyKey, requestHash(requestedprescription), PrescriptionDTO.class, () -> create(requestedprescription));
+        if (result.isMismatch()) {
+            logger.atWarn().addKeyValue("idempotencyKey", idempotencyKey).log("Idempotency key reused for a different prescription");
+            return ResponseEntity.unprocessableEntity().build();
+        }
+        if (result.isReplayed()) {
+            logger.atInfo()
+                    .addKeyValue("idempotencyKey", idempotencyKey)
+                    .addKeyValue("prescriptionId", result.getBody().getId())
+                    .log("Replayed prescription");
+        }
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .header(IDEMPOTENT_REPLAYED, Boolean.toString(result.isReplayed()))
+                .body(result.getBody());
+    }
+
+    /**
+     * Identifies the prescription a request asks for, to detect an {@code Idempotency-Key} reused for another one.
+     */
+    static String requestHash(Prescription requestedprescription) {
+        return IdempotencyService.hash(
+                requestedprescription.getMedicineName(),
+                requestedprescription.getDosage(),
+                requestedprescription.getInstructions(),
+                requestedprescription.getDoctor() == null ? null : requestedprescription.getDoctor().getId(),
+                requestedprescription.getPatient() == null ? null : requestedprescription.getPatient().getId());
+    }
+
+    private PrescriptionDTO create(Prescription requestedprescription) {
+        long start = System.nanoTime();
+        logger.debug("Request to create prescription for medicine name: {}", requestedprescription.getMedicineName());
         Prescription prescription = prescriptionService.createPrescription(requestedprescription);
         PrescriptionDTO prescriptionDTO = convertToDTO(prescription);
-        logger.info("Created prescription with Id: {} and Name: {} ", prescriptionDTO.getDoctorId(),prescriptionDTO.getMedicineName());
-        return ResponseEntity.status(HttpStatus.CREATED).body(prescriptionDTO);
+        logger.atInfo()
+                .addKeyValue("prescriptionId", prescriptionDTO.getId())
+                .addKeyValue("doctorId", prescriptionDTO.getDoctorId())
+                .addKeyValue("patientId", prescriptionDTO.getPatientId())
+                .addKeyValue("warnings", prescriptionDTO.getWarnings() == null ? 0 : prescriptionDTO.getWarnings().size())
+                .addKeyValue("latencyUs", elapsedMicros(start))
+                .log("Created prescription");
+        return prescriptionDTO;
+    }
+
+    /**
+     * Creates many prescriptions from a single request.
+     * <p>
+     * The body is either a JSON array of prescriptions or newline-delimited JSON with one prescription per line.
+     * It is read incrementally and committed in chunks, so large partner uploads never have to fit in memory.
+     * </p>
+     *
+     * @param body The raw request body.
+     * @return A {@link ResponseEntity} containing the per-row outcome as a {@link BulkPrescriptionResultDTO}.
+     * @throws IOException if the request body cannot be read.
+     */
+    @Operation(summary = "Create prescriptions in bulk", description = "Creates prescriptions from a JSON array or NDJSON body and reports success or failure per row.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Rows processed, see the per-row results")
+    })
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<BulkPrescriptionResultDTO> createPrescriptionsInBulk(InputStream body) throws IOException {
+        long start = System.nanoTime();
+        logger.debug("Request to create prescriptions in bulk");
+        BulkPrescriptionResultDTO result;
+        try (MappingIterator<Prescription> rows = objectMapper.readerFor(Prescription.class).readValues(body)) {
+            result = prescriptionService.createPrescriptionsInBulk(rows);
+        }
+        logger.atInfo()
+                .addKeyValue("rows", result.getTotal())
+                .addKeyValue("created", result.getSucceeded())
+                .addKeyValue("failed", result.getFailed())
+                .addKeyValue("latencyUs", elapsedMicros(start))
+                .log("Bulk create finished");
+        return ResponseEntity.ok(result);
     }
 
     /**
      * Retrieves a list of prescriptions for a specific doctor.
      *
+     * The response carries the listing's ETag; a request whose {@code If-None-Match} still matches it is answered
+     * with 304 before the listing is read or serialized.
+     *
      * @param doctorId The ID of the doctor whose prescriptions are to be retrieved.
-     * @return A list of {@link PrescriptionDTO} objects associated with the specified doctor.
+     * @param webRequest The request, to evaluate {@code If-None-Match} against.
+     * @return A list of {@link PrescriptionDTO} objects associated with the specified doctor, or {@code null} once a
+     * 304 has been sent.
      */
-    @Operation(summary = "Get prescriptions by doctor ID", description = "Retrieves a list of prescriptions for a specific doctor.")
+    @Operation(summary = "Get prescriptions by doctor ID", description = "Retrieves a list of prescriptions for a specific doctor, as JSON or, with Accept: application/x-jackson-smile, as Smile.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "List of prescriptions retrieved successfully"),
+            @ApiResponse(responseCode = "304", description = "The listing has not changed since the ETag in If-None-Match"),
             @ApiResponse(responseCode = "404", description = "Doctor not found")
     })
     @GetMapping("/doctor/{doctorId}")
-    public List<PrescriptionDTO> getPrescriptionsByDoctorId(@PathVariable Long doctorId) {
-        logger.info("Request to get prescriptions for doctor ID: {}", doctorId);
-        List<Prescription> prescriptions = prescriptionService.getPrescriptionsByDoctorId(doctorId);
-        logger.info("Found prescriptions! ");
-
-        return prescriptions.stream()
-                .map(this::convertToDTO)
-                .toList();
+    public List<PrescriptionDTO> getPrescriptionsByDoctorId(@PathVariable Long doctorId, ServletWebRequest webRequest) {
+        long start = System.nanoTime();
+        logger.debug("Request to get prescriptions for doctor ID: {}", doctorId);
+        if (notModified(CacheConfig.PRESCRIPTIONS_BY_DOCTOR, doctorId, webRequest)) {
+            return null;
+        }
+        List<PrescriptionDTO> prescriptions = prescriptionService.getPrescriptionDTOsByDoctorId(doctorId);
+        logger.atInfo()
+                .addKeyValue("doctorId", doctorId)
+                .addKeyValue("count", prescriptions.size())
+                .addKeyValue("latencyUs", elapsedMicros(start))
+                .log("Found prescriptions");
+        return prescriptions;
     }
 
     /**
@@ -76,7 +224,7 @@ public class PrescriptionController {
      * @param prescription The prescription entity to be converted.
      * @return The corresponding {@link PrescriptionDTO} object.
      */
-    private PrescriptionDTO convertToDTO(Prescription prescription){
+    static PrescriptionDTO convertToDTO(Prescription prescription){
         PrescriptionDTO dto = new PrescriptionDTO();
         dto.setId(prescription.getId());
         dto.setMedicineName(prescription.getMedicineName());
@@ -84,27 +232,312 @@ public class PrescriptionController {
         dto.setInstructions(prescription.getInstructions());
         dto.setDoctorId(prescription.getDoctor().getId());
         dto.setPatientId(prescription.getPatient().getId());
+        if (prescription.getWarnings() != null) {
+            List<InteractionWarningDTO> warnings = new ArrayList<>(prescription.getWarnings().size());
+            for (InteractionWarning warning : prescription.getWarnings()) {
+                InteractionWarningDTO warningDTO = new InteractionWarningDTO();
+                warningDTO.setMedicine(warning.getMedicine());
+                warningDTO.setInteractingMedicine(warning.getInteractingMedicine());
+                warningDTO.setSeverity(warning.getSeverity().name());
+                warningDTO.setDescription(warning.getDescription());
+                warnings.add(warningDTO);
+            }
+            dto.setWarnings(warnings);
+        }
         return dto;
     }
 
     /**
      * Retrieves a list of prescriptions for a specific patient.
      *
+     * The response carries the listing's ETag; a request whose {@code If-None-Match} still matches it is answered
+     * with 304 before the listing is read or serialized.
+     *
      * @param patientId The ID of the patient whose prescriptions are to be retrieved.
-     * @return A list of {@link PrescriptionDTO} objects associated with the specified patient.
+     * @param webRequest The request, to evaluate {@code If-None-Match} against.
+     * @return A list of {@link PrescriptionDTO} objects associated with the specified patient, or {@code null} once a
+     * 304 has been sent.
      */
-    @Operation(summary = "Get prescriptions by patient ID", description = "Retrieves a list of prescriptions for a specific patient.")
+    @Operation(summary = "Get prescriptions by patient ID", description = "Retrieves a list of prescriptions for a specific patient, as JSON or, with Accept: application/x-jackson-smile, as Smile.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "List of prescriptions retrieved successfully"),
+            @ApiResponse(responseCode = "304", description = "The listing has not changed since the ETag in If-None-Match"),
             @ApiResponse(responseCode = "404", description = "Patient not found")
     })
     @GetMapping("/patient/{patientId}")
-    public List<PrescriptionDTO> getPrescriptionsByPatientId(@PathVariable Long patientId) {
-        logger.info("Request to get prescriptions for patient ID: {}", patientId);
-        List<Prescription> prescriptions = prescriptionService.getPrescriptionsByPatientId(patientId);
-        logger.info("Found prescriptions. ");
-        return prescriptions.stream()
-                .map(this::convertToDTO)
-                .toList();
+    public List<PrescriptionDTO> getPrescriptionsByPatientId(@PathVariable Long patientId, ServletWebRequest webRequest) {
+        long start = System.nanoTime();
+        logger.debug("Request to get prescriptions for patient ID: {}", patientId);
+        if (notModified(CacheConfig.PRESCRIPTIONS_BY_PATIENT, patientId, webRequest)) {
+            return null;
+        }
+        List<PrescriptionDTO> prescriptions = prescriptionService.getPrescriptionDTOsByPatientId(patientId);
+        logger.atInfo()
+                .addKeyValue("patientId", patientId)
+                .addKeyValue("count", prescriptions.size())
+                .addKeyValue("latencyUs", elapsedMicros(start))
+                .log("Found prescriptions");
+        return prescriptions;
+    }
+
+    /**
+     * Retrieves one page of a doctor's prescriptions using keyset pagination on the prescription ID.
+     *
+     * @param doctorId The ID of the doctor whose prescriptions are to be retrieved.
+     * @param after    The {@code nextCursor} of the previous page; omit it for the first page.
+     * @param size     The maximum number of prescriptions on the page.
+     * @return A {@link PrescriptionPageDTO} with the prescriptions and the cursor of the next page.
+     */
+    @Operation(summary = "Get a page of prescriptions by doctor ID", description = "Retrieves prescriptions for a doctor in ID order, one page at a time.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Page of prescriptions retrieved successfully")
+    })
+    @GetMapping("/doctor/{doctorId}/page")
+    public PrescriptionPageDTO getPrescriptionPageByDoctorId(@PathVariable Long doctorId,
+                                                             @RequestParam(required = false) Long after,
+                                                             @RequestParam(defaultValue = "100") int size) {
+        long start = System.nanoTime();
+        PrescriptionPageDTO page = prescriptionService.getPrescriptionPageByDoctorId(doctorId, after, size);
+        logger.atInfo()
+                .addKeyValue("doctorId", doctorId)
+                .addKeyValue("after", after)
+                .addKeyValue("count", page.getItems().size())
+                .addKeyValue("latencyUs", elapsedMicros(start))
+                .log("Found prescriptions page");
+        return page;
+    }
+
+    /**
+     * Retrieves one page of a patient's prescriptions using keyset pagination on the prescription ID.
+     *
+     * @param patientId The ID of the patient whose prescriptions are to be retrieved.
+     * @param after     The {@code nextCursor} of the previous page; omit it for the first page.
+     * @param size      The maximum number of prescriptions on the page.
+     * @return A {@link PrescriptionPageDTO} with the prescriptions and the cursor of the next page.
+     */
+    @Operation(summary = "Get a page of prescriptions by patient ID", description = "Retrieves prescriptions for a patient in ID order, one page at a time.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Page of prescriptions retrieved successfully")
+    })
+    @GetMapping("/patient/{patientId}/page")
+    public PrescriptionPageDTO getPrescriptionPageByPatientId(@PathVariable Long patientId,
+                                                              @RequestParam(required = false) Long after,
+                                                              @RequestParam(defaultValue = "100") int size) {
+        long start = System.nanoTime();
+        PrescriptionPageDTO page = prescriptionService.getPrescriptionPageByPatientId(patientId, after, size);
+        logger.atInfo()
+                .addKeyValue("patientId", patientId)
+                .addKeyValue("after", after)
+                .addKeyValue("count", page.getItems().size())
+                .addKeyValue("latencyUs", elapsedMicros(start))
+                .log("Found prescriptions page");
+        return page;
+    }
+
+    /**
+     * Retrieves dashboard statistics of a doctor's prescriptions from counters kept in memory, without a query.
+     *
+     * @param doctorId The ID of the doctor.
+     * @return A {@link PrescriptionStatsDTO} with the total, the most prescribed medicines and the count per day.
+     */
+    @Operation(summary = "Get prescription statistics by doctor ID", description = "Retrieves the total number of prescriptions, top medicines and prescriptions per day of a doctor.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Statistics retrieved successfully")
+    })
+    @GetMapping("/doctor/{doctorId}/stats")
+    public PrescriptionStatsDTO getPrescriptionStatsByDoctorId(@PathVariable Long doctorId) {
+        long start = System.nanoTime();
+        PrescriptionStatsDTO stats = prescriptionStatsService.getDoctorStats(doctorId);
+        logger.atInfo()
+                .addKeyValue("doctorId", doctorId)
+                .addKeyValue("total", stats.getTotal())
+                .addKeyValue("latencyUs", elapsedMicros(start))
+                .log("Found prescription statistics");
+        return stats;
+    }
+
+    /**
+     * Retrieves dashboard statistics of a patient's prescriptions from counters kept in memory, without a query.
+     *
+     * @param patientId The ID of the patient.
+     * @return A {@link PrescriptionStatsDTO} with the total, the most prescribed medicines and the count per day.
+     */
+    @Operation(summary = "Get prescription statistics by patient ID", description = "Retrieves the total number of prescriptions, top medicines and prescriptions per day of a patient.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Statistics retrieved successfully")
+    })
+    @GetMapping("/patient/{patientId}/stats")
+    public PrescriptionStatsDTO getPrescriptionStatsByPatientId(@PathVariable Long patientId) {
+        long start = System.nanoTime();
+        PrescriptionStatsDTO stats = prescriptionStatsService.getPatientStats(patientId);
+        logger.atInfo()
+                .addKeyValue("patientId", patientId)
+                .addKeyValue("total", stats.getTotal())
+                .addKeyValue("latencyUs", elapsedMicros(start))
+                .log("Found prescription statistics");
+        return stats;
+    }
+
+    /**
+     * Searches prescriptions by medicine name, for example to find every prescription affected by a recall.
+     * Each term of the query must match a term of the medicine name; accents and case are ignored.
+     *
+     * @param q     The medicine name or part of it.
+     * @param mode  {@code EXACT}, {@code PREFIX} or {@code FUZZY} matching of each term.
+     * @param after The {@code nextCursor} of the previous page; omit it for the first page.
+     * @param size  The maximum number of prescriptions on the page.
+     * @return A {@link PrescriptionPageDTO} with the matching prescriptions in ID order, or 503 while the index is still loading.
+     */
+    @Operation(summary = "Search prescriptions by medicine name", description = "Finds prescriptions whose medicine name matches the query, one page at a time.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Page of matching prescriptions retrieved successfully"),
+            @ApiResponse(responseCode = "503", description = "Search index is still being built")
+    })
+    @GetMapping("/search")
+    public ResponseEntity<PrescriptionPageDTO> searchPrescriptions(@RequestParam String q,
+                                                                   @RequestParam(defaultValue = "PREFIX") MedicineSearchIndex.Mode mode,
+                                                                   @RequestParam(required = false) Long after,
+                                                                   @RequestParam(defaultValue = "100") int size) {
+        if (!prescriptionSearchService.isReady()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+        long start = System.nanoTime();
+        PrescriptionPageDTO page = prescriptionSearchService.search(q, mode, after, size);
+        logger.atInfo()
+                .addKeyValue("query", q)
+                .addKeyValue("mode", mode)
+                .addKeyValue("after", after)
+                .addKeyValue("count", page.getItems().size())
+                .addKeyValue("latencyUs", elapsedMicros(start))
+                .log("Searched prescriptions");
+        return ResponseEntity.ok(page);
+    }
+
+    /**
+     * Streams all prescriptions of a doctor as a JSON array.
+     * Rows are written as they are read from the database, so memory use does not grow with the result size.
+     *
+     * @param doctorId The ID of the doctor whose prescriptions are to be retrieved.
+     * @return A {@link StreamingResponseBody} writing the prescriptions as a JSON array.
+     */
+    @Operation(summary = "Stream prescriptions by doctor ID", description = "Streams all prescriptions for a doctor as a JSON array.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Prescriptions streamed successfully")
+    })
+    @GetMapping(value = "/doctor/{doctorId}/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public StreamingResponseBody streamPrescriptionsByDoctorId(@PathVariable Long doctorId) {
+        logger.atInfo().addKeyValue("doctorId", doctorId).log("Streaming prescriptions");
+        return out -> writeJsonArray(out, action -> prescriptionService.forEachPrescriptionByDoctorId(doctorId, action));
+    }
+
+    /**
+     * Streams all prescriptions of a patient as a JSON array.
+     * Rows are written as they are read from the database, so memory use does not grow with the result size.
+     *
+     * @param patientId The ID of the patient whose prescriptions are to be retrieved.
+     * @return A {@link StreamingResponseBody} writing the prescriptions as a JSON array.
+     */
+    @Operation(summary = "Stream prescriptions by patient ID", description = "Streams all prescriptions for a patient as a JSON array.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Prescriptions streamed successfully")
+    })
+    @GetMapping(value = "/patient/{patientId}/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public StreamingResponseBody streamPrescriptionsByPatientId(@PathVariable Long patientId) {
+        logger.atInfo().addKeyValue("patientId", patientId).log("Streaming prescriptions");
+        return out -> writeJsonArray(out, action -> prescriptionService.forEachPrescriptionByPatientId(patientId, action));
+    }
+
+    /**
+     * Exports the complete prescription history of a doctor for regulators and partner systems.
+     * Rows go straight from a database cursor into the chosen format, so memory use does not grow with the history.
+     *
+     * @param doctorId The ID of the doctor whose prescriptions are exported.
+     * @param format   {@code COLUMNAR} for the binary layout described in
+     *                 {@link com.prescriptions.taks.prescriptions.export.ColumnarPrescriptionWriter}, or {@code CSV_GZIP}.
+     * @return A {@link ResponseEntity} streaming the export as an attachment.
+     */
+    @Operation(summary = "Export prescriptions by doctor ID", description = "Streams a doctor's full prescription history as columnar binary or gzip-compressed CSV.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Prescriptions exported successfully"),
+            @ApiResponse(responseCode = "400", description = "Unknown export format")
+    })
+    @GetMapping("/doctor/{doctorId}/export")
+    public ResponseEntity<StreamingResponseBody> exportPrescriptionsByDoctorId(@PathVariable Long doctorId,
+                                                                               @RequestParam(defaultValue = "COLUMNAR") ExportFormat format) {
+        return export("doctor", doctorId, format, writer -> prescriptionExportService.exportByDoctorId(doctorId, writer));
+    }
+
+    /**
+     * Exports the complete prescription history of a patient for regulators and partner systems.
+     * Rows go straight from a database cursor into the chosen format, so memory use does not grow with the history.
+     *
+     * @param patientId The ID of the patient whose prescriptions are exported.
+     * @param format    {@code COLUMNAR} for the binary layout described in
+     *                  {@link com.prescriptions.taks.prescriptions.export.ColumnarPrescriptionWriter}, or {@code CSV_GZIP}.
+     * @return A {@link ResponseEntity} streaming the export as an attachment.
+     */
+    @Operation(summary = "Export prescriptions by patient ID", description = "Streams a patient's full prescription history as columnar binary or gzip-compressed CSV.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Prescriptions exported successfully"),
+            @ApiResponse(responseCode = "400", description = "Unknown export format")
+    })
+    @GetMapping("/patient/{patientId}/export")
+    public ResponseEntity<StreamingResponseBody> exportPrescriptionsByPatientId(@PathVariable Long patientId,
+                                                                                @RequestParam(defaultValue = "COLUMNAR") ExportFormat format) {
+        return export("patient", patientId, format, writer -> prescriptionExportService.exportByPatientId(patientId, writer));
+    }
+
+    private ResponseEntity<StreamingResponseBody> export(String owner, Long id, ExportFormat format, Exporter exporter) {
+        StreamingResponseBody body = out -> {
+            long start = System.nanoTime();
+            long rows = exporter.export(format.open(out));
+            logger.atInfo()
+                    .addKeyValue(owner + "Id", id)
+                    .addKeyValue("format", format)
+                    .addKeyValue("count", rows)
+                    .addKeyValue("latencyUs", elapsedMicros(start))
+                    .log("Exported prescriptions");
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("prescriptions-" + owner + "-" + id + "." + format.getFileExtension()).build().toString())
+                .body(body);
+    }
+
+    /**
+     * Sends the listing's ETag and answers 304 if {@code If-None-Match} still matches it; a listing that has no ETag
+     * right after a write is always sent in full. The listing is JSON or Smile depending on {@code Accept}, so both
+     * responses vary by it.
+     */
+    private boolean notModified(String listing, Long ownerId, ServletWebRequest webRequest) {
+        webRequest.getResponse().addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        String etag = listingVersionService.etag(listing, ownerId);
+        boolean notModified = etag != null && webRequest.checkNotModified(etag);
+        listingVersionService.recordRequest(listing, notModified);
+        return notModified;
+    }
+
+    @FunctionalInterface
+    private interface Exporter {
+        long export(PrescriptionRowWriter writer) throws IOException;
+    }
+
+    static long elapsedMicros(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000;
+    }
+
+    private void writeJsonArray(OutputStream out, Consumer<Consumer<PrescriptionDTO>> source) throws IOException {
+        try (JsonGenerator generator = objectMapper.createGenerator(out)) {
+            generator.writeStartArray();
+            source.accept(dto -> {
+                try {
+                    generator.writeObject(dto);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+        }
     }
 }
@@ -0,0 +1,346 @@
+package com.prescriptions.taks.prescriptions.controller;
+
+import com.prescriptions.taks.prescriptions.config.CacheConfig;
+import com.prescriptions.taks.prescriptions.dto.PrescriptionDTO;
+import com.prescriptions.taks.prescriptions.dto.PrescriptionPageDTO;
+import com.prescriptions.taks.prescriptions.dto.PrescriptionStatsDTO;
+import com.prescriptions.taks.prescriptions.entities.Prescription;
+import com.prescriptions.taks.prescriptions.repository.ReactivePrescriptionRepository;
+import com.prescriptions.taks.prescriptions.search.MedicineSearchIndex;
+import com.prescriptions.taks.prescriptions.service.IdempotencyService;
+import com.prescriptions.taks.prescriptions.service.ListingVersionService;
+import com.prescriptions.taks.prescriptions.service.PrescriptionSearchService;
+import com.prescriptions.taks.prescriptions.service.PrescriptionService;
+import com.prescriptions.taks.prescriptions.service.PrescriptionStatsService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.prescriptions.taks.prescriptions.controller.PrescriptionController.IDEMPOTENCY_KEY;
+import static com.prescriptions.taks.prescriptions.controller.PrescriptionController.IDEMPOTENT_REPLAYED;
+import static com.prescriptions.taks.prescriptions.controller.PrescriptionController.MAX_IDEMPOTENCY_KEY_LENGTH;
+import static com.prescriptions.taks.prescriptions.controller.PrescriptionController.elapsedMicros;
+
+/**
+ * Reactive REST controller for prescriptions, serving the same URLs and DTOs as {@link PrescriptionController} when
+ * the application runs on WebFlux (see the {@code reactive} profile).
+ * <p>
+ * Reads come from {@link ReactivePrescriptionRepository} without blocking and are written as the rows arrive, at the
+ * pace the client reads them. Creation and search reuse the servlet services, with their caches, interaction checks,
+ * events and idempotency, on Reactor's bounded elastic scheduler so the event loop never waits for JDBC. Bulk upload
+ * and export are only available on the servlet stack.
+ * </p>
+ */
+@RestController
+@RequestMapping("/api/prescriptions")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactivePrescriptionController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactivePrescriptionController.class);
+
+    @Autowired
+    private ReactivePrescriptionRepository reactivePrescriptionRepository;
+
+    @Autowired
+    private PrescriptionService prescriptionService;
+
+    @Autowired
+    private PrescriptionSearchService prescriptionSearchService;
+
+    @Autowired
+    private PrescriptionStatsService prescriptionStatsService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private ListingVersionService listingVersionService;
+
+    /**
+     * Creates a new prescription, at most once per {@code Idempotency-Key} like
+     * {@link PrescriptionController#createPrescription(Prescription, String)}.
+     *
+     * @param requestedprescription The prescription details to be created.
+     * @param idempotencyKey        An optional client-chosen key identifying this request across retries.
+     * @return A {@link Mono} of the created {@link PrescriptionDTO}, including any interaction {@code warnings}, with a
+     * HTTP status of CREATED.
+     */
+    @Operation(summary = "Create a new prescription", description = "Creates a new prescription with the given details, at most once per Idempotency-Key.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Prescription created successfully, or replayed for a repeated Idempotency-Key"),
+            @ApiResponse(responseCode = "400", description = "Invalid input data"),
+            @ApiResponse(responseCode = "422", description = "Idempotency-Key was already used for a different prescription")
+    })
+    @PostMapping("/create")
+    public Mono<ResponseEntity<PrescriptionDTO>> createPrescription(@RequestBody Prescription requestedprescription,
+                                                                    @RequestHeader(name = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return blocking(() -> ResponseEntity.status(HttpStatus.CREATED).body(create(requestedprescription)));
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        String requestHash = PrescriptionController.requestHash(requestedprescription);
+        return blocking(() -> {
+            IdempotencyService.Result<PrescriptionDTO> result = idempotencyService.execute(
+                    idempotencyKey, requestHash, PrescriptionDTO.class, () -> create(requestedprescription));
+            if (result.isMismatch()) {
+                logger.atWarn().addKeyValue("idempotencyKey", idempotencyKey).log("Idempotency key reused for a different prescription");
+                return ResponseEntity.unprocessableEntity().build();
+            }
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .header(IDEMPOTENT_REPLAYED, Boolean.toString(result.isReplayed()))
+                    .body(result.getBody());
+        });
+    }
+
+    private PrescriptionDTO create(Prescription requestedprescription) {
+        long start = System.nanoTime();
+        PrescriptionDTO prescriptionDTO = PrescriptionController.convertToDTO(prescriptionService.createPrescription(requestedprescription));
+        logger.atInfo()
+                .addKeyValue("prescriptionId", prescriptionDTO.getId())
+                .addKeyValue("doctorId", prescriptionDTO.getDoctorId())
+                .addKeyValue("patientId", prescriptionDTO.getPatientId())
+                .addKeyValue("latencyUs", elapsedMicros(start))
+                .log("Created prescription");
+        return prescriptionDTO;
+    }
+
+    /**
+     * Retrieves the prescriptions of a doctor as a JSON array, written as rows arrive from the database.
+     * The response carries the listing's ETag; a request whose {@code If-None-Match} still matches it is answered
+     * with 304 without a query.
+     *
+     * @param doctorId The ID of the doctor whose prescriptions are to be retrieved.
+     * @param exchange  The exchange, to evaluate {@code If-None-Match} against.
+     * @return A {@link Flux} of the doctor's {@link PrescriptionDTO}s in ID order, or {@code null} once a 304 has been
+     * sent.
+     */
+    @Operation(summary = "Get prescriptions by doctor ID", description = "Retrieves a list of prescriptions for a specific doctor, as JSON or, with Accept: application/x-jackson-smile, as Smile.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "List of prescriptions retrieved successfully"),
+            @ApiResponse(responseCode = "304", description = "The listing has not changed since the ETag in If-None-Match")
+    })
+    @GetMapping("/doctor/{doctorId}")
+    public Flux<PrescriptionDTO> getPrescriptionsByDoctorId(@PathVariable Long doctorId, ServerWebExchange exchange) {
+        if (notModified(CacheConfig.PRESCRIPTIONS_BY_DOCTOR, doctorId, exchange)) {
+            return null;
+        }
+        return logged(reactivePrescriptionRepository.findDTOsByDoctorId(doctorId), "doctorId", doctorId);
+    }
+
+    /**
+     * Retrieves the prescriptions of a patient as a JSON array, written as rows arrive from the database.
+     * The response carries the listing's ETag; a request whose {@code If-None-Match} still matches it is answered
+     * with 304 without a query.
+     *
+     * @param patientId The ID of the patient whose prescriptions are to be retrieved.
+     * @param exchange  The exchange, to evaluate {@code If-None-Match} against.
+     * @return A {@link Flux} of the patient's {@link PrescriptionDTO}s in ID order, or {@code null} once a 304 has been
+     * sent.
+     */
+    @Operation(summary = "Get prescriptions by patient ID", description = "Retrieves a list of prescriptions for a specific patient, as JSON or, with Accept: application/x-jackson-smile, as Smile.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "List of prescriptions retrieved successfully"),
+            @ApiResponse(responseCode = "304", description = "The listing has not changed since the ETag in If-None-Match")
+    })
+    @GetMapping("/patient/{patientId}")
+    public Flux<PrescriptionDTO> getPrescriptionsByPatientId(@PathVariable Long patientId, ServerWebExchange exchange) {
+        if (notModified(CacheConfig.PRESCRIPTIONS_BY_PATIENT, patientId, exchange)) {
+            return null;
+        }
+        return logged(reactivePrescriptionRepository.findDTOsByPatientId(patientId), "patientId", patientId);
+    }
+
+    /**
+     * Streams all prescriptions of a doctor, as a JSON array or, with {@code Accept: application/x-ndjson}, one JSON
+     * object per line. Rows are read from the database only as fast as the client consumes them.
+     *
+     * @param doctorId The ID of the doctor whose prescriptions are to be retrieved.
+     * @return A {@link Flux} of the doctor's {@link PrescriptionDTO}s in ID order.
+     */
+    @Operation(summary = "Stream prescriptions by doctor ID", description = "Streams all prescriptions for a doctor as a JSON array or NDJSON.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Prescriptions streamed successfully")
+    })
+    @GetMapping(value = "/doctor/{doctorId}/stream", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<PrescriptionDTO> streamPrescriptionsByDoctorId(@PathVariable Long doctorId) {
+        return logged(reactivePrescriptionRepository.findDTOsByDoctorId(doctorId), "doctorId", doctorId);
+    }
+
+    /**
+     * Streams all prescriptions of a patient, as a JSON array or, with {@code Accept: application/x-ndjson}, one JSON
+     * object per line. Rows are read from the database only as fast as the client consumes them.
+     *
+     * @param patientId The ID of the patient whose prescriptions are to be retrieved.
+     * @return A {@link Flux} of the patient's {@link PrescriptionDTO}s in ID order.
+     */
+    @Operation(summary = "Stream prescriptions by patient ID", description = "Streams all prescriptions for a patient as a JSON array or NDJSON.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Prescriptions streamed successfully")
+    })
+    @GetMapping(value = "/patient/{patientId}/stream", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<PrescriptionDTO> streamPrescriptionsByPatientId(@PathVariable Long patientId) {
+        return logged(reactivePrescriptionRepository.findDTOsByPatientId(patientId), "patientId", patientId);
+    }
+
+    /**
+     * Retrieves one page of a doctor's prescriptions using keyset pagination on the prescription ID.
+     *
+     * @param doctorId The ID of the doctor whose prescriptions are to be retrieved.
+     * @param after    The {@code nextCursor} of the previous page; omit it for the first page.
+     * @param size     The maximum number of prescriptions on the page.
+     * @return A {@link Mono} of the {@link PrescriptionPageDTO} with the prescriptions and the cursor of the next page.
+     */
+    @Operation(summary = "Get a page of prescriptions by doctor ID", description = "Retrieves prescriptions for a doctor in ID order, one page at a time.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Page of prescriptions retrieved successfully")
+    })
+    @GetMapping("/doctor/{doctorId}/page")
+    public Mono<PrescriptionPageDTO> getPrescriptionPageByDoctorId(@PathVariable Long doctorId,
+                                                                   @RequestParam(required = false) Long after,
+                                                                   @RequestParam(defaultValue = "100") int size) {
+        int pageSize = PrescriptionService.clampPageSize(size);
+        return reactivePrescriptionRepository.findDTOPageByDoctorId(doctorId, after == null ? 0L : after, pageSize + 1)
+                .collectList()
+                .map(rows -> PrescriptionService.toPage(rows, pageSize));
+    }
+
+    /**
+     * Retrieves one page of a patient's prescriptions using keyset pagination on the prescription ID.
+     *
+     * @param patientId The ID of the patient whose prescriptions are to be retrieved.
+     * @param after     The {@code nextCursor} of the previous page; omit it for the first page.
+     * @param size      The maximum number of prescriptions on the page.
+     * @return A {@link Mono} of the {@link PrescriptionPageDTO} with the prescriptions and the cursor of the next page.
+     */
+    @Operation(summary = "Get a page of prescriptions by patient ID", description = "Retrieves prescriptions for a patient in ID order, one page at a time.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Page of prescriptions retrieved successfully")
+    })
+    @GetMapping("/patient/{patientId}/page")
+    public Mono<PrescriptionPageDTO> getPrescriptionPageByPatientId(@PathVariable Long patientId,
+                                                                    @RequestParam(required = false) Long after,
+                                                                    @RequestParam(defaultValue = "100") int size) {
+        int pageSize = PrescriptionService.clampPageSize(size);
+        return reactivePrescriptionRepository.findDTOPageByPatientId(patientId, after == null ? 0L : after, pageSize + 1)
+                .collectList()
+                .map(rows -> PrescriptionService.toPage(rows, pageSize));
+    }
+
+    /**
+     * Retrieves dashboard statistics of a doctor's prescriptions, like {@link PrescriptionController#getPrescriptionStatsByDoctorId}.
+     * They are read from memory, so this does not leave the event loop.
+     *
+     * @param doctorId The ID of the doctor.
+     * @return A {@link Mono} of the {@link PrescriptionStatsDTO}.
+     */
+    @Operation(summary = "Get prescription statistics by doctor ID", description = "Retrieves the total number of prescriptions, top medicines and prescriptions per day of a doctor.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Statistics retrieved successfully")
+    })
+    @GetMapping("/doctor/{doctorId}/stats")
+    public Mono<PrescriptionStatsDTO> getPrescriptionStatsByDoctorId(@PathVariable Long doctorId) {
+        return Mono.fromSupplier(() -> prescriptionStatsService.getDoctorStats(doctorId));
+    }
+
+    /**
+     * Retrieves dashboard statistics of a patient's prescriptions, like {@link PrescriptionController#getPrescriptionStatsByPatientId}.
+     * They are read from memory, so this does not leave the event loop.
+     *
+     * @param patientId The ID of the patient.
+     * @return A {@link Mono} of the {@link PrescriptionStatsDTO}.
+     */
+    @Operation(summary = "Get prescription statistics by patient ID", description = "Retrieves the total number of prescriptions, top medicines and prescriptions per day of a patient.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Statistics retrieved successfully")
+    })
+    @GetMapping("/patient/{patientId}/stats")
+    public Mono<PrescriptionStatsDTO> getPrescriptionStatsByPatientId(@PathVariable Long patientId) {
+        return Mono.fromSupplier(() -> prescriptionStatsService.getPatientStats(patientId));
+    }
+
+    /**
+     * Searches prescriptions by medicine name, like {@link PrescriptionController#searchPrescriptions}.
+     *
+     * @param q     The medicine name, or prefix of it.
+     * @param mode  {@code PREFIX} or {@code EXACT}.
+     * @param after The {@code nextCursor} of the previous page; omit it for the first page.
+     * @param size  The maximum number of prescriptions on the page.
+     * @return A {@link Mono} of the matching page, or 503 while the search index is being built.
+     */
+    @Operation(summary = "Search prescriptions by medicine name", description = "Finds prescriptions whose medicine name matches the query, one page at a time.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Page of matching prescriptions"),
+            @ApiResponse(responseCode = "503", description = "Search index is still being built")
+    })
+    @GetMapping("/search")
+    public Mono<ResponseEntity<PrescriptionPageDTO>> searchPrescriptions(@RequestParam String q,
+                                                                         @RequestParam(defaultValue = "PREFIX") MedicineSearchIndex.Mode mode,
+                                                                         @RequestParam(required = false) Long after,
+                                                                         @RequestParam(defaultValue = "100") int size) {
+        if (!prescriptionSearchService.isReady()) {
+            return Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build());
+        }
+        return blocking(() -> ResponseEntity.ok(prescriptionSearchService.search(q, mode, after, size)));
+    }
+
+    /**
+     * Answers requests that waited longer than {@code prescriptions.reactive.r2dbc.acquire-timeout} for a database
+     * connection, or whose query stalled past {@code prescriptions.reactive.idle-timeout}, with 503, so clients back off
+     * instead of piling up more work.
+     */
+    @ExceptionHandler({DataAccessResourceFailureException.class, QueryTimeoutException.class})
+    public ResponseEntity<Void> databaseBusy(DataAccessException e) {
+        logger.warn("Database busy, rejecting request: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+    }
+
+    /**
+     * Sends the listing's ETag and answers 304 if {@code If-None-Match} still matches it; a listing that has no ETag
+     * right after a write is always sent in full. The listing is JSON or Smile depending on {@code Accept}, so both
+     * responses vary by it.
+     */
+    private boolean notModified(String listing, Long ownerId, ServerWebExchange exchange) {
+        exchange.getResponse().getHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        String etag = listingVersionService.etag(listing, ownerId);
+        boolean notModified = etag != null && exchange.checkNotModified(etag);
+        listingVersionService.recordRequest(listing, notModified);
+        return notModified;
+    }
+
+    private static <T> Mono<T> blocking(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private static Flux<PrescriptionDTO> logged(Flux<PrescriptionDTO> rows, String owner, Long id) {
+        AtomicLong count = new AtomicLong();
+        long start = System.nanoTime();
+        return rows.doOnNext(row -> count.incrementAndGet())
+                .doFinally(signal -> logger.atInfo()
+                        .addKeyValue(owner, id)
+                        .addKeyValue("count", count.get())
+                        .addKeyValue("signal", signal)
+                        .addKeyValue("latencyUs", elapsedMicros(start))
+                        .log("Found prescriptions"));
+    }
+}
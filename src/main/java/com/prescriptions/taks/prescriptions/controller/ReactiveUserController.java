@@ -0,0 +1,145 @@
+package com.prescriptions.taks.prescriptions.controller;
+
+import com.prescriptions.taks.prescriptions.dto.DoctorDTO;
+import com.prescriptions.taks.prescriptions.dto.LoginRequestDTO;
+import com.prescriptions.taks.prescriptions.dto.PatientDTO;
+import com.prescriptions.taks.prescriptions.dto.TokenDTO;
+import com.prescriptions.taks.prescriptions.entities.Doctor;
+import com.prescriptions.taks.prescriptions.entities.Patient;
+import com.prescriptions.taks.prescriptions.security.AuthToken;
+import com.prescriptions.taks.prescriptions.security.BearerTokenAuthenticator;
+import com.prescriptions.taks.prescriptions.service.AuthenticationService;
+import com.prescriptions.taks.prescriptions.service.UserService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Reactive REST controller for registrations and logins, serving the same URLs and DTOs as {@link UserController}
+ * when the application runs on WebFlux (see the {@code reactive} profile).
+ * <p>
+ * Registration and login wait for password hashing and JPA, so they run on Reactor's bounded elastic scheduler and
+ * never on the event loop. A full hashing queue is answered with 503, as on the servlet stack.
+ * </p>
+ */
+@RestController
+@RequestMapping("/api/users")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveUserController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveUserController.class);
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private AuthenticationService authenticationService;
+
+    /**
+     * Registers a new doctor.
+     *
+     * @param doctor The {@link Doctor} object containing details of the doctor to be registered.
+     * @return A {@link Mono} of the registered {@link DoctorDTO} with a HTTP status of CREATED, or 503 while password
+     * hashing is saturated.
+     */
+    @Operation(summary = "Register a new doctor", description = "Registers a new doctor with the provided details.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Doctor registered successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid input data"),
+            @ApiResponse(responseCode = "503", description = "Too many passwords are being hashed, retry later")
+    })
+    @PostMapping("/register/doctor")
+    public Mono<ResponseEntity<DoctorDTO>> registerDoctor(@RequestBody Doctor doctor) {
+        return blocking(() -> {
+            DoctorDTO doctorDTO = UserController.convertDoctorToDTO(userService.registerDoctor(doctor));
+            logger.atInfo().addKeyValue("doctorId", doctorDTO.getId()).log("Registered doctor");
+            return ResponseEntity.status(HttpStatus.CREATED).body(doctorDTO);
+        });
+    }
+
+    /**
+     * Registers a new patient.
+     *
+     * @param patient The {@link Patient} object containing details of the patient to be registered.
+     * @return A {@link Mono} of the registered {@link PatientDTO} with a HTTP status of CREATED, or 503 while password
+     * hashing is saturated.
+     */
+    @Operation(summary = "Register a new patient", description = "Registers a new patient with the provided details.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Patient registered successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid input data"),
+            @ApiResponse(responseCode = "503", description = "Too many passwords are being hashed, retry later")
+    })
+    @PostMapping("/register/patient")
+    public Mono<ResponseEntity<PatientDTO>> registerPatient(@RequestBody Patient patient) {
+        return blocking(() -> {
+            PatientDTO patientDTO = UserController.convertPatientToDTO(userService.registerPatient(patient));
+            logger.atInfo().addKeyValue("patientId", patientDTO.getId()).log("Registered patient");
+            return ResponseEntity.status(HttpStatus.CREATED).body(patientDTO);
+        });
+    }
+
+    /**
+     * Logs a user in and issues a signed token for the other endpoints.
+     *
+     * @param login The username and password.
+     * @return A {@link Mono} of the {@link TokenDTO}, 401 if the credentials are wrong, or 503 while password hashing is
+     * saturated.
+     */
+    @Operation(summary = "Log in", description = "Checks a username and password and issues a bearer token.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Token issued"),
+            @ApiResponse(responseCode = "401", description = "Wrong username or password"),
+            @ApiResponse(responseCode = "503", description = "Too many passwords are being hashed, retry later")
+    })
+    @PostMapping("/login")
+    public Mono<ResponseEntity<TokenDTO>> login(@RequestBody LoginRequestDTO login) {
+        return blocking(() -> authenticationService.login(login.getUsername(), login.getPassword())
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.UNAUTHORIZED).build()));
+    }
+
+    /**
+     * Revokes the token the request was authenticated with.
+     *
+     * @param token The verified token, set by the authentication filter.
+     * @return 204 once the token is revoked, or 401 if the request carries no valid token.
+     */
+    @Operation(summary = "Log out", description = "Revokes the bearer token of the request.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Token revoked"),
+            @ApiResponse(responseCode = "401", description = "No valid token")
+    })
+    @PostMapping("/logout")
+    public Mono<ResponseEntity<Void>> logout(@RequestAttribute(name = BearerTokenAuthenticator.AUTH_TOKEN_ATTRIBUTE, required = false) AuthToken token) {
+        if (token == null) {
+            return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
+        }
+        return blocking(() -> {
+            authenticationService.revoke(token);
+            return ResponseEntity.noContent().build();
+        });
+    }
+
+    private static <T> Mono<ResponseEntity<T>> blocking(Callable<ResponseEntity<T>> call) {
+        return Mono.fromCallable(call)
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(RejectedExecutionException.class, e -> {
+                    logger.warn("Password hashing queue is full, rejecting request");
+                    return Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build());
+                });
+    }
+}
@@ -1,9 +1,14 @@
 package com.prescriptions.taks.prescriptions.controller;
 
 import com.prescriptions.taks.prescriptions.dto.DoctorDTO;
+import com.prescriptions.taks.prescriptions.dto.LoginRequestDTO;
 import com.prescriptions.taks.prescriptions.dto.PatientDTO;
+import com.prescriptions.taks.prescriptions.dto.TokenDTO;
 import com.prescriptions.taks.prescriptions.entities.Doctor;
 import com.prescriptions.taks.prescriptions.entities.Patient;
+import com.prescriptions.taks.prescriptions.filter.TokenAuthenticationFilter;
+import com.prescriptions.taks.prescriptions.security.AuthToken;
+import com.prescriptions.taks.prescriptions.service.AuthenticationService;
 import com.prescriptions.taks.prescriptions.service.UserService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -11,19 +16,22 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestBody;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
- * REST controller for managing user registrations.
- * Handles requests for registering doctors and patients.
+ * REST controller for managing user registrations and logins.
+ * Handles requests for registering doctors and patients and for issuing and revoking their tokens.
  */
 @RestController
 @RequestMapping("/api/users")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class UserController {
 
     private static final Logger logger = LoggerFactory.getLogger(UserController.class);
@@ -31,23 +39,37 @@ public class UserController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private AuthenticationService authenticationService;
+
     /**
      * Registers a new doctor.
      *
      * @param doctor The {@link Doctor} object containing details of the doctor to be registered.
-     * @return A {@link ResponseEntity} containing the registered {@link DoctorDTO} and a HTTP status of CREATED.
+     * @return A {@link ResponseEntity} containing the registered {@link DoctorDTO} and a HTTP status of CREATED, or 503 while
+     * password hashing is saturated.
      */
     @Operation(summary = "Register a new doctor", description = "Registers a new doctor with the provided details.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "201", description = "Doctor registered successfully"),
-            @ApiResponse(responseCode = "400", description = "Invalid input data")
+            @ApiResponse(responseCode = "400", description = "Invalid input data"),
+            @ApiResponse(responseCode = "503", description = "Too many passwords are being hashed, retry later")
     })
     @PostMapping("/register/doctor")
     public ResponseEntity<DoctorDTO> registerDoctor(@RequestBody Doctor doctor) {
-        logger.info("Request to register doctor: {}", doctor.getUsername());
-        Doctor registeredDoctor = userService.registerDoctor(doctor);
+        long start = System.nanoTime();
+        logger.debug("Request to register doctor: {}", doctor.getUsername());
+        Doctor registeredDoctor;
+        try {
+            registeredDoctor = userService.registerDoctor(doctor);
+        } catch (RejectedExecutionException e) {
+            return passwordHashingBusy();
+        }
         DoctorDTO doctorDTO = convertDoctorToDTO(registeredDoctor);
-        logger.info("Registered doctor: {}", doctorDTO.getUsername());
+        logger.atInfo()
+                .addKeyValue("doctorId", doctorDTO.getId())
+                .addKeyValue("latencyUs", elapsedMicros(start))
+                .log("Registered doctor");
         return ResponseEntity.status(HttpStatus.CREATED).body(doctorDTO);
     }
 
@@ -55,23 +77,93 @@ public class UserController {
      * Registers a new patient.
      *
      * @param patient The {@link Patient} object containing details of the patient to be registered.
-     * @return A {@link ResponseEntity} containing the registered {@link PatientDTO} and a HTTP status of CREATED.
+     * @return A {@link ResponseEntity} containing the registered {@link PatientDTO} and a HTTP status of CREATED, or 503 while
+     * password hashing is saturated.
      */
     @Operation(summary = "Register a new patient", description = "Registers a new patient with the provided details.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "201", description = "Patient registered successfully"),
-            @ApiResponse(responseCode = "400", description = "Invalid input data")
+            @ApiResponse(responseCode = "400", description = "Invalid input data"),
+            @ApiResponse(responseCode = "503", description = "Too many passwords are being hashed, retry later")
     })
     @PostMapping("/register/patient")
     public ResponseEntity<PatientDTO> registerPatient(@RequestBody Patient patient) {
-        logger.info("Request to register patient: {}", patient.getUsername());
-        Patient registeredPatient = userService.registerPatient(patient);
+        long start = System.nanoTime();
+        logger.debug("Request to register patient: {}", patient.getUsername());
+        Patient registeredPatient;
+        try {
+            registeredPatient = userService.registerPatient(patient);
+        } catch (RejectedExecutionException e) {
+            return passwordHashingBusy();
+        }
         PatientDTO patientDTO = convertPatientToDTO(registeredPatient);
-        logger.info("Registered patient: {}", patientDTO.getUsername());
+        logger.atInfo()
+                .addKeyValue("patientId", patientDTO.getId())
+                .addKeyValue("latencyUs", elapsedMicros(start))
+                .log("Registered patient");
         return ResponseEntity.status(HttpStatus.CREATED).body(patientDTO);
     }
 
-    private DoctorDTO convertDoctorToDTO(Doctor doctor) {
+    /**
+     * Logs a user in and issues a signed token for the other endpoints.
+     *
+     * @param login The username and password.
+     * @return A {@link ResponseEntity} containing the {@link TokenDTO} to send as {@code Authorization: Bearer <token>},
+     * 401 if the credentials are wrong, or 503 while password hashing is saturated.
+     */
+    @Operation(summary = "Log in", description = "Checks a username and password and issues a bearer token.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Token issued"),
+            @ApiResponse(responseCode = "401", description = "Wrong username or password"),
+            @ApiResponse(responseCode = "503", description = "Too many passwords are being hashed, retry later")
+    })
+    @PostMapping("/login")
+    public ResponseEntity<TokenDTO> login(@RequestBody LoginRequestDTO login) {
+        long start = System.nanoTime();
+        Optional<TokenDTO> token;
+        try {
+            token = authenticationService.login(login.getUsername(), login.getPassword());
+        } catch (RejectedExecutionException e) {
+            return passwordHashingBusy();
+        }
+        logger.atInfo()
+                .addKeyValue("username", login.getUsername())
+                .addKeyValue("success", token.isPresent())
+                .addKeyValue("latencyUs", elapsedMicros(start))
+                .log("Login");
+        return token.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
+    }
+
+    /**
+     * Revokes the token the request was authenticated with.
+     *
+     * @param token The verified token, set by the authentication filter.
+     * @return 204 once the token is revoked, or 401 if the request carries no valid token.
+     */
+    @Operation(summary = "Log out", description = "Revokes the bearer token of the request.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Token revoked"),
+            @ApiResponse(responseCode = "401", description = "No valid token")
+    })
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(@RequestAttribute(name = TokenAuthenticationFilter.AUTH_TOKEN_ATTRIBUTE, required = false) AuthToken token) {
+        if (token == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        authenticationService.revoke(token);
+        return ResponseEntity.noContent().build();
+    }
+
+    private static <T> ResponseEntity<T> passwordHashingBusy() {
+        logger.warn("Password hashing queue is full, rejecting request");
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+    }
+
+    private static long elapsedMicros(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000;
+    }
+
+    static DoctorDTO convertDoctorToDTO(Doctor doctor) {
         DoctorDTO dto = new DoctorDTO();
         dto.setId(doctor.getId());
         dto.setUsername(doctor.getUsername());
@@ -79,7 +171,7 @@ public class UserController {
         return dto;
     }
 
-    private PatientDTO convertPatientToDTO(Patient patient) {
+    static PatientDTO convertPatientToDTO(Patient patient) {
         PatientDTO dto = new PatientDTO();
         dto.setId(patient.getId());
         dto.setUsername(patient.getUsername());
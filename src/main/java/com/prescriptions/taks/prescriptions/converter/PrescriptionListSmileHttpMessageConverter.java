@@ -0,0 +1,70 @@
+package com.prescriptions.taks.prescriptions.converter;
+
+import com.prescriptions.taks.prescriptions.dto.PrescriptionDTO;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * Writes lists of {@link PrescriptionDTO}s as Smile (see {@link PrescriptionSmileCodec}) straight into the servlet
+ * response, for clients that accept {@code application/x-jackson-smile}.
+ * <p>
+ * Only declared {@code List<PrescriptionDTO>} return values are handled here; anything else asked for as Smile falls
+ * through to Spring's generic Smile converter. Since converter beans come before the defaults, this one only answers
+ * once Smile has been negotiated, so requests without an {@code Accept} header keep getting JSON.
+ * </p>
+ */
+public class PrescriptionListSmileHttpMessageConverter extends AbstractGenericHttpMessageConverter<List<PrescriptionDTO>> {
+
+    public PrescriptionListSmileHttpMessageConverter() {
+        super(PrescriptionSmileCodec.APPLICATION_SMILE);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        if (mediaType == null || !mediaType.isConcrete()) {
+            return false;
+        }
+        ResolvableType resolved = type != null ? ResolvableType.forType(type) : ResolvableType.forClass(clazz);
+        return List.class.isAssignableFrom(clazz)
+                && resolved.asCollection().resolveGeneric(0) == PrescriptionDTO.class
+                && canWrite(mediaType);
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return List.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected void writeInternal(List<PrescriptionDTO> prescriptions, Type type, HttpOutputMessage outputMessage) throws IOException {
+        PrescriptionSmileCodec.writeList(prescriptions, outputMessage.getBody());
+    }
+
+    @Override
+    protected List<PrescriptionDTO> readInternal(Class<? extends List<PrescriptionDTO>> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Reading Smile prescription lists is not supported", inputMessage);
+    }
+
+    @Override
+    public List<PrescriptionDTO> read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Reading Smile prescription lists is not supported", inputMessage);
+    }
+}
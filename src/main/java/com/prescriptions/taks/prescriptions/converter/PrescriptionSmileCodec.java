@@ -0,0 +1,116 @@
+package com.prescriptions.taks.prescriptions.converter;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.prescriptions.taks.prescriptions.dto.InteractionWarningDTO;
+import com.prescriptions.taks.prescriptions.dto.PrescriptionDTO;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Smile, Jackson's binary JSON, encoding of {@link PrescriptionDTO} lists.
+ * <p>
+ * The output decodes to exactly the JSON document of the listing endpoints, so any Smile-capable Jackson
+ * {@code ObjectMapper} reads it into the same DTOs. It is smaller because Smile refers back to field names it has
+ * already written, and because repeated short values such as medicine names and dosages are shared the same way.
+ * Each DTO is written field by field through a {@link SmileGenerator}, without going through Jackson's bean
+ * serializers or building a tree, and the generator writes its buffer straight into the target stream.
+ * </p>
+ */
+public final class PrescriptionSmileCodec {
+
+    public static final MediaType APPLICATION_SMILE = new MediaType("application", "x-jackson-smile");
+
+    private static final SmileFactory SMILE_FACTORY = SmileFactory.builder()
+            .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+            .build();
+
+    private static final SerializableString ID = new SerializedString("id");
+    private static final SerializableString MEDICINE_NAME = new SerializedString("medicineName");
+    private static final SerializableString DOSAGE = new SerializedString("dosage");
+    private static final SerializableString INSTRUCTIONS = new SerializedString("instructions");
+    private static final SerializableString DOCTOR_ID = new SerializedString("doctorId");
+    private static final SerializableString PATIENT_ID = new SerializedString("patientId");
+    private static final SerializableString WARNINGS = new SerializedString("warnings");
+    private static final SerializableString MEDICINE = new SerializedString("medicine");
+    private static final SerializableString INTERACTING_MEDICINE = new SerializedString("interactingMedicine");
+    private static final SerializableString SEVERITY = new SerializedString("severity");
+    private static final SerializableString DESCRIPTION = new SerializedString("description");
+
+    private PrescriptionSmileCodec() {
+    }
+
+    /**
+     * Writes prescriptions as a Smile array of objects. The stream is flushed but not closed.
+     *
+     * @param prescriptions The prescriptions, in the order to write them.
+     * @param out           Where to write the encoded bytes.
+     * @throws IOException If writing to {@code out} fails.
+     */
+    public static void writeList(List<PrescriptionDTO> prescriptions, OutputStream out) throws IOException {
+        try (JsonGenerator generator = createGenerator(out)) {
+            generator.writeStartArray(prescriptions, prescriptions.size());
+            for (PrescriptionDTO prescription : prescriptions) {
+                write(generator, prescription);
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    /**
+     * Creates a generator writing Smile to {@code out}, for callers that write the enclosing array themselves.
+     * Closing the generator does not close {@code out}.
+     */
+    public static JsonGenerator createGenerator(OutputStream out) throws IOException {
+        return SMILE_FACTORY.createGenerator(out);
+    }
+
+    /**
+     * Writes one prescription as an object with the fields of its JSON form.
+     */
+    public static void write(JsonGenerator generator, PrescriptionDTO prescription) throws IOException {
+        generator.writeStartObject();
+        writeNumber(generator, ID, prescription.getId());
+        writeString(generator, MEDICINE_NAME, prescription.getMedicineName());
+        writeString(generator, DOSAGE, prescription.getDosage());
+        writeString(generator, INSTRUCTIONS, prescription.getInstructions());
+        writeNumber(generator, DOCTOR_ID, prescription.getDoctorId());
+        writeNumber(generator, PATIENT_ID, prescription.getPatientId());
+        if (prescription.getWarnings() != null) {
+            generator.writeFieldName(WARNINGS);
+            generator.writeStartArray();
+            for (InteractionWarningDTO warning : prescription.getWarnings()) {
+                generator.writeStartObject();
+                writeString(generator, MEDICINE, warning.getMedicine());
+                writeString(generator, INTERACTING_MEDICINE, warning.getInteractingMedicine());
+                writeString(generator, SEVERITY, warning.getSeverity());
+                writeString(generator, DESCRIPTION, warning.getDescription());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndObject();
+    }
+
+    private static void writeNumber(JsonGenerator generator, SerializableString name, Long value) throws IOException {
+        generator.writeFieldName(name);
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            generator.writeNumber(value.longValue());
+        }
+    }
+
+    private static void writeString(JsonGenerator generator, SerializableString name, String value) throws IOException {
+        generator.writeFieldName(name);
+        generator.writeString(value);
+    }
+}
@@ -0,0 +1,114 @@
+package com.prescriptions.taks.prescriptions.converter;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.prescriptions.taks.prescriptions.dto.PrescriptionDTO;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.AbstractEncoder;
+import org.springframework.core.codec.EncodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes {@link PrescriptionDTO}s as Smile (see {@link PrescriptionSmileCodec}) on the reactive stack.
+ * <p>
+ * A {@code Flux} becomes one Smile array written through a single generator, so field names and repeated values are
+ * shared across the whole response like on the servlet stack. Rows are encoded in batches of {@value #BATCH_SIZE} as
+ * they arrive and each batch is sent as its own buffer, so the encoder keeps the backpressure of the R2DBC query and
+ * never holds the full list. A {@code Mono} is encoded as a single object.
+ * </p>
+ * <p>
+ * Like {@link PrescriptionListSmileHttpMessageConverter}, this encoder only answers once Smile has been negotiated, so
+ * requests without an {@code Accept} header keep getting JSON.
+ * </p>
+ */
+public class PrescriptionSmileEncoder extends AbstractEncoder<PrescriptionDTO> {
+
+    private static final int BATCH_SIZE = 256;
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    public PrescriptionSmileEncoder() {
+        super(PrescriptionSmileCodec.APPLICATION_SMILE);
+    }
+
+    @Override
+    public boolean canEncode(ResolvableType elementType, MimeType mimeType) {
+        return mimeType != null && mimeType.isConcrete()
+                && elementType.toClass() == PrescriptionDTO.class
+                && super.canEncode(elementType, mimeType);
+    }
+
+    @Override
+    public Flux<DataBuffer> encode(Publisher<? extends PrescriptionDTO> inputStream, DataBufferFactory bufferFactory,
+                                   ResolvableType elementType, MimeType mimeType, Map<String, Object> hints) {
+        if (inputStream instanceof Mono) {
+            return Mono.from(inputStream)
+                    .map(prescription -> encodeValue(prescription, bufferFactory, elementType, mimeType, hints))
+                    .flux();
+        }
+        return Flux.defer(() -> {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(BUFFER_SIZE);
+            JsonGenerator generator = startArray(bytes);
+            return Flux.from(inputStream)
+                    .buffer(BATCH_SIZE)
+                    .map(batch -> encodeBatch(generator, batch, bytes, bufferFactory))
+                    .concatWith(Mono.fromCallable(() -> endArray(generator, bytes, bufferFactory)));
+        });
+    }
+
+    @Override
+    public DataBuffer encodeValue(PrescriptionDTO prescription, DataBufferFactory bufferFactory,
+                                  ResolvableType valueType, MimeType mimeType, Map<String, Object> hints) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (JsonGenerator generator = PrescriptionSmileCodec.createGenerator(bytes)) {
+            PrescriptionSmileCodec.write(generator, prescription);
+        } catch (IOException e) {
+            throw new EncodingException("Could not encode prescription as Smile", e);
+        }
+        return bufferFactory.wrap(bytes.toByteArray());
+    }
+
+    private static JsonGenerator startArray(ByteArrayOutputStream bytes) {
+        try {
+            JsonGenerator generator = PrescriptionSmileCodec.createGenerator(bytes);
+            generator.writeStartArray();
+            return generator;
+        } catch (IOException e) {
+            throw new EncodingException("Could not start Smile array", e);
+        }
+    }
+
+    private static DataBuffer encodeBatch(JsonGenerator generator, List<? extends PrescriptionDTO> batch,
+                                          ByteArrayOutputStream bytes, DataBufferFactory bufferFactory) {
+        try {
+            for (PrescriptionDTO prescription : batch) {
+                PrescriptionSmileCodec.write(generator, prescription);
+            }
+            generator.flush();
+        } catch (IOException e) {
+            throw new EncodingException("Could not encode prescriptions as Smile", e);
+        }
+        return drain(bytes, bufferFactory);
+    }
+
+    private static DataBuffer endArray(JsonGenerator generator, ByteArrayOutputStream bytes, DataBufferFactory bufferFactory)
+            throws IOException {
+        generator.writeEndArray();
+        generator.close();
+        return drain(bytes, bufferFactory);
+    }
+
+    private static DataBuffer drain(ByteArrayOutputStream bytes, DataBufferFactory bufferFactory) {
+        DataBuffer buffer = bufferFactory.wrap(bytes.toByteArray());
+        bytes.reset();
+        return buffer;
+    }
+}
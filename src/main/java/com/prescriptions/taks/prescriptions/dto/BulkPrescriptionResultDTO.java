@@ -0,0 +1,68 @@
+package com.prescriptions.taks.prescriptions.dto;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+public class BulkPrescriptionResultDTO {
+    private int total;
+    private int succeeded;
+    private int failed;
+    private List<BulkPrescriptionRowDTO> rows = new ArrayList<>();
+
+    public void addSuccess(int index, Long id) {
+        BulkPrescriptionRowDTO row = new BulkPrescriptionRowDTO();
+        row.setIndex(index);
+        row.setSuccess(true);
+        row.setId(id);
+        rows.add(row);
+        succeeded++;
+        total++;
+    }
+
+    public void addFailure(int index, String error) {
+        BulkPrescriptionRowDTO row = new BulkPrescriptionRowDTO();
+        row.setIndex(index);
+        row.setSuccess(false);
+        row.setError(error);
+        rows.add(row);
+        failed++;
+        total++;
+    }
+
+    public void sortRows() {
+        rows.sort(Comparator.comparingInt(BulkPrescriptionRowDTO::getIndex));
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    public int getSucceeded() {
+        return succeeded;
+    }
+
+    public void setSucceeded(int succeeded) {
+        this.succeeded = succeeded;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    public List<BulkPrescriptionRowDTO> getRows() {
+        return rows;
+    }
+
+    public void setRows(List<BulkPrescriptionRowDTO> rows) {
+        this.rows = rows;
+    }
+}
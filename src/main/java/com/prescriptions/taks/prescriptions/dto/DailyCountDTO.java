@@ -0,0 +1,32 @@
+package com.prescriptions.taks.prescriptions.dto;
+
+import java.time.LocalDate;
+
+public class DailyCountDTO {
+    private LocalDate date;
+    private long count;
+
+    public DailyCountDTO() {
+    }
+
+    public DailyCountDTO(LocalDate date, long count) {
+        this.date = date;
+        this.count = count;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public void setDate(LocalDate date) {
+        this.date = date;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+}
@@ -0,0 +1,40 @@
+package com.prescriptions.taks.prescriptions.dto;
+
+public class InteractionWarningDTO {
+    private String medicine;
+    private String interactingMedicine;
+    private String severity;
+    private String description;
+
+    public String getMedicine() {
+        return medicine;
+    }
+
+    public void setMedicine(String medicine) {
+        this.medicine = medicine;
+    }
+
+    public String getInteractingMedicine() {
+        return interactingMedicine;
+    }
+
+    public void setInteractingMedicine(String interactingMedicine) {
+        this.interactingMedicine = interactingMedicine;
+    }
+
+    public String getSeverity() {
+        return severity;
+    }
+
+    public void setSeverity(String severity) {
+        this.severity = severity;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+}
@@ -0,0 +1,44 @@
+package com.prescriptions.taks.prescriptions.dto;
+
+/**
+ * How often a medicine was prescribed to a patient or by a doctor.
+ * {@code count} may exceed the true count by at most {@code error}, which is 0 for an exact count.
+ */
+public class MedicineCountDTO {
+    private String medicineName;
+    private long count;
+    private long error;
+
+    public MedicineCountDTO() {
+    }
+
+    public MedicineCountDTO(String medicineName, long count, long error) {
+        this.medicineName = medicineName;
+        this.count = count;
+        this.error = error;
+    }
+
+    public String getMedicineName() {
+        return medicineName;
+    }
+
+    public void setMedicineName(String medicineName) {
+        this.medicineName = medicineName;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public long getError() {
+        return error;
+    }
+
+    public void setError(long error) {
+        this.error = error;
+    }
+}
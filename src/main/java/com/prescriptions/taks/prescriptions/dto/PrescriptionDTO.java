@@ -1,5 +1,9 @@
 package com.prescriptions.taks.prescriptions.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
 public class PrescriptionDTO {
     private Long id;
     private String medicineName;
@@ -7,6 +11,20 @@ public class PrescriptionDTO {
     private String instructions;
     private Long doctorId;
     private Long patientId;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<InteractionWarningDTO> warnings;
+
+    public PrescriptionDTO() {
+    }
+
+    public PrescriptionDTO(Long id, String medicineName, String dosage, String instructions, Long doctorId, Long patientId) {
+        this.id = id;
+        this.medicineName = medicineName;
+        this.dosage = dosage;
+        this.instructions = instructions;
+        this.doctorId = doctorId;
+        this.patientId = patientId;
+    }
 
     public Long getId() {
         return id;
@@ -55,4 +73,12 @@ public class PrescriptionDTO {
     public void setPatientId(Long patientId) {
         this.patientId = patientId;
     }
+
+    public List<InteractionWarningDTO> getWarnings() {
+        return warnings;
+    }
+
+    public void setWarnings(List<InteractionWarningDTO> warnings) {
+        this.warnings = warnings;
+    }
 }
@@ -0,0 +1,32 @@
+package com.prescriptions.taks.prescriptions.dto;
+
+import java.util.List;
+
+public class PrescriptionPageDTO {
+    private List<PrescriptionDTO> items;
+    private Long nextCursor;
+
+    public PrescriptionPageDTO() {
+    }
+
+    public PrescriptionPageDTO(List<PrescriptionDTO> items, Long nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<PrescriptionDTO> getItems() {
+        return items;
+    }
+
+    public void setItems(List<PrescriptionDTO> items) {
+        this.items = items;
+    }
+
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(Long nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,46 @@
+package com.prescriptions.taks.prescriptions.dto;
+
+import java.util.List;
+
+/**
+ * Dashboard statistics of a doctor or patient: the total number of prescriptions, the most prescribed medicines
+ * and the number of prescriptions on each recent day, oldest first.
+ */
+public class PrescriptionStatsDTO {
+    private long total;
+    private List<MedicineCountDTO> topMedicines;
+    private List<DailyCountDTO> daily;
+
+    public PrescriptionStatsDTO() {
+    }
+
+    public PrescriptionStatsDTO(long total, List<MedicineCountDTO> topMedicines, List<DailyCountDTO> daily) {
+        this.total = total;
+        this.topMedicines = topMedicines;
+        this.daily = daily;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    public List<MedicineCountDTO> getTopMedicines() {
+        return topMedicines;
+    }
+
+    public void setTopMedicines(List<MedicineCountDTO> topMedicines) {
+        this.topMedicines = topMedicines;
+    }
+
+    public List<DailyCountDTO> getDaily() {
+        return daily;
+    }
+
+    public void setDaily(List<DailyCountDTO> daily) {
+        this.daily = daily;
+    }
+}
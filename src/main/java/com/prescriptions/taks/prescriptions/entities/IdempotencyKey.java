@@ -0,0 +1,75 @@
+package com.prescriptions.taks.prescriptions.entities;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+
+/**
+ * A client-supplied idempotency key and the response of the request that first used it.
+ * <p>
+ * The key is the primary key, so inserting it claims it across all instances. New keys are persisted rather than
+ * merged, which makes a second claim fail instead of silently overwriting the first.
+ * </p>
+ */
+@Entity
+@Table(indexes = @Index(name = "idx_idempotency_key_created_at", columnList = "created_at"))
+public class IdempotencyKey implements Persistable<String> {
+
+    @Id
+    @Column(name = "idempotency_key")
+    private String key;
+
+    @Column(nullable = false, length = 64)
+    private String requestHash;
+
+    @Lob
+    private String responseBody;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    @Transient
+    private boolean isNew = true;
+
+    protected IdempotencyKey() {
+    }
+
+    public IdempotencyKey(String key, String requestHash, Instant createdAt) {
+        this.key = key;
+        this.requestHash = requestHash;
+        this.createdAt = createdAt;
+    }
+
+    @PostPersist
+    @PostLoad
+    void markNotNew() {
+        isNew = false;
+    }
+
+    @Override
+    public String getId() {
+        return key;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    public String getRequestHash() {
+        return requestHash;
+    }
+
+    public String getResponseBody() {
+        return responseBody;
+    }
+
+    public void setResponseBody(String responseBody) {
+        this.responseBody = responseBody;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+}
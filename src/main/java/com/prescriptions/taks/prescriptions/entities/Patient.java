@@ -9,7 +9,7 @@ import java.util.Set;
 @Entity
 @DiscriminatorValue("PATIENT")
 public class Patient extends User {
-    @OneToMany
+    @OneToMany(mappedBy = "patient")
     private Set<Prescription> prescriptions;
     private String medicalHistory;
 
@@ -1,26 +1,54 @@
 package com.prescriptions.taks.prescriptions.entities;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.prescriptions.taks.prescriptions.interaction.InteractionWarning;
+import com.prescriptions.taks.prescriptions.sharding.PrescriptionIdSequence;
 import jakarta.persistence.*;
 
+import java.time.Instant;
+import java.util.List;
+
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_prescription_patient_id_id", columnList = "patient_id, id"),
+        @Index(name = "idx_prescription_doctor_id_id", columnList = "doctor_id, id")
+})
 public class Prescription {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @PrescriptionIdSequence(sequenceName = "prescription_seq", allocationSize = 50)
     private Long id;
 
     private String medicineName;
     private String dosage;
     private String instructions;
 
-    @ManyToOne
+    @JsonIgnore
+    private Instant createdAt;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "doctor_id")
     private Doctor doctor;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "patient_id")
     private Patient patient;
 
+    @Transient
+    @JsonIgnore
+    private List<InteractionWarning> warnings;
+
+    /**
+     * Stamps the creation time unless the prescription already carries one, as prescriptions replayed from the
+     * event log do.
+     */
+    @PrePersist
+    void stampCreatedAt() {
+        if (createdAt == null) {
+            createdAt = Instant.now();
+        }
+    }
+
     public Long getId() {
         return id;
     }
@@ -53,6 +81,14 @@ public class Prescription {
         this.instructions = instructions;
     }
 
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
     public Doctor getDoctor() {
         return doctor;
     }
@@ -68,4 +104,12 @@ public class Prescription {
     public void setPatient(Patient patient) {
         this.patient = patient;
     }
+
+    public List<InteractionWarning> getWarnings() {
+        return warnings;
+    }
+
+    public void setWarnings(List<InteractionWarning> warnings) {
+        this.warnings = warnings;
+    }
 }
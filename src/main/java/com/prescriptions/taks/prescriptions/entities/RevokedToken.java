@@ -0,0 +1,35 @@
+package com.prescriptions.taks.prescriptions.entities;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * A token that was revoked before it expired. Rows are only needed until {@code expiresAt}.
+ */
+@Entity
+@Table(indexes = @Index(name = "idx_revoked_token_expires_at", columnList = "expires_at"))
+public class RevokedToken {
+
+    @Id
+    private Long tokenId;
+
+    @Column(nullable = false)
+    private Instant expiresAt;
+
+    protected RevokedToken() {
+    }
+
+    public RevokedToken(Long tokenId, Instant expiresAt) {
+        this.tokenId = tokenId;
+        this.expiresAt = expiresAt;
+    }
+
+    public Long getTokenId() {
+        return tokenId;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+}
@@ -0,0 +1,22 @@
+package com.prescriptions.taks.prescriptions.event;
+
+import com.prescriptions.taks.prescriptions.entities.Prescription;
+
+import java.util.List;
+
+/**
+ * Published by {@link com.prescriptions.taks.prescriptions.service.PrescriptionService} after prescriptions
+ * have been committed, so read-side structures can pick up the new rows without polling the database.
+ */
+public class PrescriptionsCreatedEvent {
+
+    private final List<Prescription> prescriptions;
+
+    public PrescriptionsCreatedEvent(List<Prescription> prescriptions) {
+        this.prescriptions = prescriptions;
+    }
+
+    public List<Prescription> getPrescriptions() {
+        return prescriptions;
+    }
+}
@@ -0,0 +1,25 @@
+package com.prescriptions.taks.prescriptions.eventlog;
+
+/**
+ * When appended records are forced from the page cache to disk.
+ */
+public enum FsyncPolicy {
+
+    /**
+     * Every append is forced before it returns. Nothing acknowledged is lost on power failure; each append pays a
+     * disk flush.
+     */
+    ALWAYS,
+
+    /**
+     * The log is forced every {@code prescriptions.event-log.fsync-interval}. A power failure loses at most that
+     * much; a process crash loses nothing, as the mapped pages belong to the kernel.
+     */
+    INTERVAL,
+
+    /**
+     * The kernel writes pages back when it chooses; the log is only forced when a segment is full or the log is
+     * closed.
+     */
+    NEVER
+}
@@ -0,0 +1,109 @@
+package com.prescriptions.taks.prescriptions.eventlog;
+
+import com.prescriptions.taks.prescriptions.entities.Doctor;
+import com.prescriptions.taks.prescriptions.entities.Patient;
+import com.prescriptions.taks.prescriptions.entities.Prescription;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Binary form of the events in the {@link PrescriptionEventLog}.
+ * <p>
+ * A prescription-created event is a type byte, the time it was recorded in epoch milliseconds, the prescription,
+ * doctor and patient IDs ({@link Long#MIN_VALUE} for none) and the medicine name, dosage and instructions as length-prefixed UTF-8
+ * (length -1 for null). New fields may only be appended, so older events stay readable.
+ * </p>
+ */
+public final class PrescriptionEventCodec {
+
+    public static final byte PRESCRIPTION_CREATED = 1;
+
+    private static final long NONE = Long.MIN_VALUE;
+
+    private PrescriptionEventCodec() {
+    }
+
+    public static byte[] encodeCreated(Prescription prescription, long recordedAtMillis) {
+        byte[] medicineName = utf8(prescription.getMedicineName());
+        byte[] dosage = utf8(prescription.getDosage());
+        byte[] instructions = utf8(prescription.getInstructions());
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 * Long.BYTES + 3 * Integer.BYTES
+                + length(medicineName) + length(dosage) + length(instructions));
+        buffer.put(PRESCRIPTION_CREATED);
+        buffer.putLong(recordedAtMillis);
+        buffer.putLong(prescription.getId());
+        buffer.putLong(prescription.getDoctor() == null ? NONE : idOrNone(prescription.getDoctor().getId()));
+        buffer.putLong(prescription.getPatient() == null ? NONE : idOrNone(prescription.getPatient().getId()));
+        putString(buffer, medicineName);
+        putString(buffer, dosage);
+        putString(buffer, instructions);
+        return buffer.array();
+    }
+
+    /**
+     * Reads a prescription-created event into a detached prescription whose doctor and patient carry only their IDs.
+     * The time the event was recorded becomes the prescription's creation time.
+     *
+     * @throws IllegalArgumentException if the payload is another kind of event.
+     */
+    public static Prescription decodeCreated(ByteBuffer payload) {
+        ByteBuffer buffer = payload.duplicate();
+        byte type = buffer.get();
+        if (type != PRESCRIPTION_CREATED) {
+            throw new IllegalArgumentException("Unknown event type " + type);
+        }
+        long recordedAtMillis = buffer.getLong();
+        Prescription prescription = new Prescription();
+        prescription.setCreatedAt(Instant.ofEpochMilli(recordedAtMillis));
+        prescription.setId(buffer.getLong());
+        long doctorId = buffer.getLong();
+        if (doctorId != NONE) {
+            Doctor doctor = new Doctor();
+            doctor.setId(doctorId);
+            prescription.setDoctor(doctor);
+        }
+        long patientId = buffer.getLong();
+        if (patientId != NONE) {
+            Patient patient = new Patient();
+            patient.setId(patientId);
+            prescription.setPatient(patient);
+        }
+        prescription.setMedicineName(getString(buffer));
+        prescription.setDosage(getString(buffer));
+        prescription.setInstructions(getString(buffer));
+        return prescription;
+    }
+
+    private static long idOrNone(Long id) {
+        return id == null ? NONE : id;
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] value) {
+        return value == null ? 0 : value.length;
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(value.length);
+            buffer.put(value);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        buffer.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,320 @@
+package com.prescriptions.taks.prescriptions.eventlog;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * An append-only log of records in memory-mapped segment files.
+ * <p>
+ * Every record gets the next sequence number, starting at 1, and is stored as its payload length, a CRC32C of the
+ * payload, the sequence number and the payload. Segments are preallocated files of {@code segmentSize} bytes named
+ * after their first sequence number; unused space is zero, so a zero length marks the end of a segment. The length
+ * is written last, so a reader never sees a partly written record. On open, a torn record at the end of the last
+ * segment (from a crash during an append) is cut off. Segments are never deleted; the log is the audit trail.
+ * </p>
+ * <p>
+ * Only the segment being appended to stays mapped. File channels are closed as soon as a segment is mapped, and a
+ * {@link Cursor} maps a finished segment read-only while it reads it, so neither file handles nor mapped address
+ * space grow with the number of segments.
+ * </p>
+ * <p>
+ * Appends are serialized; any number of {@link Cursor}s can read concurrently with them.
+ * </p>
+ */
+public class PrescriptionEventLog implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrescriptionEventLog.class);
+
+    static final int HEADER_SIZE = 16;
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final FsyncPolicy fsyncPolicy;
+    private final ConcurrentSkipListMap<Long, Path> segments = new ConcurrentSkipListMap<>();
+    private final ScheduledExecutorService flusher;
+    private volatile Segment active;
+    private int position;
+    private long nextSequence;
+    private volatile long lastSequence;
+
+    /**
+     * Opens the log in {@code directory}, creating it if needed.
+     *
+     * @param fsyncInterval How often the log is forced with {@link FsyncPolicy#INTERVAL}.
+     */
+    public PrescriptionEventLog(Path directory, int segmentSize, FsyncPolicy fsyncPolicy, Duration fsyncInterval) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsyncPolicy = fsyncPolicy;
+        Files.createDirectories(directory);
+
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(file -> file.getFileName().toString().endsWith(SUFFIX)).sorted().toList();
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long first = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+            segments.put(first, file);
+        }
+        if (segments.isEmpty()) {
+            active = createSegment(1);
+            position = 0;
+            nextSequence = 1;
+        } else {
+            Map.Entry<Long, Path> last = segments.lastEntry();
+            active = Segment.open(last.getKey(), last.getValue(), segmentSize);
+            recover();
+        }
+        lastSequence = nextSequence - 1;
+
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "event-log-fsync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long nanos = fsyncInterval.toNanos();
+            flusher.scheduleWithFixedDelay(this::force, nanos, nanos, TimeUnit.NANOSECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * Appends a record and returns its sequence number.
+     *
+     * @throws IllegalArgumentException if the payload is empty or does not fit in a segment.
+     */
+    public synchronized long append(byte[] payload) {
+        int size = HEADER_SIZE + payload.length;
+        if (payload.length == 0 || size > segmentSize) {
+            throw new IllegalArgumentException("Record of " + payload.length + " bytes does not fit in a segment");
+        }
+        if (position + size > segmentSize) {
+            active.buffer.force();
+            active = createSegment(nextSequence);
+            position = 0;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        MappedByteBuffer buffer = active.buffer;
+        buffer.putLong(position + 8, nextSequence);
+        buffer.put(position + HEADER_SIZE, payload);
+        buffer.putInt(position + 4, (int) crc.getValue());
+        buffer.putInt(position, payload.length);
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            buffer.force(position, size);
+        }
+        position += size;
+        long sequence = nextSequence++;
+        lastSequence = sequence;
+        return sequence;
+    }
+
+    /**
+     * The sequence number of the last appended record, 0 if the log is empty.
+     */
+    public long lastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Returns a cursor positioned before the first record after {@code afterSequence}. Only the segment holding
+     * that record is scanned to get there.
+     */
+    public Cursor cursor(long afterSequence) {
+        Map.Entry<Long, Path> segment = segments.floorEntry(afterSequence + 1);
+        Cursor cursor = new Cursor((segment == null ? segments.firstEntry() : segment).getKey());
+        while (cursor.sequence < afterSequence && cursor.next()) {
+            // Skip to the requested position.
+        }
+        return cursor;
+    }
+
+    /**
+     * Forces appended records to disk. Appends can continue meanwhile.
+     */
+    public void force() {
+        active.buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        synchronized (this) {
+            active.buffer.force();
+        }
+    }
+
+    private void recover() {
+        // Walk the last segment only; earlier segments were completed before their successor was created.
+        Cursor cursor = new Cursor(active.firstSequence);
+        long last = cursor.sequence;
+        try {
+            while (cursor.readInSegment()) {
+                last = cursor.sequence;
+            }
+        } catch (IllegalStateException e) {
+            logger.atWarn()
+                    .addKeyValue("segment", active.file)
+                    .addKeyValue("position", cursor.position)
+                    .log("Cutting off a torn record at the end of the event log");
+        }
+        position = cursor.position;
+        for (int i = position; i < segmentSize; i++) {
+            active.buffer.put(i, (byte) 0);
+        }
+        active.buffer.force();
+        nextSequence = last + 1;
+    }
+
+    private Segment createSegment(long firstSequence) {
+        Path file = directory.resolve(String.format("%020d%s", firstSequence, SUFFIX));
+        try {
+            Segment segment = Segment.open(firstSequence, file, segmentSize);
+            segments.put(firstSequence, file);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create event log segment " + file, e);
+        }
+    }
+
+    /**
+     * The segment being appended to, mapped read-write.
+     */
+    private static final class Segment {
+
+        private final long firstSequence;
+        private final Path file;
+        private final MappedByteBuffer buffer;
+
+        private Segment(long firstSequence, Path file, MappedByteBuffer buffer) {
+            this.firstSequence = firstSequence;
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        static Segment open(long firstSequence, Path file, int size) throws IOException {
+            // The mapping stays valid after the channel is closed.
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return new Segment(firstSequence, file, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            }
+        }
+    }
+
+    /**
+     * Reads records in sequence order. Not thread-safe; {@link #next()} returns {@code false} at the end of the log
+     * and can be called again later to pick up new records.
+     */
+    public final class Cursor {
+
+        private long segment;
+        private Path file;
+        private MappedByteBuffer buffer;
+        private int position;
+        private long sequence;
+        private ByteBuffer payload;
+
+        private Cursor(long segment) {
+            enter(segment);
+            sequence = segment - 1;
+        }
+
+        /**
+         * Moves to the next record.
+         *
+         * @return {@code false} if there is no record after the current one yet.
+         * @throws IllegalStateException if the record is corrupt.
+         */
+        public boolean next() {
+            if (sequence >= lastSequence) {
+                return false;
+            }
+            while (!readInSegment()) {
+                enter(segments.higherKey(segment));
+            }
+            return true;
+        }
+
+        /**
+         * The current record's sequence number.
+         */
+        public long sequence() {
+            return sequence;
+        }
+
+        /**
+         * The current record's payload, a read-only view of the log that is valid until the log is closed.
+         */
+        public ByteBuffer payload() {
+            return payload;
+        }
+
+        /**
+         * Moves to the start of a segment: the active one is shared with the appender, a finished one is mapped
+         * read-only until the cursor moves on.
+         */
+        private void enter(long firstSequence) {
+            Segment appending = active;
+            segment = firstSequence;
+            position = 0;
+            if (appending.firstSequence == firstSequence) {
+                file = appending.file;
+                buffer = appending.buffer;
+                return;
+            }
+            file = segments.get(firstSequence);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(segmentSize, channel.size()));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read event log segment " + file, e);
+            }
+        }
+
+        private boolean readInSegment() {
+            if (position + HEADER_SIZE > buffer.capacity()) {
+                return false;
+            }
+            int length = buffer.getInt(position);
+            if (length == 0) {
+                return false;
+            }
+            long recordSequence = buffer.getLong(position + 8);
+            if (length < 0 || position + HEADER_SIZE + length > buffer.capacity() || recordSequence != sequence + 1) {
+                throw new IllegalStateException("Corrupt event log record at " + file + ":" + position);
+            }
+            ByteBuffer body = buffer.slice(position + HEADER_SIZE, length).asReadOnlyBuffer();
+            CRC32C crc = new CRC32C();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                throw new IllegalStateException("Corrupt event log record at " + file + ":" + position);
+            }
+            payload = body;
+            sequence = recordSequence;
+            position += HEADER_SIZE + length;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.prescriptions.taks.prescriptions.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes prescriptions in a column-oriented binary layout, a batch of rows at a time.
+ * <p>
+ * All numbers are little-endian. The output starts with a header:
+ * </p>
+ * <ul>
+ *     <li>the 8 magic bytes {@code RXCOL001},</li>
+ *     <li>an int32 column count, then per column an int8 type ({@code 1} = int64, {@code 2} = UTF-8 string),
+ *     an int16 name length and the UTF-8 name.</li>
+ * </ul>
+ * <p>
+ * The columns are {@code id}, {@code medicine_name}, {@code dosage}, {@code instructions}, {@code doctor_id} and
+ * {@code patient_id}. Then come batches, each an int32 row count {@code n} followed by every column in header order:
+ * </p>
+ * <ul>
+ *     <li>a validity bitmap of {@code ceil(n / 8)} bytes, bit {@code i % 8} of byte {@code i / 8} set when row
+ *     {@code i} is not null,</li>
+ *     <li>for int64 columns, {@code n} int64 values, 0 for nulls,</li>
+ *     <li>for string columns, {@code n + 1} int32 offsets into the data that follows and {@code offsets[n]} bytes
+ *     of UTF-8 data; row {@code i} is bytes {@code offsets[i]} to {@code offsets[i + 1]}.</li>
+ * </ul>
+ * <p>
+ * A row count of 0 ends the output. Each column block can be read or memory-mapped as one array, and only one
+ * batch is ever held in memory.
+ * </p>
+ */
+public class ColumnarPrescriptionWriter implements PrescriptionRowWriter {
+
+    public static final byte[] MAGIC = "RXCOL001".getBytes(StandardCharsets.US_ASCII);
+    public static final byte INT64 = 1;
+    public static final byte UTF8 = 2;
+
+    static final int BATCH_ROWS = 4096;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+    private final LongColumn ids = new LongColumn();
+    private final StringColumn medicineNames = new StringColumn();
+    private final StringColumn dosages = new StringColumn();
+    private final StringColumn instructions = new StringColumn();
+    private final LongColumn doctorIds = new LongColumn();
+    private final LongColumn patientIds = new LongColumn();
+    private int rows;
+
+    public ColumnarPrescriptionWriter(OutputStream out) throws IOException {
+        this.channel = Channels.newChannel(out);
+        buffer.put(MAGIC);
+        buffer.putInt(6);
+        header(INT64, "id");
+        header(UTF8, "medicine_name");
+        header(UTF8, "dosage");
+        header(UTF8, "instructions");
+        header(INT64, "doctor_id");
+        header(INT64, "patient_id");
+    }
+
+    @Override
+    public void row(long id, String medicineName, String dosage, String instructions, Long doctorId, Long patientId) throws IOException {
+        ids.set(rows, id);
+        medicineNames.set(rows, medicineName);
+        dosages.set(rows, dosage);
+        this.instructions.set(rows, instructions);
+        doctorIds.set(rows, doctorId);
+        patientIds.set(rows, patientId);
+        if (++rows == BATCH_ROWS) {
+            writeBatch();
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (rows > 0) {
+            writeBatch();
+        }
+        ensureRemaining(Integer.BYTES);
+        buffer.putInt(0);
+        drain();
+    }
+
+    private void header(byte type, String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        buffer.put(type);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private void writeBatch() throws IOException {
+        ensureRemaining(Integer.BYTES);
+        buffer.putInt(rows);
+        ids.write();
+        medicineNames.write();
+        dosages.write();
+        instructions.write();
+        doctorIds.write();
+        patientIds.write();
+        rows = 0;
+    }
+
+    private void writeValidity(byte[] validity) throws IOException {
+        int length = (rows + 7) / 8;
+        ensureRemaining(length);
+        buffer.put(validity, 0, length);
+        Arrays.fill(validity, 0, length, (byte) 0);
+    }
+
+    private void ensureRemaining(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private final class LongColumn {
+        private final byte[] validity = new byte[BATCH_ROWS / 8];
+        private final long[] values = new long[BATCH_ROWS];
+
+        void set(int row, Long value) {
+            if (value != null) {
+                validity[row >>> 3] |= (byte) (1 << (row & 7));
+                values[row] = value;
+            } else {
+                values[row] = 0;
+            }
+        }
+
+        void write() throws IOException {
+            writeValidity(validity);
+            for (int written = 0; written < rows; ) {
+                ensureRemaining(Long.BYTES);
+                int count = Math.min(rows - written, buffer.remaining() / Long.BYTES);
+                buffer.asLongBuffer().put(values, written, count);
+                buffer.position(buffer.position() + count * Long.BYTES);
+                written += count;
+            }
+        }
+    }
+
+    private final class StringColumn {
+        private final byte[] validity = new byte[BATCH_ROWS / 8];
+        private final int[] offsets = new int[BATCH_ROWS + 1];
+        private byte[] data = new byte[BATCH_ROWS * 32];
+
+        void set(int row, String value) {
+            int start = offsets[row];
+            if (value != null) {
+                validity[row >>> 3] |= (byte) (1 << (row & 7));
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                if (start + bytes.length > data.length) {
+                    data = Arrays.copyOf(data, Math.max(data.length * 2, start + bytes.length));
+                }
+                System.arraycopy(bytes, 0, data, start, bytes.length);
+                offsets[row + 1] = start + bytes.length;
+            } else {
+                offsets[row + 1] = start;
+            }
+        }
+
+        void write() throws IOException {
+            writeValidity(validity);
+            for (int written = 0; written <= rows; ) {
+                ensureRemaining(Integer.BYTES);
+                int count = Math.min(rows + 1 - written, buffer.remaining() / Integer.BYTES);
+                buffer.asIntBuffer().put(offsets, written, count);
+                buffer.position(buffer.position() + count * Integer.BYTES);
+                written += count;
+            }
+            drain();
+            ByteBuffer bytes = ByteBuffer.wrap(data, 0, offsets[rows]);
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            if (data.length > BATCH_ROWS * 256) {
+                // Do not keep a buffer that one batch of unusually long values grew.
+                data = new byte[BATCH_ROWS * 32];
+            }
+        }
+    }
+}
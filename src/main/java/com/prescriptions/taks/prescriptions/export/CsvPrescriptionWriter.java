@@ -0,0 +1,72 @@
+package com.prescriptions.taks.prescriptions.export;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes prescriptions as gzip-compressed, UTF-8 CSV (RFC 4180) with a header row. Values containing a comma, quote
+ * or line break are quoted; nulls are empty fields.
+ */
+public class CsvPrescriptionWriter implements PrescriptionRowWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final GZIPOutputStream gzip;
+    private final Writer writer;
+
+    public CsvPrescriptionWriter(OutputStream out) throws IOException {
+        this.gzip = new GZIPOutputStream(out, BUFFER_SIZE);
+        this.writer = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8), BUFFER_SIZE);
+        writer.write("id,medicine_name,dosage,instructions,doctor_id,patient_id\r\n");
+    }
+
+    @Override
+    public void row(long id, String medicineName, String dosage, String instructions, Long doctorId, Long patientId) throws IOException {
+        writer.write(Long.toString(id));
+        writer.write(',');
+        writeText(medicineName);
+        writer.write(',');
+        writeText(dosage);
+        writer.write(',');
+        writeText(instructions);
+        writer.write(',');
+        if (doctorId != null) {
+            writer.write(Long.toString(doctorId));
+        }
+        writer.write(',');
+        if (patientId != null) {
+            writer.write(Long.toString(patientId));
+        }
+        writer.write("\r\n");
+    }
+
+    @Override
+    public void finish() throws IOException {
+        writer.flush();
+        gzip.finish();
+        gzip.flush();
+    }
+
+    private void writeText(String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
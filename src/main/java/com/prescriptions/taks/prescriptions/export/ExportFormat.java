@@ -0,0 +1,40 @@
+package com.prescriptions.taks.prescriptions.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The formats of the prescription history export.
+ */
+public enum ExportFormat {
+
+    /**
+     * The column-oriented binary layout of {@link ColumnarPrescriptionWriter}.
+     */
+    COLUMNAR("application/vnd.prescriptions.columnar", "rxc"),
+
+    /**
+     * Gzip-compressed CSV with a header row, see {@link CsvPrescriptionWriter}.
+     */
+    CSV_GZIP("application/gzip", "csv.gz");
+
+    private final String contentType;
+    private final String fileExtension;
+
+    ExportFormat(String contentType, String fileExtension) {
+        this.contentType = contentType;
+        this.fileExtension = fileExtension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getFileExtension() {
+        return fileExtension;
+    }
+
+    public PrescriptionRowWriter open(OutputStream out) throws IOException {
+        return this == COLUMNAR ? new ColumnarPrescriptionWriter(out) : new CsvPrescriptionWriter(out);
+    }
+}
@@ -0,0 +1,16 @@
+package com.prescriptions.taks.prescriptions.export;
+
+import java.io.IOException;
+
+/**
+ * Receives exported prescription rows in ID order and encodes them onto an output.
+ */
+public interface PrescriptionRowWriter {
+
+    void row(long id, String medicineName, String dosage, String instructions, Long doctorId, Long patientId) throws IOException;
+
+    /**
+     * Writes whatever is still buffered and the end of the output. The underlying stream is not closed.
+     */
+    void finish() throws IOException;
+}
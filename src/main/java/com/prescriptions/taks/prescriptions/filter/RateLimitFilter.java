@@ -0,0 +1,60 @@
+package com.prescriptions.taks.prescriptions.filter;
+
+import com.prescriptions.taks.prescriptions.ratelimit.ApiRateLimits;
+import com.prescriptions.taks.prescriptions.ratelimit.RateLimiter;
+import com.prescriptions.taks.prescriptions.security.AuthToken;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Rate limits API requests per client and per doctor, so one misbehaving integration cannot use up the database
+ * connections everyone else needs.
+ * <p>
+ * The client is the authenticated user, or the remote address when authentication is off. The doctor is the one in
+ * a {@code /api/prescriptions/doctor/{doctorId}} path, or the authenticated user if they are a doctor. A request must
+ * fit into both buckets. Rejected requests get {@code 429 Too Many Requests} with a {@code Retry-After} in seconds
+ * and {@code X-RateLimit-Scope} naming the exhausted bucket, and are counted as {@code rate.limit.rejected}.
+ * </p>
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitFilter.class);
+
+    public static final String SCOPE_HEADER = "X-RateLimit-Scope";
+
+    private final ApiRateLimits limits;
+
+    public RateLimitFilter(RateLimiter clientLimiter, RateLimiter doctorLimiter, MeterRegistry meterRegistry) {
+        this(new ApiRateLimits(clientLimiter, doctorLimiter, meterRegistry));
+    }
+
+    public RateLimitFilter(ApiRateLimits limits) {
+        this.limits = limits;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        AuthToken token = (AuthToken) request.getAttribute(TokenAuthenticationFilter.AUTH_TOKEN_ATTRIBUTE);
+        ApiRateLimits.Rejection rejection = limits.check(token, request.getRemoteAddr(), request.getRequestURI(),
+                request.getContextPath().length());
+        if (rejection != null) {
+            logger.debug("Rate limited {} {} by {}", request.getMethod(), request.getRequestURI(), rejection.getScope());
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(rejection.getRetryAfterSeconds()));
+            response.setHeader(SCOPE_HEADER, rejection.getScope());
+            response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), "Rate limit exceeded");
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+}
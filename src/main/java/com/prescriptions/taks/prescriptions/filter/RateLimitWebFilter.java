@@ -0,0 +1,51 @@
+package com.prescriptions.taks.prescriptions.filter;
+
+import com.prescriptions.taks.prescriptions.ratelimit.ApiRateLimits;
+import com.prescriptions.taks.prescriptions.security.AuthToken;
+import com.prescriptions.taks.prescriptions.security.BearerTokenAuthenticator;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+
+/**
+ * The reactive counterpart of {@link RateLimitFilter}, applying the same {@link ApiRateLimits} to
+ * {@code /api/prescriptions/**} and {@code /api/users/**} and answering rejections with {@code 429 Too Many Requests},
+ * {@code Retry-After} and {@code X-RateLimit-Scope}.
+ */
+public class RateLimitWebFilter implements WebFilter {
+
+    private final ApiRateLimits limits;
+
+    public RateLimitWebFilter(ApiRateLimits limits) {
+        this.limits = limits;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        String path = request.getPath().value();
+        int pathStart = request.getPath().contextPath().value().length();
+        if (!TokenAuthenticationWebFilter.isProtected(path, pathStart)) {
+            return chain.filter(exchange);
+        }
+        AuthToken token = exchange.getAttribute(BearerTokenAuthenticator.AUTH_TOKEN_ATTRIBUTE);
+        InetSocketAddress remote = request.getRemoteAddress();
+        String remoteAddr = remote == null || remote.getAddress() == null ? "unknown" : remote.getAddress().getHostAddress();
+        ApiRateLimits.Rejection rejection = limits.check(token, remoteAddr, path, pathStart);
+        if (rejection != null) {
+            ServerHttpResponse response = exchange.getResponse();
+            response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+            response.getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(rejection.getRetryAfterSeconds()));
+            response.getHeaders().set(RateLimitFilter.SCOPE_HEADER, rejection.getScope());
+            return response.setComplete();
+        }
+        return chain.filter(exchange);
+    }
+}
@@ -0,0 +1,75 @@
+package com.prescriptions.taks.prescriptions.filter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.prescriptions.taks.prescriptions.routing.ReplicaRoutingContext;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Lets a client read its own writes despite replication lag.
+ * <p>
+ * Clients that care send a session ID in {@code headerName}. From the start of a write under that ID until
+ * {@code window} after it succeeded, which should exceed the usual replica lag, its requests read from the primary. Requests without the header
+ * always read from the replicas. Such requests also bypass the listing caches, which may hold rows read from a
+ * replica. Only reads on the request thread are covered; the streaming endpoints read on an async thread and use a
+ * replica.
+ * </p>
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    private final String headerName;
+    private final Cache<String, Boolean> recentWriters;
+
+    public ReadYourWritesFilter(String headerName, Duration window, long maxSessions) {
+        this.headerName = headerName;
+        this.recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(window)
+                .maximumSize(maxSessions)
+                .build();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String session = request.getHeader(headerName);
+        if (session == null || session.isEmpty()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        boolean recentWriter = recentWriters.getIfPresent(session) != null;
+        if (recentWriter) {
+            ReplicaRoutingContext.requirePrimary();
+        }
+        // Mark the session before the write, as the client may send its next read as soon as the response is
+        // committed, before this filter gets control back. A failed write drops the mark again.
+        boolean write = isWrite(request);
+        if (write) {
+            recentWriters.put(session, Boolean.TRUE);
+        }
+        boolean succeeded = false;
+        try {
+            filterChain.doFilter(request, response);
+            succeeded = response.getStatus() < 400;
+        } finally {
+            ReplicaRoutingContext.clear();
+            if (write && succeeded) {
+                recentWriters.put(session, Boolean.TRUE);
+            } else if (write && !recentWriter) {
+                recentWriters.invalidate(session);
+            }
+        }
+    }
+
+    private static boolean isWrite(HttpServletRequest request) {
+        String method = request.getMethod();
+        return !HttpMethod.GET.matches(method) && !HttpMethod.HEAD.matches(method) && !HttpMethod.OPTIONS.matches(method);
+    }
+}
@@ -0,0 +1,52 @@
+package com.prescriptions.taks.prescriptions.filter;
+
+import com.prescriptions.taks.prescriptions.metrics.StatementCountingInspector;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Records how many SQL statements each request made, as the {@code hibernate.statements.per.request}
+ * distribution tagged with the HTTP method and the matched URI pattern.
+ * <p>
+ * Only statements issued on the request thread are counted; the streaming endpoints, which read on an
+ * async thread, report the statements made before the response was handed off.
+ * </p>
+ */
+public class StatementCountMetricsFilter extends OncePerRequestFilter {
+
+    public static final String METRIC_NAME = "hibernate.statements.per.request";
+
+    private final StatementCountingInspector inspector;
+    private final MeterRegistry meterRegistry;
+
+    public StatementCountMetricsFilter(StatementCountingInspector inspector, MeterRegistry meterRegistry) {
+        this.inspector = inspector;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        inspector.reset();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            DistributionSummary.builder(METRIC_NAME)
+                    .description("SQL statements prepared while handling one request")
+                    .baseUnit("statements")
+                    .tag("method", request.getMethod())
+                    .tag("uri", pattern == null ? "UNKNOWN" : pattern.toString())
+                    .register(meterRegistry)
+                    .record(inspector.count());
+        }
+    }
+}
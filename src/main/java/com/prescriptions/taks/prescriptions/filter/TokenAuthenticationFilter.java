@@ -0,0 +1,58 @@
+package com.prescriptions.taks.prescriptions.filter;
+
+import com.prescriptions.taks.prescriptions.security.AuthToken;
+import com.prescriptions.taks.prescriptions.security.BearerTokenAuthenticator;
+import com.prescriptions.taks.prescriptions.security.TokenRevocationList;
+import com.prescriptions.taks.prescriptions.security.TokenSigner;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Requires a valid {@code Authorization: Bearer <token>} on API requests.
+ * <p>
+ * The token is checked without touching the database: its signature and expiry by {@link TokenSigner}, and
+ * revocation against the in-memory {@link TokenRevocationList}. The verified {@link AuthToken} is stored as the
+ * {@link #AUTH_TOKEN_ATTRIBUTE} request attribute. Registration and login stay public. Rejections are answered with
+ * {@code 401 Unauthorized} and counted as {@code auth.rejected}, tagged with the reason.
+ * </p>
+ */
+public class TokenAuthenticationFilter extends OncePerRequestFilter {
+
+    public static final String AUTH_TOKEN_ATTRIBUTE = BearerTokenAuthenticator.AUTH_TOKEN_ATTRIBUTE;
+
+    private final BearerTokenAuthenticator authenticator;
+
+    public TokenAuthenticationFilter(TokenSigner tokenSigner, TokenRevocationList revocationList, MeterRegistry meterRegistry) {
+        this(new BearerTokenAuthenticator(tokenSigner, revocationList, meterRegistry));
+    }
+
+    public TokenAuthenticationFilter(BearerTokenAuthenticator authenticator) {
+        this.authenticator = authenticator;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return authenticator.isPublic(request.getRequestURI(), request.getContextPath().length());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        BearerTokenAuthenticator.Outcome outcome = authenticator.authenticate(request.getHeader(HttpHeaders.AUTHORIZATION));
+        if (outcome.getToken() == null) {
+            response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer");
+            response.sendError(HttpStatus.UNAUTHORIZED.value(), outcome.getFailure());
+            return;
+        }
+        request.setAttribute(AUTH_TOKEN_ATTRIBUTE, outcome.getToken());
+        filterChain.doFilter(request, response);
+    }
+}
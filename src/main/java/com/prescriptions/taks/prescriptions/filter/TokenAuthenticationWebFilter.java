@@ -0,0 +1,56 @@
+package com.prescriptions.taks.prescriptions.filter;
+
+import com.prescriptions.taks.prescriptions.security.BearerTokenAuthenticator;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * The reactive counterpart of {@link TokenAuthenticationFilter}: requires a valid {@code Authorization: Bearer <token>}
+ * on {@code /api/prescriptions/**} and {@code /api/users/**} and stores the verified token as the
+ * {@link BearerTokenAuthenticator#AUTH_TOKEN_ATTRIBUTE} exchange attribute. Verification never blocks, so it runs on
+ * the event loop.
+ */
+public class TokenAuthenticationWebFilter implements WebFilter {
+
+    private static final String[] PROTECTED_PREFIXES = {"/api/prescriptions/", "/api/users/"};
+
+    private final BearerTokenAuthenticator authenticator;
+
+    public TokenAuthenticationWebFilter(BearerTokenAuthenticator authenticator) {
+        this.authenticator = authenticator;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        String path = request.getPath().value();
+        int pathStart = request.getPath().contextPath().value().length();
+        if (!isProtected(path, pathStart) || authenticator.isPublic(path, pathStart)) {
+            return chain.filter(exchange);
+        }
+        BearerTokenAuthenticator.Outcome outcome = authenticator.authenticate(request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION));
+        if (outcome.getToken() == null) {
+            ServerHttpResponse response = exchange.getResponse();
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            response.getHeaders().set(HttpHeaders.WWW_AUTHENTICATE, "Bearer");
+            return response.setComplete();
+        }
+        exchange.getAttributes().put(BearerTokenAuthenticator.AUTH_TOKEN_ATTRIBUTE, outcome.getToken());
+        return chain.filter(exchange);
+    }
+
+    static boolean isProtected(String path, int pathStart) {
+        for (String prefix : PROTECTED_PREFIXES) {
+            if (path.startsWith(prefix, pathStart)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
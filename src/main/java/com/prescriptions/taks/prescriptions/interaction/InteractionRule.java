@@ -0,0 +1,29 @@
+package com.prescriptions.taks.prescriptions.interaction;
+
+/**
+ * A known interaction between two medicines, or between two classes of medicines.
+ */
+public class InteractionRule {
+
+    public enum Severity {
+        MINOR,
+        MODERATE,
+        MAJOR
+    }
+
+    private final Severity severity;
+    private final String description;
+
+    public InteractionRule(Severity severity, String description) {
+        this.severity = severity;
+        this.description = description;
+    }
+
+    public Severity getSeverity() {
+        return severity;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
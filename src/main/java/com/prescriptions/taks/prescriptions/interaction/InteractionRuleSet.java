@@ -0,0 +1,227 @@
+package com.prescriptions.taks.prescriptions.interaction;
+
+import com.prescriptions.taks.prescriptions.search.MedicineSearchIndex;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable set of drug-drug interaction rules, compiled for fast checks.
+ * <p>
+ * Every medicine named in a rule gets a small integer ID. For each medicine the IDs of all medicines it interacts
+ * with are kept in a {@link BitSet}, so checking a new medicine against a patient's medicines is one
+ * {@link BitSet#intersects} call. The rules behind a match are kept in arrays sorted by partner ID, so they are
+ * found by binary search without hashing, and only when there is a match. Medicines that
+ * appear in no rule have no ID and are never checked.
+ * </p>
+ * <p>
+ * Prescription medicine names are normalized like search terms and matched on the longest run of consecutive
+ * terms that names a rule medicine, so {@code "Calcium Carbonate 500mg"} resolves to {@code calcium carbonate}
+ * and {@code "Ibuprofen 400mg"} to {@code ibuprofen}.
+ * </p>
+ */
+public final class InteractionRuleSet {
+
+    private final Map<String, Integer> medicineIds;
+    private final String[] medicineNames;
+    private final BitSet[] partners;
+    private final int[][] partnerIds;
+    private final InteractionRule[][] partnerRules;
+    private final int ruleCount;
+
+    private InteractionRuleSet(Map<String, Integer> medicineIds, List<String> medicineNames, List<BitSet> partners,
+                               Map<Long, InteractionRule> rules) {
+        this.medicineIds = medicineIds;
+        this.medicineNames = medicineNames.toArray(new String[0]);
+        this.partners = partners.toArray(new BitSet[0]);
+        this.partnerIds = new int[this.partners.length][];
+        this.partnerRules = new InteractionRule[this.partners.length][];
+        for (int medicine = 0; medicine < this.partners.length; medicine++) {
+            partnerIds[medicine] = this.partners[medicine].stream().toArray();
+            partnerRules[medicine] = new InteractionRule[partnerIds[medicine].length];
+            for (int i = 0; i < partnerIds[medicine].length; i++) {
+                partnerRules[medicine][i] = rules.get(pairKey(medicine, partnerIds[medicine][i]));
+            }
+        }
+        this.ruleCount = rules.size();
+    }
+
+    /**
+     * Parses rules in the line format of {@code interactions/rules.txt}:
+     * <pre>
+     * class NSAID: ibuprofen, naproxen
+     * interaction @NSAID + warfarin | MAJOR | Increased risk of bleeding
+     * </pre>
+     * Blank lines and lines starting with {@code #} are ignored. {@code @NAME} refers to a class declared earlier.
+     *
+     * @param reader The rule source.
+     * @return The compiled rule set.
+     * @throws IOException              if the source cannot be read.
+     * @throws IllegalArgumentException if a line is malformed, with its line number.
+     */
+    public static InteractionRuleSet parse(BufferedReader reader) throws IOException {
+        Builder builder = new Builder();
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            try {
+                if (line.startsWith("class ")) {
+                    int colon = line.indexOf(':');
+                    List<String> members = new ArrayList<>();
+                    for (String member : line.substring(colon + 1).split(",")) {
+                        members.add(member.strip());
+                    }
+                    builder.medicineClass(line.substring("class ".length(), colon).strip(), members);
+                } else if (line.startsWith("interaction ")) {
+                    String[] fields = line.substring("interaction ".length()).split("\\|", 3);
+                    String[] pair = fields[0].split("\\+");
+                    builder.interaction(pair[0].strip(), pair[1].strip(),
+                            InteractionRule.Severity.valueOf(fields[1].strip()), fields[2].strip());
+                } else {
+                    throw new IllegalArgumentException("unknown directive");
+                }
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid interaction rule on line " + lineNumber + ": " + line, e);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the ID of the rule medicine that {@code medicineName} refers to, or -1 if it appears in no rule.
+     */
+    public int medicineId(String medicineName) {
+        List<String> terms = MedicineSearchIndex.terms(medicineName);
+        for (int length = terms.size(); length > 0; length--) {
+            for (int from = 0; from + length <= terms.size(); from++) {
+                String key = length == 1 ? terms.get(from) : String.join(" ", terms.subList(from, from + length));
+                Integer id = medicineIds.get(key);
+                if (id != null) {
+                    return id;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the set of rule medicine IDs among {@code medicineNames}.
+     */
+    public BitSet medicines(Iterable<String> medicineNames) {
+        BitSet medicines = new BitSet(partners.length);
+        for (String name : medicineNames) {
+            int id = medicineId(name);
+            if (id >= 0) {
+                medicines.set(id);
+            }
+        }
+        return medicines;
+    }
+
+    /**
+     * Returns the interactions between medicine {@code medicineId} and the medicines in {@code existing}.
+     */
+    public List<InteractionWarning> check(BitSet existing, int medicineId) {
+        if (medicineId < 0 || !partners[medicineId].intersects(existing)) {
+            return List.of();
+        }
+        BitSet matches = (BitSet) partners[medicineId].clone();
+        matches.and(existing);
+        List<InteractionWarning> warnings = new ArrayList<>(matches.cardinality());
+        for (int other = matches.nextSetBit(0); other >= 0; other = matches.nextSetBit(other + 1)) {
+            int index = Arrays.binarySearch(partnerIds[medicineId], other);
+            warnings.add(new InteractionWarning(medicineNames[medicineId], medicineNames[other], partnerRules[medicineId][index]));
+        }
+        return warnings;
+    }
+
+    public int medicineCount() {
+        return medicineNames.length;
+    }
+
+    public int ruleCount() {
+        return ruleCount;
+    }
+
+    private static long pairKey(int a, int b) {
+        return ((long) Math.min(a, b) << 32) | Math.max(a, b);
+    }
+
+    /**
+     * Collects classes and interactions and interns the medicine names they mention.
+     */
+    public static final class Builder {
+
+        private final Map<String, Integer> medicineIds = new HashMap<>();
+        private final List<String> medicineNames = new ArrayList<>();
+        private final List<BitSet> partners = new ArrayList<>();
+        private final Map<Long, InteractionRule> rules = new HashMap<>();
+        private final Map<String, List<Integer>> classes = new HashMap<>();
+
+        public Builder medicineClass(String name, List<String> medicines) {
+            List<Integer> members = new ArrayList<>(medicines.size());
+            for (String medicine : medicines) {
+                members.add(intern(medicine));
+            }
+            classes.put(name, members);
+            return this;
+        }
+
+        /**
+         * Adds an interaction between every medicine on the left and every medicine on the right.
+         * Each side is a medicine name or {@code @} followed by a class name.
+         */
+        public Builder interaction(String left, String right, InteractionRule.Severity severity, String description) {
+            InteractionRule rule = new InteractionRule(severity, description);
+            for (int a : resolve(left)) {
+                for (int b : resolve(right)) {
+                    if (a != b) {
+                        partners.get(a).set(b);
+                        partners.get(b).set(a);
+                        rules.merge(pairKey(a, b), rule,
+                                (current, added) -> added.getSeverity().compareTo(current.getSeverity()) > 0 ? added : current);
+                    }
+                }
+            }
+            return this;
+        }
+
+        public InteractionRuleSet build() {
+            return new InteractionRuleSet(Map.copyOf(medicineIds), medicineNames, partners, rules);
+        }
+
+        private List<Integer> resolve(String side) {
+            if (side.startsWith("@")) {
+                List<Integer> members = classes.get(side.substring(1));
+                if (members == null) {
+                    throw new IllegalArgumentException("Unknown medicine class " + side);
+                }
+                return members;
+            }
+            return List.of(intern(side));
+        }
+
+        private int intern(String medicine) {
+            String key = String.join(" ", MedicineSearchIndex.terms(medicine));
+            if (key.isEmpty()) {
+                throw new IllegalArgumentException("Empty medicine name");
+            }
+            return medicineIds.computeIfAbsent(key, k -> {
+                medicineNames.add(k);
+                partners.add(new BitSet());
+                return medicineNames.size() - 1;
+            });
+        }
+    }
+}
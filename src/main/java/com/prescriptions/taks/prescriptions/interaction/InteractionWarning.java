@@ -0,0 +1,33 @@
+package com.prescriptions.taks.prescriptions.interaction;
+
+/**
+ * An interaction found between a new prescription and one of the patient's existing prescriptions.
+ */
+public class InteractionWarning {
+
+    private final String medicine;
+    private final String interactingMedicine;
+    private final InteractionRule rule;
+
+    public InteractionWarning(String medicine, String interactingMedicine, InteractionRule rule) {
+        this.medicine = medicine;
+        this.interactingMedicine = interactingMedicine;
+        this.rule = rule;
+    }
+
+    public String getMedicine() {
+        return medicine;
+    }
+
+    public String getInteractingMedicine() {
+        return interactingMedicine;
+    }
+
+    public InteractionRule.Severity getSeverity() {
+        return rule.getSeverity();
+    }
+
+    public String getDescription() {
+        return rule.getDescription();
+    }
+}
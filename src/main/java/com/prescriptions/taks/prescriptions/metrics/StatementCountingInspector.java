@@ -0,0 +1,29 @@
+package com.prescriptions.taks.prescriptions.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Counts the SQL statements Hibernate prepares on the current thread.
+ * <p>
+ * The count lives in a mutable holder per thread, so counting a statement allocates nothing.
+ * {@link #reset()} starts a new count and {@link #count()} reads it; the SQL itself is passed through unchanged.
+ * </p>
+ */
+public class StatementCountingInspector implements StatementInspector {
+
+    private static final ThreadLocal<int[]> COUNT = ThreadLocal.withInitial(() -> new int[1]);
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.get()[0]++;
+        return sql;
+    }
+
+    public void reset() {
+        COUNT.get()[0] = 0;
+    }
+
+    public int count() {
+        return COUNT.get()[0];
+    }
+}
@@ -0,0 +1,125 @@
+package com.prescriptions.taks.prescriptions.ratelimit;
+
+import com.prescriptions.taks.prescriptions.security.AuthToken;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * The per-client and per-doctor limits of the API, shared by the servlet and the reactive rate limit filters.
+ * <p>
+ * The client is the authenticated user, or the remote address when authentication is off. The doctor is the one in
+ * a {@code /api/prescriptions/doctor/{doctorId}} path, or the authenticated user if they are a doctor. A request must
+ * fit into both buckets. Rejections are counted as {@code rate.limit.rejected}, tagged with the exhausted scope.
+ * </p>
+ */
+public class ApiRateLimits {
+
+    private static final String DOCTOR_PATH = "/api/prescriptions/doctor/";
+
+    private final RateLimiter clientLimiter;
+    private final RateLimiter doctorLimiter;
+    private final Counter clientRejections;
+    private final Counter doctorRejections;
+
+    public ApiRateLimits(RateLimiter clientLimiter, RateLimiter doctorLimiter, MeterRegistry meterRegistry) {
+        this.clientLimiter = clientLimiter;
+        this.doctorLimiter = doctorLimiter;
+        this.clientRejections = meters(meterRegistry, "client", clientLimiter);
+        this.doctorRejections = meters(meterRegistry, "doctor", doctorLimiter);
+    }
+
+    /**
+     * Takes one request from the buckets a request falls into.
+     *
+     * @param token      The authenticated token, or {@code null}.
+     * @param remoteAddr The address of the client.
+     * @param path       The request path.
+     * @param pathStart  Where the path starts after any context path.
+     * @return {@code null} if the request is admitted, otherwise the {@link Rejection} to answer with.
+     */
+    public Rejection check(AuthToken token, String remoteAddr, String path, int pathStart) {
+        String client = token != null ? "user:" + token.getUserId() : "ip:" + remoteAddr;
+        long wait = clientLimiter.tryAcquire(client);
+        if (wait > 0) {
+            return reject("client", wait, clientRejections);
+        }
+
+        String doctor = doctorOf(path, pathStart, token);
+        if (doctor != null) {
+            wait = doctorLimiter.tryAcquire(doctor);
+            if (wait > 0) {
+                return reject("doctor", wait, doctorRejections);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A rejected request: the exhausted bucket and when to retry.
+     */
+    public static final class Rejection {
+        private final String scope;
+        private final long retryAfterSeconds;
+
+        private Rejection(String scope, long retryAfterSeconds) {
+            this.scope = scope;
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        /**
+         * {@code client} or {@code doctor}.
+         */
+        public String getScope() {
+            return scope;
+        }
+
+        /**
+         * Whole seconds until the request would be admitted, at least 1.
+         */
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+
+    /**
+     * The doctor a request is about or made by, or {@code null}.
+     */
+    private static String doctorOf(String path, int pathStart, AuthToken token) {
+        if (path.startsWith(DOCTOR_PATH, pathStart)) {
+            int start = pathStart + DOCTOR_PATH.length();
+            int end = start;
+            while (end < path.length() && Character.isDigit(path.charAt(end))) {
+                end++;
+            }
+            if (end > start) {
+                return path.substring(start, end);
+            }
+        }
+        if (token != null && "DOCTOR".equals(token.getRole())) {
+            return Long.toString(token.getUserId());
+        }
+        return null;
+    }
+
+    private static Rejection reject(String scope, long waitNanos, Counter counter) {
+        if (counter != null) {
+            counter.increment();
+        }
+        return new Rejection(scope, Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L));
+    }
+
+    private static Counter meters(MeterRegistry meterRegistry, String scope, RateLimiter limiter) {
+        if (meterRegistry == null) {
+            return null;
+        }
+        Gauge.builder("rate.limit.keys", limiter, RateLimiter::estimatedSize)
+                .description("Keys with a rate limit bucket")
+                .tag("scope", scope)
+                .register(meterRegistry);
+        return Counter.builder("rate.limit.rejected")
+                .description("API requests rejected by rate limiting")
+                .tag("scope", scope)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,88 @@
+package com.prescriptions.taks.prescriptions.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A table of token buckets, one per key, that admits {@code rate} requests per second per key with bursts of up to
+ * {@code burst}.
+ * <p>
+ * Each bucket is the generic cell rate algorithm: a single {@code long} holding the time at which the bucket will
+ * be full again, advanced by one emission interval per admitted request. Admitting a request is one
+ * compare-and-set on that key's cell, so keys never contend with each other and a hot key never takes a lock.
+ * </p>
+ * <p>
+ * The cells live in a Caffeine cache bounded to {@code maxKeys}, whose lookups are lock-free, and a key is dropped
+ * after {@code idleTimeout} without requests. The timeout is raised to the time a bucket takes to refill, so a key
+ * that expires has a full bucket anyway. The size bound is different: a flood of new keys can evict a busy key,
+ * which then starts over with a full burst, so {@code maxKeys} should comfortably exceed the keys active within
+ * the idle timeout. Each key costs about 150 bytes.
+ * </p>
+ */
+public class RateLimiter {
+
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final Cache<String, AtomicLong> cells;
+
+    /**
+     * @param rate        Requests per second per key.
+     * @param burst       Requests a key may send at once after being idle, at least 1.
+     * @param maxKeys     The most keys tracked at once.
+     * @param idleTimeout How long an unused key is kept.
+     */
+    public RateLimiter(double rate, int burst, long maxKeys, Duration idleTimeout) {
+        if (rate <= 0 || burst < 1) {
+            throw new IllegalArgumentException("rate must be positive and burst at least 1");
+        }
+        this.emissionIntervalNanos = Math.max(1, (long) (1_000_000_000L / rate));
+        this.burstToleranceNanos = emissionIntervalNanos * (burst - 1);
+        Duration refill = Duration.ofNanos(emissionIntervalNanos * burst);
+        this.cells = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(idleTimeout.compareTo(refill) > 0 ? idleTimeout : refill)
+                .build();
+    }
+
+    /**
+     * Takes one request from a key's bucket.
+     *
+     * @param key The client, doctor or other key being limited.
+     * @return {@code 0} if the request is admitted, otherwise how many nanoseconds until it would be.
+     */
+    public long tryAcquire(String key) {
+        return tryAcquire(key, System.nanoTime());
+    }
+
+    long tryAcquire(String key, long nowNanos) {
+        AtomicLong cell = cells.getIfPresent(key);
+        if (cell == null) {
+            AtomicLong created = new AtomicLong(nowNanos);
+            cell = cells.asMap().putIfAbsent(key, created);
+            if (cell == null) {
+                cell = created;
+            }
+        }
+        while (true) {
+            long fullAt = cell.get();
+            long start = fullAt - nowNanos < 0 ? nowNanos : fullAt;
+            long wait = start - burstToleranceNanos - nowNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (cell.compareAndSet(fullAt, start + emissionIntervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * The number of keys currently tracked, approximately.
+     */
+    public long estimatedSize() {
+        return cells.estimatedSize();
+    }
+}
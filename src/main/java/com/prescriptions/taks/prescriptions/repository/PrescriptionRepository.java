@@ -1,13 +1,94 @@
 package com.prescriptions.taks.prescriptions.repository;
 
+import com.prescriptions.taks.prescriptions.dto.PrescriptionDTO;
 import com.prescriptions.taks.prescriptions.entities.Prescription;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface PrescriptionRepository extends JpaRepository<Prescription, Long> {
+
+    /**
+     * Rows fetched per round trip by the streaming queries. On MySQL this only takes effect with
+     * {@code useCursorFetch=true}, which makes the driver read through a server-side cursor.
+     */
+    String STREAM_FETCH_SIZE = "1000";
+
+    /**
+     * The ID and medicine name of a prescription, read when rebuilding the medicine search index.
+     */
+    interface MedicineNameView {
+        Long getId();
+        String getMedicineName();
+    }
+
+    /**
+     * The columns of a prescription the dashboard statistics count, read when rebuilding them.
+     */
+    interface StatsView {
+        Long getId();
+        String getMedicineName();
+        Long getDoctorId();
+        Long getPatientId();
+        Instant getCreatedAt();
+    }
+
     List<Prescription> findByDoctorId(Long doctorId);
     List<Prescription> findByPatientId(Long patientId);
+
+    @Query("select new com.prescriptions.taks.prescriptions.dto.PrescriptionDTO(p.id, p.medicineName, p.dosage, p.instructions, p.doctor.id, p.patient.id) "
+            + "from Prescription p where p.doctor.id = :doctorId order by p.id")
+    List<PrescriptionDTO> findDTOsByDoctorId(Long doctorId);
+
+    @Query("select new com.prescriptions.taks.prescriptions.dto.PrescriptionDTO(p.id, p.medicineName, p.dosage, p.instructions, p.doctor.id, p.patient.id) "
+            + "from Prescription p where p.patient.id = :patientId order by p.id")
+    List<PrescriptionDTO> findDTOsByPatientId(Long patientId);
+
+    @Query("select new com.prescriptions.taks.prescriptions.dto.PrescriptionDTO(p.id, p.medicineName, p.dosage, p.instructions, p.doctor.id, p.patient.id) "
+            + "from Prescription p where p.doctor.id = :doctorId and p.id > :afterId order by p.id")
+    List<PrescriptionDTO> findDTOPageByDoctorId(Long doctorId, Long afterId, Limit limit);
+
+    @Query("select new com.prescriptions.taks.prescriptions.dto.PrescriptionDTO(p.id, p.medicineName, p.dosage, p.instructions, p.doctor.id, p.patient.id) "
+            + "from Prescription p where p.patient.id = :patientId and p.id > :afterId order by p.id")
+    List<PrescriptionDTO> findDTOPageByPatientId(Long patientId, Long afterId, Limit limit);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query("select new com.prescriptions.taks.prescriptions.dto.PrescriptionDTO(p.id, p.medicineName, p.dosage, p.instructions, p.doctor.id, p.patient.id) "
+            + "from Prescription p where p.doctor.id = :doctorId order by p.id")
+    Stream<PrescriptionDTO> streamDTOsByDoctorId(Long doctorId);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    @Query("select new com.prescriptions.taks.prescriptions.dto.PrescriptionDTO(p.id, p.medicineName, p.dosage, p.instructions, p.doctor.id, p.patient.id) "
+            + "from Prescription p where p.patient.id = :patientId order by p.id")
+    Stream<PrescriptionDTO> streamDTOsByPatientId(Long patientId);
+
+    @Query("select new com.prescriptions.taks.prescriptions.dto.PrescriptionDTO(p.id, p.medicineName, p.dosage, p.instructions, p.doctor.id, p.patient.id) "
+            + "from Prescription p where p.id in :ids order by p.id")
+    List<PrescriptionDTO> findDTOsByIdIn(Collection<Long> ids);
+
+    @Query("select p.id as id, p.medicineName as medicineName from Prescription p where p.id > :afterId order by p.id")
+    List<MedicineNameView> findMedicineNamesAfter(Long afterId, Limit limit);
+
+    @Query("select p.id as id, p.medicineName as medicineName, p.doctor.id as doctorId, p.patient.id as patientId, p.createdAt as createdAt "
+            + "from Prescription p where p.id > :afterId and p.id <= :lastId order by p.id")
+    List<StatsView> findStatsRowsBetween(Long afterId, Long lastId, Limit limit);
+
+    /**
+     * Returns the highest prescription ID, one per shard when sharded; an element is {@code null} for an empty table.
+     */
+    @Query("select max(p.id) from Prescription p")
+    List<Long> findMaxIds();
+
+    @Query("select p.medicineName from Prescription p where p.patient.id = :patientId")
+    List<String> findMedicineNamesByPatientId(Long patientId);
 }
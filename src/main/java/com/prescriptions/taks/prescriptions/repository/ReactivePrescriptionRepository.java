@@ -0,0 +1,82 @@
+package com.prescriptions.taks.prescriptions.repository;
+
+import com.prescriptions.taks.prescriptions.dto.PrescriptionDTO;
+import io.r2dbc.spi.Readable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Non-blocking reads of prescriptions over R2DBC for the reactive API.
+ * <p>
+ * Rows are mapped straight to {@link PrescriptionDTO}s, like the JPQL projections of {@link PrescriptionRepository},
+ * and are pulled from the driver only as fast as the subscriber requests them, so a slow client holds neither a
+ * thread nor the whole result. {@code prescriptions.reactive.fetch-size} is passed to the driver as a hint for how
+ * many rows to read per round trip.
+ * </p>
+ * <p>
+ * A query that emits no row for {@code prescriptions.reactive.idle-timeout} is cancelled and fails with a
+ * {@link QueryTimeoutException}. Besides bounding slow queries, this gives the connection back to the pool when the
+ * HTTP client went away without the cancellation reaching the query, which otherwise keeps it acquired for good.
+ * </p>
+ */
+@Repository
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactivePrescriptionRepository {
+
+    private static final String SELECT = "SELECT id, medicine_name, dosage, instructions, doctor_id, patient_id FROM prescription ";
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Value("${prescriptions.reactive.fetch-size:1000}")
+    private int fetchSize;
+
+    @Value("${prescriptions.reactive.idle-timeout:30s}")
+    private Duration idleTimeout;
+
+    public Flux<PrescriptionDTO> findDTOsByDoctorId(Long doctorId) {
+        return query(SELECT + "WHERE doctor_id = :ownerId ORDER BY id", doctorId, 0, 0);
+    }
+
+    public Flux<PrescriptionDTO> findDTOsByPatientId(Long patientId) {
+        return query(SELECT + "WHERE patient_id = :ownerId ORDER BY id", patientId, 0, 0);
+    }
+
+    public Flux<PrescriptionDTO> findDTOPageByDoctorId(Long doctorId, long after, int limit) {
+        return query(SELECT + "WHERE doctor_id = :ownerId AND id > :after ORDER BY id LIMIT :limit", doctorId, after, limit);
+    }
+
+    public Flux<PrescriptionDTO> findDTOPageByPatientId(Long patientId, long after, int limit) {
+        return query(SELECT + "WHERE patient_id = :ownerId AND id > :after ORDER BY id LIMIT :limit", patientId, after, limit);
+    }
+
+    private Flux<PrescriptionDTO> query(String sql, Long ownerId, long after, int limit) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql)
+                .bind("ownerId", ownerId)
+                .filter(statement -> statement.fetchSize(limit > 0 ? Math.min(limit, fetchSize) : fetchSize));
+        if (limit > 0) {
+            spec = spec.bind("after", after).bind("limit", limit);
+        }
+        return spec.map(ReactivePrescriptionRepository::toDTO).all()
+                .timeout(idleTimeout)
+                .onErrorMap(TimeoutException.class, e -> new QueryTimeoutException("No row within " + idleTimeout, e));
+    }
+
+    private static PrescriptionDTO toDTO(Readable row) {
+        return new PrescriptionDTO(
+                row.get("id", Long.class),
+                row.get("medicine_name", String.class),
+                row.get("dosage", String.class),
+                row.get("instructions", String.class),
+                row.get("doctor_id", Long.class),
+                row.get("patient_id", Long.class));
+    }
+}
@@ -0,0 +1,21 @@
+package com.prescriptions.taks.prescriptions.repository;
+
+import com.prescriptions.taks.prescriptions.entities.RevokedToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, Long> {
+
+    @Query("select t.tokenId from RevokedToken t where t.expiresAt > :now")
+    List<Long> findUnexpiredTokenIds(Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("delete from RevokedToken t where t.expiresAt <= :now")
+    int deleteExpired(Instant now);
+}
@@ -0,0 +1,11 @@
+package com.prescriptions.taks.prescriptions.repository;
+
+import com.prescriptions.taks.prescriptions.entities.User;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+
+public interface UserRepository extends JpaRepository<User, Long> {
+
+    Optional<User> findFirstByUsernameOrderByIdAsc(String username);
+}
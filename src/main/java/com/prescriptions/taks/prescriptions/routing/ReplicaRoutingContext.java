@@ -0,0 +1,25 @@
+package com.prescriptions.taks.prescriptions.routing;
+
+/**
+ * Per-thread override that sends read-only transactions to the primary database instead of a replica.
+ * Set for the duration of a request by {@link com.prescriptions.taks.prescriptions.filter.ReadYourWritesFilter}.
+ */
+public final class ReplicaRoutingContext {
+
+    private static final ThreadLocal<Boolean> PRIMARY_REQUIRED = new ThreadLocal<>();
+
+    private ReplicaRoutingContext() {
+    }
+
+    public static void requirePrimary() {
+        PRIMARY_REQUIRED.set(Boolean.TRUE);
+    }
+
+    public static boolean isPrimaryRequired() {
+        return PRIMARY_REQUIRED.get() != null;
+    }
+
+    public static void clear() {
+        PRIMARY_REQUIRED.remove();
+    }
+}
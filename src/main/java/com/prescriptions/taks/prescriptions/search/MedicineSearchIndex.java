@@ -0,0 +1,233 @@
+package com.prescriptions.taks.prescriptions.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index from medicine name terms to prescription IDs.
+ * <p>
+ * Names and queries go through the same normalization: Unicode decomposition with accents removed,
+ * lower case, and splitting on anything that is not a letter or digit, so {@code "Ibuprofén-400"} is
+ * indexed as {@code ibuprofen} and {@code 400}. Terms are kept in a sorted concurrent map, which makes a
+ * prefix query a range scan. A query with several terms returns the prescriptions matching all of them.
+ * </p>
+ * <p>
+ * Adds are safe from any thread and concurrent with searches. Nothing is ever removed; callers resolve
+ * the returned IDs against the database, which drops prescriptions that no longer exist.
+ * </p>
+ */
+public class MedicineSearchIndex {
+
+    public enum Mode {
+        /** The term matches an indexed term exactly. */
+        EXACT,
+        /** The term is a prefix of an indexed term. */
+        PREFIX,
+        /** The term is within a small edit distance of an indexed term, scaled by the term length. */
+        FUZZY
+    }
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final long[] NONE = new long[0];
+    private static final long END = Long.MAX_VALUE;
+
+    private final ConcurrentSkipListMap<String, PostingList> postings = new ConcurrentSkipListMap<>();
+
+    /**
+     * Indexes every term of {@code medicineName} for the given prescription. Adding the same pair again has no effect.
+     */
+    public void add(long id, String medicineName) {
+        for (String term : terms(medicineName)) {
+            postings.computeIfAbsent(term, key -> new PostingList()).add(id);
+        }
+    }
+
+    /**
+     * Returns the first {@code limit} IDs greater than {@code after} of the prescriptions whose medicine name matches
+     * every term of {@code query}, in ascending order.
+     * <p>
+     * The posting lists are walked in ID order from the cursor, so a page costs about {@code limit} binary searches
+     * per matched term however many prescriptions match after it.
+     * </p>
+     */
+    public long[] search(String query, Mode mode, long after, int limit) {
+        List<String> queryTerms = terms(query);
+        if (queryTerms.isEmpty() || limit <= 0) {
+            return NONE;
+        }
+        List<Cursor> cursors = new ArrayList<>(queryTerms.size());
+        for (String term : queryTerms) {
+            Cursor cursor = new Cursor(match(term, mode), after);
+            if (cursor.current() == END) {
+                return NONE;
+            }
+            cursors.add(cursor);
+        }
+        long[] result = new long[Math.min(limit, 64)];
+        int size = 0;
+        long id = after;
+        while (size < limit) {
+            // Leapfrog: move every term's cursor to the candidate until all of them agree on it.
+            id = cursors.get(0).seek(id);
+            int agreeing = 1;
+            for (int i = 1 % cursors.size(); id != END && agreeing < cursors.size(); i = (i + 1) % cursors.size()) {
+                long next = cursors.get(i).seek(id - 1);
+                if (next == id) {
+                    agreeing++;
+                } else {
+                    id = next;
+                    agreeing = 1;
+                }
+            }
+            if (id == END) {
+                break;
+            }
+            if (size == result.length) {
+                result = Arrays.copyOf(result, (int) Math.min(limit, 2L * size));
+            }
+            result[size++] = id;
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    public int termCount() {
+        return postings.size();
+    }
+
+    /**
+     * Splits {@code text} into normalized index terms.
+     */
+    public static List<String> terms(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        String folded = COMBINING_MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        List<String> terms = new ArrayList<>();
+        for (String term : SEPARATORS.split(folded.toLowerCase(Locale.ROOT))) {
+            if (!term.isEmpty()) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    private Collection<PostingList> match(String term, Mode mode) {
+        switch (mode) {
+            case EXACT: {
+                PostingList list = postings.get(term);
+                return list == null ? List.of() : List.of(list);
+            }
+            case PREFIX:
+                return postings.subMap(term, true, term + Character.MAX_VALUE, false).values();
+            default: {
+                int maxEdits = maxEdits(term.length());
+                List<PostingList> lists = new ArrayList<>();
+                // The term dictionary is small compared to the postings, so a scan bounded by length is cheap.
+                for (Map.Entry<String, PostingList> entry : postings.entrySet()) {
+                    String candidate = entry.getKey();
+                    if (Math.abs(candidate.length() - term.length()) <= maxEdits
+                            && editDistance(term, candidate, maxEdits) <= maxEdits) {
+                        lists.add(entry.getValue());
+                    }
+                }
+                return lists;
+            }
+        }
+    }
+
+    static int maxEdits(int termLength) {
+        if (termLength <= 2) {
+            return 0;
+        }
+        return termLength <= 5 ? 1 : 2;
+    }
+
+    /**
+     * Levenshtein distance between {@code a} and {@code b}, or {@code max + 1} as soon as it is known to exceed {@code max}.
+     */
+    static int editDistance(String a, String b, int max) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    /**
+     * Walks the union of the posting lists matched by one query term in ascending ID order, keeping the next ID of
+     * each list in a heap.
+     */
+    private static final class Cursor {
+
+        private final PriorityQueue<Head> heads = new PriorityQueue<>();
+
+        Cursor(Collection<PostingList> lists, long after) {
+            for (PostingList list : lists) {
+                long id = list.nextAfter(after);
+                if (id != END) {
+                    heads.add(new Head(list, id));
+                }
+            }
+        }
+
+        long current() {
+            Head head = heads.peek();
+            return head == null ? END : head.id;
+        }
+
+        /**
+         * Moves to the smallest ID greater than {@code after} and returns it, or {@link #END} if there is none.
+         */
+        long seek(long after) {
+            while (!heads.isEmpty() && heads.peek().id <= after) {
+                Head head = heads.poll();
+                head.id = head.list.nextAfter(after);
+                if (head.id != END) {
+                    heads.add(head);
+                }
+            }
+            return current();
+        }
+    }
+
+    private static final class Head implements Comparable<Head> {
+
+        private final PostingList list;
+        private long id;
+
+        Head(PostingList list, long id) {
+            this.list = list;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Head other) {
+            return Long.compare(id, other.id);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.prescriptions.taks.prescriptions.search;
+
+import java.util.Arrays;
+
+/**
+ * Sorted, duplicate-free list of prescription IDs for one term.
+ * IDs come from a sequence, so adds are almost always appends; out-of-order IDs from concurrent
+ * writers or from a rebuild racing with new rows are inserted in place.
+ */
+final class PostingList {
+
+    private long[] ids = new long[4];
+    private int size;
+
+    synchronized void add(long id) {
+        if (size == 0 || ids[size - 1] < id) {
+            ensureCapacity();
+            ids[size++] = id;
+            return;
+        }
+        int position = Arrays.binarySearch(ids, 0, size, id);
+        if (position >= 0) {
+            return;
+        }
+        int insertAt = -position - 1;
+        ensureCapacity();
+        System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+        ids[insertAt] = id;
+        size++;
+    }
+
+    /**
+     * Returns the smallest ID greater than {@code after}, or {@link Long#MAX_VALUE} if there is none.
+     */
+    synchronized long nextAfter(long after) {
+        int position = Arrays.binarySearch(ids, 0, size, after);
+        int from = position >= 0 ? position + 1 : -position - 1;
+        return from < size ? ids[from] : Long.MAX_VALUE;
+    }
+
+    private void ensureCapacity() {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size + (size >> 1));
+        }
+    }
+}
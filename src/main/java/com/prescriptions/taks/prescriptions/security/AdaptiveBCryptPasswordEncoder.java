@@ -0,0 +1,179 @@
+package com.prescriptions.taks.prescriptions.security;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A bcrypt {@link PasswordEncoder} whose cost follows a target hash time.
+ * <p>
+ * Each bcrypt cost step doubles the work. At startup the encoder picks the highest cost between {@code minCost} and
+ * {@code maxCost} that hashes within {@code targetLatency} on this machine. Afterwards it keeps a moving average of
+ * the time new hashes take and steps the cost up when the next step would still be within the target, or down when
+ * hashes take more than twice the target, never below {@code minCost}. Encoded passwords carry their cost, so
+ * changing it never breaks verification; {@link #upgradeEncoding(String)} reports hashes below the current cost so
+ * a login can rehash them.
+ * </p>
+ * <p>
+ * Hash times are published as the {@code password.hash} timer, tagged with the operation and cost, and the current
+ * cost as the {@code password.hash.cost} gauge.
+ * </p>
+ */
+public class AdaptiveBCryptPasswordEncoder implements PasswordEncoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveBCryptPasswordEncoder.class);
+
+    private static final Pattern BCRYPT = Pattern.compile("\\A\\$2[aby]?\\$(\\d\\d)\\$[./0-9A-Za-z]{53}");
+    private static final double SMOOTHING = 0.2;
+    private static final int SAMPLES_BEFORE_ADJUSTING = 8;
+
+    private final int minCost;
+    private final int maxCost;
+    private final long targetNanos;
+    private final SecureRandom random = new SecureRandom();
+    private final MeterRegistry meterRegistry;
+
+    private volatile int cost;
+    private double averageNanos;
+    private int samples;
+
+    /**
+     * @param minCost       The lowest cost ever used, at least 4.
+     * @param maxCost       The highest cost ever used, at most 31.
+     * @param targetLatency The time one hash should take.
+     * @param meterRegistry Where to publish hash times, or {@code null}.
+     */
+    public AdaptiveBCryptPasswordEncoder(int minCost, int maxCost, Duration targetLatency, MeterRegistry meterRegistry) {
+        if (minCost < 4 || maxCost > 31 || minCost > maxCost) {
+            throw new IllegalArgumentException("bcrypt cost must be between 4 and 31, got " + minCost + ".." + maxCost);
+        }
+        this.minCost = minCost;
+        this.maxCost = maxCost;
+        this.targetNanos = targetLatency.toNanos();
+        this.meterRegistry = meterRegistry;
+        this.cost = calibrate();
+        if (meterRegistry != null) {
+            Gauge.builder("password.hash.cost", this, AdaptiveBCryptPasswordEncoder::getCost)
+                    .description("bcrypt cost of newly hashed passwords")
+                    .register(meterRegistry);
+        }
+        logger.atInfo()
+                .addKeyValue("cost", cost)
+                .addKeyValue("targetMs", targetLatency.toMillis())
+                .log("Calibrated password hashing");
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        int currentCost = cost;
+        long start = System.nanoTime();
+        String encoded = BCrypt.hashpw(rawPassword.toString(), BCrypt.gensalt(currentCost, random));
+        long elapsed = System.nanoTime() - start;
+        record("hash", currentCost, elapsed);
+        adjust(currentCost, elapsed);
+        return encoded;
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        int encodedCost = costOf(encodedPassword);
+        if (encodedCost < 0) {
+            return false;
+        }
+        long start = System.nanoTime();
+        boolean matches = BCrypt.checkpw(rawPassword.toString(), encodedPassword);
+        record("verify", encodedCost, System.nanoTime() - start);
+        return matches;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        int encodedCost = costOf(encodedPassword);
+        return encodedCost < 0 || encodedCost < cost;
+    }
+
+    /**
+     * Whether a stored password is a bcrypt hash at all, as opposed to plain text from before passwords were hashed.
+     */
+    public boolean isHash(String encodedPassword) {
+        return costOf(encodedPassword) >= 0;
+    }
+
+    /**
+     * The cost new passwords are hashed with.
+     */
+    public int getCost() {
+        return cost;
+    }
+
+    private int calibrate() {
+        int candidate = minCost;
+        while (candidate < maxCost) {
+            long start = System.nanoTime();
+            BCrypt.hashpw("calibration", BCrypt.gensalt(candidate, random));
+            long elapsed = System.nanoTime() - start;
+            if (elapsed * 2 > targetNanos) {
+                break;
+            }
+            candidate++;
+        }
+        return candidate;
+    }
+
+    /**
+     * Folds a hash time at {@code usedCost} into the moving average and moves the cost one step if it is outside
+     * {@code [target / 2, target * 2]}. Samples taken at an older cost are ignored.
+     */
+    private synchronized void adjust(int usedCost, long elapsedNanos) {
+        if (usedCost != cost) {
+            return;
+        }
+        averageNanos = samples == 0 ? elapsedNanos : averageNanos + SMOOTHING * (elapsedNanos - averageNanos);
+        if (++samples < SAMPLES_BEFORE_ADJUSTING) {
+            return;
+        }
+        int next = cost;
+        if (averageNanos * 2 <= targetNanos && cost < maxCost) {
+            next = cost + 1;
+        } else if (averageNanos > targetNanos * 2 && cost > minCost) {
+            next = cost - 1;
+        }
+        if (next != cost) {
+            logger.atInfo()
+                    .addKeyValue("from", cost)
+                    .addKeyValue("to", next)
+                    .addKeyValue("averageMs", Math.round(averageNanos / 1_000_000))
+                    .log("Adjusted password hashing cost");
+            cost = next;
+            samples = 0;
+        }
+    }
+
+    private void record(String operation, int usedCost, long elapsedNanos) {
+        if (meterRegistry != null) {
+            Timer.builder("password.hash")
+                    .description("Time spent computing one bcrypt hash")
+                    .tag("operation", operation)
+                    .tag("cost", Integer.toString(usedCost))
+                    .register(meterRegistry)
+                    .record(Duration.ofNanos(elapsedNanos));
+        }
+    }
+
+    private static int costOf(String encodedPassword) {
+        if (encodedPassword == null) {
+            return -1;
+        }
+        Matcher matcher = BCRYPT.matcher(encodedPassword);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+}
@@ -0,0 +1,57 @@
+package com.prescriptions.taks.prescriptions.security;
+
+/**
+ * The verified claims of a signed token, see {@link TokenSigner}.
+ */
+public final class AuthToken {
+
+    private final long userId;
+    private final String role;
+    private final long tokenId;
+    private final long issuedAt;
+    private final long expiresAt;
+
+    AuthToken(long userId, String role, long tokenId, long issuedAt, long expiresAt) {
+        this.userId = userId;
+        this.role = role;
+        this.tokenId = tokenId;
+        this.issuedAt = issuedAt;
+        this.expiresAt = expiresAt;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    /**
+     * {@code DOCTOR} or {@code PATIENT}.
+     */
+    public String getRole() {
+        return role;
+    }
+
+    /**
+     * A random ID identifying this token, used to revoke it.
+     */
+    public long getTokenId() {
+        return tokenId;
+    }
+
+    /**
+     * Issue time in epoch seconds.
+     */
+    public long getIssuedAt() {
+        return issuedAt;
+    }
+
+    /**
+     * Expiry time in epoch seconds.
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public boolean isExpired(long nowEpochSeconds) {
+        return nowEpochSeconds >= expiresAt;
+    }
+}
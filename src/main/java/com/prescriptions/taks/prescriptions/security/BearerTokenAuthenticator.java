@@ -0,0 +1,128 @@
+package com.prescriptions.taks.prescriptions.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Checks {@code Authorization: Bearer <token>} headers for the servlet and the reactive authentication filters.
+ * <p>
+ * The token is checked without touching the database: its signature and expiry by {@link TokenSigner}, and
+ * revocation against the in-memory {@link TokenRevocationList}. Registration and login stay public. Rejections are
+ * counted as {@code auth.rejected}, tagged with the reason.
+ * </p>
+ */
+public class BearerTokenAuthenticator {
+
+    /**
+     * The request or exchange attribute holding the verified {@link AuthToken}.
+     */
+    public static final String AUTH_TOKEN_ATTRIBUTE = "com.prescriptions.taks.prescriptions.security.AuthToken";
+
+    private static final String BEARER = "Bearer ";
+    private static final String[] PUBLIC_PREFIXES = {"/api/users/register/", "/api/users/login"};
+
+    private final TokenSigner tokenSigner;
+    private final TokenRevocationList revocationList;
+    private final Rejection missing;
+    private final Rejection invalid;
+    private final Rejection expired;
+    private final Rejection revoked;
+
+    public BearerTokenAuthenticator(TokenSigner tokenSigner, TokenRevocationList revocationList, MeterRegistry meterRegistry) {
+        this.tokenSigner = tokenSigner;
+        this.revocationList = revocationList;
+        this.missing = new Rejection("Missing bearer token", rejections(meterRegistry, "missing"));
+        this.invalid = new Rejection("Invalid token", rejections(meterRegistry, "invalid"));
+        this.expired = new Rejection("Token expired", rejections(meterRegistry, "expired"));
+        this.revoked = new Rejection("Token revoked", rejections(meterRegistry, "revoked"));
+    }
+
+    /**
+     * Whether the path, starting at {@code offset} (after any context path), needs no token.
+     */
+    public boolean isPublic(String path, int offset) {
+        for (String prefix : PUBLIC_PREFIXES) {
+            if (path.startsWith(prefix, offset)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Verifies an {@code Authorization} header.
+     *
+     * @param header The header value, or {@code null} if the request has none.
+     * @return An {@link Outcome} holding either the verified token or the reason to answer {@code 401 Unauthorized}.
+     */
+    public Outcome authenticate(String header) {
+        if (header == null || !header.regionMatches(true, 0, BEARER, 0, BEARER.length())) {
+            return missing.reject();
+        }
+        AuthToken token = tokenSigner.verify(header, BEARER.length());
+        if (token == null) {
+            return invalid.reject();
+        }
+        if (token.isExpired(System.currentTimeMillis() / 1000)) {
+            return expired.reject();
+        }
+        if (revocationList.isRevoked(token.getTokenId())) {
+            return revoked.reject();
+        }
+        return new Outcome(token, null);
+    }
+
+    /**
+     * The result of {@link #authenticate(String)}: a verified token, or the message of a rejection.
+     */
+    public static final class Outcome {
+        private final AuthToken token;
+        private final String failure;
+
+        private Outcome(AuthToken token, String failure) {
+            this.token = token;
+            this.failure = failure;
+        }
+
+        /**
+         * The verified token, or {@code null} if the request was rejected.
+         */
+        public AuthToken getToken() {
+            return token;
+        }
+
+        /**
+         * Why the request was rejected, or {@code null} if it was authenticated.
+         */
+        public String getFailure() {
+            return failure;
+        }
+    }
+
+    private static final class Rejection {
+        private final Outcome outcome;
+        private final Counter counter;
+
+        private Rejection(String message, Counter counter) {
+            this.outcome = new Outcome(null, message);
+            this.counter = counter;
+        }
+
+        private Outcome reject() {
+            if (counter != null) {
+                counter.increment();
+            }
+            return outcome;
+        }
+    }
+
+    private static Counter rejections(MeterRegistry meterRegistry, String reason) {
+        if (meterRegistry == null) {
+            return null;
+        }
+        return Counter.builder("auth.rejected")
+                .description("API requests rejected by token authentication")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,54 @@
+package com.prescriptions.taks.prescriptions.security;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * The IDs of revoked tokens that have not expired yet, checked on every authenticated request.
+ * <p>
+ * Revocations are rare and lookups constant, so the IDs are kept as a sorted {@code long[]} that is replaced
+ * wholesale on every change. A lookup is a binary search over a volatile read, without locks, boxing or allocation.
+ * </p>
+ */
+public class TokenRevocationList {
+
+    private volatile long[] revoked = new long[0];
+
+    public boolean isRevoked(long tokenId) {
+        return Arrays.binarySearch(revoked, tokenId) >= 0;
+    }
+
+    /**
+     * Adds one token ID, for a revocation made by this instance.
+     */
+    public synchronized void add(long tokenId) {
+        long[] current = revoked;
+        int index = Arrays.binarySearch(current, tokenId);
+        if (index >= 0) {
+            return;
+        }
+        int insertAt = -index - 1;
+        long[] next = new long[current.length + 1];
+        System.arraycopy(current, 0, next, 0, insertAt);
+        next[insertAt] = tokenId;
+        System.arraycopy(current, insertAt, next, insertAt + 1, current.length - insertAt);
+        revoked = next;
+    }
+
+    /**
+     * Replaces the list with the revocations currently stored, dropping tokens that have expired since.
+     */
+    public synchronized void replace(Collection<Long> tokenIds) {
+        long[] next = new long[tokenIds.size()];
+        int i = 0;
+        for (Long tokenId : tokenIds) {
+            next[i++] = tokenId;
+        }
+        Arrays.sort(next);
+        revoked = next;
+    }
+
+    public int size() {
+        return revoked.length;
+    }
+}
@@ -0,0 +1,222 @@
+package com.prescriptions.taks.prescriptions.security;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Issues and verifies stateless HMAC-SHA256 signed tokens.
+ * <p>
+ * A token is {@code base64url(payload) "." base64url(signature)}, 90 characters in total. The payload is 34 bytes:
+ * a version byte, a role byte, then the user ID, a random token ID, and the issue and expiry times in epoch seconds
+ * as big-endian longs. The signature covers the encoded payload.
+ * </p>
+ * <p>
+ * Verification runs on every API request, so it is pure CPU and allocates nothing but the returned {@link AuthToken}:
+ * the token is decoded by hand into scratch buffers, and the initialized {@link Mac} and buffers are borrowed from a
+ * small lock-free pool rather than a thread local, which would be rebuilt for every request on virtual threads.
+ * </p>
+ */
+public class TokenSigner {
+
+    public static final int TOKEN_LENGTH = 90;
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final byte VERSION = 1;
+    private static final int PAYLOAD_BYTES = 34;
+    private static final int PAYLOAD_CHARS = 46;
+    private static final int SIGNATURE_BYTES = 32;
+    private static final String[] ROLES = {null, "DOCTOR", "PATIENT"};
+    private static final int[] BASE64URL = new int[128];
+
+    static {
+        Arrays.fill(BASE64URL, -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64URL[alphabet.charAt(i)] = i;
+        }
+    }
+
+    private final SecretKeySpec key;
+    private final SecureRandom random = new SecureRandom();
+    private final AtomicReferenceArray<Scratch> pool;
+    private final int poolMask;
+
+    /**
+     * @param secret The HMAC key, at least 32 bytes.
+     */
+    public TokenSigner(byte[] secret) {
+        if (secret.length < 32) {
+            throw new IllegalArgumentException("Token secret must be at least 32 bytes, got " + secret.length);
+        }
+        this.key = new SecretKeySpec(secret, ALGORITHM);
+        int size = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 4) - 1) << 1;
+        this.pool = new AtomicReferenceArray<>(size);
+        this.poolMask = size - 1;
+        release(newScratch());
+    }
+
+    /**
+     * Issues a token for a user.
+     *
+     * @param userId The user the token authenticates.
+     * @param role   {@code DOCTOR} or {@code PATIENT}.
+     * @param ttl    How long the token stays valid.
+     * @return The token, to be sent as {@code Authorization: Bearer <token>}.
+     */
+    public String issue(long userId, String role, Duration ttl) {
+        long issuedAt = Instant.now().getEpochSecond();
+        ByteBuffer payload = ByteBuffer.allocate(PAYLOAD_BYTES)
+                .put(VERSION)
+                .put(roleCode(role))
+                .putLong(userId)
+                .putLong(random.nextLong())
+                .putLong(issuedAt)
+                .putLong(issuedAt + ttl.toSeconds());
+        String encodedPayload = Base64.getUrlEncoder().withoutPadding().encodeToString(payload.array());
+        Scratch scratch = acquire();
+        try {
+            byte[] signature = scratch.mac.doFinal(encodedPayload.getBytes(StandardCharsets.US_ASCII));
+            return encodedPayload + '.' + Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+        } finally {
+            release(scratch);
+        }
+    }
+
+    /**
+     * Checks the format and signature of a token. Expiry and revocation are left to the caller.
+     *
+     * @param token  The characters holding the token.
+     * @param offset Where the token starts, for example after {@code "Bearer "}.
+     * @return The claims, or {@code null} if the token is malformed or not signed with this key.
+     */
+    public AuthToken verify(CharSequence token, int offset) {
+        if (token.length() - offset != TOKEN_LENGTH || token.charAt(offset + PAYLOAD_CHARS) != '.') {
+            return null;
+        }
+        Scratch scratch = acquire();
+        try {
+            byte[] ascii = scratch.ascii;
+            for (int i = 0; i < PAYLOAD_CHARS; i++) {
+                char c = token.charAt(offset + i);
+                if (c >= 128) {
+                    return null;
+                }
+                ascii[i] = (byte) c;
+            }
+            scratch.mac.update(ascii, 0, PAYLOAD_CHARS);
+            scratch.mac.doFinal(scratch.expected, 0);
+            if (decode(token, offset + PAYLOAD_CHARS + 1, TOKEN_LENGTH - PAYLOAD_CHARS - 1, scratch.signature) != SIGNATURE_BYTES
+                    || !MessageDigest.isEqual(scratch.expected, scratch.signature)) {
+                return null;
+            }
+            byte[] payload = scratch.payload;
+            if (decode(token, offset, PAYLOAD_CHARS, payload) != PAYLOAD_BYTES || payload[0] != VERSION
+                    || payload[1] <= 0 || payload[1] >= ROLES.length) {
+                return null;
+            }
+            return new AuthToken(readLong(payload, 2), ROLES[payload[1]], readLong(payload, 10),
+                    readLong(payload, 18), readLong(payload, 26));
+        } catch (ShortBufferException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            release(scratch);
+        }
+    }
+
+    private static byte roleCode(String role) {
+        for (byte i = 1; i < ROLES.length; i++) {
+            if (ROLES[i].equals(role)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown role " + role);
+    }
+
+    /**
+     * Decodes unpadded base64url into {@code out}, returning the number of bytes or -1 for invalid input.
+     */
+    private static int decode(CharSequence in, int from, int length, byte[] out) {
+        int bits = 0;
+        int bitCount = 0;
+        int written = 0;
+        for (int i = from; i < from + length; i++) {
+            char c = in.charAt(i);
+            int value = c < 128 ? BASE64URL[c] : -1;
+            if (value < 0) {
+                return -1;
+            }
+            bits = (bits << 6) | value;
+            bitCount += 6;
+            if (bitCount >= 8) {
+                bitCount -= 8;
+                if (written == out.length) {
+                    return -1;
+                }
+                out[written++] = (byte) (bits >> bitCount);
+            }
+        }
+        // Canonical encodings only: unused trailing bits must be zero, so every token has exactly one spelling.
+        return (bits & ((1 << bitCount) - 1)) == 0 ? written : -1;
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            value = (value << 8) | (bytes[i] & 0xFF);
+        }
+        return value;
+    }
+
+    private Scratch acquire() {
+        int start = (int) Thread.currentThread().getId();
+        for (int i = 0; i < 4; i++) {
+            Scratch scratch = pool.getAndSet((start + i) & poolMask, null);
+            if (scratch != null) {
+                return scratch;
+            }
+        }
+        return newScratch();
+    }
+
+    private void release(Scratch scratch) {
+        int start = (int) Thread.currentThread().getId();
+        for (int i = 0; i < 4; i++) {
+            if (pool.compareAndSet((start + i) & poolMask, null, scratch)) {
+                return;
+            }
+        }
+    }
+
+    private Scratch newScratch() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return new Scratch(mac);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Scratch {
+        private final Mac mac;
+        private final byte[] ascii = new byte[PAYLOAD_CHARS];
+        private final byte[] payload = new byte[PAYLOAD_BYTES];
+        private final byte[] expected = new byte[SIGNATURE_BYTES];
+        private final byte[] signature = new byte[SIGNATURE_BYTES];
+
+        private Scratch(Mac mac) {
+            this.mac = mac;
+        }
+    }
+}
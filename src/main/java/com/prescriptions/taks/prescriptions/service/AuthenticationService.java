@@ -0,0 +1,160 @@
+package com.prescriptions.taks.prescriptions.service;
+
+import com.prescriptions.taks.prescriptions.dto.TokenDTO;
+import com.prescriptions.taks.prescriptions.entities.RevokedToken;
+import com.prescriptions.taks.prescriptions.entities.User;
+import com.prescriptions.taks.prescriptions.repository.RevokedTokenRepository;
+import com.prescriptions.taks.prescriptions.repository.UserRepository;
+import com.prescriptions.taks.prescriptions.security.AuthToken;
+import com.prescriptions.taks.prescriptions.security.TokenRevocationList;
+import com.prescriptions.taks.prescriptions.security.TokenSigner;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs users in with their password and revokes their tokens.
+ * <p>
+ * Login is the only step that reads the user from the database; every later request is authenticated from the
+ * signed token alone. Revocations are stored in the database and this instance's {@link TokenRevocationList} is
+ * reloaded from it every {@code prescriptions.auth.revocation-refresh}, so a token revoked on another instance is
+ * rejected here after at most that delay.
+ * </p>
+ */
+@Service
+public class AuthenticationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuthenticationService.class);
+
+    private static final Duration PURGE_INTERVAL = Duration.ofHours(1);
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private TokenSigner tokenSigner;
+
+    @Autowired
+    private TokenRevocationList revocationList;
+
+    @Value("${prescriptions.auth.token-ttl:1h}")
+    private Duration tokenTtl;
+
+    @Value("${prescriptions.auth.revocation-refresh:5s}")
+    private Duration revocationRefresh;
+
+    private ScheduledExecutorService refresher;
+    private String unknownUserHash;
+    private long nextPurgeMillis;
+
+    @PostConstruct
+    void start() {
+        unknownUserHash = join(passwordHashingService.hash(UUID.randomUUID().toString()));
+        refreshRevocations();
+        refresher = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("token-revocation-"));
+        refresher.scheduleWithFixedDelay(this::refreshRevocations, revocationRefresh.toMillis(),
+                revocationRefresh.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * Checks a username and password and issues a token.
+     * <p>
+     * Unknown usernames are checked against a dummy hash so they take as long as a wrong password. Passwords
+     * stored in plain text, or hashed with a lower cost than the current one, are rehashed on success.
+     * </p>
+     *
+     * @return The token, or empty if the credentials are wrong.
+     * @throws RejectedExecutionException if password hashing is saturated.
+     */
+    public Optional<TokenDTO> login(String username, String password) {
+        if (username == null || password == null) {
+            return Optional.empty();
+        }
+        User user = userRepository.findFirstByUsernameOrderByIdAsc(username).orElse(null);
+        String stored = user == null || user.getPassword() == null ? unknownUserHash : user.getPassword();
+
+        boolean matches;
+        if (passwordHashingService.isHashed(stored)) {
+            matches = join(passwordHashingService.matches(password, stored));
+        } else {
+            matches = MessageDigest.isEqual(stored.getBytes(StandardCharsets.UTF_8), password.getBytes(StandardCharsets.UTF_8));
+        }
+        if (user == null || !matches) {
+            return Optional.empty();
+        }
+        if (passwordHashingService.needsRehash(stored)) {
+            user.setPassword(join(passwordHashingService.hash(password)));
+            userRepository.save(user);
+        }
+
+        TokenDTO token = new TokenDTO();
+        token.setToken(tokenSigner.issue(user.getId(), user.getRole(), tokenTtl));
+        token.setExpiresAt(tokenSigner.verify(token.getToken(), 0).getExpiresAt());
+        return Optional.of(token);
+    }
+
+    /**
+     * Revokes a token until it expires, on this instance immediately and on the others at their next refresh.
+     */
+    public void revoke(AuthToken token) {
+        revokedTokenRepository.save(new RevokedToken(token.getTokenId(), Instant.ofEpochSecond(token.getExpiresAt())));
+        revocationList.add(token.getTokenId());
+        logger.atInfo()
+                .addKeyValue("userId", token.getUserId())
+                .addKeyValue("tokenId", token.getTokenId())
+                .log("Revoked token");
+    }
+
+    void refreshRevocations() {
+        try {
+            Instant now = Instant.now();
+            if (now.toEpochMilli() >= nextPurgeMillis) {
+                revokedTokenRepository.deleteExpired(now);
+                nextPurgeMillis = now.toEpochMilli() + PURGE_INTERVAL.toMillis();
+            }
+            revocationList.replace(revokedTokenRepository.findUnexpiredTokenIds(now));
+        } catch (RuntimeException e) {
+            logger.warn("Could not refresh token revocations, keeping the previous list", e);
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.prescriptions.taks.prescriptions.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.prescriptions.taks.prescriptions.entities.IdempotencyKey;
+import com.prescriptions.taks.prescriptions.repository.IdempotencyKeyRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Runs requests that carry an idempotency key at most once and replays their response to retries.
+ * <p>
+ * Keys are kept in two places. In memory, each key maps to the future response of the request that got there
+ * first; a concurrent retry finds the future and waits on it instead of running the request again. The map is a
+ * Caffeine cache, so a claim is a lock-free {@code putIfAbsent} on one hash bin and unrelated keys never contend.
+ * In the database, the first request inserts the key in the same transaction as its work, so retries that reach
+ * another instance, or arrive after a restart, run into the primary key and replay the stored response.
+ * </p>
+ * <p>
+ * A key reused with a different request is reported as a mismatch. A request that fails releases its key, so it can
+ * be retried. Keys expire after {@code prescriptions.idempotency.ttl}.
+ * </p>
+ */
+@Service
+public class IdempotencyService {
+
+    private static final Duration PURGE_INTERVAL = Duration.ofMinutes(10);
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${prescriptions.idempotency.ttl:24h}")
+    private Duration ttl;
+
+    @Value("${prescriptions.idempotency.max-keys:100000}")
+    private long maxKeys;
+
+    private Cache<String, CompletableFuture<StoredResponse>> inFlight;
+    private final AtomicLong nextPurgeMillis = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        inFlight = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * Runs {@code action} unless a request with the same key has already run, or is running, and returns its response.
+     *
+     * @param key         The client's idempotency key.
+     * @param requestHash A hash of the request, see {@link #hash(Object...)}, to detect a key reused for another request.
+     * @param type        The response type, used to read a stored response back.
+     * @param action      The work to run; it joins the transaction that persists the key.
+     * @return The response, whether it was replayed, or a mismatch.
+     */
+    public <T> Result<T> execute(String key, String requestHash, Class<T> type, Supplier<T> action) {
+        CompletableFuture<StoredResponse> claim = new CompletableFuture<>();
+        CompletableFuture<StoredResponse> existing = inFlight.asMap().putIfAbsent(key, claim);
+        if (existing != null) {
+            return replay(join(existing), requestHash, type);
+        }
+
+        purgeExpired();
+        try {
+            ResponseHolder<T> holder = new ResponseHolder<>();
+            StoredResponse stored;
+            try {
+                stored = transactionTemplate.execute(status -> {
+                    IdempotencyKey record = idempotencyKeyRepository.saveAndFlush(new IdempotencyKey(key, requestHash, Instant.now()));
+                    holder.body = action.get();
+                    record.setResponseBody(write(holder.body));
+                    return new StoredResponse(requestHash, record.getResponseBody());
+                });
+            } catch (DataIntegrityViolationException e) {
+                // Claimed by another instance, or before a restart.
+                IdempotencyKey record = idempotencyKeyRepository.findById(key).orElseThrow(() -> e);
+                stored = new StoredResponse(record.getRequestHash(), record.getResponseBody());
+                claim.complete(stored);
+                return replay(stored, requestHash, type);
+            }
+            claim.complete(stored);
+            return new Result<>(holder.body, false, false);
+        } catch (RuntimeException e) {
+            inFlight.asMap().remove(key, claim);
+            claim.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Hashes request fields into a fingerprint for {@link #execute}.
+     */
+    public static String hash(Object... fields) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Object field : fields) {
+                digest.update(String.valueOf(field).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private <T> Result<T> replay(StoredResponse stored, String requestHash, Class<T> type) {
+        if (!stored.requestHash.equals(requestHash)) {
+            return new Result<>(null, false, true);
+        }
+        try {
+            return new Result<>(objectMapper.readValue(stored.body, type), true, false);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String write(Object body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static StoredResponse join(CompletableFuture<StoredResponse> response) {
+        try {
+            return response.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Deletes expired keys from the database, at most once per {@link #PURGE_INTERVAL} across all request threads.
+     */
+    private void purgeExpired() {
+        long now = System.currentTimeMillis();
+        long due = nextPurgeMillis.get();
+        if (now >= due && nextPurgeMillis.compareAndSet(due, now + PURGE_INTERVAL.toMillis())) {
+            idempotencyKeyRepository.deleteCreatedBefore(Instant.now().minus(ttl));
+        }
+    }
+
+    private static final class StoredResponse {
+        private final String requestHash;
+        private final String body;
+
+        private StoredResponse(String requestHash, String body) {
+            this.requestHash = requestHash;
+            this.body = body;
+        }
+    }
+
+    private static final class ResponseHolder<T> {
+        private T body;
+    }
+
+    /**
+     * The outcome of {@link #execute}.
+     */
+    public static final class Result<T> {
+        private final T body;
+        private final boolean replayed;
+        private final boolean mismatch;
+
+        private Result(T body, boolean replayed, boolean mismatch) {
+            this.body = body;
+            this.replayed = replayed;
+            this.mismatch = mismatch;
+        }
+
+        /**
+         * The response, {@code null} on a mismatch.
+         */
+        public T getBody() {
+            return body;
+        }
+
+        /**
+         * Whether the response is the stored one of an earlier request.
+         */
+        public boolean isReplayed() {
+            return replayed;
+        }
+
+        /**
+         * Whether the key was first used for a different request.
+         */
+        public boolean isMismatch() {
+            return mismatch;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.prescriptions.taks.prescriptions.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.prescriptions.taks.prescriptions.entities.Prescription;
+import com.prescriptions.taks.prescriptions.event.PrescriptionsCreatedEvent;
+import com.prescriptions.taks.prescriptions.interaction.InteractionRuleSet;
+import com.prescriptions.taks.prescriptions.interaction.InteractionWarning;
+import com.prescriptions.taks.prescriptions.repository.PrescriptionRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Checks a new prescription against the patient's existing prescriptions for known drug-drug interactions.
+ * <p>
+ * Rules are compiled once from {@code prescriptions.interactions.rules} into an {@link InteractionRuleSet}.
+ * The rule medicines each patient already takes are kept as a {@link BitSet} in a bounded cache, loaded with one
+ * query on a miss and extended from {@link PrescriptionsCreatedEvent}s afterwards, so a check normally touches
+ * no database at all. Cached sets are replaced rather than modified, so checks never see a set being written.
+ * </p>
+ * <p>
+ * Events only come from this instance, so a set misses prescriptions created on other instances until it is
+ * reloaded. Every set is therefore reloaded {@code prescriptions.interactions.ttl} after it was loaded, however
+ * often it is read or extended in between; that is the longest a prescription from another instance can go
+ * unchecked.
+ * </p>
+ */
+@Service
+public class InteractionCheckService {
+
+    private static final Logger logger = LoggerFactory.getLogger(InteractionCheckService.class);
+
+    @Autowired
+    private PrescriptionRepository prescriptionRepository;
+
+    @Value("${prescriptions.interactions.rules:classpath:interactions/rules.txt}")
+    private Resource rules;
+
+    @Value("${prescriptions.interactions.max-patients:100000}")
+    private long maxPatients;
+
+    @Value("${prescriptions.interactions.ttl:1m}")
+    private Duration ttl;
+
+    private InteractionRuleSet ruleSet;
+    private Cache<Long, BitSet> patientMedicines;
+
+    @PostConstruct
+    void loadRules() throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(rules.getInputStream(), StandardCharsets.UTF_8))) {
+            ruleSet = InteractionRuleSet.parse(reader);
+        }
+        patientMedicines = Caffeine.newBuilder()
+                .maximumSize(maxPatients)
+                .expireAfter(new Expiry<Long, BitSet>() {
+                    @Override
+                    public long expireAfterCreate(Long patientId, BitSet medicines, long currentTime) {
+                        return ttl.toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Long patientId, BitSet medicines, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(Long patientId, BitSet medicines, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+        logger.atInfo()
+                .addKeyValue("medicines", ruleSet.medicineCount())
+                .addKeyValue("rules", ruleSet.ruleCount())
+                .log("Loaded interaction rules");
+    }
+
+    /**
+     * Returns the interactions between {@code medicineName} and the prescriptions the patient already has.
+     *
+     * @param patientId    The ID of the patient, or {@code null} if the prescription has none.
+     * @param medicineName The medicine of the new prescription.
+     * @return The interactions found, empty if there are none.
+     */
+    public List<InteractionWarning> check(Long patientId, String medicineName) {
+        int medicineId = ruleSet.medicineId(medicineName);
+        if (patientId == null || medicineId < 0) {
+            return List.of();
+        }
+        BitSet existing = patientMedicines.get(patientId,
+                id -> ruleSet.medicines(prescriptionRepository.findMedicineNamesByPatientId(id)));
+        return ruleSet.check(existing, medicineId);
+    }
+
+    @EventListener
+    public void onPrescriptionsCreated(PrescriptionsCreatedEvent event) {
+        for (Prescription prescription : event.getPrescriptions()) {
+            int medicineId = ruleSet.medicineId(prescription.getMedicineName());
+            if (medicineId < 0 || prescription.getPatient() == null || prescription.getPatient().getId() == null) {
+                continue;
+            }
+            patientMedicines.asMap().computeIfPresent(prescription.getPatient().getId(), (id, medicines) -> {
+                BitSet updated = (BitSet) medicines.clone();
+                updated.set(medicineId);
+                return updated;
+            });
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.prescriptions.taks.prescriptions.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.prescriptions.taks.prescriptions.config.CacheConfig;
+import com.prescriptions.taks.prescriptions.dto.PrescriptionDTO;
+import com.prescriptions.taks.prescriptions.routing.ReadWriteRoutingDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versions of the doctor and patient prescription listings, exposed as ETags so clients polling a listing get
+ * {@code 304 Not Modified} without a database query or serialization.
+ * <p>
+ * A listing's version is a number from one process-wide sequence, assigned the first time the listing is asked for
+ * and replaced by {@link #bump(String, Long)} whenever {@link PrescriptionService} evicts the cached listing. ETags
+ * also carry a random epoch drawn at startup, so an ETag from before a restart, or from another instance, never
+ * matches. Like the listing caches, versions expire after {@code prescriptions.cache.ttl}, which bounds how long a
+ * write made through another instance can go unnoticed.
+ * </p>
+ * <p>
+ * The version must be read before the listing itself, so a write that lands in between costs the client one more
+ * full response. The listing caches hold each listing as a {@link VersionedListing} with the version read before its
+ * query, and {@link PrescriptionService} only serves an entry whose version is still current, so rows read before a
+ * write cannot be put back into the cache and served under the version the write gave the listing.
+ * </p>
+ * <p>
+ * With read replicas, a listing read right after a write may come from a replica that has not seen it yet. For
+ * {@code prescriptions.datasource.read-your-writes.window} after a write the listing is therefore
+ * {@link #isSettling(String, Long) settling}: it has no ETag and is not cached, so a stale replica read is neither
+ * kept for the cache TTL nor revalidated with 304s afterwards.
+ * </p>
+ * <p>
+ * Requests are counted as {@code prescriptions.listing.requests}, tagged with the {@code listing} ({@code doctor} or
+ * {@code patient}) and the {@code result} ({@code ok} or {@code not_modified}), from which the 304 ratio follows.
+ * </p>
+ */
+@Service
+public class ListingVersionService {
+
+    @Value("${prescriptions.cache.ttl:10m}")
+    private Duration ttl;
+
+    @Value("${prescriptions.listing-versions.max-keys:1000000}")
+    private long maxKeys;
+
+    @Value("${prescriptions.datasource.read-your-writes.window:5s}")
+    private Duration replicaLag;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Autowired(required = false)
+    private ReadWriteRoutingDataSource routingDataSource;
+
+    private final String epoch = Long.toString(new SecureRandom().nextLong() & Long.MAX_VALUE, 36);
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, Cache<Long, Long>> versions = new HashMap<>();
+    private final Map<String, Cache<Long, Boolean>> settling = new HashMap<>();
+    private final Map<String, Counter[]> requests = new HashMap<>();
+
+    @PostConstruct
+    void init() {
+        register(CacheConfig.PRESCRIPTIONS_BY_DOCTOR, "doctor");
+        register(CacheConfig.PRESCRIPTIONS_BY_PATIENT, "patient");
+    }
+
+    /**
+     * The current ETag of a listing.
+     *
+     * @param listing {@link CacheConfig#PRESCRIPTIONS_BY_DOCTOR} or {@link CacheConfig#PRESCRIPTIONS_BY_PATIENT}.
+     * @param ownerId The doctor or patient ID.
+     * @return A weak ETag, since the JSON and Smile forms of a listing share it, or {@code null} while the listing is
+     * {@link #isSettling(String, Long) settling}.
+     */
+    public String etag(String listing, Long ownerId) {
+        if (isSettling(listing, ownerId)) {
+            return null;
+        }
+        return "W/\"" + epoch + "-" + version(listing, ownerId) + "\"";
+    }
+
+    /**
+     * The current version of a listing, assigned if it has none.
+     */
+    public long version(String listing, Long ownerId) {
+        return versions.get(listing).get(ownerId, id -> sequence.incrementAndGet());
+    }
+
+    /**
+     * Gives a listing a new version after its prescriptions changed.
+     */
+    public void bump(String listing, Long ownerId) {
+        Cache<Long, Long> listingVersions = versions.get(listing);
+        if (listingVersions != null) {
+            listingVersions.invalidate(ownerId);
+        }
+        Cache<Long, Boolean> listingSettling = settling.get(listing);
+        if (listingSettling != null && ownerId != null) {
+            listingSettling.put(ownerId, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Whether a listing changed so recently that the replicas may not have it yet. Always {@code false} without read
+     * replicas.
+     */
+    public boolean isSettling(String listing, Long ownerId) {
+        Cache<Long, Boolean> listingSettling = settling.get(listing);
+        return listingSettling != null && ownerId != null && listingSettling.getIfPresent(ownerId) != null;
+    }
+
+    /**
+     * Counts a listing request by whether it was answered with {@code 304 Not Modified}.
+     */
+    public void recordRequest(String listing, boolean notModified) {
+        Counter[] counters = requests.get(listing);
+        if (counters != null) {
+            counters[notModified ? 1 : 0].increment();
+        }
+    }
+
+    private void register(String listing, String tag) {
+        versions.put(listing, Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterWrite(ttl)
+                .build());
+        if (routingDataSource != null) {
+            settling.put(listing, Caffeine.newBuilder()
+                    .maximumSize(maxKeys)
+                    .expireAfterWrite(replicaLag)
+                    .build());
+        }
+        if (meterRegistry != null) {
+            requests.put(listing, new Counter[]{requestCounter(tag, "ok"), requestCounter(tag, "not_modified")});
+        }
+    }
+
+    private Counter requestCounter(String listing, String result) {
+        return Counter.builder("prescriptions.listing.requests")
+                .description("Prescription listing requests, by whether the client's ETag was still current")
+                .tag("listing", listing)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * A cached listing and the version it was read at.
+     */
+    public static final class VersionedListing {
+
+        private final long version;
+        private final List<PrescriptionDTO> rows;
+
+        public VersionedListing(long version, List<PrescriptionDTO> rows) {
+            this.version = version;
+            this.rows = rows;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public List<PrescriptionDTO> getRows() {
+            return rows;
+        }
+    }
+}
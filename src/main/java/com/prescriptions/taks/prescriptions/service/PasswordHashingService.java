@@ -0,0 +1,75 @@
+package com.prescriptions.taks.prescriptions.service;
+
+import com.prescriptions.taks.prescriptions.security.AdaptiveBCryptPasswordEncoder;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Supplier;
+
+/**
+ * Hashes and verifies passwords on the bounded {@code passwordHashingExecutor}.
+ * <p>
+ * Every method either queues the work and returns a future, or throws {@link RejectedExecutionException} at once
+ * when the queue is full, so callers can shed load instead of piling up behind the hashing threads. Rejections are
+ * counted as {@code password.hash.rejected}.
+ * </p>
+ */
+@Service
+public class PasswordHashingService {
+
+    @Autowired
+    private AdaptiveBCryptPasswordEncoder passwordEncoder;
+
+    @Autowired
+    private ThreadPoolExecutor passwordHashingExecutor;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Hashes a password for storage.
+     *
+     * @throws RejectedExecutionException if too many hashes are already waiting.
+     */
+    public CompletableFuture<String> hash(String rawPassword) {
+        return submit(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    /**
+     * Checks a password against a stored hash, for the login path.
+     *
+     * @throws RejectedExecutionException if too many hashes are already waiting.
+     */
+    public CompletableFuture<Boolean> matches(String rawPassword, String encodedPassword) {
+        return submit(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * Whether a stored hash is weaker than the current cost and should be replaced after the next successful login.
+     */
+    public boolean needsRehash(String encodedPassword) {
+        return passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+
+    /**
+     * Whether a stored password is hashed, as opposed to plain text stored before hashing was introduced.
+     */
+    public boolean isHashed(String encodedPassword) {
+        return passwordEncoder.isHash(encodedPassword);
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, passwordHashingExecutor);
+        } catch (RejectedExecutionException e) {
+            if (meterRegistry != null) {
+                meterRegistry.counter("password.hash.rejected").increment();
+            }
+            throw e;
+        }
+    }
+}
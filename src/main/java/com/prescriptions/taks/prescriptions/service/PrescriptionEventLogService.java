@@ -0,0 +1,98 @@
+package com.prescriptions.taks.prescriptions.service;
+
+import com.prescriptions.taks.prescriptions.entities.Prescription;
+import com.prescriptions.taks.prescriptions.eventlog.PrescriptionEventCodec;
+import com.prescriptions.taks.prescriptions.eventlog.PrescriptionEventLog;
+import com.prescriptions.taks.prescriptions.repository.DoctorRepository;
+import com.prescriptions.taks.prescriptions.repository.PatientRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+
+/**
+ * Records new prescriptions in the {@link PrescriptionEventLog} instead of the database.
+ * <p>
+ * The prescription gets its ID from the same generator the entity uses, which only reaches the database once per
+ * allocation block, and is appended to the log. The {@link PrescriptionProjector} writes it to the database later, so
+ * its doctor and patient are checked here: a prescription the projector would reject is never accepted.
+ * </p>
+ * <p>
+ * Inside a transaction, e.g. the one persisting an idempotency key, the append waits until that transaction is about
+ * to commit, so a create rolled back by its own work is never logged and replayed, and an append that fails rolls
+ * the transaction back, so no key is stored for a prescription that was not logged. If the commit itself fails after
+ * the append, the prescription is logged without its key and a retry creates it again.
+ * </p>
+ */
+@Service
+@ConditionalOnProperty(name = "prescriptions.event-log.enabled", havingValue = "true")
+public class PrescriptionEventLogService {
+
+    @Autowired
+    private PrescriptionEventLog eventLog;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    private SessionFactoryImplementor sessionFactory;
+    private IdentifierGenerator idGenerator;
+
+    @PostConstruct
+    void init() {
+        sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        idGenerator = (IdentifierGenerator) sessionFactory.getMappingMetamodel()
+                .getEntityDescriptor(Prescription.class).getGenerator();
+    }
+
+    /**
+     * Assigns the prescription an ID and appends it to the log, just before the current transaction commits if there
+     * is one.
+     *
+     * @param prescription The prescription to record; its ID is set.
+     * @return The same prescription.
+     * @throws DataIntegrityViolationException if its doctor or patient does not exist.
+     */
+    public Prescription append(Prescription prescription) {
+        if (prescription.getDoctor() != null && prescription.getDoctor().getId() != null
+                && !doctorRepository.existsById(prescription.getDoctor().getId())) {
+            throw new DataIntegrityViolationException("Doctor " + prescription.getDoctor().getId() + " does not exist");
+        }
+        if (prescription.getPatient() != null && prescription.getPatient().getId() != null
+                && !patientRepository.existsById(prescription.getPatient().getId())) {
+            throw new DataIntegrityViolationException("Patient " + prescription.getPatient().getId() + " does not exist");
+        }
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            prescription.setId(((Number) idGenerator.generate((SharedSessionContractImplementor) session, prescription)).longValue());
+        }
+        long now = System.currentTimeMillis();
+        prescription.setCreatedAt(Instant.ofEpochMilli(now));
+        byte[] event = PrescriptionEventCodec.encodeCreated(prescription, now);
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    eventLog.append(event);
+                }
+            });
+        } else {
+            eventLog.append(event);
+        }
+        return prescription;
+    }
+}
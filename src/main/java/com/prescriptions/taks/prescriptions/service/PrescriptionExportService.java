@@ -0,0 +1,142 @@
+package com.prescriptions.taks.prescriptions.service;
+
+import com.prescriptions.taks.prescriptions.export.PrescriptionRowWriter;
+import com.prescriptions.taks.prescriptions.sharding.ShardRouter;
+import com.prescriptions.taks.prescriptions.sharding.ShardRoutingDataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Exports complete prescription histories straight from JDBC.
+ * <p>
+ * Rows are read through a forward-only cursor with {@code prescriptions.export.fetch-size} rows per round trip and
+ * handed to a {@link PrescriptionRowWriter} column by column, without entities or DTOs. When prescriptions are
+ * sharded, a doctor's history is read from all shards at once and merged by ID.
+ * </p>
+ */
+@Service
+public class PrescriptionExportService {
+
+    private static final String QUERY = "SELECT id, medicine_name, dosage, instructions, doctor_id, patient_id "
+            + "FROM prescription WHERE %s = ? ORDER BY id";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired(required = false)
+    private ShardRoutingDataSource shardRoutingDataSource;
+
+    @Autowired(required = false)
+    private ShardRouter shardRouter;
+
+    @Value("${prescriptions.export.fetch-size:1000}")
+    private int fetchSize;
+
+    /**
+     * Writes every prescription of a doctor, in ID order.
+     *
+     * @return The number of rows written.
+     */
+    @Transactional(readOnly = true)
+    public long exportByDoctorId(Long doctorId, PrescriptionRowWriter writer) throws IOException {
+        List<DataSource> sources = new ArrayList<>();
+        if (shardRoutingDataSource == null) {
+            sources.add(dataSource);
+        } else {
+            for (int i = 0; i < shardRoutingDataSource.getShardCount(); i++) {
+                sources.add(shardRoutingDataSource.getShard(i));
+            }
+        }
+        return export("doctor_id", doctorId, sources, writer);
+    }
+
+    /**
+     * Writes every prescription of a patient, in ID order.
+     *
+     * @return The number of rows written.
+     */
+    @Transactional(readOnly = true)
+    public long exportByPatientId(Long patientId, PrescriptionRowWriter writer) throws IOException {
+        DataSource source = shardRoutingDataSource == null
+                ? dataSource
+                : shardRoutingDataSource.getShard(shardRouter.shardFor(patientId));
+        return export("patient_id", patientId, List.of(source), writer);
+    }
+
+    private long export(String column, Long key, List<DataSource> sources, PrescriptionRowWriter writer) throws IOException {
+        String sql = String.format(QUERY, column);
+        List<Connection> connections = new ArrayList<>(sources.size());
+        PriorityQueue<Cursor> cursors = new PriorityQueue<>(Comparator.comparingLong((Cursor cursor) -> cursor.id));
+        long count = 0;
+        try {
+            for (DataSource source : sources) {
+                Connection connection = DataSourceUtils.getConnection(source);
+                connections.add(connection);
+                PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(fetchSize);
+                statement.setLong(1, key);
+                Cursor cursor = new Cursor(statement.executeQuery());
+                if (cursor.advance()) {
+                    cursors.add(cursor);
+                }
+            }
+            while (!cursors.isEmpty()) {
+                Cursor cursor = cursors.poll();
+                ResultSet rs = cursor.rows;
+                long doctorId = rs.getLong(5);
+                Long doctor = rs.wasNull() ? null : doctorId;
+                long patientId = rs.getLong(6);
+                Long patient = rs.wasNull() ? null : patientId;
+                writer.row(cursor.id, rs.getString(2), rs.getString(3), rs.getString(4), doctor, patient);
+                count++;
+                if (cursor.advance()) {
+                    cursors.add(cursor);
+                }
+            }
+            writer.finish();
+            return count;
+        } catch (SQLException e) {
+            throw new SQLErrorCodeSQLExceptionTranslator(dataSource).translate("Prescription export", sql, e);
+        } finally {
+            for (int i = 0; i < connections.size(); i++) {
+                DataSourceUtils.releaseConnection(connections.get(i), sources.get(i));
+            }
+        }
+    }
+
+    /**
+     * An open result set and the ID of its current row.
+     */
+    private static final class Cursor {
+        private final ResultSet rows;
+        private long id;
+
+        private Cursor(ResultSet rows) {
+            this.rows = rows;
+        }
+
+        boolean advance() throws SQLException {
+            if (!rows.next()) {
+                rows.getStatement().close();
+                return false;
+            }
+            id = rows.getLong(1);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.prescriptions.taks.prescriptions.service;
+
+import com.prescriptions.taks.prescriptions.entities.Prescription;
+import com.prescriptions.taks.prescriptions.eventlog.PrescriptionEventCodec;
+import com.prescriptions.taks.prescriptions.eventlog.PrescriptionEventLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies the {@link PrescriptionEventLog} to the database, caches and search index in the background.
+ * <p>
+ * Events are read in batches of {@code prescriptions.event-log.batch-size}. Each batch is written in one transaction
+ * together with the sequence number it ends at, kept in {@code prescription_projection_checkpoint}, so after a
+ * restart projection resumes exactly where it stopped. Rows are written as delete-then-insert, which makes
+ * projecting an event twice harmless; {@link #replay()} relies on that to rebuild the table from the whole log.
+ * After the commit, listings are evicted and a {@link com.prescriptions.taks.prescriptions.event.PrescriptionsCreatedEvent}
+ * updates the statistics, search index and interaction check.
+ * </p>
+ * <p>
+ * A replay only writes the events up to the checkpoint it started from, which were announced when first projected.
+ * Once it reaches that checkpoint the statistics and search index are rebuilt from the table, and projection goes on
+ * as usual.
+ * </p>
+ * <p>
+ * An event the database rejects, e.g. for a doctor or patient deleted since it was logged, is logged and skipped; it
+ * stays in the log. So is an event that cannot be decoded. Any other error, a corrupt record included, is logged and
+ * stops projection until the batch succeeds; {@link #isFailing()} and the lag behind the log are reported by the
+ * {@code prescriptionProjector} health indicator.
+ * </p>
+ */
+@Service
+@ConditionalOnProperty(name = "prescriptions.event-log.enabled", havingValue = "true")
+public class PrescriptionProjector implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrescriptionProjector.class);
+
+    private static final String CHECKPOINT = "prescriptions";
+
+    @Autowired
+    private PrescriptionEventLog eventLog;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private PrescriptionService prescriptionService;
+
+    @Autowired
+    private PrescriptionStatsService prescriptionStatsService;
+
+    @Autowired
+    private PrescriptionSearchService prescriptionSearchService;
+
+    @Value("${prescriptions.event-log.batch-size:500}")
+    private int batchSize;
+
+    @Value("${prescriptions.event-log.poll-interval:5ms}")
+    private Duration pollInterval;
+
+    @Value("${prescriptions.event-log.retry-interval:1s}")
+    private Duration retryInterval;
+
+    @Value("${prescriptions.event-log.replay:false}")
+    private boolean replayOnStart;
+
+    private volatile boolean running;
+    private volatile boolean replayRequested;
+    private volatile long projectedSequence;
+    private volatile boolean failing;
+    private long announcedSequence;
+    private Thread worker;
+
+    @Override
+    public void start() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS prescription_projection_checkpoint "
+                + "(name VARCHAR(64) NOT NULL PRIMARY KEY, log_sequence BIGINT NOT NULL)");
+        List<Long> checkpoint = jdbcTemplate.queryForList(
+                "SELECT log_sequence FROM prescription_projection_checkpoint WHERE name = ?", Long.class, CHECKPOINT);
+        if (checkpoint.isEmpty()) {
+            jdbcTemplate.update("INSERT INTO prescription_projection_checkpoint (name, log_sequence) VALUES (?, 0)", CHECKPOINT);
+        }
+        announcedSequence = checkpoint.isEmpty() ? 0 : checkpoint.get(0);
+        projectedSequence = replayOnStart ? 0 : announcedSequence;
+
+        running = true;
+        worker = new Thread(this::run, "prescription-projector");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (worker == null) {
+            return;
+        }
+        worker.interrupt();
+        try {
+            worker.join(Duration.ofSeconds(10).toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Projects the whole log again from the first event, e.g. after the prescription table was restored or lost.
+     */
+    public void replay() {
+        replayRequested = true;
+    }
+
+    /**
+     * The sequence number of the last event applied to the database.
+     */
+    public long getProjectedSequence() {
+        return projectedSequence;
+    }
+
+    /**
+     * Whether the last attempt to project a batch failed.
+     */
+    public boolean isFailing() {
+        return failing;
+    }
+
+    /**
+     * Whether the projection thread is alive; it only ends when the projector is stopped.
+     */
+    public boolean isAlive() {
+        return worker != null && worker.isAlive();
+    }
+
+    private void run() {
+        PrescriptionEventLog.Cursor cursor = eventLog.cursor(projectedSequence);
+        List<Prescription> batch = new ArrayList<>(batchSize);
+        long batchStart = cursor.sequence();
+        while (running) {
+            if (replayRequested) {
+                replayRequested = false;
+                announcedSequence = Math.max(announcedSequence, projectedSequence);
+                cursor = eventLog.cursor(0);
+                batch.clear();
+                batchStart = cursor.sequence();
+            }
+            try {
+                // A replayed batch ends at the last announced event, so no batch mixes replayed and new events.
+                long batchEnd = batchStart < announcedSequence ? announcedSequence : Long.MAX_VALUE;
+                while (batch.size() < batchSize && cursor.sequence() < batchEnd && cursor.next()) {
+                    decode(cursor, batch);
+                }
+                if (cursor.sequence() == batchStart) {
+                    failing = false;
+                    pause(pollInterval);
+                    continue;
+                }
+                project(batch, cursor.sequence());
+                batch.clear();
+                batchStart = cursor.sequence();
+                failing = false;
+            } catch (DataAccessException e) {
+                failing = true;
+                logger.atWarn()
+                        .addKeyValue("sequence", cursor.sequence())
+                        .addKeyValue("error", e.getMostSpecificCause().getMessage())
+                        .log("Projection failed, retrying");
+                pause(retryInterval);
+            } catch (RuntimeException e) {
+                failing = true;
+                logger.atError()
+                        .addKeyValue("sequence", cursor.sequence())
+                        .setCause(e)
+                        .log("Projection failed, retrying");
+                pause(retryInterval);
+            }
+        }
+    }
+
+    private void decode(PrescriptionEventLog.Cursor cursor, List<Prescription> batch) {
+        try {
+            batch.add(PrescriptionEventCodec.decodeCreated(cursor.payload()));
+        } catch (RuntimeException e) {
+            logger.atError()
+                    .addKeyValue("sequence", cursor.sequence())
+                    .setCause(e)
+                    .log("Skipping prescription event that cannot be decoded");
+        }
+    }
+
+    private void project(List<Prescription> batch, long lastSequence) {
+        List<Prescription> stored;
+        try {
+            if (batch.isEmpty()) {
+                // Every event of the batch was skipped as undecodable.
+                jdbcTemplate.update("UPDATE prescription_projection_checkpoint SET log_sequence = ? WHERE name = ?", lastSequence, CHECKPOINT);
+            } else {
+                write(batch, lastSequence);
+            }
+            stored = batch;
+        } catch (DataIntegrityViolationException e) {
+            // Replay the batch event by event so only the rejected events are skipped.
+            stored = new ArrayList<>(batch.size());
+            for (Prescription prescription : batch) {
+                try {
+                    write(List.of(prescription), projectedSequence);
+                    stored.add(prescription);
+                } catch (DataIntegrityViolationException rejected) {
+                    logger.atWarn()
+                            .addKeyValue("prescriptionId", prescription.getId())
+                            .addKeyValue("error", rejected.getMostSpecificCause().getMessage())
+                            .log("Projection rejected prescription event");
+                }
+            }
+            jdbcTemplate.update("UPDATE prescription_projection_checkpoint SET log_sequence = ? WHERE name = ?", lastSequence, CHECKPOINT);
+        }
+        projectedSequence = lastSequence;
+        if (lastSequence <= announcedSequence) {
+            if (lastSequence == announcedSequence) {
+                replayed();
+            }
+            return;
+        }
+        announcedSequence = lastSequence;
+        if (!stored.isEmpty()) {
+            prescriptionService.prescriptionsStored(stored);
+        }
+    }
+
+    /**
+     * Recounts the statistics and reindexes the search from the table once a replay has caught up, as the replayed
+     * events are not announced again.
+     */
+    private void replayed() {
+        logger.atInfo().addKeyValue("sequence", announcedSequence).log("Replayed prescription event log");
+        prescriptionStatsService.rebuild();
+        prescriptionSearchService.rebuild();
+    }
+
+    private void write(List<Prescription> prescriptions, long sequence) {
+        transactionTemplate.executeWithoutResult(status -> {
+            namedParameterJdbcTemplate.update("DELETE FROM prescription WHERE id IN (:ids)",
+                    Map.of("ids", prescriptions.stream().map(Prescription::getId).toList()));
+            jdbcTemplate.batchUpdate("INSERT INTO prescription (id, medicine_name, dosage, instructions, doctor_id, patient_id, created_at) "
+                            + "VALUES (?, ?, ?, ?, ?, ?, ?)",
+                    prescriptions.stream().map(p -> new Object[]{p.getId(), p.getMedicineName(), p.getDosage(), p.getInstructions(),
+                            p.getDoctor() == null ? null : p.getDoctor().getId(),
+                            p.getPatient() == null ? null : p.getPatient().getId(),
+                            p.getCreatedAt() == null ? null : Timestamp.from(p.getCreatedAt())}).toList());
+            jdbcTemplate.update("UPDATE prescription_projection_checkpoint SET log_sequence = ? WHERE name = ?", sequence, CHECKPOINT);
+        });
+    }
+
+    private void pause(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.prescriptions.taks.prescriptions.service;
+
+import com.prescriptions.taks.prescriptions.dto.PrescriptionDTO;
+import com.prescriptions.taks.prescriptions.dto.PrescriptionPageDTO;
+import com.prescriptions.taks.prescriptions.entities.Prescription;
+import com.prescriptions.taks.prescriptions.event.PrescriptionsCreatedEvent;
+import com.prescriptions.taks.prescriptions.repository.PrescriptionRepository;
+import com.prescriptions.taks.prescriptions.search.MedicineSearchIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds prescriptions by medicine name through a {@link MedicineSearchIndex}.
+ * <p>
+ * The index is filled from the database once the application is ready, reading ID and name only in keyset
+ * pages of {@code prescriptions.search.rebuild-page-size} rows, and is updated synchronously from
+ * {@link PrescriptionsCreatedEvent}s, so a new prescription is searchable as soon as its create call returns.
+ * </p>
+ */
+@Service
+public class PrescriptionSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrescriptionSearchService.class);
+
+    @Autowired
+    private PrescriptionRepository prescriptionRepository;
+
+    @Value("${prescriptions.search.rebuild-page-size:10000}")
+    private int rebuildPageSize;
+
+    private final MedicineSearchIndex index = new MedicineSearchIndex();
+
+    private volatile boolean ready;
+
+    /**
+     * Loads every prescription's medicine name into the index. Prescriptions created meanwhile are
+     * indexed by {@link #onPrescriptionsCreated}, and adding one twice is harmless.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.nanoTime();
+        long after = 0;
+        long rows = 0;
+        List<PrescriptionRepository.MedicineNameView> page;
+        do {
+            page = prescriptionRepository.findMedicineNamesAfter(after, Limit.of(rebuildPageSize));
+            for (PrescriptionRepository.MedicineNameView row : page) {
+                index.add(row.getId(), row.getMedicineName());
+            }
+            if (!page.isEmpty()) {
+                after = page.get(page.size() - 1).getId();
+                rows += page.size();
+            }
+        } while (page.size() == rebuildPageSize);
+        ready = true;
+        logger.atInfo()
+                .addKeyValue("rows", rows)
+                .addKeyValue("terms", index.termCount())
+                .addKeyValue("latencyMs", (System.nanoTime() - start) / 1_000_000)
+                .log("Rebuilt medicine search index");
+    }
+
+    @EventListener
+    public void onPrescriptionsCreated(PrescriptionsCreatedEvent event) {
+        for (Prescription prescription : event.getPrescriptions()) {
+            index.add(prescription.getId(), prescription.getMedicineName());
+        }
+    }
+
+    /**
+     * Whether the startup rebuild has finished. Until then searches only see part of the prescriptions.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Returns one page of the prescriptions whose medicine name matches every term of {@code query}, in ID order.
+     * A page can hold fewer than {@code size} items when indexed prescriptions have since been deleted.
+     *
+     * @param query The search text.
+     * @param mode  How each query term is matched against the indexed terms.
+     * @param after The {@code nextCursor} of the previous page, or {@code null} for the first page.
+     * @param size  The maximum number of prescriptions to return, capped at {@link PrescriptionService#MAX_PAGE_SIZE}.
+     * @return The page and the cursor of the next page, which is {@code null} on the last page.
+     */
+    @Transactional(readOnly = true)
+    public PrescriptionPageDTO search(String query, MedicineSearchIndex.Mode mode, Long after, int size) {
+        int pageSize = Math.max(1, Math.min(size, PrescriptionService.MAX_PAGE_SIZE));
+        // One extra ID only signals that there is a next page.
+        long[] ids = index.search(query, mode, after == null ? 0L : after, pageSize + 1);
+        int count = Math.min(ids.length, pageSize);
+        if (count == 0) {
+            return new PrescriptionPageDTO(List.of(), null);
+        }
+        List<Long> pageIds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            pageIds.add(ids[i]);
+        }
+        List<PrescriptionDTO> items = prescriptionRepository.findDTOsByIdIn(pageIds);
+        return new PrescriptionPageDTO(items, ids.length > pageSize ? ids[pageSize - 1] : null);
+    }
+}
@@ -1,27 +1,465 @@
 package com.prescriptions.taks.prescriptions.service;
 
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import com.prescriptions.taks.prescriptions.config.CacheConfig;
+import com.prescriptions.taks.prescriptions.dto.BulkPrescriptionResultDTO;
+import com.prescriptions.taks.prescriptions.dto.PrescriptionDTO;
+import com.prescriptions.taks.prescriptions.dto.PrescriptionPageDTO;
 import com.prescriptions.taks.prescriptions.entities.Prescription;
+import com.prescriptions.taks.prescriptions.event.PrescriptionsCreatedEvent;
+import com.prescriptions.taks.prescriptions.interaction.InteractionWarning;
 import com.prescriptions.taks.prescriptions.repository.PrescriptionRepository;
+import com.prescriptions.taks.prescriptions.routing.ReplicaRoutingContext;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 @Service
 public class PrescriptionService {
 
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * The bulk row error for a row the database rejected on a constraint, such as an unknown doctor or patient.
+     */
+    public static final String BULK_CONSTRAINT_VIOLATION = "Row violates a database constraint";
+
+    /**
+     * The bulk row error for a row that could not be saved for any other database error.
+     */
+    public static final String BULK_SAVE_FAILED = "Row could not be saved";
+
+    private static final Logger logger = LoggerFactory.getLogger(PrescriptionService.class);
+
     @Autowired
     private PrescriptionRepository prescriptionRepository;
 
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ListingVersionService listingVersionService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private InteractionCheckService interactionCheckService;
+
+    @Autowired(required = false)
+    private PrescriptionEventLogService eventLogService;
+
+    @Autowired(required = false)
+    private PrescriptionWriteBatcher writeBatcher;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${prescriptions.bulk.chunk-size:1000}")
+    private int bulkChunkSize;
+
+    private TransactionOperations readOnlyTransaction;
+
+    @PostConstruct
+    void init() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnly.setReadOnly(true);
+        readOnlyTransaction = readOnly;
+    }
+
+    /**
+     * Saves a prescription after checking it against the patient's existing prescriptions for interactions.
+     * Interactions do not block the save; they are returned on the saved prescription as warnings.
+     * <p>
+     * With the event log enabled the prescription is only appended to the log here and reaches the database,
+     * listings and search shortly after, through the {@link PrescriptionProjector}. With write batching enabled the
+     * prescription is saved together with concurrent creates by the {@link PrescriptionWriteBatcher}, unless the caller
+     * runs in a transaction, e.g. the one persisting an idempotency key, which it must commit with.
+     * </p>
+     *
+     * @param prescription The prescription to create.
+     * @return The saved prescription with its interaction warnings.
+     */
     public Prescription createPrescription(Prescription prescription) {
-        return prescriptionRepository.save(prescription);
+        List<InteractionWarning> warnings = interactionCheckService.check(
+                prescription.getPatient() == null ? null : prescription.getPatient().getId(), prescription.getMedicineName());
+        if (eventLogService != null) {
+            Prescription logged = eventLogService.append(prescription);
+            logged.setWarnings(warnings);
+            return logged;
+        }
+        Prescription saved = writeBatcher != null && !TransactionSynchronizationManager.isActualTransactionActive()
+                ? writeBatcher.save(prescription)
+                : prescriptionRepository.save(prescription);
+        saved.setWarnings(warnings);
+        prescriptionsStored(List.of(saved));
+        return saved;
     }
 
+    /**
+     * Creates prescriptions read from {@code rows}, committing every {@code prescriptions.bulk.chunk-size} valid rows
+     * in one transaction so Hibernate can batch the inserts.
+     * <p>
+     * Rows are pulled lazily, so the caller can hand in a streaming parser without buffering the whole body.
+     * A row that cannot be bound, fails validation or is rejected by the database is reported as a failure
+     * without affecting the other rows of its chunk. Database errors are reported as {@link #BULK_CONSTRAINT_VIOLATION}
+     * or {@link #BULK_SAVE_FAILED} and logged with their cause, so no SQL reaches the client. Input errors report
+     * the row index, field path and position instead of the parser message, which names internal classes.
+     * </p>
+     *
+     * @param rows The prescriptions to create, in request order.
+     * @return The per-row outcome, ordered by row index.
+     */
+    public BulkPrescriptionResultDTO createPrescriptionsInBulk(Iterator<Prescription> rows) {
+        BulkPrescriptionResultDTO result = new BulkPrescriptionResultDTO();
+        List<Prescription> chunk = new ArrayList<>(bulkChunkSize);
+        List<Integer> chunkIndexes = new ArrayList<>(bulkChunkSize);
+
+        int index = 0;
+        while (true) {
+            Prescription prescription;
+            try {
+                if (!rows.hasNext()) {
+                    break;
+                }
+                prescription = rows.next();
+            } catch (RuntimeJsonMappingException e) {
+                result.addFailure(index, "Row " + index + " has an invalid value" + describeInput(e));
+                index++;
+                continue;
+            } catch (RuntimeException e) {
+                result.addFailure(index, "Malformed input" + describeInput(e) + ", rows from " + index + " on were not read");
+                break;
+            }
+
+            String error = validateForBulk(prescription);
+            if (error != null) {
+                result.addFailure(index++, error);
+                continue;
+            }
+            prescription.setId(null);
+            chunk.add(prescription);
+            chunkIndexes.add(index++);
+
+            if (chunk.size() >= bulkChunkSize) {
+                flushChunk(chunk, chunkIndexes, result);
+                chunk.clear();
+                chunkIndexes.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            flushChunk(chunk, chunkIndexes, result);
+        }
+
+        result.sortRows();
+        return result;
+    }
+
+    /**
+     * Describes where a bulk input error occurred, e.g. {@code " at doctor.id (line 2, column 35)"}.
+     */
+    private static String describeInput(RuntimeException e) {
+        Throwable cause = e;
+        while (cause != null && !(cause instanceof JsonProcessingException)) {
+            cause = cause.getCause();
+        }
+        if (cause == null) {
+            return "";
+        }
+        StringBuilder description = new StringBuilder();
+        if (cause instanceof JsonMappingException mapping && !mapping.getPath().isEmpty()) {
+            StringBuilder path = new StringBuilder();
+            for (JsonMappingException.Reference reference : mapping.getPath()) {
+                if (reference.getFieldName() != null) {
+                    path.append(path.isEmpty() ? "" : ".").append(reference.getFieldName());
+                } else if (reference.getIndex() >= 0) {
+                    path.append('[').append(reference.getIndex()).append(']');
+                }
+            }
+            description.append(" at ").append(path);
+        }
+        JsonLocation location = ((JsonProcessingException) cause).getLocation();
+        if (location != null && location.getLineNr() > 0) {
+            description.append(" (line ").append(location.getLineNr()).append(", column ").append(location.getColumnNr()).append(')');
+        }
+        return description.toString();
+    }
+
+    @Transactional(readOnly = true)
     public List<Prescription> getPrescriptionsByDoctorId(Long doctorId) {
         return prescriptionRepository.findByDoctorId(doctorId);
     }
 
+    @Transactional(readOnly = true)
     public List<Prescription> getPrescriptionsByPatientId(Long patientId) {
         return prescriptionRepository.findByPatientId(patientId);
     }
+
+    /**
+     * Returns a doctor's prescriptions projected straight into {@link PrescriptionDTO}s.
+     * Runs a single query on the prescription table without loading doctor or patient entities.
+     * Results are cached per doctor until a prescription of that doctor is created or the entry expires, except for
+     * requests that must read from the primary.
+     *
+     * @param doctorId The ID of the doctor.
+     * @return The doctor's prescriptions ordered by ID.
+     */
+    public List<PrescriptionDTO> getPrescriptionDTOsByDoctorId(Long doctorId) {
+        return cachedListing(CacheConfig.PRESCRIPTIONS_BY_DOCTOR, doctorId, () -> prescriptionRepository.findDTOsByDoctorId(doctorId));
+    }
+
+    /**
+     * Returns a patient's prescriptions projected straight into {@link PrescriptionDTO}s.
+     * Runs a single query on the prescription table without loading doctor or patient entities.
+     * Results are cached per patient until a prescription of that patient is created or the entry expires, except for
+     * requests that must read from the primary.
+     *
+     * @param patientId The ID of the patient.
+     * @return The patient's prescriptions ordered by ID.
+     */
+    public List<PrescriptionDTO> getPrescriptionDTOsByPatientId(Long patientId) {
+        return cachedListing(CacheConfig.PRESCRIPTIONS_BY_PATIENT, patientId, () -> prescriptionRepository.findDTOsByPatientId(patientId));
+    }
+
+    /**
+     * Returns one page of a doctor's prescriptions, ordered by ID, starting after the given cursor.
+     *
+     * @param doctorId The ID of the doctor.
+     * @param after    The ID of the last prescription of the previous page, or {@code null} for the first page.
+     * @param size     The maximum number of prescriptions to return, capped at {@link #MAX_PAGE_SIZE}.
+     * @return The page and the cursor of the next page, which is {@code null} on the last page.
+     */
+    @Transactional(readOnly = true)
+    public PrescriptionPageDTO getPrescriptionPageByDoctorId(Long doctorId, Long after, int size) {
+        int pageSize = clampPageSize(size);
+        List<PrescriptionDTO> rows = prescriptionRepository.findDTOPageByDoctorId(doctorId, cursorOrStart(after), Limit.of(pageSize + 1));
+        return toPage(rows, pageSize);
+    }
+
+    /**
+     * Returns one page of a patient's prescriptions, ordered by ID, starting after the given cursor.
+     *
+     * @param patientId The ID of the patient.
+     * @param after     The ID of the last prescription of the previous page, or {@code null} for the first page.
+     * @param size      The maximum number of prescriptions to return, capped at {@link #MAX_PAGE_SIZE}.
+     * @return The page and the cursor of the next page, which is {@code null} on the last page.
+     */
+    @Transactional(readOnly = true)
+    public PrescriptionPageDTO getPrescriptionPageByPatientId(Long patientId, Long after, int size) {
+        int pageSize = clampPageSize(size);
+        List<PrescriptionDTO> rows = prescriptionRepository.findDTOPageByPatientId(patientId, cursorOrStart(after), Limit.of(pageSize + 1));
+        return toPage(rows, pageSize);
+    }
+
+    /**
+     * Passes every prescription of a doctor to {@code action}, reading them through a forward-only cursor
+     * so only one fetch batch is held in memory at a time.
+     *
+     * @param doctorId The ID of the doctor.
+     * @param action   The callback invoked for each prescription, in ID order.
+     */
+    @Transactional(readOnly = true)
+    public void forEachPrescriptionByDoctorId(Long doctorId, Consumer<PrescriptionDTO> action) {
+        try (Stream<PrescriptionDTO> rows = prescriptionRepository.streamDTOsByDoctorId(doctorId)) {
+            rows.forEach(action);
+        }
+    }
+
+    /**
+     * Passes every prescription of a patient to {@code action}, reading them through a forward-only cursor
+     * so only one fetch batch is held in memory at a time.
+     *
+     * @param patientId The ID of the patient.
+     * @param action    The callback invoked for each prescription, in ID order.
+     */
+    @Transactional(readOnly = true)
+    public void forEachPrescriptionByPatientId(Long patientId, Consumer<PrescriptionDTO> action) {
+        try (Stream<PrescriptionDTO> rows = prescriptionRepository.streamDTOsByPatientId(patientId)) {
+            rows.forEach(action);
+        }
+    }
+
+    /**
+     * Limits a requested page size to between 1 and {@link #MAX_PAGE_SIZE}.
+     */
+    public static int clampPageSize(int size) {
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
+
+    private Long cursorOrStart(Long after) {
+        return after == null ? 0L : after;
+    }
+
+    /**
+     * Builds a page from up to {@code pageSize + 1} rows read after the cursor; the extra row only signals that
+     * there is a next page.
+     */
+    public static PrescriptionPageDTO toPage(List<PrescriptionDTO> rows, int pageSize) {
+        if (rows.size() <= pageSize) {
+            return new PrescriptionPageDTO(rows, null);
+        }
+        List<PrescriptionDTO> items = rows.subList(0, pageSize);
+        return new PrescriptionPageDTO(items, items.get(pageSize - 1).getId());
+    }
+
+    private String validateForBulk(Prescription prescription) {
+        if (prescription == null) {
+            return "Row is empty";
+        }
+        if (prescription.getMedicineName() == null || prescription.getMedicineName().isBlank()) {
+            return "medicineName is required";
+        }
+        if (prescription.getDoctor() == null || prescription.getDoctor().getId() == null) {
+            return "doctor.id is required";
+        }
+        if (prescription.getPatient() == null || prescription.getPatient().getId() == null) {
+            return "patient.id is required";
+        }
+        return null;
+    }
+
+    private void flushChunk(List<Prescription> chunk, List<Integer> chunkIndexes, BulkPrescriptionResultDTO result) {
+        List<Prescription> created = new ArrayList<>(chunk.size());
+        try {
+            saveInTransaction(chunk);
+            for (int i = 0; i < chunk.size(); i++) {
+                result.addSuccess(chunkIndexes.get(i), chunk.get(i).getId());
+                created.add(chunk.get(i));
+            }
+        } catch (DataAccessException e) {
+            // The chunk was rolled back as a whole; replay it row by row so only the offending rows fail.
+            for (int i = 0; i < chunk.size(); i++) {
+                Prescription prescription = chunk.get(i);
+                prescription.setId(null);
+                try {
+                    saveInTransaction(List.of(prescription));
+                    result.addSuccess(chunkIndexes.get(i), prescription.getId());
+                    created.add(prescription);
+                } catch (DataAccessException rowError) {
+                    logger.atWarn()
+                            .addKeyValue("row", chunkIndexes.get(i))
+                            .addKeyValue("error", rowError.getMostSpecificCause().getMessage())
+                            .log("Bulk prescription row rejected");
+                    result.addFailure(chunkIndexes.get(i), rowError instanceof DataIntegrityViolationException
+                            ? BULK_CONSTRAINT_VIOLATION : BULK_SAVE_FAILED);
+                }
+            }
+        }
+        if (!created.isEmpty()) {
+            prescriptionsStored(created);
+        }
+    }
+
+    /**
+     * Evicts the listings of the doctors and patients of newly stored prescriptions, gives them new
+     * {@link ListingVersionService versions} and announces them with a {@link PrescriptionsCreatedEvent}.
+     * <p>
+     * Inside a transaction, e.g. the one persisting an idempotency key, this waits until the transaction has
+     * committed, so a rolled back create leaves the caches, the statistics, the search index and the interaction
+     * checks as they were.
+     * </p>
+     *
+     * @param created The prescriptions that were just committed, or will be with the current transaction.
+     */
+    public void prescriptionsStored(List<Prescription> created) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    announce(created);
+                }
+            });
+        } else {
+            announce(created);
+        }
+    }
+
+    private void announce(List<Prescription> created) {
+        Set<Long> doctorIds = new HashSet<>();
+        Set<Long> patientIds = new HashSet<>();
+        for (Prescription prescription : created) {
+            doctorIds.add(prescription.getDoctor() == null ? null : prescription.getDoctor().getId());
+            patientIds.add(prescription.getPatient() == null ? null : prescription.getPatient().getId());
+        }
+        doctorIds.forEach(id -> evictListing(CacheConfig.PRESCRIPTIONS_BY_DOCTOR, id));
+        patientIds.forEach(id -> evictListing(CacheConfig.PRESCRIPTIONS_BY_PATIENT, id));
+        eventPublisher.publishEvent(new PrescriptionsCreatedEvent(created));
+    }
+
+    /**
+     * Returns a listing from its cache if it was cached at the listing's current version, and otherwise reads it and
+     * caches it under the version taken before the read. A write during the read bumps the version, so the rows read
+     * are not served from the cache afterwards. Requests that must read from the primary neither read nor fill the
+     * cache, and a listing that is {@link ListingVersionService#isSettling(String, Long) settling} after a write is
+     * not cached, as the read may come from a replica that has not seen the write yet.
+     * <p>
+     * Only a read opens a transaction, a read-only one so it may go to a replica; a cache hit needs no connection.
+     * </p>
+     */
+    private List<PrescriptionDTO> cachedListing(String cacheName, Long ownerId, Supplier<List<PrescriptionDTO>> query) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache == null || ReplicaRoutingContext.isPrimaryRequired()) {
+            return readOnlyTransaction.execute(status -> query.get());
+        }
+        long version = listingVersionService.version(cacheName, ownerId);
+        ListingVersionService.VersionedListing cached = cache.get(ownerId, ListingVersionService.VersionedListing.class);
+        if (cached != null && cached.getVersion() == version) {
+            return cached.getRows();
+        }
+        boolean settling = listingVersionService.isSettling(cacheName, ownerId);
+        List<PrescriptionDTO> rows = readOnlyTransaction.execute(status -> query.get());
+        if (!settling && listingVersionService.version(cacheName, ownerId) == version) {
+            cache.put(ownerId, new ListingVersionService.VersionedListing(version, rows));
+        }
+        return rows;
+    }
+
+    private void evictListing(String cacheName, Long id) {
+        if (id == null) {
+            return;
+        }
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.evict(id);
+        }
+        listingVersionService.bump(cacheName, id);
+    }
+
+    private void saveInTransaction(List<Prescription> prescriptions) {
+        transactionTemplate.executeWithoutResult(status -> {
+            prescriptionRepository.saveAllAndFlush(prescriptions);
+            entityManager.clear();
+        });
+    }
 }
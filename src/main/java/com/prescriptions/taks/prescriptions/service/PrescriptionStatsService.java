@@ -0,0 +1,226 @@
+package com.prescriptions.taks.prescriptions.service;
+
+import com.prescriptions.taks.prescriptions.dto.DailyCountDTO;
+import com.prescriptions.taks.prescriptions.dto.MedicineCountDTO;
+import com.prescriptions.taks.prescriptions.dto.PrescriptionStatsDTO;
+import com.prescriptions.taks.prescriptions.entities.Prescription;
+import com.prescriptions.taks.prescriptions.event.PrescriptionsCreatedEvent;
+import com.prescriptions.taks.prescriptions.repository.PrescriptionRepository;
+import com.prescriptions.taks.prescriptions.stats.PrescriptionCounters;
+import com.prescriptions.taks.prescriptions.stats.PrescriptionStatistics;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Per-doctor and per-patient dashboard statistics, kept in memory in {@link PrescriptionStatistics} so they are read
+ * in constant time instead of by scanning a doctor's or patient's prescriptions.
+ * <p>
+ * The statistics are built from the database when the application starts, before the web server, the event log
+ * projector and the write batcher, so no prescription is created while they are read and none is counted twice. The
+ * prescription IDs are split into {@code prescriptions.stats.rebuild-threads} ranges (the number of processors by
+ * default), each read in keyset pages of {@code prescriptions.stats.rebuild-page-size} rows by its own thread. From
+ * then on they are updated synchronously from {@link PrescriptionsCreatedEvent}s, like the search index, so a new
+ * prescription counts as soon as its create call returns. Each instance counts only what it reads at startup and
+ * what it creates itself. Replaying the event log does not announce the replayed prescriptions again; the projector
+ * rebuilds the statistics once the replay has caught up.
+ * </p>
+ * <p>
+ * Per-day counts cover the last {@code prescriptions.stats.days} days in {@code prescriptions.stats.time-zone} and
+ * leave out prescriptions without a creation time, i.e. those created before it was recorded. The top
+ * {@code prescriptions.stats.top-medicines} medicines are taken from {@code prescriptions.stats.tracked-medicines}
+ * counted per doctor or patient; see {@link PrescriptionCounters} for their accuracy. With the defaults a doctor or
+ * patient costs a few hundred bytes.
+ * </p>
+ */
+@Service
+public class PrescriptionStatsService implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrescriptionStatsService.class);
+
+    @Autowired
+    private PrescriptionRepository prescriptionRepository;
+
+    @Value("${prescriptions.stats.top-medicines:10}")
+    private int topMedicines;
+
+    @Value("${prescriptions.stats.tracked-medicines:40}")
+    private int trackedMedicines;
+
+    @Value("${prescriptions.stats.days:30}")
+    private int days;
+
+    @Value("${prescriptions.stats.time-zone:UTC}")
+    private ZoneId timeZone;
+
+    @Value("${prescriptions.stats.rebuild-threads:0}")
+    private int rebuildThreads;
+
+    @Value("${prescriptions.stats.rebuild-page-size:10000}")
+    private int rebuildPageSize;
+
+    private volatile PrescriptionStatistics statistics;
+
+    private volatile boolean running;
+
+    @PostConstruct
+    void init() {
+        statistics = new PrescriptionStatistics(Math.max(trackedMedicines, topMedicines), days);
+    }
+
+    @Override
+    public void start() {
+        rebuild();
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Starts before the write batcher, the event log projector and the web server.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 8192;
+    }
+
+    /**
+     * Counts every prescription in the database, reading ID ranges in parallel, and replaces the statistics with the
+     * result. Runs at startup; run again on a live instance, it may miss prescriptions created while it reads.
+     */
+    public void rebuild() {
+        long start = System.nanoTime();
+        PrescriptionStatistics rebuilt = new PrescriptionStatistics(Math.max(trackedMedicines, topMedicines), days);
+        long lastId = prescriptionRepository.findMaxIds().stream()
+                .filter(Objects::nonNull).mapToLong(Long::longValue).max().orElse(0);
+        int threads = rebuildThreads > 0 ? rebuildThreads : Runtime.getRuntime().availableProcessors();
+        long rangeSize = Math.max(rebuildPageSize, (lastId + threads - 1) / threads);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("prescription-stats-rebuild-"));
+        long rows = 0;
+        try {
+            List<Future<Long>> ranges = new ArrayList<>();
+            for (long after = 0; after < lastId; after += rangeSize) {
+                long from = after;
+                long to = Math.min(lastId, after + rangeSize);
+                ranges.add(executor.submit(() -> count(rebuilt, from, to)));
+            }
+            for (Future<Long> range : ranges) {
+                rows += range.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while rebuilding prescription statistics", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Could not rebuild prescription statistics", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        statistics = rebuilt;
+        logger.atInfo()
+                .addKeyValue("rows", rows)
+                .addKeyValue("doctors", rebuilt.doctorCount())
+                .addKeyValue("patients", rebuilt.patientCount())
+                .addKeyValue("threads", threads)
+                .addKeyValue("latencyMs", (System.nanoTime() - start) / 1_000_000)
+                .log("Rebuilt prescription statistics");
+    }
+
+    /**
+     * Counts the prescriptions with IDs in {@code (after, lastId]} into {@code target}.
+     */
+    private long count(PrescriptionStatistics target, long after, long lastId) {
+        long rows = 0;
+        List<PrescriptionRepository.StatsView> page;
+        do {
+            page = prescriptionRepository.findStatsRowsBetween(after, lastId, Limit.of(rebuildPageSize));
+            for (PrescriptionRepository.StatsView row : page) {
+                target.record(row.getDoctorId(), row.getPatientId(), row.getMedicineName(), epochDay(row.getCreatedAt()));
+            }
+            if (!page.isEmpty()) {
+                after = page.get(page.size() - 1).getId();
+                rows += page.size();
+            }
+        } while (page.size() == rebuildPageSize);
+        return rows;
+    }
+
+    @EventListener
+    public void onPrescriptionsCreated(PrescriptionsCreatedEvent event) {
+        for (Prescription prescription : event.getPrescriptions()) {
+            statistics.record(prescription.getDoctor() == null ? null : prescription.getDoctor().getId(),
+                    prescription.getPatient() == null ? null : prescription.getPatient().getId(),
+                    prescription.getMedicineName(), epochDay(prescription.getCreatedAt()));
+        }
+    }
+
+    /**
+     * Returns the statistics of a doctor's prescriptions; all zero for a doctor without any.
+     *
+     * @param doctorId The ID of the doctor.
+     * @return The total, top medicines and per-day counts.
+     */
+    public PrescriptionStatsDTO getDoctorStats(Long doctorId) {
+        return toDTO(statistics.doctor(doctorId, topMedicines, today()));
+    }
+
+    /**
+     * Returns the statistics of a patient's prescriptions; all zero for a patient without any.
+     *
+     * @param patientId The ID of the patient.
+     * @return The total, top medicines and per-day counts.
+     */
+    public PrescriptionStatsDTO getPatientStats(Long patientId) {
+        return toDTO(statistics.patient(patientId, topMedicines, today()));
+    }
+
+    private PrescriptionStatsDTO toDTO(PrescriptionCounters.Snapshot snapshot) {
+        List<MedicineCountDTO> medicines = new ArrayList<>(snapshot.getTopMedicines().length);
+        for (int i = 0; i < snapshot.getTopMedicines().length; i++) {
+            medicines.add(new MedicineCountDTO(snapshot.getTopMedicines()[i], snapshot.getTopCounts()[i], snapshot.getTopErrors()[i]));
+        }
+        long[] dailyCounts = snapshot.getDailyCounts();
+        List<DailyCountDTO> daily = new ArrayList<>(dailyCounts.length);
+        for (int i = 0; i < dailyCounts.length; i++) {
+            daily.add(new DailyCountDTO(LocalDate.ofEpochDay(snapshot.getFirstDay() + i), dailyCounts[i]));
+        }
+        return new PrescriptionStatsDTO(snapshot.getTotal(), medicines, daily);
+    }
+
+    private long today() {
+        return LocalDate.now(timeZone).toEpochDay();
+    }
+
+    private long epochDay(Instant createdAt) {
+        return createdAt == null ? Long.MIN_VALUE : LocalDate.ofInstant(createdAt, timeZone).toEpochDay();
+    }
+}
@@ -0,0 +1,300 @@
+package com.prescriptions.taks.prescriptions.service;
+
+import com.prescriptions.taks.prescriptions.concurrent.MpscRingBuffer;
+import com.prescriptions.taks.prescriptions.entities.Prescription;
+import com.prescriptions.taks.prescriptions.repository.PrescriptionRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Coalesces concurrent single-prescription creates into batched inserts, active with
+ * {@code prescriptions.write-batching.enabled=true}.
+ * <p>
+ * Callers put their prescription into a lock-free {@link MpscRingBuffer} of {@code prescriptions.write-batching.capacity}
+ * slots and wait on a future. One writer thread takes up to {@code prescriptions.write-batching.batch-size} of them and
+ * saves them in a single transaction as soon as the batch is full or its oldest prescription has waited
+ * {@code prescriptions.write-batching.flush-interval}. Hibernate sends the batch as JDBC batches, which MySQL's
+ * {@code rewriteBatchedStatements} turns into multi-row inserts, so the database sees one commit per batch instead of
+ * one per request. Each future completes with the saved prescription, and thus its ID, once the batch has committed.
+ * If the batch fails, its prescriptions are saved one by one so only the offending ones fail.
+ * </p>
+ * <p>
+ * When the ring is full, callers wait for the writer to make room. The writer is stopped after the web server, so
+ * requests that are still running get their prescriptions written, including ones whose slot was claimed but not yet
+ * filled. A caller that still gets a slot after the writer has finished fails its own future, and the writer fails any
+ * slot it finds left over, so no caller waits forever. Callers also give up after
+ * {@code prescriptions.write-batching.timeout}; their prescription may still be written.
+ * </p>
+ * <p>
+ * Batch sizes and commit times are recorded as {@code prescriptions.write.batch.size} and
+ * {@code prescriptions.write.batch.commit}.
+ * </p>
+ */
+@Service
+@ConditionalOnProperty(name = "prescriptions.write-batching.enabled", havingValue = "true")
+public class PrescriptionWriteBatcher implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrescriptionWriteBatcher.class);
+
+    private static final long MAX_IDLE_PARK_NANOS = Duration.ofMillis(100).toNanos();
+
+    @Autowired
+    private PrescriptionRepository prescriptionRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired(required = false)
+    private PrescriptionEventLogService eventLogService;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${prescriptions.write-batching.batch-size:100}")
+    private int batchSize;
+
+    @Value("${prescriptions.write-batching.flush-interval:500us}")
+    private Duration flushInterval;
+
+    @Value("${prescriptions.write-batching.capacity:4096}")
+    private int capacity;
+
+    @Value("${prescriptions.write-batching.timeout:30s}")
+    private Duration timeout;
+
+    private MpscRingBuffer<PendingWrite> buffer;
+    private long flushIntervalNanos;
+    private DistributionSummary batchSizes;
+    private Timer commitTimer;
+    private volatile boolean running;
+    private volatile boolean sleeping;
+    private volatile boolean stopped;
+    private Thread worker;
+
+    @PostConstruct
+    void init() {
+        if (eventLogService != null) {
+            throw new IllegalStateException("Write batching cannot be combined with the prescription event log");
+        }
+        buffer = new MpscRingBuffer<>(capacity);
+        flushIntervalNanos = flushInterval.toNanos();
+        if (meterRegistry != null) {
+            batchSizes = DistributionSummary.builder("prescriptions.write.batch.size")
+                    .description("Prescriptions saved per batched insert")
+                    .register(meterRegistry);
+            commitTimer = Timer.builder("prescriptions.write.batch.commit")
+                    .description("Time to save and commit one batch of prescriptions")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Saves a prescription with the next batch and waits until that batch has committed.
+     *
+     * @param prescription The prescription to save; its ID is set.
+     * @return The same prescription.
+     * @throws DataAccessException if the database rejected the prescription.
+     * @throws QueryTimeoutException if the batch did not commit within {@code prescriptions.write-batching.timeout}.
+     */
+    public Prescription save(Prescription prescription) {
+        try {
+            return submit(prescription).orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                throw new QueryTimeoutException("Batched prescription write did not commit within " + timeout);
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Queues a prescription for the next batch.
+     *
+     * @param prescription The prescription to save.
+     * @return A future completed with the saved prescription once its batch has committed.
+     */
+    public CompletableFuture<Prescription> submit(Prescription prescription) {
+        if (!running) {
+            return CompletableFuture.failedFuture(stoppedException());
+        }
+        PendingWrite write = new PendingWrite(prescription, System.nanoTime());
+        while (!buffer.offer(write)) {
+            if (stopped) {
+                write.future.completeExceptionally(stoppedException());
+                return write.future;
+            }
+            LockSupport.unpark(worker);
+            LockSupport.parkNanos(this, flushIntervalNanos);
+        }
+        if (stopped) {
+            // The writer may have finished before this write was published; it then fails it too, never saves it.
+            write.future.completeExceptionally(stoppedException());
+        } else if (sleeping) {
+            LockSupport.unpark(worker);
+        }
+        return write.future;
+    }
+
+    @Override
+    public void start() {
+        stopped = false;
+        running = true;
+        worker = new Thread(this::run, "prescription-write-batcher");
+        worker.setDaemon(true);
+        worker.start();
+        logger.atInfo()
+                .addKeyValue("batchSize", batchSize)
+                .addKeyValue("flushInterval", flushInterval)
+                .log("Batching prescription writes");
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        LockSupport.unpark(worker);
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Starts before and stops after the web server.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private void run() {
+        List<PendingWrite> batch = new ArrayList<>(batchSize);
+        // size() also counts claimed slots whose prescription is not published yet, so those are written too.
+        while (running || !batch.isEmpty() || buffer.size() > 0) {
+            buffer.drain(batch::add, batchSize - batch.size());
+            if (batch.isEmpty()) {
+                park(MAX_IDLE_PARK_NANOS);
+                continue;
+            }
+            long wait = batch.get(0).enqueuedNanos + flushIntervalNanos - System.nanoTime();
+            if (batch.size() < batchSize && wait > 0 && running) {
+                park(wait);
+                continue;
+            }
+            flush(batch);
+            batch.clear();
+        }
+        stopped = true;
+        // Writes offered after the loop's last check see stopped and fail themselves; fail whatever they left behind.
+        while (buffer.size() > 0) {
+            if (buffer.drain(write -> write.future.completeExceptionally(stoppedException()), capacity) == 0) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private static IllegalStateException stoppedException() {
+        return new IllegalStateException("Prescription write batching is stopped");
+    }
+
+    /**
+     * Parks the writer unless a write is already waiting. Producers unpark it while {@code sleeping} is set; both sides
+     * write a volatile before reading the other's, so a write is never missed.
+     */
+    private void park(long nanos) {
+        sleeping = true;
+        if (buffer.isEmpty()) {
+            LockSupport.parkNanos(this, nanos);
+        }
+        sleeping = false;
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        long start = System.nanoTime();
+        List<Prescription> prescriptions = new ArrayList<>(batch.size());
+        for (PendingWrite write : batch) {
+            prescriptions.add(write.prescription);
+        }
+        try {
+            saveInTransaction(prescriptions);
+            for (PendingWrite write : batch) {
+                write.future.complete(write.prescription);
+            }
+        } catch (DataAccessException e) {
+            // The batch was rolled back as a whole; replay it row by row so only the offending rows fail.
+            for (PendingWrite write : batch) {
+                write.prescription.setId(null);
+                try {
+                    saveInTransaction(List.of(write.prescription));
+                    write.future.complete(write.prescription);
+                } catch (RuntimeException rowError) {
+                    write.future.completeExceptionally(rowError);
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.atWarn()
+                    .addKeyValue("batchSize", batch.size())
+                    .addKeyValue("error", e.getMessage())
+                    .log("Batched prescription write failed");
+            for (PendingWrite write : batch) {
+                write.future.completeExceptionally(e);
+            }
+        }
+        if (batchSizes != null) {
+            batchSizes.record(batch.size());
+            commitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void saveInTransaction(List<Prescription> prescriptions) {
+        transactionTemplate.executeWithoutResult(status -> {
+            prescriptionRepository.saveAllAndFlush(prescriptions);
+            entityManager.clear();
+        });
+    }
+
+    private static final class PendingWrite {
+        private final Prescription prescription;
+        private final long enqueuedNanos;
+        private final CompletableFuture<Prescription> future = new CompletableFuture<>();
+
+        private PendingWrite(Prescription prescription, long enqueuedNanos) {
+            this.prescription = prescription;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+}
@@ -2,11 +2,15 @@ package com.prescriptions.taks.prescriptions.service;
 
 import com.prescriptions.taks.prescriptions.entities.Doctor;
 import com.prescriptions.taks.prescriptions.entities.Patient;
+import com.prescriptions.taks.prescriptions.entities.User;
 import com.prescriptions.taks.prescriptions.repository.DoctorRepository;
 import com.prescriptions.taks.prescriptions.repository.PatientRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
 @Service
 public class UserService {
 
@@ -16,13 +20,38 @@ public class UserService {
     @Autowired
     private PatientRepository patientRepository;
 
+    @Autowired
+    private PasswordHashingService passwordHashingService;
+
+    /**
+     * @throws RejectedExecutionException if password hashing is saturated.
+     */
     public Doctor registerDoctor(Doctor doctor) {
         doctor.setRole("DOCTOR");
+        hashPassword(doctor);
         return doctorRepository.save(doctor);
     }
 
+    /**
+     * @throws RejectedExecutionException if password hashing is saturated.
+     */
     public Patient registerPatient(Patient patient) {
         patient.setRole("PATIENT");
+        hashPassword(patient);
         return patientRepository.save(patient);
     }
+
+    private void hashPassword(User user) {
+        if (user.getPassword() == null) {
+            return;
+        }
+        try {
+            user.setPassword(passwordHashingService.hash(user.getPassword()).join());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
 }
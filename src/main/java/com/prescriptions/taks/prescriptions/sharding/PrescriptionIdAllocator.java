@@ -0,0 +1,82 @@
+package com.prescriptions.taks.prescriptions.sharding;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Hands out prescription IDs that are unique across all shards.
+ * <p>
+ * IDs are reserved on the primary in blocks of {@code blockSize} by advancing a counter row in
+ * {@code prescription_id_block}, then handed out from memory. Shards never coordinate with each other, and the
+ * primary is touched once per block rather than once per insert. IDs from a block that is not used up before a
+ * restart are skipped.
+ * </p>
+ */
+public class PrescriptionIdAllocator {
+
+    private static final String COUNTER = "prescription";
+
+    private final JdbcTemplate primary;
+    private final int blockSize;
+    private long next;
+    private long limit;
+
+    /**
+     * @param primary   The primary database, used directly rather than through the routing data source.
+     * @param blockSize The number of IDs reserved per round trip.
+     * @param firstId   The first ID to hand out if the counter does not exist yet.
+     */
+    public PrescriptionIdAllocator(DataSource primary, int blockSize, long firstId) {
+        this.primary = new JdbcTemplate(primary);
+        this.blockSize = blockSize;
+        this.primary.execute("CREATE TABLE IF NOT EXISTS prescription_id_block (name VARCHAR(64) NOT NULL PRIMARY KEY, next_val BIGINT NOT NULL)");
+        Integer counters = this.primary.queryForObject("SELECT COUNT(*) FROM prescription_id_block WHERE name = ?", Integer.class, COUNTER);
+        if (counters == null || counters == 0) {
+            try {
+                this.primary.update("INSERT INTO prescription_id_block (name, next_val) VALUES (?, ?)", COUNTER, firstId);
+            } catch (DuplicateKeyException e) {
+                // Another instance created the counter first.
+            }
+        }
+    }
+
+    public synchronized long next() {
+        if (next >= limit) {
+            limit = reserveBlock();
+            next = limit - blockSize;
+        }
+        return next++;
+    }
+
+    private long reserveBlock() {
+        Long end = primary.execute((ConnectionCallback<Long>) connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement update = connection.prepareStatement("UPDATE prescription_id_block SET next_val = next_val + ? WHERE name = ?");
+                 PreparedStatement select = connection.prepareStatement("SELECT next_val FROM prescription_id_block WHERE name = ?")) {
+                update.setLong(1, blockSize);
+                update.setString(2, COUNTER);
+                update.executeUpdate();
+                select.setString(1, COUNTER);
+                try (ResultSet rs = select.executeQuery()) {
+                    rs.next();
+                    long value = rs.getLong(1);
+                    connection.commit();
+                    return value;
+                }
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        });
+        return end;
+    }
+}
@@ -0,0 +1,22 @@
+package com.prescriptions.taks.prescriptions.sharding;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates prescription IDs from a pooled database sequence, or from the {@link PrescriptionIdAllocator}
+ * when sharding is enabled. See {@link ShardAwareSequenceGenerator}.
+ */
+@IdGeneratorType(ShardAwareSequenceGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface PrescriptionIdSequence {
+
+    String sequenceName();
+
+    int allocationSize() default 50;
+}
@@ -0,0 +1,45 @@
+package com.prescriptions.taks.prescriptions.sharding;
+
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.factory.spi.CustomIdGeneratorCreationContext;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.lang.reflect.Member;
+import java.util.Properties;
+
+/**
+ * A pooled sequence generator that defers to a {@link PrescriptionIdAllocator} when one is configured.
+ * <p>
+ * Without sharding it behaves exactly like {@code @SequenceGenerator}. With sharding the session's connection
+ * belongs to a shard, whose own sequence would hand out IDs that collide with the other shards, so IDs come
+ * from the allocator registered under {@link #ID_ALLOCATOR} in the Hibernate properties instead.
+ * </p>
+ */
+public class ShardAwareSequenceGenerator extends SequenceStyleGenerator {
+
+    public static final String ID_ALLOCATOR = "prescriptions.sharding.id-allocator";
+
+    private final PrescriptionIdSequence config;
+    private PrescriptionIdAllocator allocator;
+
+    public ShardAwareSequenceGenerator(PrescriptionIdSequence config, Member member, CustomIdGeneratorCreationContext context) {
+        this.config = config;
+    }
+
+    @Override
+    public void configure(Type type, Properties parameters, ServiceRegistry serviceRegistry) {
+        parameters.setProperty(SEQUENCE_PARAM, config.sequenceName());
+        parameters.setProperty(INCREMENT_PARAM, String.valueOf(config.allocationSize()));
+        super.configure(type, parameters, serviceRegistry);
+        Object configured = serviceRegistry.requireService(ConfigurationService.class).getSettings().get(ID_ALLOCATOR);
+        allocator = configured instanceof PrescriptionIdAllocator idAllocator ? idAllocator : null;
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        return allocator != null ? allocator.next() : super.generate(session, object);
+    }
+}
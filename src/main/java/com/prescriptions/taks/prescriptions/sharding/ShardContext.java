@@ -0,0 +1,34 @@
+package com.prescriptions.taks.prescriptions.sharding;
+
+/**
+ * The prescription shard the current thread works on. Read by {@link ShardRoutingDataSource} when a
+ * connection is requested; {@code null} means the primary database.
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    public static Integer current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Sets the shard for the current thread and returns the previous one, to be passed to {@link #restore}.
+     */
+    public static Integer enter(int shard) {
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        return previous;
+    }
+
+    public static void restore(Integer previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
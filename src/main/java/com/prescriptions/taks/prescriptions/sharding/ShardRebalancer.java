@@ -0,0 +1,176 @@
+package com.prescriptions.taks.prescriptions.sharding;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Moves shard buckets so every shard owns about the same number, typically after shards were added.
+ * <p>
+ * A bucket is moved by copying its rows to the new shard in keyset pages, switching the owner in
+ * {@code prescription_shard_bucket} and deleting the rows from the old shard. Rows written to a bucket while it is
+ * being copied would be lost, so run this with writes stopped, e.g. by starting a single instance with
+ * {@code prescriptions.sharding.rebalance=true} during a maintenance window. A move that was interrupted can be
+ * repeated: the target's partial copy is discarded first.
+ * </p>
+ * <p>
+ * It also moves the prescriptions written to the primary before sharding was enabled to the shards owning their
+ * buckets, see {@link #migratePrimary()}.
+ * </p>
+ */
+public class ShardRebalancer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardRebalancer.class);
+
+    private static final String BUCKET_FILTER = "(MOD(patient_id, ?) = ? OR (patient_id IS NULL AND ? = 0))";
+    private static final String INSERT = "INSERT INTO prescription (" + ShardSchema.COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final int PATIENT_ID_COLUMN = 5;
+
+    private final ShardRoutingDataSource dataSources;
+    private final ShardRouter router;
+    private final int pageSize;
+
+    public ShardRebalancer(ShardRoutingDataSource dataSources, ShardRouter router, int pageSize) {
+        this.dataSources = dataSources;
+        this.router = router;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Moves buckets from the shards that own the most to the shards that own the fewest until they differ by at
+     * most one.
+     *
+     * @return The number of buckets moved.
+     */
+    public int rebalance() {
+        int[] owners = router.owners();
+        List<List<Integer>> owned = new ArrayList<>();
+        for (int shard = 0; shard < router.getShardCount(); shard++) {
+            owned.add(new ArrayList<>());
+        }
+        for (int bucket = 0; bucket < owners.length; bucket++) {
+            owned.get(owners[bucket]).add(bucket);
+        }
+
+        int moved = 0;
+        while (true) {
+            int fullest = 0;
+            int emptiest = 0;
+            for (int shard = 1; shard < owned.size(); shard++) {
+                if (owned.get(shard).size() > owned.get(fullest).size()) {
+                    fullest = shard;
+                }
+                if (owned.get(shard).size() < owned.get(emptiest).size()) {
+                    emptiest = shard;
+                }
+            }
+            if (owned.get(fullest).size() - owned.get(emptiest).size() <= 1) {
+                break;
+            }
+            int bucket = owned.get(fullest).remove(owned.get(fullest).size() - 1);
+            moveBucket(bucket, emptiest);
+            owned.get(emptiest).add(bucket);
+            moved++;
+        }
+        logger.atInfo().addKeyValue("buckets", moved).log("Shard rebalance finished");
+        return moved;
+    }
+
+    /**
+     * Moves one bucket and its prescriptions to {@code target}.
+     *
+     * @return The number of prescriptions moved.
+     */
+    public long moveBucket(int bucket, int target) {
+        int source = router.owners()[bucket];
+        if (source == target) {
+            return 0;
+        }
+        JdbcTemplate from = new JdbcTemplate(dataSources.getShard(source));
+        from.setMaxRows(pageSize);
+        JdbcTemplate to = new JdbcTemplate(dataSources.getShard(target));
+        int buckets = router.getBucketCount();
+
+        to.update("DELETE FROM prescription WHERE " + BUCKET_FILTER, buckets, bucket, bucket);
+        long copied = 0;
+        long after = Long.MIN_VALUE;
+        while (true) {
+            List<Object[]> rows = from.query("SELECT " + ShardSchema.COLUMNS + " FROM prescription WHERE " + BUCKET_FILTER
+                            + " AND id > ? ORDER BY id", ShardRebalancer::row, buckets, bucket, bucket, after);
+            if (rows.isEmpty()) {
+                break;
+            }
+            to.batchUpdate(INSERT, rows);
+            copied += rows.size();
+            after = ((Number) rows.get(rows.size() - 1)[0]).longValue();
+        }
+        router.reassign(bucket, target);
+        from.update("DELETE FROM prescription WHERE " + BUCKET_FILTER, buckets, bucket, bucket);
+
+        logger.atInfo()
+                .addKeyValue("bucket", bucket)
+                .addKeyValue("from", source)
+                .addKeyValue("to", target)
+                .addKeyValue("prescriptions", copied)
+                .log("Moved shard bucket");
+        return copied;
+    }
+
+    /**
+     * Moves the prescriptions on the primary, written before sharding was enabled, to the shards owning their
+     * buckets, in pages of the configured size. Each page is copied and then deleted from the primary, and rows
+     * with the same ID already on the target shard, left by an interrupted run, are replaced, so it can be repeated.
+     * Runs at startup, before anything reads prescriptions, and does nothing once the primary has none left.
+     *
+     * @return The number of prescriptions moved.
+     */
+    public long migratePrimary() {
+        if (!ShardSchema.hasPrescriptionTable(dataSources.getPrimary())) {
+            return 0;
+        }
+        JdbcTemplate primary = new JdbcTemplate(dataSources.getPrimary());
+        primary.setMaxRows(pageSize);
+        long moved = 0;
+        while (true) {
+            List<Object[]> rows = primary.query("SELECT " + ShardSchema.COLUMNS + " FROM prescription ORDER BY id", ShardRebalancer::row);
+            if (rows.isEmpty()) {
+                break;
+            }
+            Map<Integer, List<Object[]>> byShard = new TreeMap<>();
+            for (Object[] row : rows) {
+                Long patientId = row[PATIENT_ID_COLUMN] == null ? null : ((Number) row[PATIENT_ID_COLUMN]).longValue();
+                byShard.computeIfAbsent(router.shardFor(patientId), shard -> new ArrayList<>()).add(row);
+            }
+            for (Map.Entry<Integer, List<Object[]>> shard : byShard.entrySet()) {
+                JdbcTemplate to = new JdbcTemplate(dataSources.getShard(shard.getKey()));
+                to.batchUpdate("DELETE FROM prescription WHERE id = ?", ids(shard.getValue()));
+                to.batchUpdate(INSERT, shard.getValue());
+            }
+            primary.batchUpdate("DELETE FROM prescription WHERE id = ?", ids(rows));
+            moved += rows.size();
+        }
+        if (moved > 0) {
+            logger.atInfo().addKeyValue("prescriptions", moved).log("Moved prescriptions from the primary to the shards");
+        }
+        return moved;
+    }
+
+    private static Object[] row(ResultSet rs, int rowNum) throws SQLException {
+        Object[] row = new Object[rs.getMetaData().getColumnCount()];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = rs.getObject(i + 1);
+        }
+        return row;
+    }
+
+    private static List<Object[]> ids(List<Object[]> rows) {
+        return rows.stream().map(row -> new Object[]{row[0]}).toList();
+    }
+}
@@ -0,0 +1,99 @@
+package com.prescriptions.taks.prescriptions.sharding;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * Maps patients to prescription shards.
+ * <p>
+ * A patient belongs to bucket {@code patient_id mod buckets}, which can also be computed in SQL, and each bucket
+ * is owned by one shard. The bucket owners are stored in {@code prescription_shard_bucket} on the primary, so
+ * adding a shard moves whole buckets instead of rehashing every patient. On first start the buckets are dealt
+ * round robin over the configured shards. Prescriptions without a patient live in bucket 0.
+ * </p>
+ */
+public class ShardRouter {
+
+    private final JdbcTemplate primary;
+    private final int shardCount;
+    private final int bucketCount;
+    private volatile int[] owners;
+
+    public ShardRouter(DataSource primary, int shardCount, int bucketCount) {
+        this.primary = new JdbcTemplate(primary);
+        this.shardCount = shardCount;
+        this.bucketCount = bucketCount;
+        load();
+    }
+
+    /**
+     * Reads the bucket owners from the primary, creating the table and the initial assignment if needed.
+     *
+     * @throws IllegalStateException if the stored map does not fit the configured bucket and shard counts.
+     */
+    public synchronized void load() {
+        primary.execute("CREATE TABLE IF NOT EXISTS prescription_shard_bucket (bucket INT NOT NULL PRIMARY KEY, shard INT NOT NULL)");
+        List<int[]> rows = primary.query("SELECT bucket, shard FROM prescription_shard_bucket",
+                (rs, rowNum) -> new int[]{rs.getInt(1), rs.getInt(2)});
+        int[] loaded = new int[bucketCount];
+        if (rows.isEmpty()) {
+            for (int bucket = 0; bucket < bucketCount; bucket++) {
+                loaded[bucket] = bucket % shardCount;
+            }
+            primary.batchUpdate("INSERT INTO prescription_shard_bucket (bucket, shard) VALUES (?, ?)", List.of(toRows(loaded)));
+        } else {
+            if (rows.size() != bucketCount) {
+                throw new IllegalStateException("prescription_shard_bucket has " + rows.size() + " buckets but "
+                        + bucketCount + " are configured");
+            }
+            for (int[] row : rows) {
+                if (row[1] >= shardCount) {
+                    throw new IllegalStateException("Bucket " + row[0] + " is owned by shard " + row[1]
+                            + " but only " + shardCount + " shards are configured");
+                }
+                loaded[row[0]] = row[1];
+            }
+        }
+        owners = loaded;
+    }
+
+    public int shardFor(Long patientId) {
+        return owners[bucketOf(patientId)];
+    }
+
+    public int bucketOf(Long patientId) {
+        return patientId == null ? 0 : (int) Math.floorMod(patientId, (long) bucketCount);
+    }
+
+    /**
+     * Records a new owner for {@code bucket}, on the primary and in memory.
+     */
+    public synchronized void reassign(int bucket, int shard) {
+        primary.update("UPDATE prescription_shard_bucket SET shard = ? WHERE bucket = ?", shard, bucket);
+        int[] updated = owners.clone();
+        updated[bucket] = shard;
+        owners = updated;
+    }
+
+    public int[] owners() {
+        return owners.clone();
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public int getBucketCount() {
+        return bucketCount;
+    }
+
+    private static Object[][] toRows(int[] owners) {
+        Object[][] rows = new Object[owners.length][];
+        for (int bucket = 0; bucket < owners.length; bucket++) {
+            rows[bucket] = new Object[]{bucket, owners[bucket]};
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,51 @@
+package com.prescriptions.taks.prescriptions.sharding;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+
+/**
+ * The prescription table as it exists on every shard, see {@code db/prescription-shard-schema.sql}.
+ */
+public final class ShardSchema {
+
+    /**
+     * The prescription columns, in the order the rebalancer copies them.
+     */
+    public static final String COLUMNS = "id, medicine_name, dosage, instructions, doctor_id, patient_id, created_at";
+
+    private ShardSchema() {
+    }
+
+    /**
+     * Creates the prescription table and its indexes on {@code shard} if it does not have them yet.
+     */
+    public static void ensure(DataSource shard) {
+        if (!hasPrescriptionTable(shard)) {
+            new ResourceDatabasePopulator(new ClassPathResource("db/prescription-shard-schema.sql")).execute(shard);
+        }
+    }
+
+    /**
+     * Returns the highest prescription ID in {@code dataSource}, or 0 if it has none or no prescription table.
+     */
+    public static long maxId(DataSource dataSource) {
+        if (!hasPrescriptionTable(dataSource)) {
+            return 0;
+        }
+        Long max = new JdbcTemplate(dataSource).queryForObject("SELECT COALESCE(MAX(id), 0) FROM prescription", Long.class);
+        return max == null ? 0 : max;
+    }
+
+    static boolean hasPrescriptionTable(DataSource dataSource) {
+        try {
+            new JdbcTemplate(dataSource).queryForList("SELECT id FROM prescription WHERE 1 = 0");
+            return true;
+        } catch (DataAccessException e) {
+            return false;
+        }
+    }
+}
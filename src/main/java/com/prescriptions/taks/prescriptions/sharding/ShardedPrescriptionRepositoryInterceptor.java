@@ -0,0 +1,454 @@
+package com.prescriptions.taks.prescriptions.sharding;
+
+import com.prescriptions.taks.prescriptions.dto.PrescriptionDTO;
+import com.prescriptions.taks.prescriptions.entities.Doctor;
+import com.prescriptions.taks.prescriptions.entities.Patient;
+import com.prescriptions.taks.prescriptions.entities.Prescription;
+import com.prescriptions.taks.prescriptions.repository.PrescriptionRepository;
+import jakarta.persistence.EntityManager;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Spreads {@link PrescriptionRepository} calls over the prescription shards.
+ * <p>
+ * Methods keyed by patient ID run on the patient's shard. Everything else is sent to every shard in parallel and
+ * the results are merged: lists by ID, truncated to the {@link Limit} if there is one, counts summed, optionals and
+ * existence checks take the first hit. The two streaming queries are served as keyset pages so no cursor has to
+ * stay open across shards. Each shard call runs in its own transaction, because the caller's transaction is bound
+ * to a single connection.
+ * </p>
+ * <p>
+ * Every method declared on {@link PrescriptionRepository} is checked when the interceptor is created, so a query
+ * whose result cannot be merged, e.g. a {@code Page} or {@code Stream}, or a stream keyed by patient, stops the
+ * application at startup. Inherited Spring Data methods returning a page or a single entity are not supported and
+ * fail when called.
+ * </p>
+ * <p>
+ * Saves and deletes are grouped by the patient's shard and each group gets its own transaction. The transactions
+ * are nested, so every group is flushed before any of them commits. They cannot join the caller's transaction, so
+ * the prescriptions a save created are deleted again if a later group fails to commit or the caller's transaction
+ * rolls back afterwards, e.g. an idempotent create whose key could not be stored or a bulk chunk that is replayed
+ * row by row. Until then other requests can already read them, and a crash between the shard commit and the
+ * caller's rollback leaves them behind. Updates and deletes are not undone. Shards have no foreign keys to the user
+ * tables on the primary, so saves check that the referenced doctors and patients exist first.
+ * </p>
+ */
+public class ShardedPrescriptionRepositoryInterceptor implements MethodInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardedPrescriptionRepositoryInterceptor.class);
+
+    private static final int STREAM_PAGE_SIZE = Integer.parseInt(PrescriptionRepository.STREAM_FETCH_SIZE);
+    private static final Method DOCTOR_PAGE;
+    private static final Method PATIENT_PAGE;
+
+    static {
+        try {
+            DOCTOR_PAGE = PrescriptionRepository.class.getMethod("findDTOPageByDoctorId", Long.class, Long.class, Limit.class);
+            PATIENT_PAGE = PrescriptionRepository.class.getMethod("findDTOPageByPatientId", Long.class, Long.class, Limit.class);
+        } catch (NoSuchMethodException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final ShardRoutingDataSource dataSources;
+    private final ShardRouter router;
+    private final ExecutorService executor;
+    private final EntityManager entityManager;
+    private final TransactionTemplate readTransaction;
+    private final TransactionTemplate writeTransaction;
+
+    /**
+     * @param entityManager A shared entity manager, used to check references against the primary.
+     */
+    public ShardedPrescriptionRepositoryInterceptor(ShardRoutingDataSource dataSources, ShardRouter router,
+                                                    ExecutorService executor, PlatformTransactionManager transactionManager,
+                                                    EntityManager entityManager) {
+        this.dataSources = dataSources;
+        this.router = router;
+        this.executor = executor;
+        this.entityManager = entityManager;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTransaction.setReadOnly(true);
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        checkSupported(PrescriptionRepository.class);
+    }
+
+    /**
+     * Checks that every query method declared on {@code repository} can be served across shards.
+     *
+     * @throws IllegalStateException naming the methods that cannot.
+     */
+    static void checkSupported(Class<?> repository) {
+        List<String> unsupported = new ArrayList<>();
+        for (Method method : repository.getDeclaredMethods()) {
+            if (method.isDefault() || Modifier.isStatic(method.getModifiers()) || method.isSynthetic()) {
+                continue;
+            }
+            String name = method.getName();
+            if (name.equals("streamDTOsByDoctorId") || name.equals("streamDTOsByPatientId")) {
+                continue;
+            }
+            Class<?> type = method.getReturnType();
+            boolean supported = name.contains("ByPatientId") ? !Stream.class.isAssignableFrom(type) : isMergeable(type);
+            if (!supported) {
+                unsupported.add(name);
+            }
+        }
+        if (!unsupported.isEmpty()) {
+            throw new IllegalStateException("Sharded prescriptions cannot serve " + repository.getSimpleName() + " methods "
+                    + unsupported + "; results can only be merged as a List, count, boolean or Optional");
+        }
+    }
+
+    private static boolean isMergeable(Class<?> type) {
+        return type == void.class || List.class.isAssignableFrom(type) || type == long.class || type == Long.class
+                || type == boolean.class || type == Boolean.class || type == Optional.class;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Method method = invocation.getMethod();
+        if (ShardContext.current() != null || !method.getDeclaringClass().isAssignableFrom(PrescriptionRepository.class)
+                || method.getDeclaringClass() == Object.class) {
+            return invocation.proceed();
+        }
+        Object proxy = ((ProxyMethodInvocation) invocation).getProxy();
+        Object[] args = invocation.getArguments();
+        String name = method.getName();
+
+        if (name.equals("streamDTOsByDoctorId")) {
+            return pagedStream(id -> scatter(DOCTOR_PAGE, proxy, args[0], id, Limit.of(STREAM_PAGE_SIZE)));
+        }
+        if (name.equals("streamDTOsByPatientId")) {
+            int shard = router.shardFor((Long) args[0]);
+            return pagedStream(id -> onShard(shard, () -> invoke(PATIENT_PAGE, proxy, args[0], id, Limit.of(STREAM_PAGE_SIZE))));
+        }
+        if (name.contains("ByPatientId")) {
+            return onShard(router.shardFor((Long) args[0]), () -> invoke(method, proxy, args));
+        }
+        if ((name.startsWith("save") || name.startsWith("delete")) && args.length == 1 && holdsPrescriptions(args[0])) {
+            return write(method, proxy, args[0]);
+        }
+        return scatter(method, proxy, args);
+    }
+
+    private static boolean holdsPrescriptions(Object argument) {
+        if (argument instanceof Iterable<?> items) {
+            Iterator<?> iterator = items.iterator();
+            return iterator.hasNext() && iterator.next() instanceof Prescription;
+        }
+        return argument instanceof Prescription;
+    }
+
+    private Object scatter(Method method, Object proxy, Object... args) {
+        List<Future<Object>> futures = new ArrayList<>(router.getShardCount());
+        for (int shard = 0; shard < router.getShardCount(); shard++) {
+            int target = shard;
+            futures.add(executor.submit(() -> onShard(target, () -> invoke(method, proxy, args))));
+        }
+        List<Object> results = new ArrayList<>(futures.size());
+        for (Future<Object> future : futures) {
+            results.add(await(future));
+        }
+        return merge(method, args, results);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object merge(Method method, Object[] args, List<Object> results) {
+        Class<?> type = method.getReturnType();
+        if (type == void.class) {
+            return null;
+        }
+        if (List.class.isAssignableFrom(type)) {
+            List<Object> merged = new ArrayList<>();
+            results.forEach(result -> merged.addAll((List<Object>) result));
+            if (!merged.isEmpty() && idOf(merged.get(0)) != null) {
+                merged.sort(Comparator.comparing(ShardedPrescriptionRepositoryInterceptor::idOf));
+            }
+            for (Object arg : args) {
+                if (arg instanceof Limit limit && limit.isLimited() && merged.size() > limit.max()) {
+                    return new ArrayList<>(merged.subList(0, limit.max()));
+                }
+            }
+            return merged;
+        }
+        if (type == long.class || type == Long.class) {
+            return results.stream().mapToLong(result -> (Long) result).sum();
+        }
+        if (type == boolean.class || type == Boolean.class) {
+            return results.contains(Boolean.TRUE);
+        }
+        if (type == Optional.class) {
+            return results.stream().map(result -> (Optional<Object>) result)
+                    .filter(Optional::isPresent).findFirst().orElse(Optional.empty());
+        }
+        throw new UnsupportedOperationException(method.getName() + " is not supported on sharded prescriptions");
+    }
+
+    private static Long idOf(Object row) {
+        if (row instanceof PrescriptionDTO dto) {
+            return dto.getId();
+        }
+        if (row instanceof Prescription prescription) {
+            return prescription.getId();
+        }
+        if (row instanceof PrescriptionRepository.MedicineNameView view) {
+            return view.getId();
+        }
+        if (row instanceof PrescriptionRepository.StatsView view) {
+            return view.getId();
+        }
+        return null;
+    }
+
+    /**
+     * Reads pages of {@code pageSize} rows through {@code page}, which takes the last ID seen, until a short page.
+     */
+    private static Stream<PrescriptionDTO> pagedStream(Function<Long, Object> page) {
+        Iterator<PrescriptionDTO> rows = new Iterator<>() {
+            private List<PrescriptionDTO> current = List.of();
+            private int position;
+            private long after;
+            private boolean last;
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public boolean hasNext() {
+                if (position < current.size()) {
+                    return true;
+                }
+                if (last) {
+                    return false;
+                }
+                current = (List<PrescriptionDTO>) page.apply(after);
+                position = 0;
+                last = current.size() < STREAM_PAGE_SIZE;
+                if (!current.isEmpty()) {
+                    after = current.get(current.size() - 1).getId();
+                }
+                return !current.isEmpty();
+            }
+
+            @Override
+            public PrescriptionDTO next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.get(position++);
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(rows, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private Object write(Method method, Object proxy, Object argument) {
+        boolean single = argument instanceof Prescription;
+        List<Prescription> prescriptions = new ArrayList<>();
+        if (single) {
+            prescriptions.add((Prescription) argument);
+        } else {
+            ((Iterable<?>) argument).forEach(item -> prescriptions.add((Prescription) item));
+        }
+        boolean save = method.getName().startsWith("save");
+        if (save) {
+            checkReferences(prescriptions);
+        }
+
+        Map<Integer, List<Integer>> groups = new TreeMap<>();
+        for (int i = 0; i < prescriptions.size(); i++) {
+            Prescription prescription = prescriptions.get(i);
+            Long patientId = prescription.getPatient() == null ? null : prescription.getPatient().getId();
+            groups.computeIfAbsent(router.shardFor(patientId), shard -> new ArrayList<>()).add(i);
+        }
+        boolean[] created = new boolean[prescriptions.size()];
+        for (int i = 0; i < created.length; i++) {
+            created[i] = save && prescriptions.get(i).getId() == null;
+        }
+        Object[] saved = new Object[prescriptions.size()];
+        Map<Integer, List<Long>> committed = new TreeMap<>();
+        try {
+            writeGroups(method, proxy, single, prescriptions, new ArrayList<>(groups.entrySet()), 0, saved, created, committed);
+        } catch (RuntimeException | Error e) {
+            undo(committed);
+            throw e;
+        }
+        if (!committed.isEmpty() && TransactionSynchronizationManager.isActualTransactionActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        undo(committed);
+                    }
+                }
+            });
+        }
+
+        if (method.getReturnType() == void.class) {
+            return null;
+        }
+        return single ? saved[0] : new ArrayList<>(Arrays.asList(saved));
+    }
+
+    /**
+     * Writes {@code groups} from {@code group} on, each in a transaction nested in the previous one, and records the
+     * IDs of the created prescriptions of every group that committed in {@code committed}.
+     */
+    private void writeGroups(Method method, Object proxy, boolean single, List<Prescription> prescriptions,
+                             List<Map.Entry<Integer, List<Integer>>> groups, int group, Object[] saved,
+                             boolean[] created, Map<Integer, List<Long>> committed) {
+        if (group == groups.size()) {
+            return;
+        }
+        int shard = groups.get(group).getKey();
+        List<Integer> indexes = groups.get(group).getValue();
+        Integer previous = ShardContext.enter(shard);
+        try {
+            writeTransaction.executeWithoutResult(status -> {
+                List<Prescription> members = indexes.stream().map(prescriptions::get).toList();
+                Object result = invoke(method, proxy, single ? members.get(0) : members);
+                status.flush();
+                if (result instanceof List<?> list) {
+                    for (int i = 0; i < indexes.size(); i++) {
+                        saved[indexes.get(i)] = list.get(i);
+                    }
+                } else if (result != null) {
+                    saved[indexes.get(0)] = result;
+                }
+                writeGroups(method, proxy, single, prescriptions, groups, group + 1, saved, created, committed);
+            });
+        } finally {
+            ShardContext.restore(previous);
+        }
+        List<Long> ids = new ArrayList<>();
+        for (int index : indexes) {
+            if (created[index] && saved[index] instanceof Prescription prescription) {
+                ids.add(prescription.getId());
+            }
+        }
+        if (!ids.isEmpty()) {
+            committed.put(shard, ids);
+        }
+    }
+
+    /**
+     * Deletes the prescriptions in {@code committed} from their shards. Failures are logged, as the caller is
+     * already handling the error that made the write void.
+     */
+    private void undo(Map<Integer, List<Long>> committed) {
+        for (Map.Entry<Integer, List<Long>> entry : committed.entrySet()) {
+            try {
+                new JdbcTemplate(dataSources.getShard(entry.getKey())).batchUpdate("DELETE FROM prescription WHERE id = ?",
+                        entry.getValue().stream().map(id -> new Object[]{id}).toList());
+            } catch (RuntimeException e) {
+                logger.atWarn()
+                        .addKeyValue("shard", entry.getKey())
+                        .addKeyValue("ids", entry.getValue())
+                        .setCause(e)
+                        .log("Could not delete prescriptions of a rolled back write");
+            }
+        }
+    }
+
+    private void checkReferences(List<Prescription> prescriptions) {
+        Set<Long> doctorIds = prescriptions.stream().map(Prescription::getDoctor).filter(Objects::nonNull)
+                .map(Doctor::getId).filter(Objects::nonNull).collect(Collectors.toSet());
+        Set<Long> patientIds = prescriptions.stream().map(Prescription::getPatient).filter(Objects::nonNull)
+                .map(Patient::getId).filter(Objects::nonNull).collect(Collectors.toSet());
+        readTransaction.executeWithoutResult(status -> {
+            checkExists("Doctor", doctorIds);
+            checkExists("Patient", patientIds);
+        });
+    }
+
+    private void checkExists(String entity, Set<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Set<Long> found = new HashSet<>(entityManager
+                .createQuery("select e.id from " + entity + " e where e.id in :ids", Long.class)
+                .setParameter("ids", ids)
+                .getResultList());
+        for (Long id : ids) {
+            if (!found.contains(id)) {
+                throw new DataIntegrityViolationException(entity + " " + id + " does not exist");
+            }
+        }
+    }
+
+    private Object onShard(int shard, Callable<Object> call) {
+        Integer previous = ShardContext.enter(shard);
+        try {
+            return readTransaction.execute(status -> {
+                try {
+                    return call.call();
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new UndeclaredThrowableException(e);
+                }
+            });
+        } finally {
+            ShardContext.restore(previous);
+        }
+    }
+
+    private static Object invoke(Method method, Object proxy, Object... args) {
+        try {
+            return method.invoke(proxy, args);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new UndeclaredThrowableException(e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Object await(Future<Object> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a shard", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new UndeclaredThrowableException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.prescriptions.taks.prescriptions.stats;
+
+import java.util.Arrays;
+
+/**
+ * The prescription counters of one doctor or patient: the total, the count of each of the last {@code days} days,
+ * and the most prescribed medicines.
+ * <p>
+ * Days are kept in a ring indexed by epoch day, so a day's slot is reused once it has left the window.
+ * </p>
+ * <p>
+ * Medicines are counted with the Space-Saving algorithm in at most {@code capacity} slots. While the doctor or
+ * patient has no more distinct medicines than that, every count is exact. After that a new medicine takes over the
+ * slot with the lowest count and inherits it as its possible error, so a count may exceed the true one by at most
+ * its error, every medicine prescribed more than {@code total / capacity} times is guaranteed a slot, and the slots
+ * with the highest counts are the top medicines. The slot arrays grow with the distinct medicines, so a patient with
+ * three medicines costs three slots. Finding the lowest slot is a linear scan, which for a few dozen slots is faster
+ * than keeping a heap with an index.
+ * </p>
+ * <p>
+ * All methods synchronize on the instance. Updates and snapshots touch at most {@code capacity + days} slots, so reads
+ * take constant time however many prescriptions were counted.
+ * </p>
+ */
+public class PrescriptionCounters {
+
+    private static final int NO_DAY = Integer.MIN_VALUE;
+    private static final int INITIAL_SLOTS = 4;
+
+    private final int capacity;
+    private long total;
+    private final int[] dayOf;
+    private final long[] dayCounts;
+    private String[] medicines = new String[0];
+    private long[] medicineCounts = new long[0];
+    private long[] medicineErrors = new long[0];
+    private int slots;
+
+    /**
+     * @param capacity The number of medicines tracked; at least the number that will be ranked.
+     * @param days     The number of days, up to and including today, to count per day.
+     */
+    public PrescriptionCounters(int capacity, int days) {
+        this.capacity = capacity;
+        this.dayOf = new int[days];
+        this.dayCounts = new long[days];
+        Arrays.fill(dayOf, NO_DAY);
+    }
+
+    /**
+     * Counts one prescription.
+     *
+     * @param medicine The normalized medicine name, or {@code null} to leave the medicine counts alone.
+     * @param epochDay The day the prescription was created, or {@link Long#MIN_VALUE} if unknown.
+     */
+    public synchronized void record(String medicine, long epochDay) {
+        total++;
+        if (epochDay != Long.MIN_VALUE && dayOf.length > 0) {
+            countDay((int) epochDay);
+        }
+        if (medicine != null && capacity > 0) {
+            countMedicine(medicine);
+        }
+    }
+
+    /**
+     * Copies the counters: the {@code topK} medicines with the highest counts, and the per-day counts of the
+     * {@code days} days ending with {@code today}.
+     */
+    public synchronized Snapshot snapshot(int topK, long today) {
+        long[] daily = new long[dayOf.length];
+        for (int i = 0; i < daily.length; i++) {
+            int day = (int) (today - daily.length + 1 + i);
+            int slot = Math.floorMod(day, dayOf.length);
+            daily[i] = dayOf[slot] == day ? dayCounts[slot] : 0;
+        }
+        Integer[] order = new Integer[slots];
+        for (int i = 0; i < slots; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> medicineCounts[a] != medicineCounts[b]
+                ? Long.compare(medicineCounts[b], medicineCounts[a])
+                : medicines[a].compareTo(medicines[b]));
+        int ranked = Math.min(topK, slots);
+        String[] topMedicines = new String[ranked];
+        long[] topCounts = new long[ranked];
+        long[] topErrors = new long[ranked];
+        for (int i = 0; i < ranked; i++) {
+            topMedicines[i] = medicines[order[i]];
+            topCounts[i] = medicineCounts[order[i]];
+            topErrors[i] = medicineErrors[order[i]];
+        }
+        return new Snapshot(total, topMedicines, topCounts, topErrors, today - daily.length + 1, daily);
+    }
+
+    private void countDay(int day) {
+        int slot = Math.floorMod(day, dayOf.length);
+        if (dayOf[slot] == day) {
+            dayCounts[slot]++;
+        } else if (dayOf[slot] < day) {
+            dayOf[slot] = day;
+            dayCounts[slot] = 1;
+        }
+        // Otherwise the slot already holds a later day, so this one has left the window.
+    }
+
+    private void countMedicine(String medicine) {
+        int lowest = -1;
+        for (int i = 0; i < slots; i++) {
+            if (medicines[i].equals(medicine)) {
+                medicineCounts[i]++;
+                return;
+            }
+            if (lowest < 0 || medicineCounts[i] < medicineCounts[lowest]) {
+                lowest = i;
+            }
+        }
+        if (slots < capacity) {
+            if (slots == medicines.length) {
+                int grown = Math.min(capacity, Math.max(INITIAL_SLOTS, slots * 2));
+                medicines = Arrays.copyOf(medicines, grown);
+                medicineCounts = Arrays.copyOf(medicineCounts, grown);
+                medicineErrors = Arrays.copyOf(medicineErrors, grown);
+            }
+            medicines[slots] = medicine;
+            medicineCounts[slots] = 1;
+            medicineErrors[slots++] = 0;
+            return;
+        }
+        medicines[lowest] = medicine;
+        medicineErrors[lowest] = medicineCounts[lowest];
+        medicineCounts[lowest]++;
+    }
+
+    /**
+     * A consistent copy of one doctor's or patient's counters.
+     */
+    public static final class Snapshot {
+
+        private final long total;
+        private final String[] topMedicines;
+        private final long[] topCounts;
+        private final long[] topErrors;
+        private final long firstDay;
+        private final long[] dailyCounts;
+
+        Snapshot(long total, String[] topMedicines, long[] topCounts, long[] topErrors, long firstDay, long[] dailyCounts) {
+            this.total = total;
+            this.topMedicines = topMedicines;
+            this.topCounts = topCounts;
+            this.topErrors = topErrors;
+            this.firstDay = firstDay;
+            this.dailyCounts = dailyCounts;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        /**
+         * The most prescribed medicines, highest count first.
+         */
+        public String[] getTopMedicines() {
+            return topMedicines;
+        }
+
+        /**
+         * The count of each of {@link #getTopMedicines()}, which may exceed the true count by its error.
+         */
+        public long[] getTopCounts() {
+            return topCounts;
+        }
+
+        /**
+         * How far each of {@link #getTopCounts()} may exceed the true count; 0 for an exact count.
+         */
+        public long[] getTopErrors() {
+            return topErrors;
+        }
+
+        /**
+         * The epoch day of the first entry of {@link #getDailyCounts()}.
+         */
+        public long getFirstDay() {
+            return firstDay;
+        }
+
+        /**
+         * Prescriptions per day, oldest first, ending with today.
+         */
+        public long[] getDailyCounts() {
+            return dailyCounts;
+        }
+    }
+}
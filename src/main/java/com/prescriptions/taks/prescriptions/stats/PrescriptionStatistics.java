@@ -0,0 +1,87 @@
+package com.prescriptions.taks.prescriptions.stats;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory {@link PrescriptionCounters} for every doctor and patient that has prescriptions.
+ * <p>
+ * Medicine names are counted trimmed and in lower case, so {@code "Aspirin "} and {@code "aspirin"} are one medicine.
+ * The names are shared between all counters, up to {@value #MAX_SHARED_NAMES} distinct ones, so a medicine
+ * prescribed to a million patients is held once.
+ * </p>
+ * <p>
+ * Records are safe from any thread and concurrent with snapshots; counters of different doctors and patients never
+ * contend.
+ * </p>
+ */
+public class PrescriptionStatistics {
+
+    static final int MAX_SHARED_NAMES = 100_000;
+
+    private final int capacity;
+    private final int days;
+    private final ConcurrentHashMap<Long, PrescriptionCounters> doctors = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, PrescriptionCounters> patients = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, String> names = new ConcurrentHashMap<>();
+
+    /**
+     * @param capacity The number of medicines tracked per doctor or patient, see {@link PrescriptionCounters}.
+     * @param days     The number of days counted per day.
+     */
+    public PrescriptionStatistics(int capacity, int days) {
+        this.capacity = capacity;
+        this.days = days;
+    }
+
+    /**
+     * Counts one prescription for its doctor and its patient.
+     *
+     * @param epochDay The day the prescription was created, or {@link Long#MIN_VALUE} if unknown.
+     */
+    public void record(Long doctorId, Long patientId, String medicineName, long epochDay) {
+        String medicine = normalize(medicineName);
+        if (doctorId != null) {
+            doctors.computeIfAbsent(doctorId, id -> new PrescriptionCounters(capacity, days)).record(medicine, epochDay);
+        }
+        if (patientId != null) {
+            patients.computeIfAbsent(patientId, id -> new PrescriptionCounters(capacity, days)).record(medicine, epochDay);
+        }
+    }
+
+    public PrescriptionCounters.Snapshot doctor(long doctorId, int topK, long today) {
+        return snapshot(doctors.get(doctorId), topK, today);
+    }
+
+    public PrescriptionCounters.Snapshot patient(long patientId, int topK, long today) {
+        return snapshot(patients.get(patientId), topK, today);
+    }
+
+    public int doctorCount() {
+        return doctors.size();
+    }
+
+    public int patientCount() {
+        return patients.size();
+    }
+
+    private PrescriptionCounters.Snapshot snapshot(PrescriptionCounters counters, int topK, long today) {
+        return (counters == null ? new PrescriptionCounters(0, days) : counters).snapshot(topK, today);
+    }
+
+    private String normalize(String medicineName) {
+        if (medicineName == null || medicineName.isBlank()) {
+            return null;
+        }
+        String medicine = medicineName.strip().toLowerCase(Locale.ROOT);
+        String shared = names.get(medicine);
+        if (shared != null) {
+            return shared;
+        }
+        if (names.size() >= MAX_SHARED_NAMES) {
+            return medicine;
+        }
+        shared = names.putIfAbsent(medicine, medicine);
+        return shared == null ? medicine : shared;
+    }
+}
@@ -0,0 +1,8 @@
+-- Removes the patient_prescriptions join table that the old Patient.prescriptions mapping maintained
+-- next to prescription.patient_id. The association now reads prescription.patient_id directly, so the
+-- table is no longer read or written. Run once on an existing MySQL pharmacydb.
+-- The idx_prescription_patient_id_id and idx_prescription_doctor_id_id indexes are created by
+-- ddl-auto=update on the next start. MySQL then drops the implicit single-column foreign key indexes,
+-- because the new indexes start with the same columns and can enforce the constraints.
+
+DROP TABLE IF EXISTS patient_prescriptions;
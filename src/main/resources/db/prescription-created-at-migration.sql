@@ -0,0 +1,4 @@
+-- Adds the creation time used by the per-day prescription statistics.
+-- Hibernate adds the column on the primary by itself; run this once on every existing shard.
+-- Prescriptions created before the column existed keep a NULL creation time and are left out of the per-day counts.
+ALTER TABLE prescription ADD COLUMN created_at DATETIME(6) NULL;
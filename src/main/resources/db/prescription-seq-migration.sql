@@ -0,0 +1,7 @@
+-- Moves prescription ids from AUTO_INCREMENT to the pooled prescription_seq generator.
+-- Run once against an existing pharmacydb after the application has created prescription_seq,
+-- and before any prescription is inserted through the new mapping.
+-- The pooled optimizer reads next_val as the last id of its next block of 50 (the allocationSize)
+-- and hands out next_val - 49 .. next_val, so next_val is set one full block past the existing rows.
+UPDATE prescription_seq
+SET next_val = (SELECT COALESCE(MAX(id), 0) + 50 FROM prescription);
@@ -0,0 +1,13 @@
+-- Prescription table on a shard. Applied at startup to shards that do not have it yet.
+-- Doctors and patients stay on the primary, so there are no foreign keys here; saves check the references instead.
+CREATE TABLE prescription (
+    id BIGINT NOT NULL PRIMARY KEY,
+    medicine_name VARCHAR(255),
+    dosage VARCHAR(255),
+    instructions VARCHAR(255),
+    doctor_id BIGINT,
+    patient_id BIGINT,
+    created_at DATETIME(6)
+);
+CREATE INDEX idx_prescription_patient_id_id ON prescription (patient_id, id);
+CREATE INDEX idx_prescription_doctor_id_id ON prescription (doctor_id, id);
@@ -0,0 +1,34 @@
+-- Moves an existing MySQL pharmacydb from the joined user layout (userdb + doctor + patient)
+-- to the single-table layout used by the single-table-users profile.
+-- Run with the mysql client while the application is stopped, then start it with the profile.
+-- The doctor and patient tables are kept so the joined layout can be restored; drop them once
+-- the new layout has been verified.
+
+ALTER TABLE userdb
+    ADD COLUMN specialty VARCHAR(255),
+    ADD COLUMN medical_history VARCHAR(255);
+
+UPDATE userdb u JOIN doctor d ON d.id = u.id SET u.specialty = d.specialty, u.role = 'DOCTOR';
+UPDATE userdb u JOIN patient p ON p.id = u.id SET u.medical_history = p.medical_history, u.role = 'PATIENT';
+
+-- Foreign keys to doctor and patient have generated names, so look them up before dropping them.
+SET @fk := (SELECT constraint_name FROM information_schema.referential_constraints
+            WHERE constraint_schema = DATABASE() AND table_name = 'prescription' AND referenced_table_name = 'doctor');
+SET @stmt := CONCAT('ALTER TABLE prescription DROP FOREIGN KEY ', @fk);
+PREPARE drop_fk FROM @stmt;
+EXECUTE drop_fk;
+DEALLOCATE PREPARE drop_fk;
+
+SET @fk := (SELECT constraint_name FROM information_schema.referential_constraints
+            WHERE constraint_schema = DATABASE() AND table_name = 'prescription' AND referenced_table_name = 'patient');
+SET @stmt := CONCAT('ALTER TABLE prescription DROP FOREIGN KEY ', @fk);
+PREPARE drop_fk FROM @stmt;
+EXECUTE drop_fk;
+DEALLOCATE PREPARE drop_fk;
+
+ALTER TABLE prescription
+    ADD CONSTRAINT fk_prescription_doctor_user FOREIGN KEY (doctor_id) REFERENCES userdb (id),
+    ADD CONSTRAINT fk_prescription_patient_user FOREIGN KEY (patient_id) REFERENCES userdb (id);
+
+-- DROP TABLE doctor;
+-- DROP TABLE patient;
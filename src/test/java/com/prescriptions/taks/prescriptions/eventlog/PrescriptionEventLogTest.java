@@ -0,0 +1,144 @@
+package com.prescriptions.taks.prescriptions.eventlog;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link PrescriptionEventLog}.
+ * Covers reading while appending, segment rolling, seeking, reopening, reading finished segments and cutting off a
+ * torn record.
+ */
+class PrescriptionEventLogTest {
+
+    private static final int SEGMENT_SIZE = 256;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Tests that a cursor sees records in order across segments and picks up records appended after it ran dry.
+     */
+    @Test
+    void testCursorFollowsAppendsAcrossSegments() throws IOException {
+        try (PrescriptionEventLog log = open()) {
+            PrescriptionEventLog.Cursor cursor = log.cursor(0);
+            assertFalse(cursor.next());
+
+            for (int i = 1; i <= 20; i++) {
+                assertEquals(i, log.append(payload("event " + i)));
+            }
+            assertEquals(List.of("event 1", "event 2", "event 3"), read(cursor, 3));
+            log.append(payload("event 21"));
+            assertEquals(18, read(cursor, 100).size());
+            assertEquals(21, cursor.sequence());
+            assertEquals(List.of("event 20", "event 21"), read(log.cursor(19), 100));
+        }
+        try (Stream<Path> segments = Files.list(directory)) {
+            assertEquals(2, segments.count());
+        }
+    }
+
+    /**
+     * Tests that a reopened log continues the sequence and drops a record whose write did not complete.
+     */
+    @Test
+    void testReopenCutsOffTornRecord() throws IOException {
+        try (PrescriptionEventLog log = open()) {
+            log.append(payload("first"));
+            log.append(payload("second"));
+        }
+        // Damage the second record's payload as if the process died while writing it.
+        Path segment = directory.resolve(String.format("%020d.log", 1));
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            int secondPayload = 2 * PrescriptionEventLog.HEADER_SIZE + "first".length();
+            channel.write(ByteBuffer.wrap(new byte[]{'X'}), secondPayload);
+        }
+
+        try (PrescriptionEventLog log = open()) {
+            assertEquals(1, log.lastSequence());
+            assertEquals(2, log.append(payload("third")));
+            assertEquals(List.of("first", "third"), read(log.cursor(0), 100));
+        }
+    }
+
+    /**
+     * Tests that a cursor starting after a given record seeks to its segment instead of reading the ones before.
+     */
+    @Test
+    void testCursorSeeksToSegment() throws IOException {
+        try (PrescriptionEventLog log = open()) {
+            for (int i = 1; i <= 21; i++) {
+                log.append(payload("event " + i));
+            }
+        }
+        // Damage the first record; only a cursor that reads the first segment notices.
+        Path first = directory.resolve(String.format("%020d.log", 1));
+        try (FileChannel channel = FileChannel.open(first, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{'X'}), PrescriptionEventLog.HEADER_SIZE);
+        }
+
+        try (PrescriptionEventLog log = open()) {
+            assertEquals(List.of("event 20", "event 21"), read(log.cursor(19), 100));
+            assertEquals(List.of(), read(log.cursor(21), 100));
+            assertThrows(IllegalStateException.class, () -> log.cursor(0).next());
+        }
+    }
+
+    /**
+     * Tests that a reopened log with many finished segments, which are only mapped while a cursor reads them, is read
+     * back in full, and that appends continue in the last segment.
+     */
+    @Test
+    void testFinishedSegmentsAreReadAfterReopen() throws IOException {
+        List<String> appended = new ArrayList<>();
+        try (PrescriptionEventLog log = open()) {
+            for (int i = 1; i <= 500; i++) {
+                appended.add("event " + i);
+                log.append(payload("event " + i));
+            }
+        }
+        try (Stream<Path> segments = Files.list(directory)) {
+            assertTrue(segments.count() > 40);
+        }
+
+        try (PrescriptionEventLog log = open()) {
+            assertEquals(501, log.append(payload("event 501")));
+            appended.add("event 501");
+            assertEquals(appended, read(log.cursor(0), 1000));
+            assertEquals(List.of("event 500", "event 501"), read(log.cursor(499), 1000));
+        }
+    }
+
+    private PrescriptionEventLog open() throws IOException {
+        return new PrescriptionEventLog(directory, SEGMENT_SIZE, FsyncPolicy.NEVER, Duration.ofSeconds(1));
+    }
+
+    private static byte[] payload(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> read(PrescriptionEventLog.Cursor cursor, int max) {
+        List<String> values = new ArrayList<>();
+        while (values.size() < max && cursor.next()) {
+            values.add(StandardCharsets.UTF_8.decode(cursor.payload()).toString());
+        }
+        return values;
+    }
+}
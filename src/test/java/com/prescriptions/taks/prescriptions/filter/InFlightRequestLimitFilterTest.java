@@ -0,0 +1,117 @@
+package com.prescriptions.taks.prescriptions.filter;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit test class for {@link InFlightRequestLimitFilter}.
+ * <p>
+ * Verifies that requests pass while permits are available, that a request arriving while every permit
+ * is held is rejected with {@code 503} once the acquire timeout elapses, and that permits are returned
+ * after each request, for async requests only once their async processing ends.
+ * </p>
+ */
+class InFlightRequestLimitFilterTest {
+
+    /**
+     * Tests that a request passes through and gives its permit back afterwards.
+     */
+    @Test
+    void testRequestPassesAndReleasesPermit() throws Exception {
+        InFlightRequestLimitFilter filter = new InFlightRequestLimitFilter(2, Duration.ofMillis(10));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/prescriptions/patient/1"), response, chain);
+
+        assertEquals(200, response.getStatus());
+        assertEquals(2, filter.availablePermits());
+    }
+
+    /**
+     * Tests that a request is rejected with 503 and a retry hint while the only permit is held by another request.
+     */
+    @Test
+    void testRequestRejectedWhenSaturated() throws Exception {
+        InFlightRequestLimitFilter filter = new InFlightRequestLimitFilter(1, Duration.ofMillis(50));
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger firstStatus = new AtomicInteger();
+
+        Thread first = new Thread(() -> {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            try {
+                filter.doFilter(new MockHttpServletRequest("GET", "/api/prescriptions/patient/1"), response, (req, res) -> {
+                    entered.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                firstStatus.set(response.getStatus());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        first.start();
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/prescriptions/patient/2"), rejected, new MockFilterChain());
+
+        release.countDown();
+        first.join();
+
+        assertEquals(503, rejected.getStatus());
+        assertEquals("1", rejected.getHeader("Retry-After"));
+        assertEquals(200, firstStatus.get());
+        assertEquals(1, filter.availablePermits());
+    }
+
+    /**
+     * Tests that an async request, like a streamed listing, holds its permit after its first dispatch returns and
+     * until the async processing completes, and that a timed-out one gives it back exactly once.
+     */
+    @Test
+    void testAsyncRequestHoldsPermitUntilComplete() throws Exception {
+        InFlightRequestLimitFilter filter = new InFlightRequestLimitFilter(1, Duration.ofMillis(10));
+        MockHttpServletRequest streaming = new MockHttpServletRequest("GET", "/api/prescriptions/patient/1/stream");
+        streaming.setAsyncSupported(true);
+
+        filter.doFilter(streaming, new MockHttpServletResponse(), (req, res) -> req.startAsync());
+        assertTrue(streaming.isAsyncStarted());
+        assertEquals(0, filter.availablePermits());
+
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/prescriptions/patient/2"), rejected, new MockFilterChain());
+        assertEquals(503, rejected.getStatus());
+
+        ((MockAsyncContext) streaming.getAsyncContext()).complete();
+        assertEquals(1, filter.availablePermits());
+
+        MockHttpServletRequest timingOut = new MockHttpServletRequest("GET", "/api/prescriptions/patient/1/export");
+        timingOut.setAsyncSupported(true);
+        filter.doFilter(timingOut, new MockHttpServletResponse(), (req, res) -> req.startAsync());
+        assertEquals(0, filter.availablePermits());
+        MockAsyncContext asyncContext = (MockAsyncContext) timingOut.getAsyncContext();
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext));
+        }
+        asyncContext.complete();
+        assertEquals(1, filter.availablePermits());
+    }
+}
@@ -0,0 +1,86 @@
+package com.prescriptions.taks.prescriptions.filter;
+
+import com.prescriptions.taks.prescriptions.routing.ReplicaRoutingContext;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit test class for {@link ReadYourWritesFilter}.
+ * <p>
+ * Verifies that a client's reads go to the primary as soon as its write has been answered, even before the filter
+ * of the write gets control back, and that a failed write does not send them there.
+ * </p>
+ */
+class ReadYourWritesFilterTest {
+
+    private static final String HEADER = "X-Session-Id";
+
+    private final ReadYourWritesFilter filter = new ReadYourWritesFilter(HEADER, Duration.ofSeconds(5), 100);
+
+    /**
+     * Tests that a read sent, on another thread, while the write's response is being handled already reads from the
+     * primary.
+     */
+    @Test
+    void testReadDuringWriteResponseUsesPrimary() throws Exception {
+        boolean[] readUsedPrimary = new boolean[1];
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request("POST", "session-1"), response, (req, res) -> {
+            MockHttpServletResponse created = (MockHttpServletResponse) res;
+            created.setStatus(201);
+            created.flushBuffer();
+            try {
+                readUsedPrimary[0] = CompletableFuture.supplyAsync(() -> readUsesPrimary("session-1")).get(5, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertTrue(readUsedPrimary[0]);
+        assertTrue(readUsesPrimary("session-1"));
+        assertFalse(readUsesPrimary("session-2"));
+    }
+
+    /**
+     * Tests that a rejected write leaves a new session reading from the replicas, and a session that wrote before
+     * on the primary.
+     */
+    @Test
+    void testFailedWriteDoesNotMarkSession() throws Exception {
+        filter.doFilter(request("POST", "session-1"), new MockHttpServletResponse(),
+                (req, res) -> ((MockHttpServletResponse) res).setStatus(400));
+        assertFalse(readUsesPrimary("session-1"));
+
+        filter.doFilter(request("POST", "session-2"), new MockHttpServletResponse(),
+                (req, res) -> ((MockHttpServletResponse) res).setStatus(201));
+        filter.doFilter(request("POST", "session-2"), new MockHttpServletResponse(),
+                (req, res) -> ((MockHttpServletResponse) res).setStatus(400));
+        assertTrue(readUsesPrimary("session-2"));
+    }
+
+    private boolean readUsesPrimary(String session) {
+        boolean[] primary = new boolean[1];
+        try {
+            filter.doFilter(request("GET", session), new MockHttpServletResponse(),
+                    (req, res) -> primary[0] = ReplicaRoutingContext.isPrimaryRequired());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return primary[0];
+    }
+
+    private static MockHttpServletRequest request(String method, String session) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, "/api/prescriptions/doctor/1");
+        request.addHeader(HEADER, session);
+        return request;
+    }
+}
@@ -0,0 +1,99 @@
+package com.prescriptions.taks.prescriptions.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.prescriptions.taks.prescriptions.repository.DoctorRepository;
+import com.prescriptions.taks.prescriptions.repository.PatientRepository;
+import com.prescriptions.taks.prescriptions.repository.PrescriptionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Integration test for token authentication of the API.
+ * <p>
+ * Registers a patient, logs in, and checks that prescription endpoints reject requests without a valid token,
+ * accept the issued one and reject it again after logout.
+ * </p>
+ */
+@SpringBootTest(properties = "prescriptions.auth.enabled=true")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class AuthenticationIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private PrescriptionRepository prescriptionRepository;
+
+    @BeforeEach
+    void setUp() {
+        prescriptionRepository.deleteAll();
+        doctorRepository.deleteAll();
+        patientRepository.deleteAll();
+    }
+
+    /**
+     * Tests the full token lifecycle: register, log in, call an endpoint, log out.
+     *
+     * @throws Exception if an error occurs while performing the request or processing the response
+     */
+    @Test
+    void testLoginAuthenticatesAndLogoutRevokes() throws Exception {
+        String body = mockMvc.perform(post("/api/users/register/patient").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\": \"auth.patient\", \"password\": \"s3cret\"}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        long patientId = objectMapper.readTree(body).get("id").asLong();
+        String prescriptions = "/api/prescriptions/patient/" + patientId;
+
+        mockMvc.perform(get(prescriptions))
+                .andExpect(status().isUnauthorized())
+                .andExpect(header().string(HttpHeaders.WWW_AUTHENTICATE, "Bearer"));
+        mockMvc.perform(get(prescriptions).header(HttpHeaders.AUTHORIZATION, "Bearer not-a-token"))
+                .andExpect(status().isUnauthorized());
+
+        mockMvc.perform(post("/api/users/login").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\": \"auth.patient\", \"password\": \"wrong\"}"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(post("/api/users/login").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\": \"nobody\", \"password\": \"s3cret\"}"))
+                .andExpect(status().isUnauthorized());
+
+        body = mockMvc.perform(post("/api/users/login").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\": \"auth.patient\", \"password\": \"s3cret\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.tokenType").value("Bearer"))
+                .andReturn().getResponse().getContentAsString();
+        JsonNode token = objectMapper.readTree(body);
+        String authorization = "Bearer " + token.get("token").asText();
+
+        mockMvc.perform(get(prescriptions).header(HttpHeaders.AUTHORIZATION, authorization))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/api/users/logout").header(HttpHeaders.AUTHORIZATION, authorization))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(get(prescriptions).header(HttpHeaders.AUTHORIZATION, authorization))
+                .andExpect(status().isUnauthorized());
+    }
+}
@@ -0,0 +1,76 @@
+package com.prescriptions.taks.prescriptions.integration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalManagementPort;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Integration test for serving the actuator endpoints on a separate management port.
+ *
+ * Starts the application on random ports and checks that the cache, metrics and Prometheus endpoints are only
+ * reachable on the management port, so clients of the API cannot read metrics or evict caches.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:managementport;DB_CLOSE_DELAY=-1",
+        "management.server.port=0"
+})
+@AutoConfigureObservability
+@ActiveProfiles("test")
+class ManagementPortIntegrationTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @LocalServerPort
+    private int serverPort;
+
+    @LocalManagementPort
+    private int managementPort;
+
+    /**
+     * Tests that the actuator endpoints answer on the management port and not on the API port.
+     */
+    @Test
+    void testActuatorEndpointsOnlyOnManagementPort() {
+        for (String endpoint : new String[]{"/actuator/caches", "/actuator/metrics", "/actuator/prometheus"}) {
+            assertEquals(HttpStatus.NOT_FOUND, status(HttpMethod.GET, serverPort, endpoint), endpoint);
+            assertEquals(HttpStatus.OK, status(HttpMethod.GET, managementPort, endpoint), endpoint);
+        }
+        assertEquals(HttpStatus.NOT_FOUND, status(HttpMethod.DELETE, serverPort, "/actuator/caches"));
+    }
+
+    /**
+     * Tests that the shipped configuration serves the actuator endpoints on a port of their own; the test profile
+     * moves them back to the API port for MockMvc.
+     *
+     * @throws IOException if the configuration cannot be read
+     */
+    @Test
+    void testDefaultConfigurationSeparatesManagementPort() throws IOException {
+        Properties properties = PropertiesLoaderUtils.loadProperties(new ClassPathResource("application.properties"));
+        String port = properties.getProperty("management.server.port");
+        assertNotNull(port);
+        assertNotEquals(properties.getProperty("server.port", "8080"), port);
+    }
+
+    private HttpStatus status(HttpMethod method, int port, String path) {
+        return HttpStatus.valueOf(restTemplate.exchange("http://localhost:" + port + path, method, null, String.class)
+                .getStatusCode().value());
+    }
+}
@@ -0,0 +1,61 @@
+package com.prescriptions.taks.prescriptions.integration;
+
+import com.prescriptions.taks.prescriptions.entities.Doctor;
+import com.prescriptions.taks.prescriptions.repository.DoctorRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Integration test for the Prometheus scrape endpoint.
+ *
+ * Calls a prescription endpoint and then scrapes {@code /actuator/prometheus}, asserting that the endpoint
+ * latency histogram, the repository timers, the per-request statement count and the connection pool gauges
+ * are all published.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+@ActiveProfiles("test")
+class MetricsEndpointIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    /**
+     * Tests that request, repository, statement and pool metrics appear in the scrape output.
+     *
+     * @throws Exception if an error occurs while performing the request or processing the response
+     */
+    @Test
+    void testPrometheusScrapeContainsRequestAndRepositoryMetrics() throws Exception {
+        Doctor doctor = new Doctor();
+        doctor.setUsername("dr.metrics");
+        doctorRepository.save(doctor);
+
+        mockMvc.perform(get("/api/prescriptions/doctor/" + doctor.getId()))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("http_server_requests_seconds_bucket{")))
+                .andExpect(content().string(containsString("uri=\"/api/prescriptions/doctor/{doctorId}\"")))
+                .andExpect(content().string(containsString("spring_data_repository_invocations_seconds_bucket{")))
+                .andExpect(content().string(containsString("method=\"findDTOsByDoctorId\"")))
+                .andExpect(content().string(containsString("hibernate_statements_per_request_statements_count{")))
+                .andExpect(content().string(containsString("hikaricp_connections_pending")))
+                .andExpect(content().string(containsString("cache_gets_total")));
+    }
+}
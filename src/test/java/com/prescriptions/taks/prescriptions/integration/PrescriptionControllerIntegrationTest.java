@@ -1,20 +1,44 @@
 package com.prescriptions.taks.prescriptions.integration;
 
+import com.prescriptions.taks.prescriptions.dto.PrescriptionDTO;
 import com.prescriptions.taks.prescriptions.entities.Doctor;
 import com.prescriptions.taks.prescriptions.entities.Patient;
 import com.prescriptions.taks.prescriptions.entities.Prescription;
 import com.prescriptions.taks.prescriptions.repository.DoctorRepository;
 import com.prescriptions.taks.prescriptions.repository.PatientRepository;
 import com.prescriptions.taks.prescriptions.repository.PrescriptionRepository;
+import com.prescriptions.taks.prescriptions.service.IdempotencyService;
+import com.prescriptions.taks.prescriptions.service.InteractionCheckService;
+import com.prescriptions.taks.prescriptions.service.PrescriptionService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -48,6 +72,15 @@ class PrescriptionControllerIntegrationTest {
     @Autowired
     private PrescriptionRepository prescriptionRepository;
 
+    @Autowired
+    private PrescriptionService prescriptionService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private InteractionCheckService interactionCheckService;
+
     private Doctor doctor;
     private Patient patient;
     private Prescription prescription;
@@ -93,7 +126,8 @@ class PrescriptionControllerIntegrationTest {
      *
      * Performs a GET request to the /api/prescriptions/doctor/{id} endpoint,
      * where {id} is replaced by the doctor's ID. Asserts that the response status
-     * is 200 OK and verifies the content of the response using JSON path expressions.
+     * is 200 OK, that the response varies by Accept, and verifies the content of the response using JSON path
+     * expressions.
      *
      * @throws Exception if an error occurs while performing the request or processing the response
      */
@@ -103,6 +137,7 @@ class PrescriptionControllerIntegrationTest {
         mockMvc.perform(get("/api/prescriptions/doctor/" + doctor.getId()).contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
                 .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
                 .andExpect(jsonPath("$[0].id").value(prescription.getId()))
                 .andExpect(jsonPath("$[0].medicineName").value(prescription.getMedicineName()))
                 .andExpect(jsonPath("$[0].dosage").value(prescription.getDosage()))
@@ -116,7 +151,8 @@ class PrescriptionControllerIntegrationTest {
      *
      * Performs a GET request to the /api/prescriptions/patient/{id} endpoint,
      * where {id} is replaced by the patient's ID. Asserts that the response status
-     * is 200 OK and verifies the content of the response using JSON path expressions.
+     * is 200 OK, that the response varies by Accept, and verifies the content of the response using JSON path
+     * expressions.
      *
      * @throws Exception if an error occurs while performing the request or processing the response
      */
@@ -126,6 +162,7 @@ class PrescriptionControllerIntegrationTest {
         mockMvc.perform(get("/api/prescriptions/patient/" + patient.getId()).contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
                 .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
                 .andExpect(jsonPath("$[0].id").value(prescription.getId()))
                 .andExpect(jsonPath("$[0].medicineName").value(prescription.getMedicineName()))
                 .andExpect(jsonPath("$[0].dosage").value(prescription.getDosage()))
@@ -166,4 +203,238 @@ class PrescriptionControllerIntegrationTest {
                 .andExpect(jsonPath("$.doctorId").value(doctor.getId())) // Proveri doktor ID
                 .andExpect(jsonPath("$.patientId").value(patient.getId()));
     }
+
+    /**
+     * Tests the bulk creation endpoint with a JSON array body.
+     *
+     * Sends three rows: a valid one, one without a patient and one referencing a doctor that does not exist.
+     * Asserts that the valid row is created and that the other two are reported as failures
+     * without rolling back the valid row, the database rejection with a stable message rather than the SQL error.
+     *
+     * @throws Exception if an error occurs while performing the request or processing the response
+     */
+    @Test
+    void testCreatePrescriptionsInBulkFromJsonArray() throws Exception {
+        String jsonRequest = "["
+                + "{\"medicineName\": \"Ibuprofen\", \"dosage\": \"200mg\", \"doctor\": {\"id\":" + doctor.getId() + "}, \"patient\": {\"id\":" + patient.getId() + "}},"
+                + "{\"medicineName\": \"Paracetamol\", \"dosage\": \"500mg\", \"doctor\": {\"id\":" + doctor.getId() + "}},"
+                + "{\"medicineName\": \"Insulin\", \"dosage\": \"10IU\", \"doctor\": {\"id\": -1}, \"patient\": {\"id\":" + patient.getId() + "}}"
+                + "]";
+
+        mockMvc.perform(post("/api/prescriptions/bulk").contentType(MediaType.APPLICATION_JSON).content(jsonRequest))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(3))
+                .andExpect(jsonPath("$.succeeded").value(1))
+                .andExpect(jsonPath("$.failed").value(2))
+                .andExpect(jsonPath("$.rows[0].success").value(true))
+                .andExpect(jsonPath("$.rows[0].id").exists())
+                .andExpect(jsonPath("$.rows[1].success").value(false))
+                .andExpect(jsonPath("$.rows[1].error").value("patient.id is required"))
+                .andExpect(jsonPath("$.rows[2].success").value(false))
+                .andExpect(jsonPath("$.rows[2].error").value(PrescriptionService.BULK_CONSTRAINT_VIOLATION));
+
+        mockMvc.perform(get("/api/prescriptions/patient/" + patient.getId()).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2));
+    }
+
+    /**
+     * Tests the bulk creation endpoint with a newline-delimited JSON body.
+     *
+     * Sends two valid rows around one that cannot be bound to a prescription and asserts that
+     * the parser recovers and creates the rows on either side of it, and that the failure names the field and
+     * position rather than the parser's message.
+     *
+     * @throws Exception if an error occurs while performing the request or processing the response
+     */
+    @Test
+    void testCreatePrescriptionsInBulkFromNdjson() throws Exception {
+        String ndjsonRequest =
+                "{\"medicineName\": \"Ibuprofen\", \"doctor\": {\"id\":" + doctor.getId() + "}, \"patient\": {\"id\":" + patient.getId() + "}}\n"
+                + "{\"medicineName\": \"Bad\", \"doctor\": {\"id\": \"not-a-number\"}, \"patient\": {\"id\":" + patient.getId() + "}}\n"
+                + "{\"medicineName\": \"Paracetamol\", \"doctor\": {\"id\":" + doctor.getId() + "}, \"patient\": {\"id\":" + patient.getId() + "}}\n";
+
+        mockMvc.perform(post("/api/prescriptions/bulk").contentType(MediaType.APPLICATION_NDJSON).content(ndjsonRequest))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(3))
+                .andExpect(jsonPath("$.succeeded").value(2))
+                .andExpect(jsonPath("$.rows[1].success").value(false))
+                .andExpect(jsonPath("$.rows[1].error").value(startsWith("Row 1 has an invalid value at doctor.id (line 2, column ")))
+                .andExpect(jsonPath("$.rows[1].error").value(not(containsString("Prescription"))))
+                .andExpect(jsonPath("$.rows[2].success").value(true));
+    }
+
+    /**
+     * Tests that a bulk body that stops being valid JSON reports where it broke and which rows were not read.
+     *
+     * @throws Exception if an error occurs while performing the request or processing the response
+     */
+    @Test
+    void testCreatePrescriptionsInBulkFromMalformedJson() throws Exception {
+        String jsonRequest = "["
+                + "{\"medicineName\": \"Ibuprofen\", \"doctor\": {\"id\":" + doctor.getId() + "}, \"patient\": {\"id\":" + patient.getId() + "}},\n"
+                + "{\"medicineName\": \"Paracetamol\", }";
+
+        mockMvc.perform(post("/api/prescriptions/bulk").contentType(MediaType.APPLICATION_JSON).content(jsonRequest))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.succeeded").value(1))
+                .andExpect(jsonPath("$.rows[1].success").value(false))
+                .andExpect(jsonPath("$.rows[1].error").value(
+                        matchesPattern("Malformed input \\(line 2, column \\d+\\), rows from 1 on were not read")));
+    }
+
+    /**
+     * Tests that creating a prescription that interacts with one of the patient's existing prescriptions
+     * still creates it and returns the interaction as a warning.
+     *
+     * @throws Exception if an error occurs while performing the request or processing the response
+     */
+    @Test
+    void testCreatePrescriptionReturnsInteractionWarnings() throws Exception {
+        String jsonRequest = "{\"medicineName\": \"Warfarin 5mg\", \"doctor\": {\"id\":" + doctor.getId() + "}, \"patient\": {\"id\":" + patient.getId() + "}}";
+
+        mockMvc.perform(post("/api/prescriptions/create").contentType(MediaType.APPLICATION_JSON).content(jsonRequest))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.warnings.length()").value(1))
+                .andExpect(jsonPath("$.warnings[0].medicine").value("warfarin"))
+                .andExpect(jsonPath("$.warnings[0].interactingMedicine").value("aspirin"))
+                .andExpect(jsonPath("$.warnings[0].severity").value("MAJOR"));
+
+        jsonRequest = "{\"medicineName\": \"Naproxen\", \"doctor\": {\"id\":" + doctor.getId() + "}, \"patient\": {\"id\":" + patient.getId() + "}}";
+        mockMvc.perform(post("/api/prescriptions/create").contentType(MediaType.APPLICATION_JSON).content(jsonRequest))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.warnings.length()").value(1))
+                .andExpect(jsonPath("$.warnings[0].interactingMedicine").value("warfarin"));
+    }
+
+    /**
+     * Tests that repeating a create request with the same Idempotency-Key replays the first response
+     * instead of creating a second prescription, and that reusing the key for another prescription is rejected.
+     *
+     * @throws Exception if an error occurs while performing the request or processing the response
+     */
+    @Test
+    void testCreatePrescriptionWithIdempotencyKey() throws Exception {
+        String jsonRequest = "{\"medicineName\": \"Ibuprofen\", \"dosage\": \"200mg\", \"doctor\": {\"id\":" + doctor.getId() + "}, \"patient\": {\"id\":" + patient.getId() + "}}";
+        String key = UUID.randomUUID().toString();
+
+        String first = mockMvc.perform(post("/api/prescriptions/create").header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON).content(jsonRequest))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Idempotent-Replayed", "false"))
+                .andReturn().getResponse().getContentAsString();
+
+        mockMvc.perform(post("/api/prescriptions/create").header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON).content(jsonRequest))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(content().json(first, true));
+
+        String otherRequest = jsonRequest.replace("200mg", "400mg");
+        mockMvc.perform(post("/api/prescriptions/create").header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON).content(otherRequest))
+                .andExpect(status().isUnprocessableEntity());
+
+        mockMvc.perform(post("/api/prescriptions/create").header("Idempotency-Key", " ")
+                        .contentType(MediaType.APPLICATION_JSON).content(jsonRequest))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/api/prescriptions/patient/" + patient.getId()).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2));
+    }
+
+    /**
+     * Tests that concurrent requests with the same Idempotency-Key run the action once and all get its response.
+     *
+     * @throws Exception if a request thread fails
+     */
+    @Test
+    void testConcurrentRetriesCollapseIntoOneInsert() throws Exception {
+        String key = UUID.randomUUID().toString();
+        AtomicInteger invocations = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<IdempotencyService.Result<PrescriptionDTO>>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return idempotencyService.execute(key, "hash", PrescriptionDTO.class, () -> {
+                        invocations.incrementAndGet();
+                        Prescription retry = new Prescription();
+                        retry.setMedicineName("Ibuprofen");
+                        retry.setDoctor(doctor);
+                        retry.setPatient(patient);
+                        PrescriptionDTO dto = new PrescriptionDTO();
+                        dto.setId(prescriptionService.createPrescription(retry).getId());
+                        return dto;
+                    });
+                }));
+            }
+            start.countDown();
+
+            Set<Long> ids = new HashSet<>();
+            int replayed = 0;
+            for (Future<IdempotencyService.Result<PrescriptionDTO>> result : results) {
+                IdempotencyService.Result<PrescriptionDTO> outcome = result.get(30, TimeUnit.SECONDS);
+                ids.add(outcome.getBody().getId());
+                replayed += outcome.isReplayed() ? 1 : 0;
+            }
+            assertEquals(1, invocations.get());
+            assertEquals(1, ids.size());
+            assertEquals(15, replayed);
+            assertEquals(2, prescriptionRepository.findDTOsByPatientId(patient.getId()).size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests that a create whose idempotency transaction rolls back leaves the listing version, the statistics, the
+     * search index and the interaction checks as they were.
+     *
+     * @throws Exception if an error occurs while performing the request or processing the response
+     */
+    @Test
+    void testRolledBackCreateChangesNoProjection() throws Exception {
+        Patient other = new Patient();
+        other.setUsername("PacijentDva");
+        other.setPassword("password");
+        patientRepository.save(other);
+        long committedId = prescriptionService.createPrescription(prescription("Warfarin", other)).getId();
+
+        String uri = "/api/prescriptions/patient/" + patient.getId();
+        String etag = mockMvc.perform(get(uri)).andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String stats = mockMvc.perform(get(uri + "/stats")).andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertTrue(interactionCheckService.check(patient.getId(), "Aspirin").isEmpty());
+
+        assertThrows(IllegalStateException.class, () -> idempotencyService.execute(UUID.randomUUID().toString(), "hash", Long.class, () -> {
+            prescriptionService.createPrescription(prescription("Warfarin", patient));
+            throw new IllegalStateException("Could not store the response");
+        }));
+
+        mockMvc.perform(get(uri).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get(uri + "/stats"))
+                .andExpect(content().json(stats, true));
+        mockMvc.perform(get("/api/prescriptions/search").param("q", "warfarin").param("mode", "EXACT")
+                        .param("after", String.valueOf(committedId - 1)).param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(committedId))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+        assertTrue(interactionCheckService.check(patient.getId(), "Aspirin").isEmpty());
+        mockMvc.perform(get(uri))
+                .andExpect(jsonPath("$.length()").value(1));
+    }
+
+    private Prescription prescription(String medicineName, Patient owner) {
+        Prescription created = new Prescription();
+        created.setMedicineName(medicineName);
+        created.setDoctor(doctor);
+        created.setPatient(owner);
+        return created;
+    }
 }
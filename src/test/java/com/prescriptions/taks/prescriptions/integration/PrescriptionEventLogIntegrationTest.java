@@ -0,0 +1,267 @@
+package com.prescriptions.taks.prescriptions.integration;
+
+import com.jayway.jsonpath.JsonPath;
+import com.prescriptions.taks.prescriptions.entities.Doctor;
+import com.prescriptions.taks.prescriptions.entities.Patient;
+import com.prescriptions.taks.prescriptions.entities.Prescription;
+import com.prescriptions.taks.prescriptions.eventlog.PrescriptionEventCodec;
+import com.prescriptions.taks.prescriptions.eventlog.PrescriptionEventLog;
+import com.prescriptions.taks.prescriptions.repository.DoctorRepository;
+import com.prescriptions.taks.prescriptions.repository.IdempotencyKeyRepository;
+import com.prescriptions.taks.prescriptions.repository.PatientRepository;
+import com.prescriptions.taks.prescriptions.service.IdempotencyService;
+import com.prescriptions.taks.prescriptions.service.PrescriptionProjector;
+import com.prescriptions.taks.prescriptions.service.PrescriptionService;
+import com.prescriptions.taks.prescriptions.service.PrescriptionStatsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Integration tests for the prescription event log.
+ *
+ * Creates prescriptions with the log enabled and waits for the projector to write them to the database.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:eventlog;DB_CLOSE_DELAY=-1",
+        "prescriptions.event-log.enabled=true",
+        "prescriptions.event-log.fsync=never",
+        "prescriptions.event-log.segment-size=1MB",
+        "management.endpoint.health.show-details=always"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class PrescriptionEventLogIntegrationTest {
+
+    @TempDir
+    static Path logDirectory;
+
+    @DynamicPropertySource
+    static void eventLogDirectory(DynamicPropertyRegistry registry) {
+        registry.add("prescriptions.event-log.directory", () -> logDirectory.toString());
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private PrescriptionEventLog eventLog;
+
+    @Autowired
+    private PrescriptionProjector projector;
+
+    @Autowired
+    private PrescriptionService prescriptionService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private PrescriptionStatsService prescriptionStatsService;
+
+    private Doctor doctor;
+    private Patient patient;
+
+    @BeforeEach
+    void setUp() {
+        doctor = new Doctor();
+        doctor.setUsername("dr.eventlog." + System.nanoTime());
+        doctor.setPassword("password");
+        doctorRepository.save(doctor);
+        patient = new Patient();
+        patient.setUsername("patient.eventlog." + System.nanoTime());
+        patient.setPassword("password");
+        patientRepository.save(patient);
+    }
+
+    /**
+     * Tests that a created prescription is logged with its ID at once and then projected into the listings.
+     *
+     * @throws Exception if an error occurs while performing the request or processing the response
+     */
+    @Test
+    void testCreatedPrescriptionIsProjected() throws Exception {
+        String jsonRequest = "{\"medicineName\": \"Atorvastatin\", \"doctor\": {\"id\":" + doctor.getId() + "}, \"patient\": {\"id\":" + patient.getId() + "}}";
+        String body = mockMvc.perform(post("/api/prescriptions/create").contentType(MediaType.APPLICATION_JSON).content(jsonRequest))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        long id = ((Number) JsonPath.read(body, "$.id")).longValue();
+
+        awaitProjection();
+
+        assertEquals(1, countRows(id));
+        mockMvc.perform(get("/api/prescriptions/patient/" + patient.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(id))
+                .andExpect(jsonPath("$[0].medicineName").value("Atorvastatin"));
+    }
+
+    /**
+     * Tests that a create for a patient that does not exist is rejected before it is logged.
+     */
+    @Test
+    void testCreateForUnknownPatientIsNotLogged() {
+        long before = eventLog.lastSequence();
+        Prescription orphan = prescription("Orphan");
+        Patient unknown = new Patient();
+        unknown.setId(-1L);
+        orphan.setPatient(unknown);
+
+        assertThrows(DataIntegrityViolationException.class, () -> prescriptionService.createPrescription(orphan));
+        assertEquals(before, eventLog.lastSequence());
+    }
+
+    /**
+     * Tests that an event the database rejects, or that cannot be decoded, is skipped without holding up the events
+     * after it, and that the projector stays healthy.
+     *
+     * @throws Exception if an error occurs while performing the request or processing the response
+     */
+    @Test
+    void testRejectedEventIsSkipped() throws Exception {
+        Prescription orphan = prescription("Orphan");
+        Patient deleted = new Patient();
+        deleted.setId(-1L);
+        orphan.setPatient(deleted);
+        orphan.setId(-1L);
+        eventLog.append(PrescriptionEventCodec.encodeCreated(orphan, System.currentTimeMillis()));
+        eventLog.append(new byte[]{-1});
+        String valid = "{\"medicineName\": \"Amlodipine\", \"doctor\": {\"id\":" + doctor.getId() + "}, \"patient\": {\"id\":" + patient.getId() + "}}";
+        mockMvc.perform(post("/api/prescriptions/create").contentType(MediaType.APPLICATION_JSON).content(valid))
+                .andExpect(status().isCreated());
+
+        awaitProjection();
+
+        assertEquals(0, (int) jdbcTemplate.queryForObject("SELECT COUNT(*) FROM prescription WHERE medicine_name = 'Orphan'", Integer.class));
+        mockMvc.perform(get("/api/prescriptions/patient/" + patient.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].medicineName").value("Amlodipine"));
+        mockMvc.perform(get("/actuator/health/prescriptionProjector"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("UP"))
+                .andExpect(jsonPath("$.details.lag").value(0));
+    }
+
+    /**
+     * Tests that replaying the log restores prescriptions deleted from the database without counting them again in
+     * the doctor's statistics, and that events after the replay are counted as usual.
+     *
+     * @throws Exception if an error occurs while performing the request or processing the response
+     */
+    @Test
+    void testReplayRebuildsTable() throws Exception {
+        String jsonRequest = "{\"medicineName\": \"Losartan\", \"doctor\": {\"id\":" + doctor.getId() + "}, \"patient\": {\"id\":" + patient.getId() + "}}";
+        String body = mockMvc.perform(post("/api/prescriptions/create").contentType(MediaType.APPLICATION_JSON).content(jsonRequest))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        long id = ((Number) JsonPath.read(body, "$.id")).longValue();
+        awaitProjection();
+
+        jdbcTemplate.update("DELETE FROM prescription WHERE id = ?", id);
+        projector.replay();
+
+        await(() -> countRows(id) == 1);
+        prescriptionService.createPrescription(prescription("Valsartan"));
+        awaitProjection();
+        assertEquals(2, prescriptionStatsService.getDoctorStats(doctor.getId()).getTotal());
+    }
+
+    /**
+     * Tests that a create whose idempotency transaction rolls back is not logged, and that its retry is logged once.
+     */
+    @Test
+    void testRolledBackCreateIsNotLogged() {
+        String key = UUID.randomUUID().toString();
+        long before = eventLog.lastSequence();
+        assertThrows(IllegalStateException.class, () -> idempotencyService.execute(key, "hash", Long.class, () -> {
+            prescriptionService.createPrescription(prescription("Rolled back"));
+            throw new IllegalStateException("Could not store the response");
+        }));
+        assertEquals(before, eventLog.lastSequence());
+
+        idempotencyService.execute(key, "hash", Long.class, () -> prescriptionService.createPrescription(prescription("Retried")).getId());
+        assertEquals(before + 1, eventLog.lastSequence());
+    }
+
+    /**
+     * Tests that a create whose append fails rolls back its idempotency key, so a retry is run again instead of
+     * replaying a response for a prescription that was never logged.
+     */
+    @Test
+    void testFailedAppendDoesNotStoreIdempotencyKey() {
+        String key = UUID.randomUUID().toString();
+        long before = eventLog.lastSequence();
+        Prescription tooLarge = prescription("Too large");
+        tooLarge.setInstructions("x".repeat(2 * 1024 * 1024));
+        assertThrows(IllegalArgumentException.class,
+                () -> idempotencyService.execute(key, "hash", Long.class, () -> prescriptionService.createPrescription(tooLarge).getId()));
+        assertEquals(before, eventLog.lastSequence());
+        assertTrue(idempotencyKeyRepository.findById(key).isEmpty());
+
+        IdempotencyService.Result<Long> retried = idempotencyService.execute(key, "hash", Long.class,
+                () -> prescriptionService.createPrescription(prescription("Retried")).getId());
+        assertFalse(retried.isReplayed());
+        assertEquals(before + 1, eventLog.lastSequence());
+    }
+
+    private Prescription prescription(String medicineName) {
+        Prescription prescription = new Prescription();
+        prescription.setMedicineName(medicineName);
+        prescription.setDoctor(doctor);
+        prescription.setPatient(patient);
+        return prescription;
+    }
+
+    private int countRows(long id) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM prescription WHERE id = ?", Integer.class, id);
+    }
+
+    private void awaitProjection() throws InterruptedException {
+        long appended = eventLog.lastSequence();
+        await(() -> projector.getProjectedSequence() >= appended);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for the projector");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,496 @@
+package com.prescriptions.taks.prescriptions.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.prescriptions.taks.prescriptions.converter.PrescriptionSmileCodec;
+import com.prescriptions.taks.prescriptions.entities.Doctor;
+import com.prescriptions.taks.prescriptions.entities.Patient;
+import com.prescriptions.taks.prescriptions.entities.Prescription;
+import com.prescriptions.taks.prescriptions.repository.DoctorRepository;
+import com.prescriptions.taks.prescriptions.repository.PatientRepository;
+import com.prescriptions.taks.prescriptions.repository.PrescriptionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Integration tests for the prescription read path.
+ *
+ * Verifies that listing a doctor's or a patient's prescriptions issues a fixed number of SQL statements,
+ * no matter how many prescriptions are returned, using Hibernate statistics to count prepared statements.
+ * Also covers the listing cache, the schema backing the listings, the keyset-paginated and streaming variants
+ * the medicine search, the history export, the Smile encoding of the listings and their ETags.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class PrescriptionReadPathIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private PrescriptionRepository prescriptionRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Doctor doctor;
+    private Patient patient;
+
+    /**
+     * Clears the repositories and registers one doctor and one patient.
+     */
+    @BeforeEach
+    void setUp() {
+        prescriptionRepository.deleteAll();
+        doctorRepository.deleteAll();
+        patientRepository.deleteAll();
+
+        doctor = new Doctor();
+        doctor.setUsername("dr.count");
+        doctor.setPassword("password");
+        doctorRepository.save(doctor);
+
+        patient = new Patient();
+        patient.setUsername("patient.count");
+        patient.setPassword("password");
+        patientRepository.save(patient);
+    }
+
+    /**
+     * Tests that listing a doctor's prescriptions runs exactly one statement for any result size.
+     *
+     * @param rows The number of prescriptions to create before listing them.
+     * @throws Exception if an error occurs while performing the request or processing the response
+     */
+    @ParameterizedTest
+    @ValueSource(ints = {1, 25, 250})
+    void testDoctorListingStatementCountIsConstant(int rows) throws Exception {
+        createPrescriptions(rows);
+        Statistics statistics = clearedStatistics();
+
+        mockMvc.perform(get("/api/prescriptions/doctor/" + doctor.getId()).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(rows));
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    /**
+     * Tests that listing a patient's prescriptions runs exactly one statement for any result size.
+     *
+     * @param rows The number of prescriptions to create before listing them.
+     * @throws Exception if an error occurs while performing the request or processing the response
+     */
+    @ParameterizedTest
+    @ValueSource(ints = {1, 25, 250})
+    void testPatientListingStatementCountIsConstant(int rows) throws Exception {
+        createPrescriptions(rows);
+        Statistics statistics = clearedStatistics();
+
+        mockMvc.perform(get("/api/prescriptions/patient/" + patient.getId()).contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(rows));
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    /**
+     * Tests that the prescription listings are backed by the composite (owner, id) indexes and that the patient
+     * association is stored only in prescription.patient_id, without a separate join table.
+     */
+    @Test
+    void testListingIndexesAndNoJoinTable() {
+        List<String> indexes = jdbcTemplate.queryForList(
+                "SELECT LOWER(INDEX_NAME) FROM INFORMATION_SCHEMA.INDEXES WHERE LOWER(TABLE_NAME) = 'prescription'", String.class);
+        assertTrue(indexes.contains("idx_prescription_patient_id_id"));
+        assertTrue(indexes.contains("idx_prescription_doctor_id_id"));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE LOWER(TABLE_NAME) = 'patient_prescriptions'", Integer.class));
+    }
+
+    /**
+     * Tests that a repeated patient listing is served from the cache and that creating a prescription
+     * for that patient invalidates the cached listing.
+     *
+     * @throws Exception if an error occurs while performing the request or processing the response
+     */
+    @Test
+    void testPatientListingIsCachedUntilCreate() throws Exception {
+        createPrescriptions(3);
+        Statistics statistics = clearedStatistics();
+
+        mockMvc.perform(get("/api/prescriptions/patient/" + patient.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3));
+        mockMvc.perform(get("/api/prescriptions/patient/" + patient.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3));
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        String jsonRequest = "{\"medicineName\": \"VitaminC\", \"doctor\": {\"id\":" + doctor.getId() + "}, \"patient\": {\"id\":" + patient.getId() + "}}";
+        mockMvc.perform(post("/api/prescriptions/create").contentType(MediaType.APPLICATION_JSON).content(jsonRequest))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/api/prescriptions/patient/" + patient.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(4))
+                .andExpect(jsonPath("$[3].medicineName").value("VitaminC"));
+        mockMvc.perform(get("/api/prescriptions/doctor/" + doctor.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(4));
+    }
+
+    /**
+     * Tests that a listing answers a current {@code If-None-Match} with 304 without any SQL statement or body, counts
+     * it, and gets a new ETag once a prescription for the patient is created.
+     *
+     * @throws Exception if an error occurs while performing the request or processing the response
+     */
+    @Test
+    void testPatientListingNotModifiedUntilCreate() throws Exception {
+        createPrescriptions(3);
+        String uri = "/api/prescriptions/patient/" + patient.getId();
+        String etag = mockMvc.perform(get(uri))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        Counter notModified = meterRegistry.get("prescriptions.listing.requests")
+                .tags("listing", "patient", "result", "not_modified").counter();
+        double notModifiedBefore = notModified.count();
+        Statistics statistics = clearedStatistics();
+
+        mockMvc.perform(get(uri).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andExpect(content().string(""));
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(notModifiedBefore + 1, notModified.count());
+
+        String jsonRequest = "{\"medicineName\": \"VitaminC\", \"doctor\": {\"id\":" + doctor.getId() + "}, \"patient\": {\"id\":" + patient.getId() + "}}";
+        mockMvc.perform(post("/api/prescriptions/create").contentType(MediaType.APPLICATION_JSON).content(jsonRequest))
+                .andExpect(status().isCreated());
+
+        String newEtag = mockMvc.perform(get(uri).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(4))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(etag, newEtag);
+        assertEquals(notModifiedBefore + 1, notModified.count());
+    }
+
+    /**
+     * Tests walking a doctor's prescriptions page by page using the returned cursor.
+     *
+     * @throws Exception if an error occurs while performing the request or processing the response
+     */
+    @Test
+    void testDoctorKeysetPagination() throws Exception {
+        List<Prescription> prescriptions = createPrescriptions(5);
+
+        mockMvc.perform(get("/api/prescriptions/doctor/" + doctor.getId() + "/page").param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.items[0].id").value(prescriptions.get(0).getId()))
+                .andExpect(jsonPath("$.nextCursor").value(prescriptions.get(1).getId()));
+
+        mockMvc.perform(get("/api/prescriptions/doctor/" + doctor.getId() + "/page")
+                        .param("size", "2")
+                        .param("after", String.valueOf(prescriptions.get(3).getId())))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.items[0].id").value(prescriptions.get(4).getId()))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    /**
+     * Tests that the last full page of a patient's prescriptions does not advertise a further page.
+     *
+     * @throws Exception if an error occurs while performing the request or processing the response
+     */
+    @Test
+    void testPatientKeysetPaginationLastPage() throws Exception {
+        createPrescriptions(4);
+
+        mockMvc.perform(get("/api/prescriptions/patient/" + patient.getId() + "/page").param("size", "4"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(4))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    /**
+     * Tests streaming all of a doctor's prescriptions as a JSON array.
+     *
+     * @throws Exception if an error occurs while performing the request or processing the response
+     */
+    @Test
+    void testStreamPrescriptionsByDoctorId() throws Exception {
+        List<Prescription> prescriptions = createPrescriptions(30);
+
+        MvcResult result = mockMvc.perform(get("/api/prescriptions/doctor/" + doctor.getId() + "/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(30))
+                .andExpect(jsonPath("$[29].id").value(prescriptions.get(29).getId()))
+                .andExpect(jsonPath("$[29].patientId").value(patient.getId()));
+    }
+
+    /**
+     * Tests streaming a patient's prescriptions when there are none.
+     *
+     * @throws Exception if an error occurs while performing the request or processing the response
+     */
+    @Test
+    void testStreamPrescriptionsByPatientIdEmpty() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/prescriptions/patient/" + patient.getId() + "/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+    }
+
+    /**
+     * Tests that a prescription created through the API can be found by a misspelled, accented medicine name.
+     *
+     * @throws Exception if an error occurs while performing the request or processing the response
+     */
+    @Test
+    void testCreatedPrescriptionIsSearchable() throws Exception {
+        String jsonRequest = "{\"medicineName\": \"Levothyroxine 50\", \"doctor\": {\"id\":" + doctor.getId() + "}, \"patient\": {\"id\":" + patient.getId() + "}}";
+        mockMvc.perform(post("/api/prescriptions/create").contentType(MediaType.APPLICATION_JSON).content(jsonRequest))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/api/prescriptions/search").param("q", "Lévothyroxin").param("mode", "FUZZY"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.items[0].medicineName").value("Levothyroxine 50"))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+        mockMvc.perform(get("/api/prescriptions/search").param("q", "levo 50"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1));
+    }
+
+    /**
+     * Tests that prescriptions created through the API show up in the doctor's and patient's statistics right away,
+     * and that reading them runs no SQL statement.
+     *
+     * @throws Exception if an error occurs while performing the request or processing the response
+     */
+    @Test
+    void testStatsCountCreatesWithoutQueries() throws Exception {
+        for (String medicine : new String[]{"Aspirin", "Ibuprofen", "aspirin "}) {
+            String jsonRequest = "{\"medicineName\": \"" + medicine + "\", \"doctor\": {\"id\":" + doctor.getId() + "}, \"patient\": {\"id\":" + patient.getId() + "}}";
+            mockMvc.perform(post("/api/prescriptions/create").contentType(MediaType.APPLICATION_JSON).content(jsonRequest))
+                    .andExpect(status().isCreated());
+        }
+        Statistics statistics = clearedStatistics();
+
+        mockMvc.perform(get("/api/prescriptions/doctor/" + doctor.getId() + "/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(3))
+                .andExpect(jsonPath("$.topMedicines.length()").value(2))
+                .andExpect(jsonPath("$.topMedicines[0].medicineName").value("aspirin"))
+                .andExpect(jsonPath("$.topMedicines[0].count").value(2))
+                .andExpect(jsonPath("$.topMedicines[0].error").value(0))
+                .andExpect(jsonPath("$.daily.length()").value(30))
+                .andExpect(jsonPath("$.daily[29].date").value(LocalDate.now(ZoneOffset.UTC).toString()))
+                .andExpect(jsonPath("$.daily[29].count").value(3));
+        mockMvc.perform(get("/api/prescriptions/patient/" + patient.getId() + "/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(3));
+        mockMvc.perform(get("/api/prescriptions/patient/" + (patient.getId() + 1000) + "/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(0))
+                .andExpect(jsonPath("$.topMedicines.length()").value(0));
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    /**
+     * Tests exporting a doctor's history in the columnar format across more than one batch, with null values.
+     *
+     * @throws Exception if an error occurs while performing the request or processing the response
+     */
+    @Test
+    void testExportColumnar() throws Exception {
+        List<Prescription> prescriptions = createPrescriptions(5000);
+        prescriptions.get(4999).setInstructions(null);
+        prescriptionRepository.save(prescriptions.get(4999));
+
+        MvcResult result = mockMvc.perform(get("/api/prescriptions/doctor/" + doctor.getId() + "/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        byte[] body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/vnd.prescriptions.columnar"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        ByteBuffer buffer = ByteBuffer.wrap(body).order(ByteOrder.LITTLE_ENDIAN);
+        byte[] magic = new byte[8];
+        buffer.get(magic);
+        assertEquals("RXCOL001", new String(magic, StandardCharsets.US_ASCII));
+        int columns = buffer.getInt();
+        byte[] types = new byte[columns];
+        for (int c = 0; c < columns; c++) {
+            types[c] = buffer.get();
+            short nameLength = buffer.getShort();
+            buffer.position(buffer.position() + nameLength);
+        }
+        List<Long> ids = new ArrayList<>();
+        List<String> instructions = new ArrayList<>();
+        for (int rows = buffer.getInt(); rows > 0; rows = buffer.getInt()) {
+            for (int c = 0; c < columns; c++) {
+                byte[] validity = new byte[(rows + 7) / 8];
+                buffer.get(validity);
+                if (types[c] == 1) {
+                    for (int i = 0; i < rows; i++) {
+                        long value = buffer.getLong();
+                        if (c == 0) {
+                            ids.add(value);
+                        }
+                    }
+                } else {
+                    int[] offsets = new int[rows + 1];
+                    for (int i = 0; i <= rows; i++) {
+                        offsets[i] = buffer.getInt();
+                    }
+                    byte[] data = new byte[offsets[rows]];
+                    buffer.get(data);
+                    for (int i = 0; c == 3 && i < rows; i++) {
+                        boolean present = (validity[i / 8] & (1 << (i % 8))) != 0;
+                        instructions.add(present ? new String(data, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8) : null);
+                    }
+                }
+            }
+        }
+        assertEquals(prescriptions.stream().map(Prescription::getId).toList(), ids);
+        assertEquals("Once daily", instructions.get(0));
+        assertEquals(null, instructions.get(4999));
+        assertFalse(buffer.hasRemaining());
+    }
+
+    /**
+     * Tests exporting a patient's history as gzip-compressed CSV, with quoting.
+     *
+     * @throws Exception if an error occurs while performing the request or processing the response
+     */
+    @Test
+    void testExportCsvGzip() throws Exception {
+        List<Prescription> prescriptions = createPrescriptions(2);
+        prescriptions.get(1).setInstructions("Morning, \"with food\"");
+        prescriptionRepository.save(prescriptions.get(1));
+
+        MvcResult result = mockMvc.perform(get("/api/prescriptions/patient/" + patient.getId() + "/export?format=CSV_GZIP"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        byte[] body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"prescriptions-patient-" + patient.getId() + ".csv.gz\""))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        String csv = new String(new GZIPInputStream(new ByteArrayInputStream(body)).readAllBytes(), StandardCharsets.UTF_8);
+        assertEquals("id,medicine_name,dosage,instructions,doctor_id,patient_id\r\n"
+                + prescriptions.get(0).getId() + ",Medicine 0,10mg,Once daily," + doctor.getId() + "," + patient.getId() + "\r\n"
+                + prescriptions.get(1).getId() + ",Medicine 1,10mg,\"Morning, \"\"with food\"\"\"," + doctor.getId() + "," + patient.getId() + "\r\n", csv);
+    }
+
+    /**
+     * Tests that a listing requested as Smile decodes to the same document as the JSON listing and is smaller.
+     *
+     * @throws Exception if an error occurs while performing the request or processing the response
+     */
+    @Test
+    void testDoctorListingAsSmile() throws Exception {
+        createPrescriptions(50);
+        String uri = "/api/prescriptions/doctor/" + doctor.getId();
+
+        byte[] json = mockMvc.perform(get(uri).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        byte[] smile = mockMvc.perform(get(uri).accept(PrescriptionSmileCodec.APPLICATION_SMILE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(PrescriptionSmileCodec.APPLICATION_SMILE))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertEquals(new ObjectMapper().readTree(json), new ObjectMapper(new SmileFactory()).readTree(smile));
+        assertTrue(smile.length < json.length / 2, "Smile " + smile.length + " bytes, JSON " + json.length + " bytes");
+    }
+
+    private List<Prescription> createPrescriptions(int rows) {
+        List<Prescription> prescriptions = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            Prescription prescription = new Prescription();
+            prescription.setMedicineName("Medicine " + i);
+            prescription.setDosage("10mg");
+            prescription.setInstructions("Once daily");
+            prescription.setDoctor(doctor);
+            prescription.setPatient(patient);
+            prescriptions.add(prescription);
+        }
+        return prescriptionRepository.saveAll(prescriptions);
+    }
+
+    private Statistics clearedStatistics() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+}
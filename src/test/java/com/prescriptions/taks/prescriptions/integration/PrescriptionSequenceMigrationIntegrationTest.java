@@ -0,0 +1,85 @@
+package com.prescriptions.taks.prescriptions.integration;
+
+import com.prescriptions.taks.prescriptions.entities.Doctor;
+import com.prescriptions.taks.prescriptions.entities.Patient;
+import com.prescriptions.taks.prescriptions.entities.Prescription;
+import com.prescriptions.taks.prescriptions.repository.DoctorRepository;
+import com.prescriptions.taks.prescriptions.repository.PatientRepository;
+import com.prescriptions.taks.prescriptions.repository.PrescriptionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Integration test for {@code db/prescription-seq-migration.sql}.
+ *
+ * Runs H2 in MySQL mode with the MySQL dialect, so {@code prescription_seq} is the single-row table Hibernate uses on
+ * MySQL. Rows written before the migration stand in for AUTO_INCREMENT prescriptions; the next inserts must get IDs
+ * past all of them.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:seq-migration;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.MySQLDialect"
+})
+@ActiveProfiles("test")
+class PrescriptionSequenceMigrationIntegrationTest {
+
+    private static final int EXISTING_ROWS = 120;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private PrescriptionRepository prescriptionRepository;
+
+    /**
+     * Tests that after migrating a populated table, more than one allocation block of new prescriptions is inserted
+     * without reusing an existing ID.
+     */
+    @Test
+    void testInsertsAfterMigrationDoNotReuseExistingIds() {
+        Doctor doctor = new Doctor();
+        doctor.setUsername("dr.migration");
+        doctor.setPassword("password");
+        doctorRepository.save(doctor);
+        Patient patient = new Patient();
+        patient.setUsername("patient.migration");
+        patient.setPassword("password");
+        patientRepository.save(patient);
+
+        for (long id = 1; id <= EXISTING_ROWS; id++) {
+            jdbcTemplate.update("INSERT INTO prescription (id, medicine_name, doctor_id, patient_id) VALUES (?, ?, ?, ?)",
+                    id, "Legacy " + id, doctor.getId(), patient.getId());
+        }
+        new ResourceDatabasePopulator(new ClassPathResource("db/prescription-seq-migration.sql")).execute(jdbcTemplate.getDataSource());
+
+        List<Prescription> prescriptions = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            Prescription prescription = new Prescription();
+            prescription.setMedicineName("New " + i);
+            prescription.setDoctor(doctor);
+            prescription.setPatient(patient);
+            prescriptions.add(prescription);
+        }
+        prescriptionRepository.saveAll(prescriptions);
+
+        assertEquals(EXISTING_ROWS + 120, prescriptionRepository.count());
+        assertTrue(prescriptions.stream().allMatch(prescription -> prescription.getId() > EXISTING_ROWS));
+    }
+}
@@ -0,0 +1,148 @@
+package com.prescriptions.taks.prescriptions.integration;
+
+import com.jayway.jsonpath.JsonPath;
+import com.prescriptions.taks.prescriptions.entities.Doctor;
+import com.prescriptions.taks.prescriptions.entities.Patient;
+import com.prescriptions.taks.prescriptions.entities.Prescription;
+import com.prescriptions.taks.prescriptions.repository.DoctorRepository;
+import com.prescriptions.taks.prescriptions.repository.PatientRepository;
+import com.prescriptions.taks.prescriptions.repository.PrescriptionRepository;
+import com.prescriptions.taks.prescriptions.service.PrescriptionWriteBatcher;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Integration tests for batched prescription writes.
+ *
+ * Queues prescriptions faster than the flush interval and checks that they are saved together, that a row the
+ * database rejects only fails its own caller, and that the create endpoint still answers with the saved prescription.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:writebatching;DB_CLOSE_DELAY=-1",
+        "prescriptions.write-batching.enabled=true",
+        "prescriptions.write-batching.batch-size=8",
+        "prescriptions.write-batching.flush-interval=200ms"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class PrescriptionWriteBatchingIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PrescriptionWriteBatcher writeBatcher;
+
+    @Autowired
+    private PrescriptionRepository prescriptionRepository;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Doctor doctor;
+    private Patient patient;
+
+    @BeforeEach
+    void setUp() {
+        doctor = new Doctor();
+        doctor.setUsername("dr.batch." + System.nanoTime());
+        doctor.setPassword("password");
+        doctorRepository.save(doctor);
+
+        patient = new Patient();
+        patient.setUsername("patient.batch." + System.nanoTime());
+        patient.setPassword("password");
+        patientRepository.save(patient);
+    }
+
+    /**
+     * Tests that a full batch is saved in one go, and that a prescription for an unknown doctor fails alone when its
+     * batch is replayed row by row.
+     */
+    @Test
+    void testBatchCommitsTogetherAndRejectsOnlyBadRows() {
+        DistributionSummary batchSizes = meterRegistry.get("prescriptions.write.batch.size").summary();
+        long batchesBefore = batchSizes.count();
+
+        List<CompletableFuture<Prescription>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Doctor prescriber = doctor;
+            if (i == 5) {
+                prescriber = new Doctor();
+                prescriber.setId(Long.MAX_VALUE);
+            }
+            futures.add(writeBatcher.submit(newPrescription("Medicine " + i, prescriber)));
+        }
+
+        for (int i = 0; i < futures.size(); i++) {
+            if (i == 5) {
+                CompletionException failure = assertThrows(CompletionException.class, futures.get(i)::join);
+                assertInstanceOf(DataIntegrityViolationException.class, failure.getCause());
+            } else {
+                Prescription saved = futures.get(i).join();
+                assertNotNull(saved.getId());
+                assertEquals("Medicine " + i, prescriptionRepository.findById(saved.getId()).orElseThrow().getMedicineName());
+            }
+        }
+        assertEquals(batchesBefore + 1, batchSizes.count());
+        assertEquals(7, prescriptionRepository.findByPatientId(patient.getId()).size());
+    }
+
+    /**
+     * Tests that a prescription created through the API is written by the batcher and listed afterwards.
+     *
+     * @throws Exception if an error occurs while performing the request or processing the response
+     */
+    @Test
+    void testCreateEndpointWaitsForBatch() throws Exception {
+        String jsonRequest = "{\"medicineName\": \"Aspirin\", \"doctor\": {\"id\":" + doctor.getId() + "}, \"patient\": {\"id\":" + patient.getId() + "}}";
+        String response = mockMvc.perform(post("/api/prescriptions/create").contentType(MediaType.APPLICATION_JSON).content(jsonRequest))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        Number id = JsonPath.read(response, "$.id");
+
+        mockMvc.perform(get("/api/prescriptions/patient/" + patient.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(id.longValue()));
+    }
+
+    private Prescription newPrescription(String medicineName, Doctor prescriber) {
+        Prescription prescription = new Prescription();
+        prescription.setMedicineName(medicineName);
+        prescription.setDosage("10mg");
+        prescription.setInstructions("Once daily");
+        prescription.setDoctor(prescriber);
+        prescription.setPatient(patient);
+        return prescription;
+    }
+}
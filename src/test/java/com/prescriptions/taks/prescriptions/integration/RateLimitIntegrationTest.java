@@ -0,0 +1,62 @@
+package com.prescriptions.taks.prescriptions.integration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Integration test for per-client and per-doctor rate limiting.
+ * <p>
+ * Limits are set so low that nothing refills during the test: each client may send three requests and each doctor
+ * may be asked for once.
+ * </p>
+ */
+@SpringBootTest(properties = {
+        "prescriptions.rate-limit.enabled=true",
+        "prescriptions.rate-limit.client.rate=0.001",
+        "prescriptions.rate-limit.client.burst=3",
+        "prescriptions.rate-limit.doctor.rate=0.001",
+        "prescriptions.rate-limit.doctor.burst=1"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class RateLimitIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    /**
+     * Tests that the doctor bucket and then the client bucket run out, and that each rejection says which one.
+     *
+     * @throws Exception if an error occurs while performing the request or processing the response
+     */
+    @Test
+    void testRejectsWithRetryHints() throws Exception {
+        mockMvc.perform(get("/api/prescriptions/doctor/5"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/prescriptions/doctor/5"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("X-RateLimit-Scope", "doctor"))
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+
+        mockMvc.perform(get("/api/prescriptions/patient/5"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/prescriptions/patient/5"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("X-RateLimit-Scope", "client"));
+
+        mockMvc.perform(get("/api/prescriptions/patient/5").with(request -> {
+                    request.setRemoteAddr("10.0.0.2");
+                    return request;
+                }))
+                .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,255 @@
+package com.prescriptions.taks.prescriptions.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.prescriptions.taks.prescriptions.converter.PrescriptionSmileCodec;
+import com.prescriptions.taks.prescriptions.dto.DoctorDTO;
+import com.prescriptions.taks.prescriptions.dto.PrescriptionDTO;
+import com.prescriptions.taks.prescriptions.dto.PrescriptionPageDTO;
+import com.prescriptions.taks.prescriptions.dto.TokenDTO;
+import com.prescriptions.taks.prescriptions.entities.Doctor;
+import com.prescriptions.taks.prescriptions.entities.Patient;
+import com.prescriptions.taks.prescriptions.entities.Prescription;
+import com.prescriptions.taks.prescriptions.repository.DoctorRepository;
+import com.prescriptions.taks.prescriptions.repository.PatientRepository;
+import com.prescriptions.taks.prescriptions.repository.PrescriptionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Integration test for the reactive variant of the API, running on WebFlux with reads over R2DBC.
+ * <p>
+ * Registers and logs in a doctor through the reactive user endpoints, then checks that the prescription endpoints
+ * require the token and return the same DTOs as the servlet stack, including NDJSON streaming and keyset pages.
+ * </p>
+ */
+@SpringBootTest(properties = {
+        "spring.main.web-application-type=reactive",
+        "prescriptions.reactive.r2dbc.url=r2dbc:h2:mem:///testdb",
+        "prescriptions.reactive.r2dbc.username=sa",
+        "prescriptions.auth.enabled=true"
+})
+@AutoConfigureWebTestClient
+@ActiveProfiles("test")
+class ReactivePrescriptionIntegrationTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private PrescriptionRepository prescriptionRepository;
+
+    private Patient patient;
+
+    @BeforeEach
+    void setUp() {
+        prescriptionRepository.deleteAll();
+        doctorRepository.deleteAll();
+        patientRepository.deleteAll();
+
+        patient = new Patient();
+        patient.setUsername("reactive.patient");
+        patient.setPassword("password");
+        patient.setMedicalHistory("None");
+        patientRepository.save(patient);
+    }
+
+    /**
+     * Registers a doctor, creates prescriptions with the issued token and reads them back as a JSON array, as NDJSON
+     * and page by page.
+     */
+    @Test
+    void testCreateAndReadPrescriptions() {
+        DoctorDTO doctor = webTestClient.post().uri("/api/users/register/doctor")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("username", "reactive.doctor", "password", "s3cret", "specialty", "Cardiology"))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(DoctorDTO.class).returnResult().getResponseBody();
+        assertNotNull(doctor);
+
+        String prescriptions = "/api/prescriptions/doctor/" + doctor.getId();
+        webTestClient.get().uri(prescriptions).exchange()
+                .expectStatus().isUnauthorized()
+                .expectHeader().valueEquals(HttpHeaders.WWW_AUTHENTICATE, "Bearer");
+
+        TokenDTO token = webTestClient.post().uri("/api/users/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("username", "reactive.doctor", "password", "s3cret"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(TokenDTO.class).returnResult().getResponseBody();
+        assertNotNull(token);
+        String bearer = "Bearer " + token.getToken();
+
+        List<Long> ids = new ArrayList<>();
+        for (String medicine : new String[]{"Aspirin", "Ibuprofen", "Paracetamol"}) {
+            PrescriptionDTO created = webTestClient.post().uri("/api/prescriptions/create")
+                    .header(HttpHeaders.AUTHORIZATION, bearer)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(Map.of("medicineName", medicine, "dosage", "100mg", "instructions", "Once daily",
+                            "doctor", Map.of("id", doctor.getId()), "patient", Map.of("id", patient.getId())))
+                    .exchange()
+                    .expectStatus().isCreated()
+                    .expectBody(PrescriptionDTO.class).returnResult().getResponseBody();
+            assertNotNull(created);
+            ids.add(created.getId());
+        }
+
+        webTestClient.get().uri(prescriptions).header(HttpHeaders.AUTHORIZATION, bearer).exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(3)
+                .jsonPath("$[0].id").isEqualTo(ids.get(0))
+                .jsonPath("$[0].medicineName").isEqualTo("Aspirin")
+                .jsonPath("$[0].doctorId").isEqualTo(doctor.getId())
+                .jsonPath("$[0].patientId").isEqualTo(patient.getId());
+
+        Flux<PrescriptionDTO> stream = webTestClient.get().uri(prescriptions + "/stream")
+                .header(HttpHeaders.AUTHORIZATION, bearer)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(PrescriptionDTO.class).getResponseBody();
+        assertEquals(List.of("Aspirin", "Ibuprofen", "Paracetamol"),
+                stream.map(PrescriptionDTO::getMedicineName).collectList().block(Duration.ofSeconds(10)));
+
+        PrescriptionPageDTO first = webTestClient.get().uri(prescriptions + "/page?size=2")
+                .header(HttpHeaders.AUTHORIZATION, bearer).exchange()
+                .expectStatus().isOk()
+                .expectBody(PrescriptionPageDTO.class).returnResult().getResponseBody();
+        assertNotNull(first);
+        assertEquals(2, first.getItems().size());
+        assertEquals(ids.get(1), first.getNextCursor());
+
+        PrescriptionPageDTO last = webTestClient.get().uri(prescriptions + "/page?size=2&after=" + first.getNextCursor())
+                .header(HttpHeaders.AUTHORIZATION, bearer).exchange()
+                .expectStatus().isOk()
+                .expectBody(PrescriptionPageDTO.class).returnResult().getResponseBody();
+        assertNotNull(last);
+        assertEquals(1, last.getItems().size());
+        assertEquals("Paracetamol", last.getItems().get(0).getMedicineName());
+        assertNull(last.getNextCursor());
+
+        webTestClient.get().uri(prescriptions + "/stats").header(HttpHeaders.AUTHORIZATION, bearer).exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.total").isEqualTo(3)
+                .jsonPath("$.topMedicines.length()").isEqualTo(3);
+    }
+
+    /**
+     * Tests that a patient's prescriptions written through JPA are read over R2DBC, and that an
+     * {@code Idempotency-Key} makes a retried creation return the first prescription. Also reads the list as Smile and
+     * revalidates it with its ETag.
+     */
+    @Test
+    void testPatientPrescriptionsAndIdempotentCreate() throws IOException {
+        Doctor doctor = new Doctor();
+        doctor.setUsername("reactive.doctor2");
+        doctor.setPassword("password");
+        doctor.setSpecialty("Neurology");
+        doctorRepository.save(doctor);
+
+        Prescription prescription = new Prescription();
+        prescription.setMedicineName("Aspirin");
+        prescription.setDosage("356mg");
+        prescription.setInstructions("Take once daily");
+        prescription.setDoctor(doctor);
+        prescription.setPatient(patient);
+        prescriptionRepository.save(prescription);
+
+        webTestClient.post().uri("/api/users/register/patient")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("username", "reactive.caller", "password", "s3cret"))
+                .exchange()
+                .expectStatus().isCreated();
+        TokenDTO token = webTestClient.post().uri("/api/users/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("username", "reactive.caller", "password", "s3cret"))
+                .exchange()
+                .expectBody(TokenDTO.class).returnResult().getResponseBody();
+        assertNotNull(token);
+        String bearer = "Bearer " + token.getToken();
+
+        Map<String, Object> body = Map.of("medicineName", "Ibuprofen", "dosage", "200mg", "instructions", "Twice daily",
+                "doctor", Map.of("id", doctor.getId()), "patient", Map.of("id", patient.getId()));
+        PrescriptionDTO created = webTestClient.post().uri("/api/prescriptions/create")
+                .header(HttpHeaders.AUTHORIZATION, bearer)
+                .header("Idempotency-Key", "reactive-retry")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(body)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectHeader().valueEquals("Idempotent-Replayed", "false")
+                .expectBody(PrescriptionDTO.class).returnResult().getResponseBody();
+        assertNotNull(created);
+        webTestClient.post().uri("/api/prescriptions/create")
+                .header(HttpHeaders.AUTHORIZATION, bearer)
+                .header("Idempotency-Key", "reactive-retry")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(body)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectHeader().valueEquals("Idempotent-Replayed", "true")
+                .expectBody().jsonPath("$.id").isEqualTo(created.getId());
+
+        webTestClient.get().uri("/api/prescriptions/patient/" + patient.getId())
+                .header(HttpHeaders.AUTHORIZATION, bearer).exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0].medicineName").isEqualTo("Aspirin")
+                .jsonPath("$[1].id").isEqualTo(created.getId());
+
+        byte[] smile = webTestClient.get().uri("/api/prescriptions/patient/" + patient.getId())
+                .header(HttpHeaders.AUTHORIZATION, bearer)
+                .accept(PrescriptionSmileCodec.APPLICATION_SMILE)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(PrescriptionSmileCodec.APPLICATION_SMILE)
+                .expectHeader().valueEquals(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                .expectBody().returnResult().getResponseBody();
+        JsonNode decoded = new ObjectMapper(new SmileFactory()).readTree(smile);
+        assertEquals(2, decoded.size());
+        assertEquals(created.getId(), decoded.get(1).get("id").asLong());
+
+        String etag = webTestClient.get().uri("/api/prescriptions/patient/" + patient.getId())
+                .header(HttpHeaders.AUTHORIZATION, bearer).exchange()
+                .expectStatus().isOk()
+                .returnResult(PrescriptionDTO.class).getResponseHeaders().getETag();
+        assertNotNull(etag);
+        webTestClient.get().uri("/api/prescriptions/patient/" + patient.getId())
+                .header(HttpHeaders.AUTHORIZATION, bearer)
+                .header(HttpHeaders.IF_NONE_MATCH, etag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+    }
+}
@@ -0,0 +1,212 @@
+package com.prescriptions.taks.prescriptions.integration;
+
+import com.jayway.jsonpath.JsonPath;
+import com.prescriptions.taks.prescriptions.entities.Doctor;
+import com.prescriptions.taks.prescriptions.entities.Patient;
+import com.prescriptions.taks.prescriptions.repository.DoctorRepository;
+import com.prescriptions.taks.prescriptions.repository.PatientRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Integration tests for read-replica routing.
+ *
+ * Runs against three in-memory H2 databases standing in for a MySQL primary and two replicas. Replication is
+ * simulated by copying the primary with H2's SCRIPT and RUNSCRIPT commands, after which each database gets a
+ * marker row of its own, so the medicine names a read returns show which database served it.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1",
+        "prescriptions.datasource.replicas[0].url=jdbc:h2:mem:routing-replica-0;DB_CLOSE_DELAY=-1",
+        "prescriptions.datasource.replicas[1].url=jdbc:h2:mem:routing-replica-1;DB_CLOSE_DELAY=-1",
+        "prescriptions.datasource.read-your-writes.window=" + ReadReplicaRoutingIntegrationTest.WINDOW_MILLIS + "ms"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ReadReplicaRoutingIntegrationTest {
+
+    static final long WINDOW_MILLIS = 1000;
+
+    private static final String[] REPLICA_URLS = {
+            "jdbc:h2:mem:routing-replica-0;DB_CLOSE_DELAY=-1",
+            "jdbc:h2:mem:routing-replica-1;DB_CLOSE_DELAY=-1"
+    };
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @TempDir
+    Path tempDir;
+
+    private Doctor doctor;
+
+    /**
+     * Registers a doctor and a patient on the primary, replicates the primary to both replicas and then adds a
+     * marker prescription to each database that exists only there.
+     *
+     * @throws Exception if the replication script cannot be written or run
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        jdbcTemplate.update("DELETE FROM prescription");
+        doctorRepository.deleteAll();
+        patientRepository.deleteAll();
+
+        doctor = new Doctor();
+        doctor.setUsername("dr.routing");
+        doctor.setPassword("password");
+        doctorRepository.save(doctor);
+        Patient patient = new Patient();
+        patient.setUsername("patient.routing");
+        patient.setPassword("password");
+        patientRepository.save(patient);
+
+        String script = tempDir.resolve("primary.sql").toString();
+        jdbcTemplate.execute("SCRIPT TO '" + script + "'");
+        for (int i = 0; i < REPLICA_URLS.length; i++) {
+            JdbcTemplate replica = replica(i);
+            replica.execute("DROP ALL OBJECTS");
+            replica.execute("RUNSCRIPT FROM '" + script + "'");
+            insertMarker(replica, 1_000_000L + i, "OnReplica" + i, patient.getId());
+        }
+        insertMarker(jdbcTemplate, 2_000_000L, "OnPrimary", patient.getId());
+    }
+
+    /**
+     * Tests that read-only requests alternate between the replicas and never reach the primary.
+     *
+     * @throws Exception if an error occurs while performing the request or processing the response
+     */
+    @Test
+    void testReadsAreBalancedOverReplicas() throws Exception {
+        Set<String> servedBy = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            servedBy.addAll(readMedicineNames(page()));
+        }
+        assertEquals(Set.of("OnReplica0", "OnReplica1"), servedBy);
+    }
+
+    /**
+     * Tests that a client reads from the primary after its own write, while other clients still read from replicas.
+     *
+     * @throws Exception if an error occurs while performing the request or processing the response
+     */
+    @Test
+    void testReadYourWritesForSameSession() throws Exception {
+        Long patientId = patientRepository.findAll().get(0).getId();
+        String jsonRequest = "{\"medicineName\": \"JustWritten\", \"doctor\": {\"id\":" + doctor.getId() + "}, \"patient\": {\"id\":" + patientId + "}}";
+        mockMvc.perform(post("/api/prescriptions/create").header("X-Session-Id", "session-1")
+                        .contentType(MediaType.APPLICATION_JSON).content(jsonRequest))
+                .andExpect(status().isCreated());
+
+        List<String> ownRead = readMedicineNames(page().header("X-Session-Id", "session-1"));
+        assertTrue(ownRead.contains("JustWritten"));
+        assertTrue(ownRead.contains("OnPrimary"));
+
+        List<String> otherRead = readMedicineNames(page().header("X-Session-Id", "session-2"));
+        assertTrue(!otherRead.contains("JustWritten") && !otherRead.contains("OnPrimary"));
+    }
+
+    /**
+     * Tests that the full doctor and patient listings show a client its own write right away, that other clients
+     * reading from a lagging replica meanwhile get neither a cached listing nor an ETag, and that they see the write
+     * once the replicas have it and the read-your-writes window has passed.
+     *
+     * @throws Exception if an error occurs while performing the request or processing the response
+     */
+    @Test
+    void testReadYourWritesBypassesListingCaches() throws Exception {
+        Long patientId = patientRepository.findAll().get(0).getId();
+        String doctorListing = "/api/prescriptions/doctor/" + doctor.getId();
+        String patientListing = "/api/prescriptions/patient/" + patientId;
+        String jsonRequest = "{\"medicineName\": \"JustWritten\", \"doctor\": {\"id\":" + doctor.getId() + "}, \"patient\": {\"id\":" + patientId + "}}";
+        String created = mockMvc.perform(post("/api/prescriptions/create").header("X-Session-Id", "session-1")
+                        .contentType(MediaType.APPLICATION_JSON).content(jsonRequest))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+
+        for (String listing : List.of(doctorListing, patientListing)) {
+            MockHttpServletResponse otherRead = mockMvc.perform(get(listing).header("X-Session-Id", "session-2"))
+                    .andExpect(status().isOk()).andReturn().getResponse();
+            assertFalse(otherRead.getContentAsString().contains("JustWritten"));
+            assertNull(otherRead.getHeader(HttpHeaders.ETAG));
+
+            List<String> ownRead = readListing(get(listing).header("X-Session-Id", "session-1"));
+            assertTrue(ownRead.contains("JustWritten"));
+            assertTrue(ownRead.contains("OnPrimary"));
+        }
+
+        Long createdId = ((Number) JsonPath.read(created, "$.id")).longValue();
+        for (int i = 0; i < REPLICA_URLS.length; i++) {
+            replica(i).update("INSERT INTO prescription (id, medicine_name, doctor_id, patient_id) VALUES (?, ?, ?, ?)",
+                    createdId, "JustWritten", doctor.getId(), patientId);
+        }
+        Thread.sleep(WINDOW_MILLIS * 3 / 2);
+
+        for (String listing : List.of(doctorListing, patientListing)) {
+            MockHttpServletResponse otherRead = mockMvc.perform(get(listing).header("X-Session-Id", "session-2"))
+                    .andExpect(status().isOk()).andReturn().getResponse();
+            assertTrue(otherRead.getContentAsString().contains("JustWritten"));
+            assertNotNull(otherRead.getHeader(HttpHeaders.ETAG));
+            assertTrue(readListing(get(listing)).contains("JustWritten"));
+        }
+    }
+
+    private List<String> readListing(MockHttpServletRequestBuilder request) throws Exception {
+        String body = mockMvc.perform(request).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+        return JsonPath.read(body, "$[*].medicineName");
+    }
+
+    private MockHttpServletRequestBuilder page() {
+        return get("/api/prescriptions/doctor/" + doctor.getId() + "/page");
+    }
+
+    private List<String> readMedicineNames(MockHttpServletRequestBuilder request) throws Exception {
+        String body = mockMvc.perform(request).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+        return JsonPath.read(body, "$.items[*].medicineName");
+    }
+
+    private JdbcTemplate replica(int index) {
+        return new JdbcTemplate(new SingleConnectionDataSource(REPLICA_URLS[index], "sa", "", true));
+    }
+
+    private void insertMarker(JdbcTemplate jdbc, long id, String medicineName, Long patientId) {
+        jdbc.update("INSERT INTO prescription (id, medicine_name, doctor_id, patient_id) VALUES (?, ?, ?, ?)",
+                id, medicineName, doctor.getId(), patientId);
+    }
+}
@@ -0,0 +1,329 @@
+package com.prescriptions.taks.prescriptions.integration;
+
+import com.jayway.jsonpath.JsonPath;
+import com.prescriptions.taks.prescriptions.entities.Doctor;
+import com.prescriptions.taks.prescriptions.entities.Patient;
+import com.prescriptions.taks.prescriptions.entities.Prescription;
+import com.prescriptions.taks.prescriptions.repository.DoctorRepository;
+import com.prescriptions.taks.prescriptions.repository.PatientRepository;
+import com.prescriptions.taks.prescriptions.repository.PrescriptionRepository;
+import com.prescriptions.taks.prescriptions.service.IdempotencyService;
+import com.prescriptions.taks.prescriptions.service.PrescriptionService;
+import com.prescriptions.taks.prescriptions.sharding.ShardRebalancer;
+import com.prescriptions.taks.prescriptions.sharding.ShardRouter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Integration tests for patient-sharded prescriptions.
+ *
+ * Runs against four in-memory H2 databases standing in for the MySQL primary and three shards. Each test starts with
+ * the buckets spread over the first two shards only, so the third one can be filled by a rebalance.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:sharding-primary;DB_CLOSE_DELAY=-1",
+        "prescriptions.sharding.shards[0].url=jdbc:h2:mem:sharding-shard-0;DB_CLOSE_DELAY=-1",
+        "prescriptions.sharding.shards[1].url=jdbc:h2:mem:sharding-shard-1;DB_CLOSE_DELAY=-1",
+        "prescriptions.sharding.shards[2].url=jdbc:h2:mem:sharding-shard-2;DB_CLOSE_DELAY=-1",
+        "prescriptions.sharding.buckets=16",
+        "prescriptions.sharding.rebalance-page-size=2"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class ShardedPrescriptionsIntegrationTest {
+
+    private static final int SHARDS = 3;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private PrescriptionRepository prescriptionRepository;
+
+    @Autowired
+    private PrescriptionService prescriptionService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private ShardRebalancer shardRebalancer;
+
+    private Doctor doctor;
+    private final List<Patient> patients = new ArrayList<>();
+
+    /**
+     * Empties the shards, assigns the buckets round robin to shards 0 and 1 and registers a doctor and six patients.
+     */
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < SHARDS; i++) {
+            shard(i).update("DELETE FROM prescription");
+        }
+        jdbcTemplate.update("UPDATE prescription_shard_bucket SET shard = MOD(bucket, 2)");
+        shardRouter.load();
+        doctorRepository.deleteAll();
+        patientRepository.deleteAll();
+
+        doctor = new Doctor();
+        doctor.setUsername("dr.sharding");
+        doctor.setPassword("password");
+        doctorRepository.save(doctor);
+        patients.clear();
+        for (int i = 0; i < 6; i++) {
+            Patient patient = new Patient();
+            patient.setUsername("patient.sharding." + i);
+            patient.setPassword("password");
+            patients.add(patientRepository.save(patient));
+        }
+    }
+
+    /**
+     * Tests that prescriptions are stored only on their patient's shard, with IDs unique across shards, and that
+     * a reference to a patient that does not exist is rejected without a foreign key.
+     *
+     * @throws Exception if an error occurs while performing the request or processing the response
+     */
+    @Test
+    void testPrescriptionsAreStoredOnTheirPatientsShard() throws Exception {
+        createPrescriptions();
+
+        Set<Long> ids = new HashSet<>();
+        Set<Integer> usedShards = new HashSet<>();
+        for (int i = 0; i < SHARDS; i++) {
+            for (var row : shard(i).queryForList("SELECT id, patient_id FROM prescription")) {
+                assertEquals(shardRouter.shardFor(((Number) row.get("PATIENT_ID")).longValue()), i);
+                ids.add(((Number) row.get("ID")).longValue());
+                usedShards.add(i);
+            }
+        }
+        assertEquals(12, ids.size());
+        assertEquals(Set.of(0, 1), usedShards);
+
+        mockMvc.perform(get("/api/prescriptions/patient/" + patients.get(3).getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2));
+
+        String jsonRequest = "[{\"medicineName\": \"Insulin\", \"doctor\": {\"id\":" + doctor.getId() + "}, \"patient\": {\"id\": -1}}]";
+        mockMvc.perform(post("/api/prescriptions/bulk").contentType(MediaType.APPLICATION_JSON).content(jsonRequest))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.failed").value(1))
+                .andExpect(jsonPath("$.rows[0].error").value(PrescriptionService.BULK_CONSTRAINT_VIOLATION));
+    }
+
+    /**
+     * Tests that a doctor's listing, keyset pages and stream are merged from all shards in ID order.
+     *
+     * @throws Exception if an error occurs while performing the request or processing the response
+     */
+    @Test
+    void testDoctorListingsAreMergedAcrossShards() throws Exception {
+        List<Long> created = createPrescriptions();
+
+        String body = mockMvc.perform(get("/api/prescriptions/doctor/" + doctor.getId()))
+                .andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+        assertEquals(created, ids(JsonPath.read(body, "$[*].id")));
+
+        List<Long> paged = new ArrayList<>();
+        String after = "";
+        do {
+            body = mockMvc.perform(get("/api/prescriptions/doctor/" + doctor.getId() + "/page?size=5" + after))
+                    .andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+            paged.addAll(ids(JsonPath.read(body, "$.items[*].id")));
+            Object next = JsonPath.read(body, "$.nextCursor");
+            after = next == null ? null : "&after=" + next;
+        } while (after != null);
+        assertEquals(created, paged);
+
+        MvcResult result = mockMvc.perform(get("/api/prescriptions/doctor/" + doctor.getId() + "/stream")).andReturn();
+        body = mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+        assertEquals(created, ids(JsonPath.read(body, "$[*].id")));
+    }
+
+    /**
+     * Tests that a rebalance moves a third of the buckets with their prescriptions onto the empty third shard and
+     * that reads still find every prescription afterwards.
+     *
+     * @throws Exception if an error occurs while performing the request or processing the response
+     */
+    @Test
+    void testRebalanceMovesBucketsToNewShard() throws Exception {
+        List<Long> created = createPrescriptions();
+
+        int moved = shardRebalancer.rebalance();
+
+        assertEquals(5, moved);
+        int[] owned = new int[SHARDS];
+        for (int owner : shardRouter.owners()) {
+            owned[owner]++;
+        }
+        assertEquals(5, owned[2]);
+        assertEquals(11, owned[0] + owned[1]);
+        int total = 0;
+        for (int i = 0; i < SHARDS; i++) {
+            for (Long patientId : shard(i).queryForList("SELECT patient_id FROM prescription", Long.class)) {
+                assertEquals(shardRouter.shardFor(patientId), i);
+                total++;
+            }
+        }
+        assertEquals(12, total);
+
+        String body = mockMvc.perform(get("/api/prescriptions/doctor/" + doctor.getId()))
+                .andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+        assertEquals(created, ids(JsonPath.read(body, "$[*].id")));
+        for (Patient patient : patients) {
+            mockMvc.perform(get("/api/prescriptions/patient/" + patient.getId()))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.length()").value(2));
+        }
+    }
+
+    /**
+     * Tests that prescriptions left on the primary from before sharding are moved to their patients' shards, keep
+     * their IDs, are found by the listings afterwards, and that a second migration finds nothing to move.
+     *
+     * @throws Exception if an error occurs while performing the request or processing the response
+     */
+    @Test
+    void testPrescriptionsOnThePrimaryAreMigratedToShards() throws Exception {
+        long id = 1;
+        for (Patient patient : patients) {
+            for (int i = 0; i < 3; i++, id++) {
+                jdbcTemplate.update("INSERT INTO prescription (id, medicine_name, doctor_id, patient_id) VALUES (?, ?, ?, ?)",
+                        id, "Legacy " + id, doctor.getId(), patient.getId());
+            }
+        }
+
+        assertEquals(18, shardRebalancer.migratePrimary());
+
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM prescription", Integer.class));
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < SHARDS; i++) {
+            for (var row : shard(i).queryForList("SELECT id, patient_id FROM prescription")) {
+                assertEquals(shardRouter.shardFor(((Number) row.get("PATIENT_ID")).longValue()), i);
+                ids.add(((Number) row.get("ID")).longValue());
+            }
+        }
+        assertEquals(18, ids.size());
+        for (Patient patient : patients) {
+            mockMvc.perform(get("/api/prescriptions/patient/" + patient.getId()))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.length()").value(3));
+        }
+        assertEquals(0, shardRebalancer.migratePrimary());
+    }
+
+    /**
+     * Tests that prescriptions written to the shards are deleted again when the caller's transaction rolls back, so
+     * retrying an idempotent create whose key was not stored does not duplicate it.
+     */
+    @Test
+    void testRolledBackWritesAreRemovedFromShards() {
+        String key = UUID.randomUUID().toString();
+        assertThrows(IllegalStateException.class, () -> idempotencyService.execute(key, "hash", Long.class, () -> {
+            prescriptionService.createPrescription(prescription(patients.get(0), "Metformin"));
+            throw new IllegalStateException("Could not store the response");
+        }));
+        assertEquals(0, shardRows());
+
+        IdempotencyService.Result<Long> retried = idempotencyService.execute(key, "hash", Long.class,
+                () -> prescriptionService.createPrescription(prescription(patients.get(0), "Metformin")).getId());
+        assertFalse(retried.isReplayed());
+        assertEquals(1, shardRows());
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            prescriptionRepository.saveAll(List.of(prescription(patients.get(0), "Insulin"), prescription(patients.get(1), "Insulin")));
+            status.setRollbackOnly();
+        });
+        assertEquals(Set.of(0, 1), Set.of(shardRouter.shardFor(patients.get(0).getId()), shardRouter.shardFor(patients.get(1).getId())));
+        assertEquals(1, shardRows());
+    }
+
+    private Prescription prescription(Patient patient, String medicineName) {
+        Prescription prescription = new Prescription();
+        prescription.setMedicineName(medicineName);
+        prescription.setDoctor(doctor);
+        prescription.setPatient(patient);
+        return prescription;
+    }
+
+    private int shardRows() {
+        int rows = 0;
+        for (int i = 0; i < SHARDS; i++) {
+            rows += shard(i).queryForObject("SELECT COUNT(*) FROM prescription", Integer.class);
+        }
+        return rows;
+    }
+
+    /**
+     * Creates two prescriptions per patient, one at a time and then in bulk, and returns their IDs in order.
+     */
+    private List<Long> createPrescriptions() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        StringBuilder bulk = new StringBuilder("[");
+        for (Patient patient : patients) {
+            String jsonRequest = "{\"medicineName\": \"Metformin\", \"doctor\": {\"id\":" + doctor.getId() + "}, \"patient\": {\"id\":" + patient.getId() + "}}";
+            String body = mockMvc.perform(post("/api/prescriptions/create").contentType(MediaType.APPLICATION_JSON).content(jsonRequest))
+                    .andExpect(status().isCreated()).andReturn().getResponse().getContentAsString();
+            ids.add(((Number) JsonPath.read(body, "$.id")).longValue());
+            bulk.append(bulk.length() > 1 ? "," : "").append(jsonRequest.replace("Metformin", "Lisinopril"));
+        }
+        String body = mockMvc.perform(post("/api/prescriptions/bulk").contentType(MediaType.APPLICATION_JSON).content(bulk.append("]").toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.succeeded").value(patients.size()))
+                .andReturn().getResponse().getContentAsString();
+        ids.addAll(ids(JsonPath.read(body, "$.rows[*].id")));
+        ids.sort(null);
+        return ids;
+    }
+
+    private static List<Long> ids(List<Number> values) {
+        return values.stream().map(Number::longValue).toList();
+    }
+
+    private JdbcTemplate shard(int index) {
+        return new JdbcTemplate(new SingleConnectionDataSource(
+                "jdbc:h2:mem:sharding-shard-" + index + ";DB_CLOSE_DELAY=-1", "sa", "", true));
+    }
+}
@@ -0,0 +1,91 @@
+package com.prescriptions.taks.prescriptions.integration;
+
+import com.prescriptions.taks.prescriptions.repository.DoctorRepository;
+import com.prescriptions.taks.prescriptions.repository.PatientRepository;
+import com.prescriptions.taks.prescriptions.repository.PrescriptionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Integration tests for the single-table user layout enabled by the {@code single-table-users} profile.
+ *
+ * Runs against its own in-memory database so the schema is created from the flattened mapping, and checks
+ * that doctors and patients are stored in {@code userdb} alone while the API behaves as before.
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:singletableusers")
+@AutoConfigureMockMvc
+@ActiveProfiles({"test", "single-table-users"})
+class SingleTableUserLayoutIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private PrescriptionRepository prescriptionRepository;
+
+    /**
+     * Clears the repositories before each test.
+     */
+    @BeforeEach
+    void setUp() {
+        prescriptionRepository.deleteAll();
+        doctorRepository.deleteAll();
+        patientRepository.deleteAll();
+    }
+
+    /**
+     * Tests that registering a doctor and a patient writes a single userdb row each, carrying the
+     * subtype columns, and that prescriptions can reference them.
+     *
+     * @throws Exception if an error occurs while performing the request or processing the response
+     */
+    @Test
+    void testUsersAreStoredInOneTable() throws Exception {
+        mockMvc.perform(post("/api/users/register/doctor").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\": \"dr.flat\", \"password\": \"pw\", \"specialty\": \"Cardiology\"}"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.specialty").value("Cardiology"));
+        mockMvc.perform(post("/api/users/register/patient").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\": \"patient.flat\", \"password\": \"pw\", \"medicalHistory\": \"Asthma\"}"))
+                .andExpect(status().isCreated());
+
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE LOWER(TABLE_NAME) IN ('doctor', 'patient')", Integer.class));
+        assertEquals("Cardiology", jdbcTemplate.queryForObject(
+                "SELECT specialty FROM userdb WHERE role = 'DOCTOR'", String.class));
+        assertEquals("Asthma", jdbcTemplate.queryForObject(
+                "SELECT medical_history FROM userdb WHERE role = 'PATIENT'", String.class));
+
+        Long doctorId = doctorRepository.findAll().get(0).getId();
+        Long patientId = patientRepository.findAll().get(0).getId();
+        String jsonRequest = "{\"medicineName\": \"Aspirin\", \"doctor\": {\"id\":" + doctorId + "}, \"patient\": {\"id\":" + patientId + "}}";
+        mockMvc.perform(post("/api/prescriptions/create").contentType(MediaType.APPLICATION_JSON).content(jsonRequest))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/api/prescriptions/patient/" + patientId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].doctorId").value(doctorId));
+    }
+}
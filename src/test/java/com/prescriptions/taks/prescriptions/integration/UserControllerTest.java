@@ -12,6 +12,7 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -75,7 +76,7 @@ class UserControllerTest {
     /**
      * Tests the registration of a patient.
      * Sends a POST request to the /api/users/register/patient endpoint with a JSON payload
-     * and validates the response status and content.
+     * and validates the response status and content, and that the password is stored hashed.
      *
      * @throws Exception if any error occurs during the request or response handling
      */
@@ -95,5 +96,7 @@ class UserControllerTest {
                 .andExpect(jsonPath("$.id").exists())
                 .andExpect(jsonPath("$.username").value("pacijent1"));
 
+        String storedPassword = patientRepository.findAll().get(0).getPassword();
+        assertTrue(storedPassword.startsWith("$2a$"), "password should be stored as a bcrypt hash");
     }
 }
\ No newline at end of file
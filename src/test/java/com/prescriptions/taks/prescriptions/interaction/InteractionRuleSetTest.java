@@ -0,0 +1,91 @@
+package com.prescriptions.taks.prescriptions.interaction;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link InteractionRuleSet}.
+ * Covers parsing of the rule format, class expansion, medicine name matching and checks.
+ */
+class InteractionRuleSetTest {
+
+    private static final String RULES = """
+            # comment
+            class NSAID: ibuprofen, naproxen
+            class ANTICOAGULANT: warfarin, apixaban
+
+            interaction @NSAID + @ANTICOAGULANT | MAJOR | Increased risk of bleeding
+            interaction levothyroxine + calcium carbonate | MINOR | Separate doses
+            interaction ibuprofen + warfarin | MODERATE | Duplicate, less severe rule
+            """;
+
+    private InteractionRuleSet ruleSet;
+
+    /**
+     * Parses the sample rules.
+     *
+     * @throws IOException never, the rules are read from a string
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+        ruleSet = InteractionRuleSet.parse(new BufferedReader(new StringReader(RULES)));
+    }
+
+    /**
+     * Tests that classes expand into one rule per medicine pair and that the most severe duplicate wins.
+     */
+    @Test
+    void testClassesExpandIntoPairs() {
+        assertEquals(6, ruleSet.medicineCount());
+        assertEquals(5, ruleSet.ruleCount());
+
+        List<InteractionWarning> warnings = ruleSet.check(ruleSet.medicines(List.of("Warfarin 5mg")), ruleSet.medicineId("Ibuprofen"));
+        assertEquals(1, warnings.size());
+        assertEquals("ibuprofen", warnings.get(0).getMedicine());
+        assertEquals("warfarin", warnings.get(0).getInteractingMedicine());
+        assertEquals(InteractionRule.Severity.MAJOR, warnings.get(0).getSeverity());
+    }
+
+    /**
+     * Tests that medicine names are matched on their longest run of terms naming a rule medicine.
+     */
+    @Test
+    void testMedicineNameMatching() {
+        assertEquals(ruleSet.medicineId("calcium carbonate"), ruleSet.medicineId("Calcium Carbonate 500mg"));
+        assertEquals(ruleSet.medicineId("naproxen"), ruleSet.medicineId("NAPROXÈN sodium"));
+        assertEquals(-1, ruleSet.medicineId("Calcium"));
+        assertEquals(-1, ruleSet.medicineId("Paracetamol"));
+    }
+
+    /**
+     * Tests checks against several existing medicines and against none that interact.
+     */
+    @Test
+    void testCheck() {
+        BitSet existing = ruleSet.medicines(List.of("Ibuprofen", "Naproxen", "Levothyroxine", "Paracetamol"));
+        assertEquals(2, ruleSet.check(existing, ruleSet.medicineId("Apixaban")).size());
+        assertEquals(1, ruleSet.check(existing, ruleSet.medicineId("Calcium carbonate")).size());
+        assertTrue(ruleSet.check(existing, ruleSet.medicineId("Ibuprofen")).isEmpty());
+        assertTrue(ruleSet.check(existing, -1).isEmpty());
+    }
+
+    /**
+     * Tests that malformed rules are reported with their line number.
+     */
+    @Test
+    void testInvalidRule() {
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> InteractionRuleSet.parse(new BufferedReader(new StringReader("interaction @UNKNOWN + warfarin | MAJOR | x"))));
+        assertTrue(error.getMessage().contains("line 1"));
+    }
+}
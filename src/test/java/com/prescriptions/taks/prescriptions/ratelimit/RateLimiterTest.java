@@ -0,0 +1,68 @@
+package com.prescriptions.taks.prescriptions.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link RateLimiter}.
+ */
+class RateLimiterTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    /**
+     * Tests that a key gets its burst at once, then one request per emission interval, and is told how long to wait.
+     */
+    @Test
+    void testBurstThenRate() {
+        RateLimiter limiter = new RateLimiter(10, 3, 100, Duration.ofMinutes(1));
+        long now = 1_000 * SECOND;
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("client", now));
+        }
+        assertEquals(SECOND / 10, limiter.tryAcquire("client", now));
+        assertEquals(SECOND / 20, limiter.tryAcquire("client", now + SECOND / 20));
+        assertEquals(0, limiter.tryAcquire("client", now + SECOND / 10));
+        assertTrue(limiter.tryAcquire("client", now + SECOND / 10) > 0);
+
+        assertEquals(0, limiter.tryAcquire("other", now), "keys are limited independently");
+
+        long later = now + 10 * SECOND;
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("client", later), "an idle key refills to its burst");
+        }
+        assertTrue(limiter.tryAcquire("client", later) > 0, "but not beyond it");
+    }
+
+    /**
+     * Tests that concurrent requests for one key never admit more than the burst.
+     *
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    @Test
+    void testConcurrentRequestsNeverExceedBurst() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(0.001, 100, 100, Duration.ofMinutes(1));
+        AtomicInteger admitted = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 1000; i++) {
+            executor.execute(() -> {
+                if (limiter.tryAcquire("hot") == 0) {
+                    admitted.incrementAndGet();
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(100, admitted.get());
+    }
+}
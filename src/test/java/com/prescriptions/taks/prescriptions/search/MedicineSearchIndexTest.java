@@ -0,0 +1,91 @@
+package com.prescriptions.taks.prescriptions.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Unit tests for {@link MedicineSearchIndex}.
+ * Covers term normalization, the exact, prefix and fuzzy matching modes and paging through the matches.
+ */
+class MedicineSearchIndexTest {
+
+    private MedicineSearchIndex index;
+
+    /**
+     * Indexes a handful of medicine names, deliberately out of ID order.
+     */
+    @BeforeEach
+    void setUp() {
+        index = new MedicineSearchIndex();
+        index.add(3, "Ibuprofen 400");
+        index.add(1, "Ibuprofén-200");
+        index.add(2, "Paracetamol");
+        index.add(4, "IBUPROFEN 400");
+        index.add(5, "Amoxicillin");
+        index.add(4, "IBUPROFEN 400");
+    }
+
+    /**
+     * Tests that names are folded to lower case without accents and split on separators.
+     */
+    @Test
+    void testTermsAreNormalized() {
+        assertEquals(List.of("ibuprofen", "200"), MedicineSearchIndex.terms("  Ibuprofén-200 "));
+        assertEquals(List.of(), MedicineSearchIndex.terms(" - "));
+    }
+
+    /**
+     * Tests exact matching, including a query with several terms that must all match.
+     */
+    @Test
+    void testExactSearch() {
+        assertArrayEquals(new long[]{1, 3, 4}, index.search("ibuprofen", MedicineSearchIndex.Mode.EXACT, 0, 10));
+        assertArrayEquals(new long[]{3, 4}, index.search("Ibuprofen 400", MedicineSearchIndex.Mode.EXACT, 0, 10));
+        assertArrayEquals(new long[]{}, index.search("ibu", MedicineSearchIndex.Mode.EXACT, 0, 10));
+    }
+
+    /**
+     * Tests prefix matching and that only IDs after the cursor are returned.
+     */
+    @Test
+    void testPrefixSearchAfterCursor() {
+        assertArrayEquals(new long[]{1, 3, 4}, index.search("IBU", MedicineSearchIndex.Mode.PREFIX, 0, 10));
+        assertArrayEquals(new long[]{4}, index.search("ibu", MedicineSearchIndex.Mode.PREFIX, 3, 10));
+        assertArrayEquals(new long[]{2}, index.search("para", MedicineSearchIndex.Mode.PREFIX, 0, 10));
+    }
+
+    /**
+     * Tests that fuzzy matching tolerates typos in proportion to the term length.
+     */
+    @Test
+    void testFuzzySearch() {
+        assertArrayEquals(new long[]{5}, index.search("amoxicilin", MedicineSearchIndex.Mode.FUZZY, 0, 10));
+        assertArrayEquals(new long[]{2}, index.search("paracetmaol", MedicineSearchIndex.Mode.FUZZY, 0, 10));
+        assertArrayEquals(new long[]{}, index.search("aspirin", MedicineSearchIndex.Mode.FUZZY, 0, 10));
+        assertEquals(3, MedicineSearchIndex.editDistance("kitten", "sitting", 3));
+        assertEquals(2, MedicineSearchIndex.editDistance("abcdef", "uvwxyz", 1));
+    }
+
+    /**
+     * Tests that pages of a multi-term prefix query continue from the cursor with exactly the requested number of
+     * IDs, across postings added out of order.
+     */
+    @Test
+    void testPagesStopAtLimit() {
+        for (long id = 1000; id > 100; id--) {
+            index.add(id, id % 2 == 0 ? "Ibuprofen 400" : "Ibuprofen Forte 400");
+        }
+
+        assertArrayEquals(new long[]{1, 3, 4, 101, 102}, index.search("ibu", MedicineSearchIndex.Mode.PREFIX, 0, 5));
+        assertArrayEquals(new long[]{3, 4, 101, 102}, index.search("ibuprofen 400", MedicineSearchIndex.Mode.EXACT, 1, 4));
+        assertArrayEquals(new long[]{103, 105, 107}, index.search("400 ibu fort", MedicineSearchIndex.Mode.PREFIX, 101, 3));
+        assertArrayEquals(new long[]{997, 999}, index.search("forte", MedicineSearchIndex.Mode.EXACT, 995, 10));
+        assertEquals(900, index.search("ibu", MedicineSearchIndex.Mode.PREFIX, 100, 2000).length);
+        assertArrayEquals(new long[]{}, index.search("ibu", MedicineSearchIndex.Mode.PREFIX, 0, 0));
+    }
+}
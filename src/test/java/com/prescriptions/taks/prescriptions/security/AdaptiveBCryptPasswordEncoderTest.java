@@ -0,0 +1,68 @@
+package com.prescriptions.taks.prescriptions.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link AdaptiveBCryptPasswordEncoder}.
+ */
+class AdaptiveBCryptPasswordEncoderTest {
+
+    /**
+     * Tests that an encoded password matches only the original and is never stored in plain text.
+     */
+    @Test
+    void testEncodeAndMatch() {
+        AdaptiveBCryptPasswordEncoder encoder = new AdaptiveBCryptPasswordEncoder(4, 4, Duration.ofMillis(1), null);
+
+        String encoded = encoder.encode("secret");
+
+        assertNotEquals("secret", encoded);
+        assertTrue(encoded.startsWith("$2a$04$"));
+        assertTrue(encoder.matches("secret", encoded));
+        assertFalse(encoder.matches("Secret", encoded));
+        assertFalse(encoder.matches("secret", "secret"));
+    }
+
+    /**
+     * Tests that calibration stays within the configured bounds: a target no hash can meet picks the minimum cost,
+     * a generous one the maximum.
+     */
+    @Test
+    void testCalibrationStaysWithinBounds() {
+        assertEquals(4, new AdaptiveBCryptPasswordEncoder(4, 6, Duration.ofNanos(1), null).getCost());
+        assertEquals(6, new AdaptiveBCryptPasswordEncoder(4, 6, Duration.ofHours(1), null).getCost());
+    }
+
+    /**
+     * Tests that hashes below the current cost, and plain-text passwords, are reported for rehashing.
+     */
+    @Test
+    void testUpgradeEncoding() {
+        AdaptiveBCryptPasswordEncoder encoder = new AdaptiveBCryptPasswordEncoder(5, 5, Duration.ofMillis(1), null);
+
+        assertTrue(encoder.upgradeEncoding(BCrypt.hashpw("secret", BCrypt.gensalt(4))));
+        assertFalse(encoder.upgradeEncoding(encoder.encode("secret")));
+        assertTrue(encoder.upgradeEncoding("secret"));
+    }
+
+    /**
+     * Tests that hash times and the current cost are published.
+     */
+    @Test
+    void testMetrics() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AdaptiveBCryptPasswordEncoder encoder = new AdaptiveBCryptPasswordEncoder(4, 4, Duration.ofMillis(1), registry);
+
+        encoder.matches("secret", encoder.encode("secret"));
+
+        assertEquals(4, registry.get("password.hash.cost").gauge().value());
+        assertEquals(1, registry.get("password.hash").tag("operation", "hash").timer().count());
+        assertEquals(1, registry.get("password.hash").tag("operation", "verify").timer().count());
+    }
+}
@@ -0,0 +1,86 @@
+package com.prescriptions.taks.prescriptions.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for {@link TokenSigner} and {@link TokenRevocationList}.
+ */
+class TokenSignerTest {
+
+    private static final byte[] KEY = "0123456789abcdef0123456789abcdef".getBytes();
+
+    private final TokenSigner signer = new TokenSigner(KEY);
+
+    /**
+     * Tests that an issued token verifies and carries the user's claims.
+     */
+    @Test
+    void testIssueAndVerify() {
+        String token = signer.issue(42, "DOCTOR", Duration.ofHours(1));
+        long now = Instant.now().getEpochSecond();
+
+        AuthToken verified = signer.verify("Bearer " + token, 7);
+
+        assertEquals(TokenSigner.TOKEN_LENGTH, token.length());
+        assertNotNull(verified);
+        assertEquals(42, verified.getUserId());
+        assertEquals("DOCTOR", verified.getRole());
+        assertFalse(verified.isExpired(now));
+        assertTrue(verified.isExpired(now + 3600));
+        assertNotEquals(verified.getTokenId(), signer.verify(signer.issue(42, "DOCTOR", Duration.ofHours(1)), 0).getTokenId());
+    }
+
+    /**
+     * Tests that changing any character of the payload or signature, signing with another key or truncating the
+     * token makes verification fail.
+     */
+    @Test
+    void testRejectsTamperedTokens() {
+        String token = signer.issue(7, "PATIENT", Duration.ofHours(1));
+
+        char[] chars = token.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] == '.') {
+                continue;
+            }
+            char[] tampered = Arrays.copyOf(chars, chars.length);
+            for (char replacement : new char[]{'A', 'B', 'D', '_'}) {
+                if (replacement != chars[i]) {
+                    tampered[i] = replacement;
+                    assertNull(signer.verify(new String(tampered), 0), "tampered at " + i);
+                }
+            }
+        }
+        assertNull(new TokenSigner("fedcba9876543210fedcba9876543210".getBytes()).verify(token, 0));
+        assertNull(signer.verify(token.substring(1), 0));
+        assertNull(signer.verify("", 0));
+        assertThrows(IllegalArgumentException.class, () -> new TokenSigner(new byte[16]));
+    }
+
+    /**
+     * Tests that revoked token IDs are found after individual additions and after a full replacement.
+     */
+    @Test
+    void testRevocationList() {
+        TokenRevocationList revocations = new TokenRevocationList();
+        revocations.add(5);
+        revocations.add(-3);
+        revocations.add(5);
+
+        assertTrue(revocations.isRevoked(5));
+        assertTrue(revocations.isRevoked(-3));
+        assertFalse(revocations.isRevoked(4));
+        assertEquals(2, revocations.size());
+
+        revocations.replace(List.of(9L, 1L));
+        assertTrue(revocations.isRevoked(1));
+        assertFalse(revocations.isRevoked(5));
+    }
+}
@@ -0,0 +1,80 @@
+package com.prescriptions.taks.prescriptions.service;
+
+import com.prescriptions.taks.prescriptions.entities.Patient;
+import com.prescriptions.taks.prescriptions.entities.Prescription;
+import com.prescriptions.taks.prescriptions.event.PrescriptionsCreatedEvent;
+import com.prescriptions.taks.prescriptions.interaction.InteractionWarning;
+import com.prescriptions.taks.prescriptions.repository.PrescriptionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the per-patient medicine cache of {@link InteractionCheckService}.
+ */
+@ExtendWith(MockitoExtension.class)
+class InteractionCheckServiceTest {
+
+    private static final Duration TTL = Duration.ofMillis(500);
+
+    @InjectMocks
+    private InteractionCheckService interactionCheckService;
+
+    @Mock
+    private PrescriptionRepository prescriptionRepository;
+
+    /**
+     * Loads the bundled rules with a short cache TTL.
+     */
+    @BeforeEach
+    void setUp() throws Exception {
+        ReflectionTestUtils.setField(interactionCheckService, "rules", new ClassPathResource("interactions/rules.txt"));
+        ReflectionTestUtils.setField(interactionCheckService, "maxPatients", 100L);
+        ReflectionTestUtils.setField(interactionCheckService, "ttl", TTL);
+        interactionCheckService.loadRules();
+    }
+
+    /**
+     * Tests that a patient whose cached medicines keep being extended by local creates is still reloaded once the TTL
+     * has passed since loading, and so sees a prescription created on another instance.
+     */
+    @Test
+    void testMedicinesAreReloadedAfterTtlDespiteLocalUpdates() throws Exception {
+        when(prescriptionRepository.findMedicineNamesByPatientId(1L))
+                .thenReturn(List.of("Aspirin"))
+                .thenReturn(List.of("Aspirin", "Naproxen", "Warfarin"));
+
+        assertEquals(0, interactionCheckService.check(1L, "Naproxen").size());
+        Thread.sleep(TTL.toMillis() * 3 / 5);
+        interactionCheckService.onPrescriptionsCreated(new PrescriptionsCreatedEvent(List.of(prescription(1L, "Naproxen"))));
+        assertEquals(0, interactionCheckService.check(1L, "Simvastatin").size());
+        Thread.sleep(TTL.toMillis() * 3 / 5);
+
+        List<InteractionWarning> warnings = interactionCheckService.check(1L, "Ibuprofen");
+        assertEquals(1, warnings.size());
+        assertEquals("warfarin", warnings.get(0).getInteractingMedicine());
+        verify(prescriptionRepository, times(2)).findMedicineNamesByPatientId(1L);
+    }
+
+    private Prescription prescription(Long patientId, String medicineName) {
+        Patient patient = new Patient();
+        patient.setId(patientId);
+        Prescription prescription = new Prescription();
+        prescription.setPatient(patient);
+        prescription.setMedicineName(medicineName);
+        return prescription;
+    }
+}
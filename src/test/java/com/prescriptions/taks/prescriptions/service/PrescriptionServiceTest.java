@@ -1,5 +1,7 @@
 package com.prescriptions.taks.prescriptions.service;
 
+import com.prescriptions.taks.prescriptions.config.CacheConfig;
+import com.prescriptions.taks.prescriptions.dto.PrescriptionDTO;
 import com.prescriptions.taks.prescriptions.entities.Doctor;
 import com.prescriptions.taks.prescriptions.entities.Patient;
 import com.prescriptions.taks.prescriptions.entities.Prescription;
@@ -10,13 +12,23 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -41,6 +53,18 @@ public class PrescriptionServiceTest {
 
     @Mock
     private PrescriptionRepository prescriptionRepository;
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private InteractionCheckService interactionCheckService;
+
+    @Mock
+    private ListingVersionService listingVersionService;
     private Prescription prescription1;
     private Doctor doctor;
     private Patient patient;
@@ -59,6 +83,8 @@ public class PrescriptionServiceTest {
 
         patient = new Patient();
         patient.setId(3L);
+
+        ReflectionTestUtils.setField(prescriptionService, "readOnlyTransaction", TransactionOperations.withoutTransaction());
     }
 
     /**
@@ -119,4 +145,62 @@ public class PrescriptionServiceTest {
         assertEquals(prescriptions.size(), result.size());
     }
 
+
+    /**
+     * Tests that a patient listing read while a prescription is created is not cached under the version the create
+     * gave the listing, so the new ETag is never served with the rows from before the create.
+     */
+    @Test
+    void testListingReadDuringCreateIsNotServedUnderNewVersion() {
+        ListingVersionService versions = useRealListingCaches();
+        PrescriptionDTO existing = new PrescriptionDTO();
+        existing.setId(1L);
+        PrescriptionDTO created = new PrescriptionDTO();
+        created.setId(2L);
+        when(prescriptionRepository.findDTOsByPatientId(patient.getId()))
+                .thenAnswer(invocation -> {
+                    // The create commits and bumps the version while the old rows are being read.
+                    versions.bump(CacheConfig.PRESCRIPTIONS_BY_PATIENT, patient.getId());
+                    return List.of(existing);
+                })
+                .thenReturn(List.of(existing, created));
+
+        String staleEtag = versions.etag(CacheConfig.PRESCRIPTIONS_BY_PATIENT, patient.getId());
+        assertEquals(List.of(existing), prescriptionService.getPrescriptionDTOsByPatientId(patient.getId()));
+        assertNotEquals(staleEtag, versions.etag(CacheConfig.PRESCRIPTIONS_BY_PATIENT, patient.getId()));
+        assertEquals(List.of(existing, created), prescriptionService.getPrescriptionDTOsByPatientId(patient.getId()));
+        assertEquals(List.of(existing, created), prescriptionService.getPrescriptionDTOsByPatientId(patient.getId()));
+        verify(prescriptionRepository, times(2)).findDTOsByPatientId(patient.getId());
+    }
+
+    /**
+     * Tests that only a doctor listing read from the database runs in a transaction, and a cache hit does not.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCachedListingHitOpensNoTransaction() {
+        useRealListingCaches();
+        TransactionOperations readOnlyTransaction = mock(TransactionOperations.class);
+        when(readOnlyTransaction.execute(any(TransactionCallback.class)))
+                .thenAnswer(invocation -> ((TransactionCallback<?>) invocation.getArgument(0)).doInTransaction(null));
+        ReflectionTestUtils.setField(prescriptionService, "readOnlyTransaction", readOnlyTransaction);
+        PrescriptionDTO existing = new PrescriptionDTO();
+        existing.setId(1L);
+        when(prescriptionRepository.findDTOsByDoctorId(doctor.getId())).thenReturn(List.of(existing));
+
+        assertEquals(List.of(existing), prescriptionService.getPrescriptionDTOsByDoctorId(doctor.getId()));
+        assertEquals(List.of(existing), prescriptionService.getPrescriptionDTOsByDoctorId(doctor.getId()));
+        verify(readOnlyTransaction, times(1)).execute(any(TransactionCallback.class));
+        verify(prescriptionRepository, times(1)).findDTOsByDoctorId(doctor.getId());
+    }
+
+    private ListingVersionService useRealListingCaches() {
+        ListingVersionService versions = new ListingVersionService();
+        ReflectionTestUtils.setField(versions, "ttl", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(versions, "maxKeys", 100L);
+        versions.init();
+        ReflectionTestUtils.setField(prescriptionService, "listingVersionService", versions);
+        ReflectionTestUtils.setField(prescriptionService, "cacheManager", new CacheConfig().cacheManager(1000, Duration.ofMinutes(10)));
+        return versions;
+    }
 }
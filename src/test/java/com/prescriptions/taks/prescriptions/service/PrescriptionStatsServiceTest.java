@@ -0,0 +1,137 @@
+package com.prescriptions.taks.prescriptions.service;
+
+import com.prescriptions.taks.prescriptions.dto.DailyCountDTO;
+import com.prescriptions.taks.prescriptions.dto.PrescriptionStatsDTO;
+import com.prescriptions.taks.prescriptions.repository.PrescriptionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the startup rebuild of {@link PrescriptionStatsService}.
+ * <p>
+ * The repository serves generated rows for whatever ID range and page it is asked for, so the tests check that the
+ * parallel ranges together read every prescription exactly once.
+ * </p>
+ */
+@ExtendWith(MockitoExtension.class)
+class PrescriptionStatsServiceTest {
+
+    private static final long ROWS = 10_000;
+    private static final long DOCTORS = 3;
+    private static final long PATIENTS = 50;
+
+    @InjectMocks
+    private PrescriptionStatsService prescriptionStatsService;
+
+    @Mock
+    private PrescriptionRepository prescriptionRepository;
+
+    private final LocalDate today = LocalDate.now(ZoneOffset.UTC);
+
+    /**
+     * Configures the service for 4 rebuild threads reading pages of 128 rows.
+     */
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(prescriptionStatsService, "topMedicines", 3);
+        ReflectionTestUtils.setField(prescriptionStatsService, "trackedMedicines", 10);
+        ReflectionTestUtils.setField(prescriptionStatsService, "days", 7);
+        ReflectionTestUtils.setField(prescriptionStatsService, "timeZone", ZoneId.of("UTC"));
+        ReflectionTestUtils.setField(prescriptionStatsService, "rebuildThreads", 4);
+        ReflectionTestUtils.setField(prescriptionStatsService, "rebuildPageSize", 128);
+        prescriptionStatsService.init();
+    }
+
+    /**
+     * Tests that a rebuild over several shards' maximum IDs counts every row once, per doctor, medicine and day.
+     */
+    @Test
+    void testRebuildCountsEveryRowOnce() {
+        when(prescriptionRepository.findMaxIds()).thenReturn(Arrays.asList(ROWS - 7, null, ROWS));
+        when(prescriptionRepository.findStatsRowsBetween(anyLong(), anyLong(), any(Limit.class))).thenAnswer(invocation -> {
+            long after = invocation.getArgument(0);
+            long lastId = invocation.getArgument(1);
+            Limit limit = invocation.getArgument(2);
+            List<PrescriptionRepository.StatsView> page = new ArrayList<>();
+            for (long id = after + 1; id <= lastId && page.size() < limit.max(); id++) {
+                page.add(row(id));
+            }
+            return page;
+        });
+
+        prescriptionStatsService.rebuild();
+
+        PrescriptionStatsDTO doctor = prescriptionStatsService.getDoctorStats(1L);
+        long doctorRows = ROWS / DOCTORS;
+        assertEquals(doctorRows + 1, doctor.getTotal());
+        assertEquals(3, doctor.getTopMedicines().size());
+        assertEquals(0, doctor.getTopMedicines().get(0).getError());
+        assertEquals(7, doctor.getDaily().size());
+        assertEquals(today, doctor.getDaily().get(6).getDate());
+        assertTrue(doctor.getDaily().get(6).getCount() > 0);
+        assertEquals(doctor.getTotal(), doctor.getDaily().stream().mapToLong(DailyCountDTO::getCount).sum() + legacyRows(1));
+
+        PrescriptionStatsDTO patient = prescriptionStatsService.getPatientStats(PATIENTS);
+        assertEquals(ROWS / PATIENTS, patient.getTotal());
+        assertEquals(0, prescriptionStatsService.getPatientStats(PATIENTS + 1).getTotal());
+    }
+
+    private long legacyRows(long doctorId) {
+        long rows = 0;
+        for (long id = 1; id <= ROWS; id++) {
+            if (id % DOCTORS == doctorId % DOCTORS && row(id).getCreatedAt() == null) {
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * A generated row: doctors and patients in turn, five medicines, spread over the last week, and every 10th row
+     * without a creation time.
+     */
+    private PrescriptionRepository.StatsView row(long id) {
+        Instant createdAt = id % 10 == 0 ? null : today.minusDays(id % 7).atStartOfDay(ZoneOffset.UTC).toInstant();
+        return new PrescriptionRepository.StatsView() {
+            public Long getId() {
+                return id;
+            }
+
+            public String getMedicineName() {
+                return "Medicine " + (id % 5);
+            }
+
+            public Long getDoctorId() {
+                return id % DOCTORS == 0 ? DOCTORS : id % DOCTORS;
+            }
+
+            public Long getPatientId() {
+                return id % PATIENTS == 0 ? PATIENTS : id % PATIENTS;
+            }
+
+            public Instant getCreatedAt() {
+                return createdAt;
+            }
+        };
+    }
+}
@@ -0,0 +1,86 @@
+package com.prescriptions.taks.prescriptions.service;
+
+import com.prescriptions.taks.prescriptions.entities.Prescription;
+import com.prescriptions.taks.prescriptions.repository.PrescriptionRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * Unit tests for the shutdown and timeout behaviour of {@link PrescriptionWriteBatcher}.
+ */
+@ExtendWith(MockitoExtension.class)
+class PrescriptionWriteBatcherTest {
+
+    @InjectMocks
+    private PrescriptionWriteBatcher writeBatcher;
+
+    @Mock
+    private PrescriptionRepository prescriptionRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private EntityManager entityManager;
+
+    /**
+     * Configures a small ring with a short flush interval and caller timeout.
+     */
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(writeBatcher, "batchSize", 4);
+        ReflectionTestUtils.setField(writeBatcher, "flushInterval", Duration.ofMillis(1));
+        ReflectionTestUtils.setField(writeBatcher, "capacity", 4);
+        ReflectionTestUtils.setField(writeBatcher, "timeout", Duration.ofMillis(200));
+        writeBatcher.init();
+    }
+
+    /**
+     * Tests that a caller which saw the batcher running but only got its slot after the writer finished is failed
+     * instead of waiting forever, even when it first has to wait for room in a full ring.
+     */
+    @Test
+    void testWriteOfferedAfterWriterStoppedFails() {
+        writeBatcher.start();
+        writeBatcher.stop();
+        // A caller that passed the running check just before stop().
+        ReflectionTestUtils.setField(writeBatcher, "running", true);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            for (int i = 0; i < 6; i++) {
+                CompletableFuture<Prescription> future = writeBatcher.submit(new Prescription());
+                ExecutionException failure = assertThrows(ExecutionException.class, () -> future.get(1, TimeUnit.SECONDS));
+                assertInstanceOf(IllegalStateException.class, failure.getCause());
+            }
+        });
+    }
+
+    /**
+     * Tests that a caller whose batch never commits gives up after the timeout.
+     */
+    @Test
+    void testSaveTimesOut() {
+        // Accepts writes without a writer thread to take them.
+        ReflectionTestUtils.setField(writeBatcher, "running", true);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> assertThrows(QueryTimeoutException.class, () -> writeBatcher.save(new Prescription())));
+    }
+}
@@ -10,8 +10,14 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -32,6 +38,9 @@ public class UserServiceTest {
     @Mock
     private PatientRepository patientRepository;
 
+    @Mock
+    private PasswordHashingService passwordHashingService;
+
     @InjectMocks
     private UserService userService;
 
@@ -40,17 +49,20 @@ public class UserServiceTest {
      * <p>
      * This test verifies that the {@link UserService} correctly processes the registration
      * of a {@link Doctor} entity. It checks that the service method returns the expected
-     * {@link Doctor} object, as provided by the mocked repository.
+     * {@link Doctor} object, as provided by the mocked repository, with its password hashed.
      * </p>
      */
     @Test
     void testRegisterDoctor() {
         Doctor doctor = new Doctor();
+        doctor.setPassword("secret");
+        when(passwordHashingService.hash("secret")).thenReturn(CompletableFuture.completedFuture("hashed"));
         when(doctorRepository.save(any(Doctor.class))).thenReturn(doctor);
 
         Doctor registeredDoctor = userService.registerDoctor(doctor);
 
         assertEquals(doctor, registeredDoctor);
+        assertEquals("hashed", registeredDoctor.getPassword());
     }
 
     /**
@@ -58,16 +70,32 @@ public class UserServiceTest {
      * <p>
      * This test verifies that the {@link UserService} correctly processes the registration
      * of a {@link Patient} entity. It checks that the service method returns the expected
-     * {@link Patient} object, as provided by the mocked repository.
+     * {@link Patient} object, as provided by the mocked repository, with its password hashed.
      * </p>
      */
     @Test
     void testRegisterPatient() {
         Patient patient = new Patient();
+        patient.setPassword("secret");
+        when(passwordHashingService.hash("secret")).thenReturn(CompletableFuture.completedFuture("hashed"));
         when(patientRepository.save(any(Patient.class))).thenReturn(patient);
 
         Patient registeredPatient = userService.registerPatient(patient);
 
         assertEquals(patient, registeredPatient);
+        assertEquals("hashed", registeredPatient.getPassword());
+    }
+
+    /**
+     * Tests that a registration is rejected, and nothing is saved, when password hashing is saturated.
+     */
+    @Test
+    void testRegisterPatientWhenHashingIsSaturated() {
+        Patient patient = new Patient();
+        patient.setPassword("secret");
+        when(passwordHashingService.hash("secret")).thenThrow(new RejectedExecutionException());
+
+        assertThrows(RejectedExecutionException.class, () -> userService.registerPatient(patient));
+        verify(patientRepository, never()).save(any(Patient.class));
     }
 }
@@ -0,0 +1,52 @@
+package com.prescriptions.taks.prescriptions.sharding;
+
+import com.prescriptions.taks.prescriptions.dto.PrescriptionDTO;
+import com.prescriptions.taks.prescriptions.entities.Prescription;
+import com.prescriptions.taks.prescriptions.repository.PrescriptionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for the startup check of {@link ShardedPrescriptionRepositoryInterceptor}.
+ */
+class ShardedPrescriptionRepositoryInterceptorTest {
+
+    /**
+     * Tests that every method of the prescription repository can be served across shards.
+     */
+    @Test
+    void testPrescriptionRepositoryIsSupported() {
+        assertDoesNotThrow(() -> ShardedPrescriptionRepositoryInterceptor.checkSupported(PrescriptionRepository.class));
+    }
+
+    /**
+     * Tests that methods whose results cannot be merged are all reported, and mergeable ones are not.
+     */
+    @Test
+    void testUnmergeableMethodsAreRejected() {
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> ShardedPrescriptionRepositoryInterceptor.checkSupported(UnsupportedRepository.class));
+        assertTrue(e.getMessage().contains("findByMedicineName"));
+        assertTrue(e.getMessage().contains("findFirstByDosage"));
+        assertTrue(e.getMessage().contains("streamByPatientId"));
+        assertFalse(e.getMessage().contains("findByInstructions"));
+        assertFalse(e.getMessage().contains("countByDosage"));
+    }
+
+    private interface UnsupportedRepository {
+        Page<PrescriptionDTO> findByMedicineName(String medicineName, Pageable pageable);
+        Prescription findFirstByDosage(String dosage);
+        Stream<PrescriptionDTO> streamByPatientId(Long patientId);
+        List<PrescriptionDTO> findByInstructions(String instructions);
+        long countByDosage(String dosage);
+    }
+}
@@ -0,0 +1,92 @@
+package com.prescriptions.taks.prescriptions.stats;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link PrescriptionCounters} and {@link PrescriptionStatistics}.
+ */
+class PrescriptionCountersTest {
+
+    private static final long TODAY = 20_000;
+
+    /**
+     * Tests that medicine counts are exact while there are no more distinct medicines than slots.
+     */
+    @Test
+    void testCountsAreExactWithinCapacity() {
+        PrescriptionCounters counters = new PrescriptionCounters(4, 7);
+        for (String medicine : new String[]{"aspirin", "ibuprofen", "aspirin", "insulin", "aspirin", "ibuprofen"}) {
+            counters.record(medicine, TODAY);
+        }
+        counters.record(null, TODAY);
+
+        PrescriptionCounters.Snapshot snapshot = counters.snapshot(2, TODAY);
+        assertEquals(7, snapshot.getTotal());
+        assertArrayEquals(new String[]{"aspirin", "ibuprofen"}, snapshot.getTopMedicines());
+        assertArrayEquals(new long[]{3, 2}, snapshot.getTopCounts());
+        assertArrayEquals(new long[]{0, 0}, snapshot.getTopErrors());
+    }
+
+    /**
+     * Tests that a frequent medicine keeps its slot among many rare ones, and that every count is within its error
+     * of the true count.
+     */
+    @Test
+    void testFrequentMedicineSurvivesManyRareOnes() {
+        PrescriptionCounters counters = new PrescriptionCounters(8, 7);
+        for (int i = 0; i < 1000; i++) {
+            counters.record(i % 4 == 0 ? "metformin" : "rare " + i, TODAY);
+        }
+
+        PrescriptionCounters.Snapshot snapshot = counters.snapshot(3, TODAY);
+        assertEquals(1000, snapshot.getTotal());
+        assertEquals("metformin", snapshot.getTopMedicines()[0]);
+        assertTrue(snapshot.getTopCounts()[0] >= 250);
+        assertTrue(snapshot.getTopCounts()[0] - snapshot.getTopErrors()[0] <= 250);
+        for (int i = 1; i < 3; i++) {
+            assertTrue(snapshot.getTopCounts()[i] - snapshot.getTopErrors()[i] <= 1, "a rare medicine was counted once");
+        }
+    }
+
+    /**
+     * Tests that days are counted within the window ending today, and that older or unknown days only count in the total.
+     */
+    @Test
+    void testDailyCountsCoverTheWindow() {
+        PrescriptionCounters counters = new PrescriptionCounters(4, 3);
+        counters.record("aspirin", TODAY);
+        counters.record("aspirin", TODAY);
+        counters.record("aspirin", TODAY - 2);
+        counters.record("aspirin", TODAY - 3);
+        counters.record("aspirin", Long.MIN_VALUE);
+
+        PrescriptionCounters.Snapshot snapshot = counters.snapshot(1, TODAY);
+        assertEquals(5, snapshot.getTotal());
+        assertEquals(TODAY - 2, snapshot.getFirstDay());
+        assertArrayEquals(new long[]{1, 0, 2}, snapshot.getDailyCounts());
+        assertArrayEquals(new long[]{0, 0, 0}, counters.snapshot(1, TODAY + 3).getDailyCounts());
+    }
+
+    /**
+     * Tests that statistics count each prescription for its doctor and its patient, with normalized medicine names.
+     */
+    @Test
+    void testStatisticsPerDoctorAndPatient() {
+        PrescriptionStatistics statistics = new PrescriptionStatistics(4, 7);
+        statistics.record(1L, 10L, "Aspirin ", TODAY);
+        statistics.record(1L, 11L, "aspirin", TODAY);
+        statistics.record(2L, 10L, "Insulin", TODAY);
+
+        assertEquals(2, statistics.doctor(1L, 5, TODAY).getTotal());
+        assertArrayEquals(new String[]{"aspirin"}, statistics.doctor(1L, 5, TODAY).getTopMedicines());
+        assertArrayEquals(new String[]{"aspirin", "insulin"}, statistics.patient(10L, 5, TODAY).getTopMedicines());
+        assertEquals(0, statistics.patient(12L, 5, TODAY).getTotal());
+        assertEquals(7, statistics.patient(12L, 5, TODAY).getDailyCounts().length);
+        assertEquals(2, statistics.doctorCount());
+        assertEquals(2, statistics.patientCount());
+    }
+}